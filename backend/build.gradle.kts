@@ -40,12 +40,35 @@ application {
     mainClass.set(serverClass)
 }
 
+val allocationTag = "allocation"
+
 tasks.test {
-    useJUnitPlatform()
+    useJUnitPlatform {
+        excludeTags(allocationTag)
+    }
     setFinalizedBy(listOf(tasks.jacocoTestReport))
     enableAssertions = true
 }
 
+val allocationTest = tasks.register<Test>("allocationTest") {
+    description = "Runs the tests which count the allocations of the simulation."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags(allocationTag)
+    }
+    enableAssertions = true
+    // Compile on the threads that need the compiled code so that the allocations of the JIT compiler can be told
+    // apart from those of the simulation
+    jvmArgs("-Xbatch")
+    shouldRunAfter(tasks.test)
+}
+
+tasks.check {
+    dependsOn(allocationTest)
+}
+
 jacoco {
     toolVersion = "0.8.6"
 }
@@ -1,20 +1,23 @@
 package moe.mewore.rabbit.backend;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInput;
-import java.io.DataInputStream;
+import javax.vecmath.Vector3f;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -39,23 +42,35 @@ import moe.mewore.rabbit.backend.editor.EditorVersionHandler;
 import moe.mewore.rabbit.backend.game.RabbitPlayer;
 import moe.mewore.rabbit.backend.game.RabbitPlayerInput;
 import moe.mewore.rabbit.backend.game.RabbitWorld;
+import moe.mewore.rabbit.backend.messages.ChunkDataMessage;
 import moe.mewore.rabbit.backend.messages.HeartbeatRequest;
 import moe.mewore.rabbit.backend.messages.MapDataMessage;
 import moe.mewore.rabbit.backend.messages.PlayerDisconnectMessage;
 import moe.mewore.rabbit.backend.messages.PlayerJoinMessage;
 import moe.mewore.rabbit.backend.messages.WorldUpdateMessage;
+import moe.mewore.rabbit.backend.mutations.ChunkRequestMutation;
 import moe.mewore.rabbit.backend.mutations.HeartbeatResponse;
 import moe.mewore.rabbit.backend.mutations.MutationType;
+import moe.mewore.rabbit.backend.mutations.PlayerInputBatchMutation;
 import moe.mewore.rabbit.backend.mutations.PlayerInputMutation;
 import moe.mewore.rabbit.backend.mutations.PlayerJoinMutation;
+import moe.mewore.rabbit.backend.net.Heart;
 import moe.mewore.rabbit.backend.net.MultiPlayerHeart;
+import moe.mewore.rabbit.backend.net.UpdateSchedule;
+import moe.mewore.rabbit.backend.physics.BulletPhysicsEngine;
+import moe.mewore.rabbit.backend.physics.MazePhysicsEngine;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.backend.simulation.RealtimeSimulation;
 import moe.mewore.rabbit.backend.simulation.player.PlayerInputEvent;
 import moe.mewore.rabbit.data.BinaryEntity;
+import moe.mewore.rabbit.data.ByteArrayDataInput;
+import moe.mewore.rabbit.data.SafeDataInput;
 import moe.mewore.rabbit.noise.CompositeNoise;
 import moe.mewore.rabbit.noise.DiamondSquareNoise;
 import moe.mewore.rabbit.noise.Noise;
+import moe.mewore.rabbit.world.ChunkedMazeWorld;
 import moe.mewore.rabbit.world.MazeMap;
+import moe.mewore.rabbit.world.MazeMapCache;
 import moe.mewore.rabbit.world.WorldProperties;
 
 // This is the server, so of course it's "overly coupled".
@@ -65,7 +80,34 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
 
     private static final int MAXIMUM_NUMBER_OF_PLAYERS = 10;
 
-    private static final int UPDATES_PER_SECOND = 10;
+    /**
+     * How many chunks of a world made of chunks to keep, which should be more than the players need at once.
+     */
+    private static final int MAXIMUM_CACHED_CHUNKS = 128;
+
+    /**
+     * How close the player of a session has to be to a chunk for the session to be able to request it. This keeps a
+     * client from having the whole world generated.
+     */
+    private static final double MAXIMUM_CHUNK_REQUEST_DISTANCE = 1000.0;
+
+    /**
+     * How many chunks can wait to be generated or sent at once. Any more are dropped, and they can be requested or
+     * prefetched again.
+     */
+    private static final int MAXIMUM_QUEUED_CHUNKS = 32;
+
+    /**
+     * How many of the chunks a session has requested can wait to be sent to it at once. Any more are dropped, and the
+     * client requests them again later.
+     */
+    private static final int MAXIMUM_QUEUED_CHUNKS_PER_SESSION = 8;
+
+    /**
+     * The binary messages of different sessions may be handled in parallel, so each thread gets its own reusable input.
+     */
+    private static final ThreadLocal<ByteArrayDataInput> MUTATION_INPUT = ThreadLocal.withInitial(
+        ByteArrayDataInput::new);
 
     private final Map<String, RabbitPlayer> playerBySessionId = new ConcurrentHashMap<>();
 
@@ -73,10 +115,20 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
 
     private final Map<String, Session> sessionById = new ConcurrentHashMap<>();
 
+    private final Map<String, UpdateSchedule> updateScheduleBySessionId = new ConcurrentHashMap<>();
+
+    /**
+     * The keys of the chunks which each session has requested and which have not been sent to it yet.
+     */
+    private final Map<String, Set<Long>> queuedChunksBySessionId = new ConcurrentHashMap<>();
+
     private final ServerSettings serverSettings;
 
     private final Javalin javalin;
 
+    /**
+     * The map the world is made of, or if it is made of chunks, the chunk at the origin.
+     */
     @Getter
     private final MazeMap map;
 
@@ -87,12 +139,26 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
 
     private final ScheduledExecutorService threadPool;
 
+    /**
+     * Generates the chunks of a world made of chunks on its own thread, so that it never holds up the updates of the
+     * world.
+     */
+    private final ExecutorService chunkGenerator;
+
     private final AtomicReference<@NonNull ServerState> state = new AtomicReference<>(ServerState.STOPPED);
 
     private final MultiPlayerHeart heart = new MultiPlayerHeart(MAXIMUM_NUMBER_OF_PLAYERS, this::sendHeartbeat);
 
     private final List<Consumer<RabbitWorld>> worldUpdateListeners = new ArrayList<>();
 
+    private final @Nullable MutationHandler[] mutationHandlers = makeMutationHandlers();
+
+    /**
+     * The frame of the world which was last sent to the sessions, if any. The frames are reused, so it may be
+     * overwritten after a rollback, but only with what happened at about the same time.
+     */
+    private volatile byte @Nullable [] publishedSnapshot = null;
+
     public static Server create(final ServerSettings settings) throws IOException {
         final @Nullable String externalStaticLocation = settings.getExternalStaticLocation();
         final Javalin javalin = Javalin.create(config -> {
@@ -103,23 +169,38 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
         });
 
         final WorldProperties worldProperties = WorldProperties.getFromClasspath();
-        final long seed = worldProperties.getSeedAsLong();
-        final Noise opennessNoise = new CompositeNoise(
-            DiamondSquareNoise.createSeamless(worldProperties.getNoiseResolution(), new Random(seed), 1.0,
-                worldProperties.getNoiseSharpness()),
-            DiamondSquareNoise.createSeamless(worldProperties.getNoiseResolution(), new Random(seed + 1), 1.0,
-                worldProperties.getNoiseSharpness()), CompositeNoise.XNOR_BLENDING);
-
-        final MazeMap map = MazeMap.createSeamless(worldProperties, new Random(seed), opennessNoise);
+        final ExecutorService chunkGenerator = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAXIMUM_QUEUED_CHUNKS));
+        final MazeMap map;
+        final RabbitWorld world;
+        if (settings.getChunkRadius() > 0) {
+            final var chunkedWorld = new ChunkedMazeWorld(worldProperties,
+                seed -> makeOpennessNoise(worldProperties, seed), settings.getChunkRadius(), MAXIMUM_CACHED_CHUNKS);
+            map = chunkedWorld.getChunk(0, 0);
+            world = new RabbitWorld(MAXIMUM_NUMBER_OF_PLAYERS, chunkedWorld, createPhysics(settings, chunkedWorld),
+                chunkGenerator);
+        } else {
+            final @Nullable String mapCacheLocation = settings.getMapCacheLocation();
+            map = mapCacheLocation == null
+                ? generateMap(worldProperties)
+                : new MazeMapCache(Path.of(mapCacheLocation)).getOrGenerate(worldProperties,
+                    () -> generateMap(worldProperties));
+            if (settings.getDistanceFieldSamplesPerCell() > 0) {
+                map.computeDistanceField(settings.getDistanceFieldSamplesPerCell());
+            }
+            world = new RabbitWorld(MAXIMUM_NUMBER_OF_PLAYERS, map, createPhysics(settings, map));
+        }
 
         javalin.get("editors",
             externalStaticLocation != null ? new EditorVersionHandler(externalStaticLocation, File::listFiles,
                 Context::json) : ctx -> ctx.json(Collections.emptySet()));
 
-        final var world = new RabbitWorld(MAXIMUM_NUMBER_OF_PLAYERS, map, RabbitWorld.createPhysicsWorld());
         world.initialize();
-        final Server server = new Server(settings, javalin, map, world, new RealtimeSimulation<>(world),
-            Executors.newScheduledThreadPool(2));
+        final RealtimeSimulation<RabbitPlayerInput> worldSimulation = new RealtimeSimulation<>(world);
+        final Server server = new Server(settings, javalin, map, world, worldSimulation,
+            Executors.newScheduledThreadPool(2), chunkGenerator);
+        worldSimulation.setMaximumInputDelayByPlayerIndex(server.heart::getMaximumInputDelay);
+        javalin.get("metrics/latency", ctx -> ctx.json(server.heart.getStatistics()));
         javalin.ws("/multiplayer", ws -> {
             ws.onConnect(server);
             ws.onBinaryMessage(server);
@@ -128,6 +209,39 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
         return server;
     }
 
+    private static MazeMap generateMap(final WorldProperties worldProperties) {
+        final long seed = worldProperties.getSeedAsLong();
+        return MazeMap.createSeamless(worldProperties, new Random(seed), makeOpennessNoise(worldProperties, seed));
+    }
+
+    private static Noise makeOpennessNoise(final WorldProperties worldProperties, final long seed) {
+        return new CompositeNoise(
+            DiamondSquareNoise.createSeamless(worldProperties.getNoiseResolution(), new Random(seed), 1.0,
+                worldProperties.getNoiseSharpness()),
+            DiamondSquareNoise.createSeamless(worldProperties.getNoiseResolution(), new Random(seed + 1), 1.0,
+                worldProperties.getNoiseSharpness()), CompositeNoise.XNOR_BLENDING);
+    }
+
+    private static PhysicsEngine createPhysics(final ServerSettings settings, final MazeMap map) {
+        if (settings.isMazePhysics()) {
+            return new MazePhysicsEngine(map.getWidth(), map.getDepth());
+        }
+        final var physicsWorld = BulletPhysicsEngine.createWorld(map, settings.isParallelPhysics());
+        physicsWorld.setDeterministic(settings.isDeterministicPhysics());
+        physicsWorld.setParallel(settings.isParallelPhysics());
+        return new BulletPhysicsEngine(physicsWorld, map.getWidth(), map.getDepth());
+    }
+
+    private static PhysicsEngine createPhysics(final ServerSettings settings, final ChunkedMazeWorld chunkedWorld) {
+        if (settings.isMazePhysics()) {
+            throw new IllegalArgumentException("The maze physics engine does not support a world made of chunks");
+        }
+        final var physicsWorld = BulletPhysicsEngine.createWorld(chunkedWorld, settings.isParallelPhysics());
+        physicsWorld.setDeterministic(settings.isDeterministicPhysics());
+        physicsWorld.setParallel(settings.isParallelPhysics());
+        return new BulletPhysicsEngine(physicsWorld, chunkedWorld.getWidth(), chunkedWorld.getDepth());
+    }
+
     public static void main(final String[] args) throws IOException {
         create(new ServerSettings(args, System.getenv())).start();
     }
@@ -157,16 +271,30 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
 
     void updateWorld() {
         worldSimulation.update(System.currentTimeMillis());
+        world.updateChunkWalls();
         final List<PlayerInputEvent<RabbitPlayerInput>> newInputs = worldSimulation.getLastAppliedInputs();
-        final byte[] presentData = new WorldUpdateMessage(world, newInputs,
-            worldSimulation.getCurrentSnapshot()).encodeToBinary();
+        final byte[] currentSnapshot = worldSimulation.getCurrentSnapshot();
+        publishedSnapshot = currentSnapshot;
+        final byte[] presentData = new WorldUpdateMessage(world, newInputs, currentSnapshot).encodeToBinary();
         sessionById.entrySet().parallelStream().forEach(entry -> {
+            final @Nullable UpdateSchedule schedule = updateScheduleBySessionId.get(entry.getKey());
+            if (schedule == null) {
+                return;
+            }
             final RabbitPlayer player = playerBySessionId.get(entry.getKey());
+            final int latency = player != null ? player.getLatency() : Heart.DEFAULT_LATENCY;
+            final int jitter = player != null ? player.getJitter() : 0;
+            if (!schedule.tick(latency, jitter, newInputs)) {
+                return;
+            }
+            final @Nullable List<PlayerInputEvent<RabbitPlayerInput>> inputs = schedule.collectInputs(newInputs);
             if (player != null) {
-                send(entry.getValue(), new WorldUpdateMessage(world, newInputs,
-                    worldSimulation.getPastSnapshot(player.getLatency() * 3 / 2)));
-            } else {
+                send(entry.getValue(), new WorldUpdateMessage(world, inputs,
+                    worldSimulation.getPastSnapshot(UpdateSchedule.getSnapshotDelay(latency, jitter))));
+            } else if (inputs == newInputs) {
                 send(entry.getValue(), presentData);
+            } else {
+                send(entry.getValue(), new WorldUpdateMessage(world, inputs, worldSimulation.getCurrentSnapshot()));
             }
         });
         for (final Consumer<RabbitWorld> handler : worldUpdateListeners) {
@@ -179,6 +307,7 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
 
         try {
             threadPool.shutdown();
+            chunkGenerator.shutdownNow();
             if (!threadPool.awaitTermination(1, TimeUnit.MINUTES)) {
                 System.err.println("The thread pool was not terminated even after waiting for 1 minute");
             }
@@ -190,42 +319,115 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
 
     }
 
+    private @Nullable MutationHandler[] makeMutationHandlers() {
+        final @Nullable MutationHandler[] result = new MutationHandler[MutationType.values().length];
+        result[MutationType.PLAYER_JOIN.getIndex()] = this::handleJoinMutation;
+        result[MutationType.PLAYER_INPUT.getIndex()] = this::handleInputMutation;
+        result[MutationType.HEARTBEAT_RESPONSE.getIndex()] = this::handleHeartbeatResponse;
+        result[MutationType.PLAYER_INPUT_BATCH.getIndex()] = this::handleInputBatchMutation;
+        result[MutationType.CHUNK_REQUEST.getIndex()] = this::handleChunkRequestMutation;
+        return result;
+    }
+
     @Override
-    public void handleBinaryMessage(final WsBinaryMessageContext sender) throws IOException {
-        final @Nullable RabbitPlayer player = playerBySessionId.get(sender.getSessionId());
-        final DataInput dataInput = new DataInputStream(new ByteArrayInputStream(sender.data()));
-        final byte mutationTypeIndex = dataInput.readByte();
-        final MutationType mutationType = Arrays.stream(MutationType.values())
-            .filter(type -> type.getIndex() == mutationTypeIndex)
-            .findAny()
-            .orElseThrow(
-                () -> new IllegalArgumentException("There is no mutation type with index " + mutationTypeIndex));
-        switch (mutationType) {
-            case PLAYER_JOIN:
-                if (player != null) {
-                    throw new IllegalArgumentException(
-                        "There is already a player for session " + sender.getSessionId() + "! Cannot join again.");
-                }
-                handleJoin(sender, PlayerJoinMutation.decodeFromBinary(dataInput));
-                return;
-            case PLAYER_INPUT:
-                if (player == null) {
-                    throw new IllegalArgumentException("There is no player for session " + sender.getSessionId());
-                }
-                handleInput(player, PlayerInputMutation.decodeFromBinary(dataInput));
-                return;
-            case HEARTBEAT_RESPONSE:
-                if (player != null) {
-                    final HeartbeatResponse response = HeartbeatResponse.decodeFromBinary(dataInput);
-                    heart.receive(player, response.getId());
+    public void handleBinaryMessage(final WsBinaryMessageContext sender) {
+        final SafeDataInput input = MUTATION_INPUT.get().reset(sender.data(), sender.offset(), sender.length());
+        final byte mutationTypeIndex = input.readByte();
+        final @Nullable MutationHandler handler = mutationTypeIndex >= 0 && mutationTypeIndex < mutationHandlers.length
+            ? mutationHandlers[mutationTypeIndex]
+            : null;
+        if (handler == null) {
+            throw new IllegalArgumentException("There is no mutation type with index " + mutationTypeIndex);
+        }
+        handler.handle(sender, playerBySessionId.get(sender.getSessionId()), input);
+    }
+
+    private void handleJoinMutation(final WsContext sender, final @Nullable RabbitPlayer player,
+        final SafeDataInput input) {
+        if (player != null) {
+            throw new IllegalArgumentException(
+                "There is already a player for session " + sender.getSessionId() + "! Cannot join again.");
+        }
+        handleJoin(sender, PlayerJoinMutation.decodeFromBinary(input));
+    }
+
+    private void handleInputMutation(final WsContext sender, final @Nullable RabbitPlayer player,
+        final SafeDataInput input) {
+        if (player == null) {
+            throw new IllegalArgumentException("There is no player for session " + sender.getSessionId());
+        }
+        handleInput(player, PlayerInputMutation.decodeFromBinary(input));
+    }
+
+    private void handleInputBatchMutation(final WsContext sender, final @Nullable RabbitPlayer player,
+        final SafeDataInput input) {
+        if (player == null) {
+            throw new IllegalArgumentException("There is no player for session " + sender.getSessionId());
+        }
+        handleInputBatch(player, PlayerInputBatchMutation.decodeFromBinary(input));
+    }
+
+    private void handleHeartbeatResponse(final WsContext sender, final @Nullable RabbitPlayer player,
+        final SafeDataInput input) {
+        if (player != null) {
+            heart.receive(player, HeartbeatResponse.decodeFromBinary(input).getId());
+        }
+    }
+
+    /**
+     * Sends the requested chunk from the chunk generator, since it may have to be generated first. Requests for chunks
+     * which are too far away from the player of the session (as of the last update sent to it) are ignored, and so are
+     * requests for chunks which are already waiting to be sent and requests beyond the limit of each session. The
+     * client can request them again later.
+     */
+    private void handleChunkRequestMutation(final WsContext sender, final @Nullable RabbitPlayer player,
+        final SafeDataInput input) {
+        final @Nullable ChunkedMazeWorld chunkedWorld = world.getChunkedWorld();
+        if (chunkedWorld == null) {
+            throw new IllegalArgumentException("The world is not made of chunks, so there are none to request");
+        }
+        if (player == null) {
+            throw new IllegalArgumentException("There is no player for session " + sender.getSessionId());
+        }
+        final ChunkRequestMutation request = ChunkRequestMutation.decodeFromBinary(input);
+        final byte @Nullable [] snapshot = publishedSnapshot;
+        if (snapshot == null) {
+            return;
+        }
+        final int chunkX = chunkedWorld.wrapChunk(request.getChunkX());
+        final int chunkZ = chunkedWorld.wrapChunk(request.getChunkZ());
+        // The body of the player may be in the middle of a step, so its position is read from what has been sent
+        final Vector3f position = player.readPosition(snapshot, new Vector3f());
+        if (chunkedWorld.getDistanceToChunk(position.x, position.z, chunkX, chunkZ) > MAXIMUM_CHUNK_REQUEST_DISTANCE) {
+            return;
+        }
+
+        final Set<Long> queuedChunks = queuedChunksBySessionId.computeIfAbsent(sender.getSessionId(),
+            sessionId -> ConcurrentHashMap.newKeySet());
+        final long key = chunkedWorld.getChunkKey(chunkX, chunkZ);
+        if (queuedChunks.size() >= MAXIMUM_QUEUED_CHUNKS_PER_SESSION || !queuedChunks.add(key)) {
+            return;
+        }
+        final Session session = sender.session;
+        try {
+            chunkGenerator.execute(() -> runSafely(() -> {
+                try {
+                    if (session.isOpen()) {
+                        send(session, new ChunkDataMessage(chunkX, chunkZ, chunkedWorld.getChunk(chunkX, chunkZ)));
+                    }
+                } finally {
+                    queuedChunks.remove(key);
                 }
+            }));
+        } catch (final RejectedExecutionException e) {
+            queuedChunks.remove(key);
         }
     }
 
     public Server start() {
         setServerState(ServerState.STOPPED, ServerState.STARTING);
 
-        threadPool.scheduleAtFixedRate(() -> runSafely(this::updateWorld), 0, 1000L / UPDATES_PER_SECOND,
+        threadPool.scheduleAtFixedRate(() -> runSafely(this::updateWorld), 0, 1000L / UpdateSchedule.TICKS_PER_SECOND,
             TimeUnit.MILLISECONDS);
         threadPool.scheduleAtFixedRate(() -> runSafely(heart::doStep), 0, heart.getStepTimeInterval(),
             TimeUnit.MILLISECONDS);
@@ -237,10 +439,12 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
 
     @Override
     public void handleConnect(final @NonNull WsConnectContext sender) {
-        sender.send(ByteBuffer.wrap(new MapDataMessage(map, world.getBoxes()).encodeToBinary()));
+        sender.send(ByteBuffer.wrap(
+            new MapDataMessage(map, world.getBoxes(), serverSettings.getChunkRadius()).encodeToBinary()));
         for (final RabbitPlayer player : playerBySessionId.values()) {
             sender.send(ByteBuffer.wrap(new PlayerJoinMessage(player, false).encodeToBinary()));
         }
+        updateScheduleBySessionId.put(sender.getSessionId(), new UpdateSchedule());
         sessionById.put(sender.getSessionId(), sender.session);
     }
 
@@ -251,6 +455,12 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
         RUNNING
     }
 
+    @FunctionalInterface
+    private interface MutationHandler {
+
+        void handle(WsContext sender, @Nullable RabbitPlayer player, SafeDataInput input);
+    }
+
     void sendHeartbeat(final int playerId, final int heartbeatId) {
         final @Nullable Session session = sessionByPlayerId.get(playerId);
         if (session != null && session.isOpen()) {
@@ -281,9 +491,20 @@ public class Server implements WsConnectHandler, WsBinaryMessageHandler, WsClose
         }
     }
 
+    private void handleInputBatch(final RabbitPlayer player, final PlayerInputBatchMutation batchMutation) {
+        try {
+            worldSimulation.acceptInputs(player, batchMutation.getInputs());
+        } catch (final InterruptedException e) {
+            System.out.println("Interrupted while handling a batch of inputs from player " + player.getIndex());
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public void handleClose(final WsCloseContext sender) {
         sessionById.remove(sender.getSessionId());
+        updateScheduleBySessionId.remove(sender.getSessionId());
+        queuedChunksBySessionId.remove(sender.getSessionId());
         final @Nullable RabbitPlayer player = playerBySessionId.remove(sender.getSessionId());
         if (player != null) {
             world.removePlayer(player);
@@ -22,6 +22,29 @@ public class ServerSettings {
 
     private final @Nullable String externalStaticLocation;
 
+    /**
+     * The directory to cache the generated map in, or {@code null} if it should be generated anew on every start.
+     */
+    private final @Nullable String mapCacheLocation;
+
+    private final boolean deterministicPhysics;
+
+    private final boolean parallelPhysics;
+
+    private final boolean mazePhysics;
+
+    /**
+     * How many samples along each side of a cell the distance field of the map should have, or 0 if it should not
+     * have one.
+     */
+    private final int distanceFieldSamplesPerCell;
+
+    /**
+     * How many chunks there are on each side of the chunk at the origin, along each axis, or 0 if the world should be
+     * a single map instead of being made of chunks.
+     */
+    private final int chunkRadius;
+
     public ServerSettings(final String[] arguments, final Map<String, String> environmentVariables) {
         final Map<String, String> allProperties = new HashMap<>(environmentVariables);
         for (final String argument : arguments) {
@@ -35,6 +58,12 @@ public class ServerSettings {
 
         port = determinePort(allProperties);
         externalStaticLocation = allProperties.get("rabbit.static.external");
+        mapCacheLocation = allProperties.get("rabbit.map.cache");
+        deterministicPhysics = Boolean.parseBoolean(allProperties.get("rabbit.physics.deterministic"));
+        parallelPhysics = Boolean.parseBoolean(allProperties.get("rabbit.physics.parallel"));
+        mazePhysics = Boolean.parseBoolean(allProperties.get("rabbit.physics.maze"));
+        distanceFieldSamplesPerCell = determineUnsignedInt(allProperties, "rabbit.distanceField.samplesPerCell");
+        chunkRadius = determineUnsignedInt(allProperties, "rabbit.map.chunkRadius");
     }
 
     private static int determinePort(final Map<String, String> properties) {
@@ -46,4 +75,14 @@ public class ServerSettings {
             return DEFAULT_PORT;
         }
     }
+
+    private static int determineUnsignedInt(final Map<String, String> properties, final String key) {
+        final @Nullable String property = properties.get(key);
+        try {
+            return property == null ? 0 : Integer.parseUnsignedInt(property);
+        } catch (final NumberFormatException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
 }
@@ -3,17 +3,15 @@ package moe.mewore.rabbit.backend.game;
 import javax.vecmath.Vector2f;
 import javax.vecmath.Vector3f;
 
-import com.bulletphysics.collision.dispatch.CollisionObject;
-import com.bulletphysics.collision.dispatch.CollisionWorld;
-import com.bulletphysics.linearmath.Transform;
-
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import moe.mewore.rabbit.backend.net.Heart;
 import moe.mewore.rabbit.backend.physics.RigidBodyController;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.backend.simulation.player.Player;
-import moe.mewore.rabbit.world.MazeMap;
+import moe.mewore.rabbit.world.WrappingArea;
 
 @RequiredArgsConstructor
 public class RabbitPlayer implements Player<RabbitPlayerInput> {
@@ -23,7 +21,7 @@ public class RabbitPlayer implements Player<RabbitPlayerInput> {
     @Getter
     private final Vector2f targetHorizontalMotion = new Vector2f();
 
-    private final Transform tmpTransform = new Transform();
+    private final Vector3f tmpPosition = new Vector3f();
 
     private static final float MIN_Y = 0f;
 
@@ -41,10 +39,10 @@ public class RabbitPlayer implements Player<RabbitPlayerInput> {
     @Getter
     private final boolean isReisen;
 
-    private final CollisionWorld world;
+    private final PhysicsEngine physics;
 
     @Getter
-    private final CollisionObject body;
+    private final PhysicsBody body;
 
     @Getter
     private final RigidBodyController characterController;
@@ -55,6 +53,13 @@ public class RabbitPlayer implements Player<RabbitPlayerInput> {
     @Setter
     private int latency = Heart.DEFAULT_LATENCY;
 
+    /**
+     * The mean deviation of the latency.
+     */
+    @Getter
+    @Setter
+    private int jitter = 0;
+
     @Getter
     private int inputId = -1;
 
@@ -63,14 +68,14 @@ public class RabbitPlayer implements Player<RabbitPlayerInput> {
         if (jumping) {
             characterController.jump();
         }
-        characterController.updateAction(world, dt);
+        characterController.updateAction(dt);
     }
 
-    public void afterPhysics(final MazeMap map) {
-        characterController.afterPhysics(world);
-        final var position = characterController.getPosition(tmpTransform);
-        position.x = (float) map.wrapX(position.x);
-        position.z = (float) map.wrapZ(position.z);
+    public void afterPhysics(final WrappingArea area) {
+        characterController.afterPhysics(physics);
+        final var position = characterController.getPosition(tmpPosition);
+        position.x = (float) area.wrapX(position.x);
+        position.z = (float) area.wrapZ(position.z);
         if (position.y < MIN_Y || position.y > MAX_Y) {
             position.y = (MIN_Y + MAX_Y) * .5f;
         }
@@ -94,8 +99,16 @@ public class RabbitPlayer implements Player<RabbitPlayerInput> {
         characterController.store(frame);
     }
 
-    public Vector3f getPosition(final Transform transform) {
-        return characterController.getPosition(transform);
+    public Vector3f getPosition(final Vector3f target) {
+        return characterController.getPosition(target);
+    }
+
+    /**
+     * Like {@link RabbitPlayer#getPosition(Vector3f)}, but from a frame the player has been stored in, so it can be
+     * done on any thread.
+     */
+    public Vector3f readPosition(final byte[] frame, final Vector3f target) {
+        return characterController.readPosition(frame, target);
     }
 
     public Vector3f getMotion(final Vector3f target) {
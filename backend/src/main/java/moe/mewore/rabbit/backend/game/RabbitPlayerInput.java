@@ -1,8 +1,6 @@
 package moe.mewore.rabbit.backend.game;
 
 import javax.vecmath.Vector2f;
-import java.io.DataInput;
-import java.io.IOException;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -10,6 +8,7 @@ import lombok.Setter;
 import moe.mewore.rabbit.backend.simulation.player.PlayerInput;
 import moe.mewore.rabbit.backend.simulation.player.PlayerInputEvent;
 import moe.mewore.rabbit.data.BinaryEntity;
+import moe.mewore.rabbit.data.SafeDataInput;
 import moe.mewore.rabbit.data.SafeDataOutput;
 
 @AllArgsConstructor
@@ -52,9 +51,20 @@ public class RabbitPlayerInput extends BinaryEntity implements PlayerInput {
         return new double[]{xMinusOne * EIGHTH, xZero * EIGHTH, xOne * EIGHTH};
     }
 
-    public static RabbitPlayerInput decodeFromBinary(final DataInput input) throws IOException {
-        final int id = input.readInt();
-        final long frameId = input.readLong();
+    public static RabbitPlayerInput decodeFromBinary(final SafeDataInput input) {
+        return decodeFromBinary(input, 0L);
+    }
+
+    /**
+     * The counterpart of {@link RabbitPlayerInput#appendToBinaryOutput(SafeDataOutput, long)}.
+     *
+     * @param input       The input to read from.
+     * @param baseFrameId The frame ID the frame ID of the input has been encoded relative to.
+     * @return The decoded input.
+     */
+    public static RabbitPlayerInput decodeFromBinary(final SafeDataInput input, final long baseFrameId) {
+        final int id = input.readSignedVarInt();
+        final long frameId = baseFrameId + input.readSignedVarLong();
         final int keys = input.readByte();
         final float angle = input.readFloat();
         return new RabbitPlayerInput(id, keys, angle, frameId);
@@ -85,8 +95,19 @@ public class RabbitPlayerInput extends BinaryEntity implements PlayerInput {
 
     @Override
     public void appendToBinaryOutput(final SafeDataOutput output) {
-        output.writeInt(id);
-        output.writeLong(frameId);
+        appendToBinaryOutput(output, 0L);
+    }
+
+    /**
+     * Encodes the input with its frame ID as a difference from a base frame ID that is known to the reader, such as
+     * the frame ID of the message it is in. Inputs are usually close to that frame, so the difference is short.
+     *
+     * @param output      The output to write to.
+     * @param baseFrameId The frame ID to encode the frame ID of the input relative to.
+     */
+    public void appendToBinaryOutput(final SafeDataOutput output, final long baseFrameId) {
+        output.writeSignedVarInt(id);
+        output.writeSignedVarLong(frameId - baseFrameId);
         assert keys < 256 : "The input keys(" + keys + ") should be able to fit into a byte";
         output.writeByte(keys);
         output.writeFloat(angle);
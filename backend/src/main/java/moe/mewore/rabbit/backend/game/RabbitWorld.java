@@ -4,38 +4,28 @@ import javax.vecmath.Vector3f;
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
 
-import com.bulletphysics.collision.broadphase.DbvtBroadphase;
-import com.bulletphysics.collision.dispatch.CollisionConfiguration;
-import com.bulletphysics.collision.dispatch.CollisionDispatcher;
-import com.bulletphysics.collision.dispatch.CollisionFlags;
-import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
-import com.bulletphysics.collision.dispatch.GhostPairCallback;
-import com.bulletphysics.collision.shapes.BoxShape;
-import com.bulletphysics.collision.shapes.ConvexShape;
-import com.bulletphysics.collision.shapes.CylinderShape;
-import com.bulletphysics.dynamics.DynamicsWorld;
-import com.bulletphysics.dynamics.RigidBody;
-import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
-import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
-import com.bulletphysics.linearmath.DefaultMotionState;
-import com.bulletphysics.linearmath.Transform;
-
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import lombok.Getter;
 import lombok.Synchronized;
-import moe.mewore.rabbit.backend.physics.FixedDiscreteDynamicWorld;
-import moe.mewore.rabbit.backend.physics.ForestWalls;
+import moe.mewore.rabbit.backend.physics.ChunkWalls;
 import moe.mewore.rabbit.backend.physics.PhysicsDummyBox;
 import moe.mewore.rabbit.backend.physics.PhysicsDummySphere;
 import moe.mewore.rabbit.backend.physics.RigidBodyController;
+import moe.mewore.rabbit.backend.physics.engine.BodyShape;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.backend.simulation.WorldBase;
 import moe.mewore.rabbit.backend.simulation.data.FrameDataType;
 import moe.mewore.rabbit.backend.simulation.data.FrameSection;
 import moe.mewore.rabbit.backend.simulation.data.FrameSerializableEntity;
+import moe.mewore.rabbit.world.ChunkedMazeWorld;
 import moe.mewore.rabbit.world.MazeMap;
+import moe.mewore.rabbit.world.WrappingArea;
 
 public class RabbitWorld extends WorldBase<RabbitPlayerInput, RabbitPlayer> {
 
@@ -45,8 +35,7 @@ public class RabbitWorld extends WorldBase<RabbitPlayerInput, RabbitPlayer> {
 
     private static final float PLAYER_HEIGHT = 10f;
 
-    private static final ConvexShape PLAYER_SHAPE = new CylinderShape(
-        new Vector3f(PLAYER_RADIUS, PLAYER_HEIGHT / 2f, PLAYER_RADIUS));
+    private static final BodyShape PLAYER_SHAPE = BodyShape.cylinder(PLAYER_RADIUS, PLAYER_HEIGHT / 2f);
 
     private static final float GROUND_HALF_THICKNESS = 100f;
 
@@ -54,64 +43,144 @@ public class RabbitWorld extends WorldBase<RabbitPlayerInput, RabbitPlayer> {
 
     private final ConcurrentHashMap<Integer, RabbitPlayer> players = new ConcurrentHashMap<>();
 
+    /**
+     * The same players as {@link RabbitWorld#players}, but they can be iterated over without allocating anything.
+     */
+    private final AtomicReferenceArray<@Nullable RabbitPlayer> playersByIndex;
+
     @Getter
-    private final DynamicsWorld physicsWorld;
+    private final PhysicsEngine physics;
 
     @Getter
     private final PhysicsDummyBox[] boxes;
 
-    private final MazeMap map;
+    private final WrappingArea area;
+
+    /**
+     * The map the whole world is made of, or {@code null} if it is made of chunks instead.
+     */
+    private final @Nullable MazeMap map;
+
+    /**
+     * The chunks the world is made of, or {@code null} if it is made of a single map instead.
+     */
+    @Getter
+    private final @Nullable ChunkedMazeWorld chunkedWorld;
+
+    private final @Nullable ChunkWalls chunkWalls;
+
+    /**
+     * The X and Z coordinates of the bodies which can move, given to {@link RabbitWorld#chunkWalls}. Reused so that
+     * nothing has to be allocated on every update.
+     */
+    private final float[] chunkWallPoints;
+
+    private final Vector3f tmpPosition = new Vector3f();
 
     @Getter
     private final PhysicsDummySphere[] spheres;
 
     private final FrameSection[] playerControllerFrameSections;
 
-    public RabbitWorld(final int maxPlayerCount, final MazeMap map, final DynamicsWorld physicsWorld) {
+    private final Consumer<RabbitPlayer> beforePhysicsAction;
+
+    private final Consumer<RabbitPlayer> afterPhysicsAction;
+
+    private float stepDeltaSeconds = 0f;
+
+    public RabbitWorld(final int maxPlayerCount, final MazeMap map, final PhysicsEngine physics) {
+        this(maxPlayerCount, map, map, null, physics, null);
+    }
+
+    /**
+     * Only the walls of the chunks near the players and the spheres are in the physics world, and they have to be kept
+     * up to date with {@link RabbitWorld#updateChunkWalls()}.
+     *
+     * @param chunkGenerator The executor to generate the chunks with before their walls are needed.
+     */
+    public RabbitWorld(final int maxPlayerCount, final ChunkedMazeWorld chunkedWorld, final PhysicsEngine physics,
+        final Executor chunkGenerator) {
+        this(maxPlayerCount, chunkedWorld, null, chunkedWorld, physics, chunkGenerator);
+    }
+
+    private RabbitWorld(final int maxPlayerCount, final WrappingArea area, final @Nullable MazeMap map,
+        final @Nullable ChunkedMazeWorld chunkedWorld, final PhysicsEngine physics,
+        final @Nullable Executor chunkGenerator) {
         super(maxPlayerCount);
+        this.area = area;
         this.map = map;
-        this.physicsWorld = physicsWorld;
+        this.chunkedWorld = chunkedWorld;
+        chunkWalls = chunkedWorld != null && chunkGenerator != null
+            ? new ChunkWalls(chunkedWorld, physics, chunkGenerator)
+            : null;
+        this.physics = physics;
+        physics.setGravity(new Vector3f(0f, -GRAVITY, 0f));
+        playersByIndex = new AtomicReferenceArray<>(maxPlayerCount);
 
         playerControllerFrameSections = frameCompiler.reserveMultiple(maxPlayerCount,
             RigidBodyController.FRAME_DATA_TYPES.toArray(new FrameDataType[0]));
         boxes = PhysicsDummyBox.makeBoxes();
-        spheres = PhysicsDummySphere.makeSpheres(boxes, frameCompiler);
+        spheres = PhysicsDummySphere.makeSpheres(boxes, frameCompiler, physics);
+        chunkWallPoints = new float[(maxPlayerCount + spheres.length) * 2];
 
         afterPlayerRemoval = player -> {
-            physicsWorld.removeCollisionObject(player.getBody());
+            physics.removeBody(player.getBody());
             players.remove(player.getIndex(), player);
+            playersByIndex.compareAndSet(player.getIndex(), player, null);
         };
-    }
-
-    public static DynamicsWorld createPhysicsWorld() {
-        final CollisionConfiguration configuration = new DefaultCollisionConfiguration();
-        final DynamicsWorld physicsWorld = new FixedDiscreteDynamicWorld(new CollisionDispatcher(configuration),
-            new DbvtBroadphase(), new SequentialImpulseConstraintSolver(), configuration);
-        physicsWorld.getPairCache().setInternalGhostPairCallback(new GhostPairCallback());
-        physicsWorld.setGravity(new Vector3f(0f, -GRAVITY, 0f));
-        return physicsWorld;
+        // Made once so that they don't have to be allocated on every step
+        beforePhysicsAction = player -> player.beforePhysics(stepDeltaSeconds);
+        afterPhysicsAction = player -> player.afterPhysics(area);
     }
 
     public void initialize() {
-        final var planeShape = new BoxShape(new Vector3f(map.getWidth(), GROUND_HALF_THICKNESS, map.getDepth()));
-        final var groundPlane = new RigidBody(0f, new DefaultMotionState(), planeShape);
-        groundPlane.translate(new Vector3f(0f, -GROUND_HALF_THICKNESS, 0f));
-        groundPlane.setCollisionFlags(CollisionFlags.STATIC_OBJECT);
-        groundPlane.setFriction(.75f);
-        groundPlane.setRestitution(.25f);
-        physicsWorld.addRigidBody(groundPlane);
+        final PhysicsBody ground = physics.createBody(
+            BodyShape.box(area.getWidth(), GROUND_HALF_THICKNESS, area.getDepth()), 0f,
+            new Vector3f(0f, -GROUND_HALF_THICKNESS, 0f), 0f);
+        ground.setFriction(.75f);
+        ground.setRestitution(.25f);
+        physics.addBody(ground);
 
         for (final PhysicsDummyBox box : boxes) {
-            physicsWorld.addRigidBody(box.getBody());
+            physics.addBody(box.createBody(physics));
         }
 
         for (final PhysicsDummySphere sphere : spheres) {
-            physicsWorld.addRigidBody(sphere.getBody());
+            physics.addBody(sphere.getBody());
+        }
+
+        if (map != null) {
+            physics.addWalls(map);
         }
+    }
 
-        for (final var wall : ForestWalls.generate(map).getBodies()) {
-            physicsWorld.addRigidBody(wall);
+    /**
+     * Adds the walls of the chunks the players and the spheres are getting close to and removes the ones of the chunks
+     * they have left. Does nothing if the world is made of a single map. Should be called between the steps of the
+     * world rather than during them.
+     */
+    public void updateChunkWalls() {
+        if (chunkWalls == null) {
+            return;
+        }
+        int pointCount = 0;
+        for (int i = 0; i < playersByIndex.length(); i++) {
+            final @Nullable RabbitPlayer player = playersByIndex.get(i);
+            if (player != null) {
+                pointCount = addChunkWallPoint(pointCount, player.getBody());
+            }
+        }
+        for (final PhysicsDummySphere sphere : spheres) {
+            pointCount = addChunkWallPoint(pointCount, sphere.getBody());
         }
+        chunkWalls.update(chunkWallPoints, pointCount);
+    }
+
+    private int addChunkWallPoint(final int index, final PhysicsBody body) {
+        final Vector3f position = body.getPosition(tmpPosition);
+        chunkWallPoints[index * 2] = position.x;
+        chunkWallPoints[index * 2 + 1] = position.z;
+        return index + 1;
     }
 
     @Override
@@ -134,20 +203,17 @@ public class RabbitWorld extends WorldBase<RabbitPlayerInput, RabbitPlayer> {
             return null;
         }
 
-        final Transform startTransform = new Transform();
-        startTransform.setIdentity();
-        startTransform.origin.y = RabbitWorld.PLAYER_HEIGHT / 2f;
-
-        final var body = new RigidBody(
-            new RigidBodyConstructionInfo(1f, new DefaultMotionState(startTransform), RabbitWorld.PLAYER_SHAPE));
+        final PhysicsBody body = physics.createBody(RabbitWorld.PLAYER_SHAPE, 1f,
+            new Vector3f(0f, RabbitWorld.PLAYER_HEIGHT / 2f, 0f), 0f);
         body.setFriction(0);
         body.setRestitution(0);
         final var characterController = new RigidBodyController(body, playerControllerFrameSections[index]);
-        physicsWorld.addRigidBody(body);
+        physics.addBody(body);
 
         final RabbitPlayer player = new RabbitPlayer(nextPlayerUid(), index, "Player " + (index + 1), isReisen,
-            physicsWorld, body, characterController);
+            physics, body, characterController);
         players.put(index, player);
+        playersByIndex.set(index, player);
         return player;
     }
 
@@ -156,16 +222,34 @@ public class RabbitWorld extends WorldBase<RabbitPlayerInput, RabbitPlayer> {
         players.forEachValue(PARALLELISM_THRESHOLD, playerConsumer);
     }
 
+    /**
+     * Like {@link RabbitWorld#forEachPlayer(Consumer)}, but there is nothing to allocate when there are too few players
+     * to process them in parallel.
+     */
+    private void forEachPlayerInStep(final Consumer<RabbitPlayer> action) {
+        if (players.size() >= PARALLELISM_THRESHOLD) {
+            players.forEachValue(PARALLELISM_THRESHOLD, action);
+            return;
+        }
+        for (int i = 0; i < playersByIndex.length(); i++) {
+            final @Nullable RabbitPlayer player = playersByIndex.get(i);
+            if (player != null) {
+                action.accept(player);
+            }
+        }
+    }
+
     @Override
     public void doStep(final float deltaSeconds) {
-        players.forEachValue(PARALLELISM_THRESHOLD, player -> player.beforePhysics(deltaSeconds));
+        stepDeltaSeconds = deltaSeconds;
+        forEachPlayerInStep(beforePhysicsAction);
         try {
-            physicsWorld.stepSimulation(deltaSeconds, 0, deltaSeconds);
+            physics.step(deltaSeconds);
         } catch (final NullPointerException e) {
             System.err.println("Error encountered while simulating frame " + (frameId + 1) + ": " + e.getMessage());
             e.printStackTrace();
         }
-        players.forEachValue(PARALLELISM_THRESHOLD, player -> player.afterPhysics(map));
+        forEachPlayerInStep(afterPhysicsAction);
         ++frameId;
     }
 }
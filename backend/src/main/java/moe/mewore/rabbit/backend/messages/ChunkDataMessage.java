@@ -0,0 +1,28 @@
+package moe.mewore.rabbit.backend.messages;
+
+import lombok.RequiredArgsConstructor;
+import moe.mewore.rabbit.data.BinaryEntity;
+import moe.mewore.rabbit.data.SafeDataOutput;
+import moe.mewore.rabbit.world.MazeMap;
+
+/**
+ * A chunk of a world made of chunks (see {@link moe.mewore.rabbit.world.ChunkedMazeWorld}), sent to a client which
+ * has requested it.
+ */
+@RequiredArgsConstructor
+public class ChunkDataMessage extends BinaryEntity {
+
+    private final int chunkX;
+
+    private final int chunkZ;
+
+    private final MazeMap chunk;
+
+    @Override
+    public void appendToBinaryOutput(final SafeDataOutput output) {
+        output.writeByte(MessageType.CHUNK_DATA.getIndex());
+        output.writeInt(chunkX);
+        output.writeInt(chunkZ);
+        chunk.appendToBinaryOutput(output);
+    }
+}
@@ -1,11 +1,18 @@
 package moe.mewore.rabbit.backend.messages;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import lombok.RequiredArgsConstructor;
 import moe.mewore.rabbit.backend.physics.PhysicsDummyBox;
 import moe.mewore.rabbit.data.BinaryEntity;
 import moe.mewore.rabbit.data.SafeDataOutput;
+import moe.mewore.rabbit.world.MazeDistanceField;
 import moe.mewore.rabbit.world.MazeMap;
 
+/**
+ * Everything about the world which does not change. If the world is made of chunks, the map is the chunk at the
+ * origin, and the other chunks are sent one by one with a {@link ChunkDataMessage} when they are requested.
+ */
 @RequiredArgsConstructor
 public class MapDataMessage extends BinaryEntity {
 
@@ -13,10 +20,22 @@ public class MapDataMessage extends BinaryEntity {
 
     private final PhysicsDummyBox[] boxes;
 
+    /**
+     * How many chunks there are on each side of the chunk at the origin, along each axis, or 0 if the map is the whole
+     * world.
+     */
+    private final int chunkRadius;
+
     @Override
     public void appendToBinaryOutput(final SafeDataOutput output) {
         output.writeByte(MessageType.MAP_DATA.getIndex());
         map.appendToBinaryOutput(output);
         output.writeArray(boxes);
+        final @Nullable MazeDistanceField distanceField = map.getDistanceField();
+        output.writeBoolean(distanceField != null);
+        if (distanceField != null) {
+            distanceField.appendToBinaryOutput(output);
+        }
+        output.writeInt(chunkRadius);
     }
 }
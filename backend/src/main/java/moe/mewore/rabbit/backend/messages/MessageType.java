@@ -10,7 +10,8 @@ public enum MessageType {
     MAP_DATA((byte) 1),
     UPDATE((byte) 2),
     DISCONNECT((byte) 3),
-    HEARTBEAT_REQUEST((byte) 4);
+    HEARTBEAT_REQUEST((byte) 4),
+    CHUNK_DATA((byte) 5);
 
     private final byte index;
 }
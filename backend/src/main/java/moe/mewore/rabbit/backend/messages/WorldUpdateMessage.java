@@ -8,6 +8,7 @@ import java.util.Map;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import lombok.RequiredArgsConstructor;
+import moe.mewore.rabbit.backend.game.RabbitPlayer;
 import moe.mewore.rabbit.backend.game.RabbitPlayerInput;
 import moe.mewore.rabbit.backend.game.RabbitWorld;
 import moe.mewore.rabbit.backend.simulation.player.PlayerInputEvent;
@@ -27,10 +28,15 @@ public class WorldUpdateMessage extends BinaryEntity {
     public void appendToBinaryOutput(final SafeDataOutput output) {
         output.writeByte(MessageType.UPDATE.getIndex());
 
-        output.writeInt(world.getMaxPlayerCount());
-        output.writeInt(world.getSpheres().length);
+        output.writeVarInt(world.getMaxPlayerCount());
+        output.writeVarInt(world.getSpheres().length);
 
-        output.writeMap(world.getPlayersAsMap(), output::writeInt, player -> output.writeInt(player.getLatency()));
+        final Map<Integer, RabbitPlayer> players = world.getPlayersAsMap();
+        output.writeVarInt(players.size());
+        for (final Map.Entry<Integer, RabbitPlayer> entry : players.entrySet()) {
+            output.writeVarInt(entry.getKey());
+            output.writeVarInt(entry.getValue().getLatency());
+        }
 
         final Map<Integer, List<RabbitPlayerInput>> inputsByPlayerId = new HashMap<>();
         if (appliedInputs != null) {
@@ -41,7 +47,16 @@ public class WorldUpdateMessage extends BinaryEntity {
                 inputsByPlayerId.putIfAbsent(inputEvent.getPlayerId(), inputList);
             }
         }
-        output.writeMap(inputsByPlayerId, output::writeInt, output::writeCollection);
+        final long baseFrameId = world.getFrameId();
+        output.writeSignedVarLong(baseFrameId);
+        output.writeVarInt(inputsByPlayerId.size());
+        for (final Map.Entry<Integer, List<RabbitPlayerInput>> entry : inputsByPlayerId.entrySet()) {
+            output.writeVarInt(entry.getKey());
+            output.writeVarInt(entry.getValue().size());
+            for (final RabbitPlayerInput input : entry.getValue()) {
+                input.appendToBinaryOutput(output, baseFrameId);
+            }
+        }
 
         output.write(frame);
     }
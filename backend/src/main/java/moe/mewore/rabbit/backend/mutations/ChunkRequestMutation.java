@@ -0,0 +1,18 @@
+package moe.mewore.rabbit.backend.mutations;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import moe.mewore.rabbit.data.SafeDataInput;
+
+@Getter
+@RequiredArgsConstructor
+public class ChunkRequestMutation {
+
+    private final int chunkX;
+
+    private final int chunkZ;
+
+    public static ChunkRequestMutation decodeFromBinary(final SafeDataInput input) {
+        return new ChunkRequestMutation(input.readInt(), input.readInt());
+    }
+}
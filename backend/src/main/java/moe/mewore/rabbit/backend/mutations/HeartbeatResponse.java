@@ -1,10 +1,8 @@
 package moe.mewore.rabbit.backend.mutations;
 
-import java.io.DataInput;
-import java.io.IOException;
-
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import moe.mewore.rabbit.data.SafeDataInput;
 
 @RequiredArgsConstructor
 public class HeartbeatResponse {
@@ -12,7 +10,7 @@ public class HeartbeatResponse {
     @Getter
     private final int id;
 
-    public static HeartbeatResponse decodeFromBinary(final DataInput input) throws IOException {
+    public static HeartbeatResponse decodeFromBinary(final SafeDataInput input) {
         return new HeartbeatResponse(input.readInt());
     }
 }
@@ -8,7 +8,9 @@ import lombok.RequiredArgsConstructor;
 public enum MutationType {
     PLAYER_JOIN((byte) 0),
     PLAYER_INPUT((byte) 1),
-    HEARTBEAT_RESPONSE((byte) 2);
+    HEARTBEAT_RESPONSE((byte) 2),
+    PLAYER_INPUT_BATCH((byte) 3),
+    CHUNK_REQUEST((byte) 4);
 
     private final byte index;
 }
@@ -0,0 +1,54 @@
+package moe.mewore.rabbit.backend.mutations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import moe.mewore.rabbit.backend.game.RabbitPlayerInput;
+import moe.mewore.rabbit.data.BinaryEntity;
+import moe.mewore.rabbit.data.SafeDataInput;
+import moe.mewore.rabbit.data.SafeDataOutput;
+
+/**
+ * Several inputs of the same player sent together. Besides the newest inputs, the client repeats a few of the ones
+ * it has already sent so that a single lost message does not cost the server an input. The frame IDs of the inputs
+ * are encoded relative to that of the first one.
+ */
+@RequiredArgsConstructor
+public class PlayerInputBatchMutation extends BinaryEntity {
+
+    public static final int MAX_INPUT_COUNT = 255;
+
+    @Getter
+    private final List<RabbitPlayerInput> inputs;
+
+    public static PlayerInputBatchMutation decodeFromBinary(final SafeDataInput input) {
+        final int inputCount = input.readUnsignedByte();
+        final List<RabbitPlayerInput> inputs = new ArrayList<>(inputCount);
+        if (inputCount > 0) {
+            final long baseFrameId = input.readSignedVarLong();
+            for (int i = 0; i < inputCount; i++) {
+                inputs.add(RabbitPlayerInput.decodeFromBinary(input, baseFrameId));
+            }
+        }
+        return new PlayerInputBatchMutation(inputs);
+    }
+
+    @Override
+    public void appendToBinaryOutput(final SafeDataOutput output) {
+        if (inputs.size() > MAX_INPUT_COUNT) {
+            throw new IllegalStateException(
+                "Cannot encode " + inputs.size() + " inputs; the maximum is " + MAX_INPUT_COUNT);
+        }
+        output.writeByte(MutationType.PLAYER_INPUT_BATCH.getIndex());
+        output.writeByte(inputs.size());
+        if (!inputs.isEmpty()) {
+            final long baseFrameId = inputs.get(0).getFrameId();
+            output.writeSignedVarLong(baseFrameId);
+            for (final RabbitPlayerInput input : inputs) {
+                input.appendToBinaryOutput(output, baseFrameId);
+            }
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package moe.mewore.rabbit.backend.mutations;
 
-import java.io.DataInput;
-import java.io.IOException;
-
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import moe.mewore.rabbit.backend.game.RabbitPlayerInput;
+import moe.mewore.rabbit.data.SafeDataInput;
 
 @RequiredArgsConstructor
 public class PlayerInputMutation {
@@ -13,7 +11,7 @@ public class PlayerInputMutation {
     @Getter
     private final RabbitPlayerInput input;
 
-    public static PlayerInputMutation decodeFromBinary(final DataInput input) throws IOException {
+    public static PlayerInputMutation decodeFromBinary(final SafeDataInput input) {
         return new PlayerInputMutation(RabbitPlayerInput.decodeFromBinary(input));
     }
 }
@@ -1,11 +1,9 @@
 package moe.mewore.rabbit.backend.mutations;
 
-import java.io.DataInput;
-import java.io.IOException;
-
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import moe.mewore.rabbit.data.BinaryEntity;
+import moe.mewore.rabbit.data.SafeDataInput;
 import moe.mewore.rabbit.data.SafeDataOutput;
 
 @Getter
@@ -14,7 +12,7 @@ public class PlayerJoinMutation extends BinaryEntity {
 
     private final boolean isReisen;
 
-    public static PlayerJoinMutation decodeFromBinary(final DataInput input) throws IOException {
+    public static PlayerJoinMutation decodeFromBinary(final SafeDataInput input) {
         return new PlayerJoinMutation(input.readBoolean());
     }
 
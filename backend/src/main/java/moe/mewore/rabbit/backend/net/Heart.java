@@ -1,13 +1,20 @@
 package moe.mewore.rabbit.backend.net;
 
-import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Consumer;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+/**
+ * Sends heartbeats to a single player and measures how long it takes for them to come back. Beats are prepared by a
+ * single thread while the responses may be received by any other one, so the pending beats are kept in atomic arrays
+ * instead of behind a lock.
+ */
 @RequiredArgsConstructor
 public class Heart {
 
@@ -19,36 +26,43 @@ public class Heart {
 
     private static final int BEAT_HISTORY_SIZE = 10;
 
-    private static final int DELAY_TO_LATENCY_DIVISOR = BEAT_HISTORY_SIZE * 2;
-
-    private final int[] delays = makeArray(DEFAULT_DELAY);
-
-    private final long[] sentAt = new long[BEAT_HISTORY_SIZE];
+    private final AtomicLongArray sentAt = new AtomicLongArray(BEAT_HISTORY_SIZE);
 
     private final Consumer<Integer> latencyConsumer;
 
-    private final int[] expectedHeartbeatId = makeArray(-1);
+    private final Consumer<Integer> jitterConsumer;
+
+    private final AtomicIntegerArray expectedHeartbeatId = makeArray(-1);
 
-    private int delaySum = DEFAULT_DELAY * BEAT_HISTORY_SIZE;
+    @Getter
+    private final RttEstimator rttEstimator = new RttEstimator(DEFAULT_DELAY);
 
     private int currentHeartbeatId = 0;
 
     private int currentHeartbeatIndex = BEAT_HISTORY_SIZE - 1;
 
-    static int[] makeArray(final int initialValue) {
-        final int[] result = new int[BEAT_HISTORY_SIZE];
-        Arrays.fill(result, initialValue);
+    static AtomicIntegerArray makeArray(final int initialValue) {
+        final AtomicIntegerArray result = new AtomicIntegerArray(BEAT_HISTORY_SIZE);
+        for (int i = 0; i < BEAT_HISTORY_SIZE; i++) {
+            result.set(i, initialValue);
+        }
         return result;
     }
 
+    /**
+     * Should only ever be called by one thread at a time.
+     *
+     * @return The ID of the heartbeat to send, or {@code null} if there are too many heartbeats waiting for a response.
+     */
     public @Nullable Integer prepareBeat() {
         final long now = System.currentTimeMillis();
         for (int i = 0; i < BEAT_HISTORY_SIZE; i++) {
             currentHeartbeatIndex = (currentHeartbeatIndex + 1) % BEAT_HISTORY_SIZE;
-            if (expectedHeartbeatId[currentHeartbeatIndex] <= 0 ||
-                now - sentAt[currentHeartbeatIndex] > MAXIMUM_DELAY) {
-                expectedHeartbeatId[currentHeartbeatIndex] = ++currentHeartbeatId;
-                sentAt[currentHeartbeatIndex] = now;
+            if (expectedHeartbeatId.get(currentHeartbeatIndex) <= 0 ||
+                now - sentAt.get(currentHeartbeatIndex) > MAXIMUM_DELAY) {
+                // The time has to be set before the ID so that whoever sees the ID also sees the time
+                sentAt.set(currentHeartbeatIndex, now);
+                expectedHeartbeatId.set(currentHeartbeatIndex, ++currentHeartbeatId);
                 return currentHeartbeatId;
             }
         }
@@ -60,12 +74,14 @@ public class Heart {
             return;
         }
         for (int i = 0; i < BEAT_HISTORY_SIZE; i++) {
-            if (expectedHeartbeatId[i] == heartbeatId) {
-                delaySum -= delays[i];
-                delaySum += delays[i] = (int) (System.currentTimeMillis() - sentAt[i]);
-                latencyConsumer.accept(delaySum / DELAY_TO_LATENCY_DIVISOR);
-                expectedHeartbeatId[i] = -1;
-                sentAt[i] = -1;
+            if (expectedHeartbeatId.get(i) == heartbeatId) {
+                final long delay = System.currentTimeMillis() - sentAt.get(i);
+                if (!expectedHeartbeatId.compareAndSet(i, heartbeatId, -1)) {
+                    return;
+                }
+                rttEstimator.addSample((int) Math.min(delay, MAXIMUM_DELAY));
+                latencyConsumer.accept(rttEstimator.getSmoothedRtt() / 2);
+                jitterConsumer.accept(rttEstimator.getRttDeviation() / 2);
                 return;
             }
         }
@@ -1,61 +1,114 @@
 package moe.mewore.rabbit.backend.net;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-import lombok.Synchronized;
 import moe.mewore.rabbit.backend.game.RabbitPlayer;
 
+/**
+ * Sends heartbeats to all players. Every player gets a beat once per {@link MultiPlayerHeart#MILLISECONDS_PER_BEAT}
+ * milliseconds, spread across several steps so that they aren't all sent at once. Nothing here is behind a global
+ * lock, so responses from different players can be received in parallel.
+ */
 public class MultiPlayerHeart {
 
     private static final int MILLISECONDS_PER_BEAT = 1000 / 3;
 
+    private static final int MAXIMUM_STEPS_PER_BEAT = 10;
+
+    /**
+     * How many milliseconds an input can be late by on top of the tail round-trip time (and four times its deviation)
+     * of its player.
+     */
+    private static final int INPUT_DELAY_MARGIN = 100;
+
+    private static final int MINIMUM_MAXIMUM_INPUT_DELAY = 250;
+
     private final int maximumNumberOfPlayers;
 
-    private final @Nullable Heart[] hearts;
+    private final int stepsPerBeat;
+
+    private final AtomicReferenceArray<@Nullable Heart> hearts;
 
     private final BiConsumer<@NonNull Integer, @NonNull Integer> sendFunction;
 
-    private int currentTargetId = 0;
+    private int currentStep = 0;
 
     public MultiPlayerHeart(final int maximumNumberOfPlayers,
         final BiConsumer<@NonNull Integer, @NonNull Integer> sendFunction) {
         this.maximumNumberOfPlayers = maximumNumberOfPlayers;
         this.sendFunction = sendFunction;
-        hearts = new Heart[maximumNumberOfPlayers];
+        stepsPerBeat = Math.max(1, Math.min(maximumNumberOfPlayers, MAXIMUM_STEPS_PER_BEAT));
+        hearts = new AtomicReferenceArray<>(maximumNumberOfPlayers);
     }
 
-    @Synchronized
+    /**
+     * Sends a beat to every player whose index is congruent to the current step. Should only ever be called by one
+     * thread at a time.
+     */
     public void doStep() {
-        final @Nullable Heart heart = hearts[currentTargetId];
-        if (heart != null) {
-            final Integer beatId = heart.prepareBeat();
-            if (beatId != null) {
-                sendFunction.accept(currentTargetId, beatId);
+        for (int i = currentStep; i < maximumNumberOfPlayers; i += stepsPerBeat) {
+            final @Nullable Heart heart = hearts.get(i);
+            if (heart != null) {
+                final Integer beatId = heart.prepareBeat();
+                if (beatId != null) {
+                    sendFunction.accept(i, beatId);
+                }
             }
         }
-        currentTargetId = ++currentTargetId % maximumNumberOfPlayers;
+        currentStep = (currentStep + 1) % stepsPerBeat;
     }
 
     public long getStepTimeInterval() {
-        return MILLISECONDS_PER_BEAT / maximumNumberOfPlayers;
+        return MILLISECONDS_PER_BEAT / stepsPerBeat;
     }
 
     public void addPlayer(final RabbitPlayer player) {
-        hearts[player.getIndex()] = new Heart(player::setLatency);
+        hearts.set(player.getIndex(), new Heart(player::setLatency, player::setJitter));
     }
 
     public void removePlayer(final RabbitPlayer player) {
-        hearts[player.getIndex()] = null;
+        hearts.set(player.getIndex(), null);
     }
 
-    @Synchronized
     public void receive(final RabbitPlayer player, final int heartbeatId) {
-        final @Nullable Heart heart = hearts[player.getIndex()];
+        final @Nullable Heart heart = hearts.get(player.getIndex());
         if (heart != null) {
             heart.receive(heartbeatId);
         }
     }
+
+    /**
+     * @return The round-trip time statistics of each player, by player index.
+     */
+    public Map<Integer, RttStatistics> getStatistics() {
+        final Map<Integer, RttStatistics> result = new HashMap<>();
+        for (int i = 0; i < maximumNumberOfPlayers; i++) {
+            final @Nullable Heart heart = hearts.get(i);
+            if (heart != null) {
+                result.put(i, heart.getRttEstimator().getStatistics());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param playerIndex The index of the player.
+     * @return How many milliseconds in the past an input of the player may be applied at, based on how delayed its
+     * heartbeat responses usually are, or {@link Integer#MAX_VALUE} if that is still unknown.
+     */
+    public int getMaximumInputDelay(final int playerIndex) {
+        final @Nullable Heart heart = hearts.get(playerIndex);
+        if (heart == null || heart.getRttEstimator().getSampleCount() == 0) {
+            return Integer.MAX_VALUE;
+        }
+        final RttEstimator estimator = heart.getRttEstimator();
+        return Math.max(MINIMUM_MAXIMUM_INPUT_DELAY,
+            estimator.getHighPercentile() + estimator.getRttDeviation() * 4 + INPUT_DELAY_MARGIN);
+    }
 }
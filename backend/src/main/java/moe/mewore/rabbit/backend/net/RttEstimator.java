@@ -0,0 +1,138 @@
+package moe.mewore.rabbit.backend.net;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimates the round-trip time (RTT) of a single connection. It can be updated and queried from different threads
+ * without any locking:
+ * <ul>
+ *     <li>The smoothed RTT and its mean deviation are exponentially weighted moving averages (with gains of 1/8 and 1/4
+ *     respectively, as in RFC 6298) kept together in a single atomic long</li>
+ *     <li>The percentiles come from a histogram of the most recent {@link RttEstimator#WINDOW_SIZE} samples, which is
+ *     updated as each sample is added. The 99th percentile is also found after each sample and kept, since it is
+ *     needed for every input</li>
+ * </ul>
+ */
+public class RttEstimator {
+
+    static final int WINDOW_SIZE = 64;
+
+    static final int BUCKET_WIDTH = 5;
+
+    /**
+     * The last bucket contains all RTT values which are too large for the others.
+     */
+    static final int BUCKET_COUNT = 400;
+
+    /**
+     * The averages are stored multiplied by 8 so that the fractions of the EWMA gains are not lost.
+     */
+    private static final int FIXED_POINT_SHIFT = 3;
+
+    private static final int SMOOTHED_RTT_GAIN_SHIFT = 3;
+
+    private static final int DEVIATION_GAIN_SHIFT = 2;
+
+    private static final double HIGH_PERCENTILE_FRACTION = .99;
+
+    /**
+     * The smoothed RTT in the upper 32 bits and its deviation in the lower 32 bits, both in fixed point.
+     */
+    private final AtomicLong averages;
+
+    private final AtomicIntegerArray window = new AtomicIntegerArray(WINDOW_SIZE);
+
+    private final AtomicIntegerArray histogram = new AtomicIntegerArray(BUCKET_COUNT);
+
+    private final AtomicInteger sampleCount = new AtomicInteger();
+
+    private final AtomicInteger highPercentile;
+
+    public RttEstimator(final int initialRtt) {
+        averages = new AtomicLong(pack(initialRtt << FIXED_POINT_SHIFT, 0));
+        highPercentile = new AtomicInteger(initialRtt);
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            window.set(i, -1);
+        }
+    }
+
+    private static long pack(final int smoothedRtt, final int deviation) {
+        return ((long) smoothedRtt << Integer.SIZE) | (deviation & 0xFFFFFFFFL);
+    }
+
+    private static long update(final long packedAverages, final int rtt) {
+        int smoothedRtt = (int) (packedAverages >>> Integer.SIZE);
+        int deviation = (int) packedAverages;
+        final int error = (rtt << FIXED_POINT_SHIFT) - smoothedRtt;
+        deviation += (Math.abs(error) - deviation) >> DEVIATION_GAIN_SHIFT;
+        smoothedRtt += error >> SMOOTHED_RTT_GAIN_SHIFT;
+        return pack(smoothedRtt, deviation);
+    }
+
+    private static int getBucket(final int rtt) {
+        return Math.min(rtt / BUCKET_WIDTH, BUCKET_COUNT - 1);
+    }
+
+    public void addSample(final int rtt) {
+        final int sample = Math.max(0, rtt);
+        averages.updateAndGet(packedAverages -> update(packedAverages, sample));
+
+        final int evicted = window.getAndSet(Math.floorMod(sampleCount.getAndIncrement(), WINDOW_SIZE), sample);
+        if (evicted >= 0) {
+            histogram.decrementAndGet(getBucket(evicted));
+        }
+        histogram.incrementAndGet(getBucket(sample));
+        highPercentile.set(getPercentile(HIGH_PERCENTILE_FRACTION));
+    }
+
+    public int getSampleCount() {
+        return sampleCount.get();
+    }
+
+    public int getSmoothedRtt() {
+        return (int) (averages.get() >>> Integer.SIZE) >> FIXED_POINT_SHIFT;
+    }
+
+    public int getRttDeviation() {
+        return (int) averages.get() >> FIXED_POINT_SHIFT;
+    }
+
+    /**
+     * @param fraction The fraction of the recent samples which should be less than or equal to the result, in the
+     *                 range (0, 1].
+     * @return The upper bound of the histogram bucket the percentile is in, or the smoothed RTT if there are no
+     * samples.
+     */
+    public int getPercentile(final double fraction) {
+        int total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += histogram.get(i);
+        }
+        if (total <= 0) {
+            return getSmoothedRtt();
+        }
+        final int target = Math.max(1, (int) Math.ceil(total * fraction));
+        int cumulativeCount = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            cumulativeCount += histogram.get(i);
+            if (cumulativeCount >= target) {
+                return (i + 1) * BUCKET_WIDTH;
+            }
+        }
+        return BUCKET_COUNT * BUCKET_WIDTH;
+    }
+
+    /**
+     * @return The 99th percentile (see {@link RttEstimator#getPercentile(double)}) as of the latest sample.
+     */
+    public int getHighPercentile() {
+        return highPercentile.get();
+    }
+
+    public RttStatistics getStatistics() {
+        return new RttStatistics(getSmoothedRtt(), getRttDeviation(), getPercentile(.5), getPercentile(.95),
+            getHighPercentile(), getSampleCount());
+    }
+}
@@ -0,0 +1,22 @@
+package moe.mewore.rabbit.backend.net;
+
+import lombok.Value;
+
+/**
+ * A snapshot of the round-trip time estimates of a connection, in milliseconds.
+ */
+@Value
+public class RttStatistics {
+
+    int smoothedRtt;
+
+    int rttDeviation;
+
+    int p50;
+
+    int p95;
+
+    int p99;
+
+    int sampleCount;
+}
@@ -0,0 +1,83 @@
+package moe.mewore.rabbit.backend.net;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import moe.mewore.rabbit.backend.game.RabbitPlayerInput;
+import moe.mewore.rabbit.backend.simulation.player.PlayerInputEvent;
+
+/**
+ * Decides when a single session should receive a world update and how far in the past it should be. The world is
+ * updated at every tick, twice as often as it used to be sent to everyone. Clients with a low and stable latency
+ * receive an update at every tick, the ones with a typical latency at every second tick (as often as before), and the
+ * ones with a high or unstable latency even less often. The inputs applied at the ticks which a session has skipped are
+ * kept so that they can be sent along with the next update.
+ */
+public class UpdateSchedule {
+
+    public static final int TICKS_PER_SECOND = 20;
+
+    private static final int MAXIMUM_TICKS_PER_UPDATE = 6;
+
+    /**
+     * For each of these milliseconds of (pessimistic) latency, the session skips one more tick.
+     */
+    private static final int LATENCY_PER_SKIPPED_TICK = 100;
+
+    private final List<PlayerInputEvent<RabbitPlayerInput>> skippedInputs = new ArrayList<>();
+
+    private int ticksUntilUpdate = 0;
+
+    static int getTicksPerUpdate(final int latency, final int jitter) {
+        return Math.min(MAXIMUM_TICKS_PER_UPDATE, 1 + Math.max(0, latency + jitter * 2) / LATENCY_PER_SKIPPED_TICK);
+    }
+
+    /**
+     * @param latency The latency of the player, in milliseconds.
+     * @param jitter  The jitter of the latency of the player, in milliseconds.
+     * @return How many milliseconds in the past the snapshot sent to the player should be.
+     */
+    public static int getSnapshotDelay(final int latency, final int jitter) {
+        return latency * 3 / 2 + jitter * 2;
+    }
+
+    /**
+     * Advances the schedule by one tick.
+     *
+     * @param latency   The latency of the player, in milliseconds.
+     * @param jitter    The jitter of the latency of the player, in milliseconds.
+     * @param newInputs The inputs applied at this tick.
+     * @return Whether an update should be sent at this tick. If it should, the inputs to send with it can be obtained
+     * with {@link UpdateSchedule#collectInputs(List)}. Otherwise, the new inputs are kept for the next update.
+     */
+    public boolean tick(final int latency, final int jitter,
+        final @Nullable List<PlayerInputEvent<RabbitPlayerInput>> newInputs) {
+        if (--ticksUntilUpdate > 0) {
+            if (newInputs != null) {
+                skippedInputs.addAll(newInputs);
+            }
+            return false;
+        }
+        ticksUntilUpdate = getTicksPerUpdate(latency, jitter);
+        return true;
+    }
+
+    /**
+     * @param newInputs The inputs applied at the current tick.
+     * @return The inputs applied since the last update was sent, including the new ones.
+     */
+    public @Nullable List<PlayerInputEvent<RabbitPlayerInput>> collectInputs(
+        final @Nullable List<PlayerInputEvent<RabbitPlayerInput>> newInputs) {
+        if (skippedInputs.isEmpty()) {
+            return newInputs;
+        }
+        final List<PlayerInputEvent<RabbitPlayerInput>> result = new ArrayList<>(skippedInputs);
+        skippedInputs.clear();
+        if (newInputs != null) {
+            result.addAll(newInputs);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,400 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.bulletphysics.collision.broadphase.BroadphaseInterface;
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.broadphase.Dispatcher;
+import com.bulletphysics.collision.dispatch.CollisionConfiguration;
+import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.CollisionFlags;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.CollisionWorld;
+import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.collision.shapes.BoxShape;
+import com.bulletphysics.collision.shapes.CollisionShape;
+import com.bulletphysics.collision.shapes.CylinderShape;
+import com.bulletphysics.collision.shapes.SphereShape;
+import com.bulletphysics.dynamics.DynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.QuaternionUtil;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.Getter;
+import moe.mewore.rabbit.backend.physics.engine.BodyShape;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
+import moe.mewore.rabbit.backend.physics.engine.RayHit;
+import moe.mewore.rabbit.world.ChunkedMazeWorld;
+import moe.mewore.rabbit.world.MazeMap;
+
+/**
+ * A {@link PhysicsEngine} backed by a JBullet world. The dynamic bodies get ghosts across the seams of the world
+ * ({@link SeamGhosts}) and, if the world has a {@link ContactTracker}, their contacts are tracked.
+ */
+public class BulletPhysicsEngine implements PhysicsEngine {
+
+    /**
+     * How close to a seam of the map a body has to be to collide with what is on the other side of it.
+     */
+    private static final float SEAM_GHOST_MARGIN = 20f;
+
+    @Getter
+    private final DynamicsWorld world;
+
+    private final SeamGhosts seamGhosts;
+
+    private final @Nullable ContactTracker contactTracker;
+
+    private final ThreadLocal<ContactQuery> contactQuery = ThreadLocal.withInitial(ContactQuery::new);
+
+    /**
+     * @param world The JBullet world to simulate.
+     * @param width The width of the world (along the X axis), centered at the origin.
+     * @param depth The depth of the world (along the Z axis), centered at the origin.
+     */
+    public BulletPhysicsEngine(final DynamicsWorld world, final float width, final float depth) {
+        this.world = world;
+        seamGhosts = new SeamGhosts(world, width, depth, Math.min(SEAM_GHOST_MARGIN, Math.min(width, depth) * .25f));
+        contactTracker = world instanceof FixedDiscreteDynamicWorld
+            ? ((FixedDiscreteDynamicWorld) world).getContactTracker()
+            : null;
+    }
+
+    public static DynamicsWorld createWorld() {
+        return createWorld(new DbvtBroadphase(), false);
+    }
+
+    /**
+     * @param map The map the physics world is for.
+     * @return A physics world whose broadphase is a grid with the same cells as the map.
+     */
+    public static FixedDiscreteDynamicWorld createWorld(final MazeMap map) {
+        return createWorld(map, false);
+    }
+
+    /**
+     * @param map      The map the physics world is for.
+     * @param parallel Whether the world is going to find its contacts on several threads (see
+     *                 {@link FixedDiscreteDynamicWorld#setParallel(boolean)}), which takes a thread-safe dispatcher
+     *                 and collision configuration. Otherwise, the default ones of JBullet are used.
+     * @return A physics world whose broadphase is a grid with the same cells as the map.
+     */
+    public static FixedDiscreteDynamicWorld createWorld(final MazeMap map, final boolean parallel) {
+        return createWorld(new GridBroadphase(map), parallel);
+    }
+
+    /**
+     * @param chunkedWorld The chunked world the physics world is for.
+     * @param parallel     Whether the world is going to find its contacts on several threads (see
+     *                     {@link BulletPhysicsEngine#createWorld(MazeMap, boolean)}).
+     * @return A physics world whose broadphase is a grid with the same cells as a single chunk. The cells of the grid
+     * wrap around for every chunk, but only the walls of the chunks near the players are in the world at any time.
+     */
+    public static FixedDiscreteDynamicWorld createWorld(final ChunkedMazeWorld chunkedWorld, final boolean parallel) {
+        final MazeMap firstChunk = chunkedWorld.getChunk(0, 0);
+        return createWorld(new GridBroadphase((float) chunkedWorld.getChunkWidth(),
+            (float) chunkedWorld.getChunkDepth(), firstChunk.getColumnCount(), firstChunk.getRowCount()), parallel);
+    }
+
+    private static FixedDiscreteDynamicWorld createWorld(final BroadphaseInterface broadphase,
+        final boolean parallel) {
+        final CollisionConfiguration configuration;
+        final CollisionDispatcher dispatcher;
+        if (parallel) {
+            final var threadSafeConfiguration = new ThreadSafeCollisionConfiguration();
+            configuration = threadSafeConfiguration;
+            dispatcher = new ParallelCollisionDispatcher(threadSafeConfiguration);
+        } else {
+            configuration = new DefaultCollisionConfiguration();
+            dispatcher = new CollisionDispatcher(configuration);
+        }
+        final var world = new FixedDiscreteDynamicWorld(dispatcher, broadphase,
+            new SequentialImpulseConstraintSolver(), configuration);
+        final var contactTracker = new ContactTracker();
+        world.getPairCache().setInternalGhostPairCallback(contactTracker);
+        world.setContactTracker(contactTracker);
+        return world;
+    }
+
+    private static CollisionShape createShape(final BodyShape shape) {
+        switch (shape.getType()) {
+            case BOX:
+                return new BoxShape(new Vector3f(shape.getHalfWidth(), shape.getHalfHeight(), shape.getHalfDepth()));
+            case SPHERE:
+                return new SphereShape(shape.getHalfWidth());
+            case CYLINDER:
+                return new CylinderShape(
+                    new Vector3f(shape.getHalfWidth(), shape.getHalfHeight(), shape.getHalfDepth()));
+            default:
+                throw new IllegalArgumentException("Unsupported shape type: " + shape.getType());
+        }
+    }
+
+    private static RigidBody getRigidBody(final PhysicsBody body) {
+        return ((BulletBody) body).getRigidBody();
+    }
+
+    private static void forEachContactNormal(final RigidBody body, final PersistentManifold manifold,
+        final Vector3f normal, final Consumer<Vector3f> consumer) {
+        final var isFirstBody = manifold.getBody0() == body;
+        final var isSecondBody = !isFirstBody && manifold.getBody1() == body;
+        if (!isFirstBody && !isSecondBody) {
+            return;
+        }
+        for (int i = 0; i < manifold.getNumContacts(); i++) {
+            // The normal on the second body points towards the first one
+            normal.set(manifold.getContactPoint(i).normalWorldOnB);
+            if (isSecondBody) {
+                normal.negate();
+            }
+            consumer.accept(normal);
+        }
+    }
+
+    private boolean isDeterministic() {
+        return world instanceof FixedDiscreteDynamicWorld && ((FixedDiscreteDynamicWorld) world).isDeterministic();
+    }
+
+    @Override
+    public void setGravity(final Vector3f gravity) {
+        world.setGravity(gravity);
+    }
+
+    @Override
+    public PhysicsBody createBody(final BodyShape shape, final float mass, final Vector3f position,
+        final float rotationY) {
+        final var transform = new Transform();
+        transform.setIdentity();
+        transform.origin.set(position);
+        if (rotationY != 0f) {
+            final var rotation = new Quat4f();
+            QuaternionUtil.setEuler(rotation, rotationY, 0f, 0f);
+            transform.setRotation(rotation);
+        }
+        final var body = new RigidBody(
+            new RigidBodyConstructionInfo(mass, new DefaultMotionState(transform), createShape(shape)));
+        if (mass == 0f) {
+            body.setCollisionFlags(CollisionFlags.STATIC_OBJECT);
+        }
+        return new BulletBody(body);
+    }
+
+    /**
+     * The rotation of the dynamic bodies is not a part of the frames of the world, so in a deterministic world, they
+     * do not rotate at all. Neither can they fall asleep, since they would be woken up differently after a rollback.
+     */
+    @Override
+    public void addBody(final PhysicsBody body) {
+        final RigidBody rigidBody = getRigidBody(body);
+        if (rigidBody.isStaticOrKinematicObject()) {
+            world.addRigidBody(rigidBody);
+            return;
+        }
+        if (isDeterministic()) {
+            rigidBody.setAngularFactor(0f);
+            rigidBody.setAngularVelocity(new Vector3f());
+            rigidBody.setActivationState(CollisionObject.DISABLE_DEACTIVATION);
+        }
+        if (contactTracker != null) {
+            contactTracker.track(rigidBody);
+        }
+        world.addRigidBody(rigidBody);
+        seamGhosts.track(rigidBody);
+    }
+
+    @Override
+    public void removeBody(final PhysicsBody body) {
+        final RigidBody rigidBody = getRigidBody(body);
+        if (rigidBody.isStaticObject()) {
+            seamGhosts.removeStaticCopies(rigidBody);
+            world.removeCollisionObject(rigidBody);
+            return;
+        }
+        seamGhosts.untrack(rigidBody);
+        if (contactTracker != null) {
+            contactTracker.untrack(rigidBody);
+        }
+        world.removeCollisionObject(rigidBody);
+    }
+
+    @Override
+    public void addWalls(final MazeMap map) {
+        for (final RigidBody wall : ForestWalls.generate(map, ForestWalls.Layout.COMPOUND_GRID).getBodies()) {
+            world.addRigidBody(wall);
+            seamGhosts.addStaticCopies(wall);
+        }
+    }
+
+    @Override
+    public List<PhysicsBody> addChunkWalls(final MazeMap chunk, final float offsetX, final float offsetZ) {
+        final RigidBody[] walls = ForestWalls.generate(chunk, ForestWalls.Layout.COMPOUND_GRID).getBodies();
+        final List<PhysicsBody> result = new ArrayList<>(walls.length);
+        final Vector3f offset = new Vector3f(offsetX, 0f, offsetZ);
+        for (final RigidBody wall : walls) {
+            wall.translate(offset);
+            world.addRigidBody(wall);
+            seamGhosts.addStaticCopies(wall);
+            result.add(new BulletBody(wall));
+        }
+        return result;
+    }
+
+    /**
+     * @return Whether every dynamic body is asleep, in which case stepping the physics world would not change
+     * anything. Players wake their bodies up when their input changes their motion.
+     */
+    private boolean isAsleep() {
+        final int objectCount = world.getNumCollisionObjects();
+        if (objectCount == 0) {
+            return true;
+        }
+        final ObjectArrayList<CollisionObject> objects = world.getCollisionObjectArray();
+        for (int i = 0; i < objectCount; i++) {
+            final CollisionObject object = objects.getQuick(i);
+            if (!object.isStaticOrKinematicObject() && object.isActive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void step(final float deltaSeconds) {
+        seamGhosts.update();
+        if (!isAsleep()) {
+            world.stepSimulation(deltaSeconds, 0, deltaSeconds);
+        }
+    }
+
+    @Override
+    public boolean rayTest(final Vector3f from, final Vector3f to, final RayHit result) {
+        final var callback = new CollisionWorld.ClosestRayResultCallback(from, to);
+        world.rayTest(from, to, callback);
+        if (!callback.hasHit()) {
+            return false;
+        }
+        result.point.set(callback.hitPointWorld);
+        result.normal.set(callback.hitNormalWorld);
+        result.fraction = callback.closestHitFraction;
+        final @Nullable Object userPointer = callback.collisionObject.getUserPointer();
+        result.body = userPointer instanceof PhysicsBody ? (PhysicsBody) userPointer : null;
+        return true;
+    }
+
+    /**
+     * If the world has a {@link ContactTracker}, the contacts are looked for only in the manifolds of the pairs the
+     * body is in. Otherwise, every manifold in the world has to be checked.
+     */
+    @Override
+    public void forEachContactNormal(final PhysicsBody body, final Consumer<Vector3f> consumer) {
+        final RigidBody rigidBody = getRigidBody(body);
+        final ContactQuery query = contactQuery.get();
+        if (contactTracker != null) {
+            contactTracker.getContactManifolds(rigidBody, world.getPairCache(), query.manifolds);
+            for (int i = 0; i < query.manifolds.size(); i++) {
+                forEachContactNormal(rigidBody, query.manifolds.getQuick(i), query.normal, consumer);
+            }
+            return;
+        }
+        final Dispatcher dispatcher = world.getDispatcher();
+        for (int i = 0; i < dispatcher.getNumManifolds(); i++) {
+            forEachContactNormal(rigidBody, dispatcher.getManifoldByIndexInternal(i), query.normal, consumer);
+        }
+    }
+
+    /**
+     * A JBullet rigid body, which knows its own handle so that it can be found by ray tests.
+     */
+    public static class BulletBody implements PhysicsBody {
+
+        private final Transform tmpTransform = new Transform();
+
+        @Getter
+        private final RigidBody rigidBody;
+
+        public BulletBody(final RigidBody rigidBody) {
+            this.rigidBody = rigidBody;
+            rigidBody.setUserPointer(this);
+        }
+
+        @Override
+        public Vector3f getPosition(final Vector3f target) {
+            target.set(rigidBody.getWorldTransform(tmpTransform).origin);
+            return target;
+        }
+
+        @Override
+        public void setPosition(final Vector3f position) {
+            tmpTransform.setIdentity();
+            tmpTransform.origin.set(position);
+            rigidBody.setWorldTransform(tmpTransform);
+        }
+
+        @Override
+        public Vector3f getLinearVelocity(final Vector3f target) {
+            return rigidBody.getLinearVelocity(target);
+        }
+
+        @Override
+        public void setLinearVelocity(final Vector3f velocity) {
+            rigidBody.setLinearVelocity(velocity);
+        }
+
+        @Override
+        public void activate() {
+            rigidBody.activate();
+        }
+
+        @Override
+        public int getActivationState() {
+            return rigidBody.getActivationState();
+        }
+
+        @Override
+        public void setActivationState(final int activationState) {
+            rigidBody.setActivationState(activationState);
+        }
+
+        @Override
+        public float getDeactivationTime() {
+            return rigidBody.getDeactivationTime();
+        }
+
+        @Override
+        public void setDeactivationTime(final float deactivationTime) {
+            rigidBody.setDeactivationTime(deactivationTime);
+        }
+
+        @Override
+        public void setFriction(final float friction) {
+            rigidBody.setFriction(friction);
+        }
+
+        @Override
+        public void setRestitution(final float restitution) {
+            rigidBody.setRestitution(restitution);
+        }
+    }
+
+    /**
+     * The temporary objects of a contact query, one set per thread since the bodies may be queried in parallel.
+     */
+    private static class ContactQuery {
+
+        private final ObjectArrayList<PersistentManifold> manifolds = new ObjectArrayList<>();
+
+        private final Vector3f normal = new Vector3f();
+    }
+}
@@ -0,0 +1,161 @@
+package moe.mewore.rabbit.backend.physics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.RequiredArgsConstructor;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
+import moe.mewore.rabbit.world.ChunkedMazeWorld;
+import moe.mewore.rabbit.world.MazeMap;
+
+/**
+ * Keeps the walls of the chunks near some points (the bodies which can move) in a physics world, and only those.
+ * <p>
+ * The walls are added and removed between the steps of the world rather than during them, so the steps which are
+ * simulated again after a rollback have the walls which are there at the time and not the ones which were there when
+ * they were first simulated. That cannot change their outcome as long as nothing can get from farther than
+ * {@link ChunkWalls#LOAD_DISTANCE} to a wall within the longest rollback, which is one second. The walls are removed
+ * only when everything is farther than {@link ChunkWalls#UNLOAD_DISTANCE} from them, so that they are not added and
+ * removed over and over when a player goes back and forth at the edge of a chunk.
+ * <p>
+ * The chunks are never generated here, since that would hold up the updates of the world. They are generated in the
+ * background as the points get within {@link ChunkWalls#PREFETCH_DISTANCE} of them instead, and their walls are added
+ * once they are generated.
+ */
+public class ChunkWalls {
+
+    /**
+     * How close to a chunk a point has to be for its walls to be added, along each axis.
+     */
+    static final float LOAD_DISTANCE = 400f;
+
+    /**
+     * How close to a chunk a point has to be for it to be generated in the background, along each axis. At the
+     * maximum speed of the players, they need two seconds to get from here to {@link ChunkWalls#LOAD_DISTANCE}.
+     */
+    static final float PREFETCH_DISTANCE = 600f;
+
+    /**
+     * How far away from a chunk every point has to be for its walls to be removed, along each axis.
+     */
+    static final float UNLOAD_DISTANCE = 800f;
+
+    private final ChunkedMazeWorld chunkedWorld;
+
+    private final PhysicsEngine physics;
+
+    private final Executor chunkGenerator;
+
+    /**
+     * Searched one by one rather than by key, since only the few chunks near the points are in it at any time.
+     */
+    private final List<LoadedChunk> loadedChunks = new ArrayList<>();
+
+    /**
+     * Made once so that they don't have to be allocated on every update.
+     */
+    private final ChunkedMazeWorld.ChunkPositionConsumer prefetchAction = this::prefetch;
+
+    private final ChunkedMazeWorld.ChunkPositionConsumer loadAction = this::load;
+
+    /**
+     * @param chunkedWorld   The world the chunks are in.
+     * @param physics        The physics engine to add the walls to.
+     * @param chunkGenerator The executor to generate the chunks with.
+     */
+    public ChunkWalls(final ChunkedMazeWorld chunkedWorld, final PhysicsEngine physics,
+        final Executor chunkGenerator) {
+        this.chunkedWorld = chunkedWorld;
+        this.physics = physics;
+        this.chunkGenerator = chunkGenerator;
+    }
+
+    /**
+     * Adds the walls of the generated chunks near any of the points and removes the walls of the chunks far away from
+     * all of them. The chunks which are not generated yet are generated in the background.
+     *
+     * @param coordinates The X and Z coordinates of the points, one after the other, like the positions of the players.
+     * @param pointCount  How many points there are. Any coordinates after them are ignored.
+     */
+    public void update(final float[] coordinates, final int pointCount) {
+        for (int i = 0; i < pointCount; i++) {
+            final float x = coordinates[i * 2];
+            final float z = coordinates[i * 2 + 1];
+            chunkedWorld.forEachChunkNear(x, z, PREFETCH_DISTANCE, prefetchAction);
+            chunkedWorld.forEachChunkNear(x, z, LOAD_DISTANCE, loadAction);
+        }
+
+        // Going backwards, the last chunk (which takes the place of a removed one) has already been checked
+        for (int i = loadedChunks.size() - 1; i >= 0; i--) {
+            final LoadedChunk chunk = loadedChunks.get(i);
+            if (isNearAny(chunk, coordinates, pointCount)) {
+                continue;
+            }
+            for (int j = 0; j < chunk.walls.size(); j++) {
+                physics.removeBody(chunk.walls.get(j));
+            }
+            final int lastIndex = loadedChunks.size() - 1;
+            loadedChunks.set(i, loadedChunks.get(lastIndex));
+            loadedChunks.remove(lastIndex);
+        }
+    }
+
+    private boolean isNearAny(final LoadedChunk chunk, final float[] coordinates, final int pointCount) {
+        for (int i = 0; i < pointCount; i++) {
+            if (chunkedWorld.getDistanceToChunk(coordinates[i * 2], coordinates[i * 2 + 1], chunk.chunkX,
+                chunk.chunkZ) <= UNLOAD_DISTANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isLoaded(final int chunkX, final int chunkZ) {
+        for (int i = 0; i < loadedChunks.size(); i++) {
+            final LoadedChunk chunk = loadedChunks.get(i);
+            if (chunk.chunkX == chunkX && chunk.chunkZ == chunkZ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void prefetch(final int chunkX, final int chunkZ) {
+        if (!isLoaded(chunkX, chunkZ)) {
+            chunkedWorld.prefetchChunk(chunkX, chunkZ, chunkGenerator);
+        }
+    }
+
+    private void load(final int chunkX, final int chunkZ) {
+        if (isLoaded(chunkX, chunkZ)) {
+            return;
+        }
+        final @Nullable MazeMap chunk = chunkedWorld.getCachedChunk(chunkX, chunkZ);
+        if (chunk != null) {
+            loadedChunks.add(new LoadedChunk(chunkX, chunkZ,
+                physics.addChunkWalls(chunk, (float) (chunkX * chunkedWorld.getChunkWidth()),
+                    (float) (chunkZ * chunkedWorld.getChunkDepth()))));
+        }
+    }
+
+    /**
+     * @return The number of chunks whose walls are in the physics world.
+     */
+    public int getLoadedChunkCount() {
+        return loadedChunks.size();
+    }
+
+    @RequiredArgsConstructor
+    private static class LoadedChunk {
+
+        private final int chunkX;
+
+        private final int chunkZ;
+
+        private final List<PhysicsBody> walls;
+    }
+}
@@ -0,0 +1,106 @@
+package moe.mewore.rabbit.backend.physics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.bulletphysics.collision.broadphase.BroadphasePair;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
+import com.bulletphysics.collision.broadphase.Dispatcher;
+import com.bulletphysics.collision.broadphase.OverlappingPairCache;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.GhostPairCallback;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.util.ObjectArrayList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Keeps track of which objects the broadphase has paired with each of a few tracked objects, so that the contacts of
+ * one of them can be found without going through every contact manifold in the world. It is notified of every pair
+ * which is added or removed, so it replaces the {@link GhostPairCallback} of the world while still doing its job.
+ */
+public class ContactTracker extends GhostPairCallback {
+
+    private final Map<CollisionObject, List<BroadphaseProxy>> partnersByObject = new ConcurrentHashMap<>();
+
+    /**
+     * Starts tracking the pairs of an object. Should be done before the object is added to the world, or at least
+     * before the world is stepped with it.
+     *
+     * @param object The object to track.
+     */
+    public void track(final CollisionObject object) {
+        partnersByObject.putIfAbsent(object, new ArrayList<>());
+    }
+
+    public void untrack(final CollisionObject object) {
+        partnersByObject.remove(object);
+    }
+
+    /**
+     * @param object    A tracked object.
+     * @param pairCache The pair cache of the world the object is in.
+     * @param result    The list to put the contact manifolds of the object into. Cleared beforehand.
+     */
+    public void getContactManifolds(final CollisionObject object, final OverlappingPairCache pairCache,
+        final ObjectArrayList<PersistentManifold> result) {
+        result.clear();
+        final @Nullable List<BroadphaseProxy> partners = partnersByObject.get(object);
+        final @Nullable BroadphaseProxy proxy = object.getBroadphaseHandle();
+        if (partners == null || proxy == null) {
+            return;
+        }
+        for (int i = 0; i < partners.size(); i++) {
+            final BroadphaseProxy partner = partners.get(i);
+            // The pair cache can only find a pair if its proxies are given in the order of their IDs
+            final @Nullable BroadphasePair pair = proxy.getUid() < partner.getUid()
+                ? pairCache.findPair(proxy, partner)
+                : pairCache.findPair(partner, proxy);
+            if (pair != null && pair.algorithm != null) {
+                // Appends to the list instead of replacing its contents
+                pair.algorithm.getAllContactManifolds(result);
+            }
+        }
+    }
+
+    private @Nullable List<BroadphaseProxy> getPartnerList(final BroadphaseProxy proxy) {
+        final Object clientObject = proxy.clientObject;
+        return clientObject instanceof CollisionObject ? partnersByObject.get(clientObject) : null;
+    }
+
+    @Override
+    public BroadphasePair addOverlappingPair(final BroadphaseProxy proxy0, final BroadphaseProxy proxy1) {
+        final BroadphasePair result = super.addOverlappingPair(proxy0, proxy1);
+        final @Nullable List<BroadphaseProxy> firstPartners = getPartnerList(proxy0);
+        if (firstPartners != null) {
+            firstPartners.add(proxy1);
+        }
+        final @Nullable List<BroadphaseProxy> secondPartners = getPartnerList(proxy1);
+        if (secondPartners != null) {
+            secondPartners.add(proxy0);
+        }
+        return result;
+    }
+
+    @Override
+    public Object removeOverlappingPair(final BroadphaseProxy proxy0, final BroadphaseProxy proxy1,
+        final Dispatcher dispatcher) {
+        final Object result = super.removeOverlappingPair(proxy0, proxy1, dispatcher);
+        final @Nullable List<BroadphaseProxy> firstPartners = getPartnerList(proxy0);
+        if (firstPartners != null) {
+            firstPartners.remove(proxy1);
+        }
+        final @Nullable List<BroadphaseProxy> secondPartners = getPartnerList(proxy1);
+        if (secondPartners != null) {
+            secondPartners.remove(proxy0);
+        }
+        return result;
+    }
+
+    @Override
+    public void removeOverlappingPairsContainingProxy(final BroadphaseProxy proxy, final Dispatcher dispatcher) {
+        // The pair cache removes the pairs one by one instead
+    }
+}
@@ -1,11 +1,23 @@
 package moe.mewore.rabbit.backend.physics;
 
 import javax.vecmath.Vector3f;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.stream.IntStream;
 
 import com.bulletphysics.collision.broadphase.BroadphaseInterface;
 import com.bulletphysics.collision.broadphase.BroadphaseNativeType;
+import com.bulletphysics.collision.broadphase.BroadphasePair;
 import com.bulletphysics.collision.broadphase.Dispatcher;
 import com.bulletphysics.collision.dispatch.CollisionConfiguration;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.CollisionWorld;
+import com.bulletphysics.collision.dispatch.SimulationIslandManager;
+import com.bulletphysics.collision.dispatch.SimulationIslandManager.IslandCallback;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
 import com.bulletphysics.collision.shapes.CapsuleShape;
 import com.bulletphysics.collision.shapes.CollisionShape;
 import com.bulletphysics.collision.shapes.ConcaveShape;
@@ -15,15 +27,142 @@ import com.bulletphysics.collision.shapes.PolyhedralConvexShape;
 import com.bulletphysics.collision.shapes.TriangleCallback;
 import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
 import com.bulletphysics.dynamics.constraintsolver.ConstraintSolver;
+import com.bulletphysics.dynamics.constraintsolver.ContactSolverInfo;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.linearmath.MiscUtil;
 import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.Getter;
+import lombok.Setter;
 
 public class FixedDiscreteDynamicWorld extends DiscreteDynamicsWorld {
 
     protected int sphereCircleResolution = 8;
 
+    /**
+     * Set if the pair cache of the world notifies it about the pairs which are added and removed.
+     */
+    @Getter
+    @Setter
+    private @Nullable ContactTracker contactTracker = null;
+
+    /**
+     * Whether every step should depend only on the state of the collision objects and not on what the previous steps
+     * have left behind: the contact points used for warm starting, the random seed of the constraint solver, and the
+     * order in which objects and pairs have been added. None of these are a part of the frames of the world, so without
+     * this, a world which has been rolled back to an earlier frame does not step the same way again.
+     * <p>
+     * The objects are ordered by when they have first been added to the world, and the pairs and contact manifolds by
+     * the objects in them. The pairs and manifolds themselves are kept from step to step, but the contact points of the
+     * manifolds are cleared before each step and found anew.
+     */
+    @Getter
+    @Setter
+    private boolean deterministic = false;
+
+    /**
+     * Whether the contact points of the overlapping pairs should be found (if the dispatcher is a
+     * {@link ParallelCollisionDispatcher}) and the contacts of the separate simulation islands should be solved on
+     * several threads at once. Each island is solved by a solver of its own thread, starting with the same random seed,
+     * so the result does not depend on which thread it is solved by or on the order of the islands. A single solver
+     * carries its random seed over from island to island instead, so the results of a parallel world differ from the
+     * ones of a serial world, even though each of them is reproducible on its own.
+     * <p>
+     * Worlds with constraints other than contacts are always solved on a single thread.
+     */
+    @Getter
+    private boolean parallel = false;
+
+    private final ThreadLocal<SequentialImpulseConstraintSolver> islandSolver = ThreadLocal.withInitial(
+        SequentialImpulseConstraintSolver::new);
+
+    /**
+     * Reused from step to step - only the first {@link #islandCount} of them are the islands of the current step.
+     */
+    private final List<Island> islands = new ArrayList<>();
+
+    private int islandCount = 0;
+
+    /**
+     * The order in which the collision objects have first been added to the world. An object keeps its place in it
+     * even if it is removed and added again (like the ghosts of {@link SeamGhosts}), for as long as it exists.
+     */
+    private final Map<CollisionObject, Integer> sequenceIds = new WeakHashMap<>();
+
+    private int nextSequenceId = 0;
+
+    private final Comparator<CollisionObject> objectOrder = Comparator.comparingInt(this::getSequenceId);
+
+    private final Comparator<BroadphasePair> pairOrder = (first, second) -> compareObjectPairs(
+        (CollisionObject) first.pProxy0.clientObject, (CollisionObject) first.pProxy1.clientObject,
+        (CollisionObject) second.pProxy0.clientObject, (CollisionObject) second.pProxy1.clientObject);
+
+    private final Comparator<PersistentManifold> manifoldOrder = this::compareManifolds;
+
+    /**
+     * Reused from step to step so that the pairs can be sorted without touching the pair cache.
+     */
+    private final ObjectArrayList<BroadphasePair> orderedPairs = new ObjectArrayList<>();
+
+    private final IslandCallback islandCollector = new IslandCallback() {
+        @Override
+        public void processIsland(final ObjectArrayList<CollisionObject> bodies, final int numBodies,
+            final ObjectArrayList<PersistentManifold> manifolds, final int manifoldsOffset, final int numManifolds,
+            final int islandId) {
+            if (numManifolds == 0) {
+                return;
+            }
+            if (islandCount == islands.size()) {
+                islands.add(new Island());
+            }
+            final Island island = islands.get(islandCount++);
+            island.bodies.clear();
+            for (int i = 0; i < numBodies; i++) {
+                island.bodies.add(bodies.getQuick(i));
+            }
+            island.manifolds.clear();
+            for (int i = manifoldsOffset; i < manifoldsOffset + numManifolds; i++) {
+                island.manifolds.add(manifolds.getQuick(i));
+            }
+        }
+    };
+
+    // Debug drawing happens for every object in every drawn frame, so it reuses the same temporaries
+
+    private final Vector3f tmpSphereCenter = new Vector3f();
+
+    private final Vector3f tmpSphereTo = new Vector3f();
+
+    private final Vector3f tmpSpherePreviousTo = new Vector3f();
+
+    private final Transform tmpLocalTransform = new Transform();
+
+    private final Transform tmpChildTransform = new Transform();
+
+    private final Vector3f tmpFrom = new Vector3f();
+
+    private final Vector3f tmpTo = new Vector3f();
+
+    private final Vector3f tmpAabbMin = new Vector3f();
+
+    private final Vector3f tmpAabbMax = new Vector3f();
+
+    private Vector3f triangleColor = new Vector3f();
+
+    private final TriangleCallback triangleDrawer = new TriangleCallback() {
+        @Override
+        public void processTriangle(final Vector3f[] triangle, final int partId, final int triangleIndex) {
+            getDebugDrawer().drawTriangle(triangle[0], triangle[1], triangle[2], triangleColor, 1f);
+        }
+    };
+
     public FixedDiscreteDynamicWorld(final Dispatcher dispatcher, final BroadphaseInterface pairCache,
         final ConstraintSolver constraintSolver, final CollisionConfiguration collisionConfiguration) {
         super(dispatcher, pairCache, constraintSolver, collisionConfiguration);
+        islandManager = new OrderedIslandManager();
     }
 
     private static Vector3f makeGlobal(final Transform worldTransform, final Vector3f vector, final float x,
@@ -34,14 +173,116 @@ public class FixedDiscreteDynamicWorld extends DiscreteDynamicsWorld {
         return vector;
     }
 
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+        if (getDispatcher() instanceof ParallelCollisionDispatcher) {
+            ((ParallelCollisionDispatcher) getDispatcher()).setParallel(parallel);
+        }
+    }
+
+    @Override
+    public void addCollisionObject(final CollisionObject collisionObject, final short collisionFilterGroup,
+        final short collisionFilterMask) {
+        sequenceIds.computeIfAbsent(collisionObject, object -> nextSequenceId++);
+        super.addCollisionObject(collisionObject, collisionFilterGroup, collisionFilterMask);
+    }
+
+    private int getSequenceId(final CollisionObject object) {
+        final @Nullable Integer sequenceId = sequenceIds.get(object);
+        return sequenceId != null ? sequenceId : Integer.MAX_VALUE;
+    }
+
+    private int compareObjectPairs(final CollisionObject first0, final CollisionObject first1,
+        final CollisionObject second0, final CollisionObject second1) {
+        final int firstId0 = getSequenceId(first0);
+        final int firstId1 = getSequenceId(first1);
+        final int secondId0 = getSequenceId(second0);
+        final int secondId1 = getSequenceId(second1);
+        final int result = Integer.compare(Math.min(firstId0, firstId1), Math.min(secondId0, secondId1));
+        return result != 0 ? result : Integer.compare(Math.max(firstId0, firstId1), Math.max(secondId0, secondId1));
+    }
+
+    /**
+     * The manifolds of the same pair of objects (of the children of a compound shape) are told apart by their
+     * contact points, which have just been found anew.
+     */
+    private int compareManifolds(final PersistentManifold first, final PersistentManifold second) {
+        int result = compareObjectPairs((CollisionObject) first.getBody0(), (CollisionObject) first.getBody1(),
+            (CollisionObject) second.getBody0(), (CollisionObject) second.getBody1());
+        if (result != 0) {
+            return result;
+        }
+        result = Integer.compare(first.getNumContacts(), second.getNumContacts());
+        if (result != 0 || first.getNumContacts() == 0) {
+            return result;
+        }
+        final Vector3f firstPoint = first.getContactPoint(0).positionWorldOnB;
+        final Vector3f secondPoint = second.getContactPoint(0).positionWorldOnB;
+        result = Float.compare(firstPoint.x, secondPoint.x);
+        if (result != 0) {
+            return result;
+        }
+        result = Float.compare(firstPoint.y, secondPoint.y);
+        return result != 0 ? result : Float.compare(firstPoint.z, secondPoint.z);
+    }
+
+    @Override
+    protected void internalSingleStepSimulation(final float timeStep) {
+        if (deterministic) {
+            // The islands of the objects are found in the order of the objects
+            MiscUtil.quickSort(collisionObjects, objectOrder);
+            constraintSolver.reset();
+        }
+        super.internalSingleStepSimulation(timeStep);
+    }
+
+    @Override
+    public void performDiscreteCollisionDetection() {
+        if (!deterministic) {
+            super.performDiscreteCollisionDetection();
+            return;
+        }
+        final ObjectArrayList<PersistentManifold> manifolds = getDispatcher().getInternalManifoldPointer();
+        for (int i = 0; i < manifolds.size(); i++) {
+            manifolds.getQuick(i).clearManifold();
+        }
+        super.performDiscreteCollisionDetection();
+
+        // The contacts are solved in the order of the manifolds, which is the order they have been created in
+        MiscUtil.quickSort(manifolds, manifoldOrder);
+        for (int i = 0; i < manifolds.size(); i++) {
+            // The dispatcher finds a manifold by its index when releasing it
+            manifolds.getQuick(i).index1a = i;
+        }
+    }
+
+    @Override
+    protected void solveConstraints(final ContactSolverInfo solverInfo) {
+        if (!parallel || getNumConstraints() > 0) {
+            super.solveConstraints(solverInfo);
+            return;
+        }
+        islandCount = 0;
+        islandManager.buildAndProcessIslands(getDispatcher(), collisionObjects, islandCollector);
+        IntStream.range(0, islandCount).parallel().forEach(i -> solveIsland(islands.get(i), solverInfo));
+    }
+
+    private void solveIsland(final Island island, final ContactSolverInfo solverInfo) {
+        final SequentialImpulseConstraintSolver solver = islandSolver.get();
+        solver.setRandSeed(0L);
+        solver.solveGroup(island.bodies, island.bodies.size(), island.manifolds, 0, island.manifolds.size(), null, 0, 0,
+            solverInfo, getDebugDrawer(), getDispatcher());
+    }
+
     @Override
     protected void debugDrawSphere(final float radius, final Transform transform, final Vector3f color) {
         super.debugDrawSphere(radius, transform, color);
 
         // Currently, it draws only a 2D circle, but it's best if it's made to draw a 3D sphere instead
-        final var center = new Vector3f(transform.origin);
-        final var to = new Vector3f();
-        final var previousTo = new Vector3f();
+        final var center = tmpSphereCenter;
+        center.set(transform.origin);
+        final var to = tmpSphereTo;
+        final var previousTo = tmpSpherePreviousTo;
         final var step = (float) (Math.PI) * 2f / sphereCircleResolution;
         var angle = 0f;
         for (int i = 0; i <= sphereCircleResolution; i++, angle += step) {
@@ -76,9 +317,9 @@ public class FixedDiscreteDynamicWorld extends DiscreteDynamicsWorld {
                 final var capsuleShape = (CapsuleShape) shape;
                 final float radius = capsuleShape.getRadius();
                 final float halfHeight = capsuleShape.getHalfHeight();
-                final var localTransform = new Transform();
+                final var localTransform = tmpLocalTransform;
                 localTransform.setIdentity();
-                final var childTransform = new Transform();
+                final var childTransform = tmpChildTransform;
 
                 // Draw the ends
                 localTransform.origin.set(0f, halfHeight, 0f);
@@ -90,8 +331,8 @@ public class FixedDiscreteDynamicWorld extends DiscreteDynamicsWorld {
                 debugDrawSphere(radius, childTransform, color);
 
                 // Draw the cylinder lines
-                final var from = new Vector3f();
-                final var to = new Vector3f();
+                final var from = tmpFrom;
+                final var to = tmpTo;
 
                 getDebugDrawer().drawLine(makeGlobal(worldTransform, from, -radius, halfHeight, 0),
                     makeGlobal(worldTransform, to, -radius, -halfHeight, 0), color);
@@ -120,22 +361,16 @@ public class FixedDiscreteDynamicWorld extends DiscreteDynamicsWorld {
             default: {
 
                 if (shape.isConcave()) {
-                    final var aabbMax = new Vector3f(1e30f, 1e30f, 1e30f);
-                    final var aabbMin = new Vector3f(-1e30f, -1e30f, -1e30f);
-
-                    ((ConcaveShape) shape).processAllTriangles(new TriangleCallback() {
-                        @Override
-                        public void processTriangle(final Vector3f[] triangle, final int partId,
-                            final int triangleIndex) {
-                            getDebugDrawer().drawTriangle(triangle[0], triangle[1], triangle[2], color, 1f);
-                        }
-                    }, aabbMin, aabbMax);
+                    tmpAabbMax.set(1e30f, 1e30f, 1e30f);
+                    tmpAabbMin.set(-1e30f, -1e30f, -1e30f);
+                    triangleColor = color;
+                    ((ConcaveShape) shape).processAllTriangles(triangleDrawer, tmpAabbMin, tmpAabbMax);
                     return;
                 }
 
                 if (shape.isPolyhedral()) {
-                    final var first = new Vector3f();
-                    final var second = new Vector3f();
+                    final var first = tmpFrom;
+                    final var second = tmpTo;
                     final var polyhedralShape = ((PolyhedralConvexShape) shape);
                     int i;
                     for (i = 0; i < polyhedralShape.getNumEdges(); i++) {
@@ -148,4 +383,41 @@ public class FixedDiscreteDynamicWorld extends DiscreteDynamicsWorld {
             }
         }
     }
+
+    /**
+     * Joins the objects into islands going through the overlapping pairs in order (in the deterministic mode), since
+     * which object of an island ends up representing it depends on that, and so does the order of the islands.
+     */
+    private class OrderedIslandManager extends SimulationIslandManager {
+
+        @Override
+        public void findUnions(final Dispatcher dispatcher, final CollisionWorld world) {
+            if (!deterministic) {
+                super.findUnions(dispatcher, world);
+                return;
+            }
+            final ObjectArrayList<BroadphasePair> pairs = world.getPairCache().getOverlappingPairArray();
+            orderedPairs.clear();
+            for (int i = 0; i < pairs.size(); i++) {
+                orderedPairs.add(pairs.getQuick(i));
+            }
+            MiscUtil.quickSort(orderedPairs, pairOrder);
+            for (int i = 0; i < orderedPairs.size(); i++) {
+                final BroadphasePair pair = orderedPairs.getQuick(i);
+                final var first = (CollisionObject) pair.pProxy0.clientObject;
+                final var second = (CollisionObject) pair.pProxy1.clientObject;
+                if (first != null && first.mergesSimulationIslands() && second != null &&
+                    second.mergesSimulationIslands()) {
+                    getUnionFind().unite(first.getIslandTag(), second.getIslandTag());
+                }
+            }
+        }
+    }
+
+    private static class Island {
+
+        private final ObjectArrayList<CollisionObject> bodies = new ObjectArrayList<>();
+
+        private final ObjectArrayList<PersistentManifold> manifolds = new ObjectArrayList<>();
+    }
 }
@@ -1,12 +1,21 @@
 package moe.mewore.rabbit.backend.physics;
 
 import javax.vecmath.Vector3f;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.bulletphysics.collision.dispatch.CollisionFlags;
 import com.bulletphysics.collision.shapes.BoxShape;
+import com.bulletphysics.collision.shapes.BvhTriangleMeshShape;
+import com.bulletphysics.collision.shapes.CollisionShape;
+import com.bulletphysics.collision.shapes.CompoundShape;
 import com.bulletphysics.collision.shapes.ConvexHullShape;
+import com.bulletphysics.collision.shapes.TriangleIndexVertexArray;
 import com.bulletphysics.dynamics.RigidBody;
 import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
 import com.bulletphysics.util.ObjectArrayList;
 
 import lombok.AccessLevel;
@@ -14,70 +23,201 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import moe.mewore.rabbit.geometry.Vector2;
 import moe.mewore.rabbit.world.MazeMap;
+import moe.mewore.rabbit.world.MazeWall;
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class ForestWalls {
 
-    private static final float HEIGHT = 500f;
+    static final float HEIGHT = 500f;
 
     private static final float HALF_HEIGHT = HEIGHT / 2f;
 
+    /**
+     * The number of map cells along each side of the square blocks the walls are grouped in with
+     * {@link Layout#COMPOUND_GRID}.
+     */
+    private static final int CELLS_PER_BLOCK = 8;
+
     @Getter
     private final RigidBody[] bodies;
 
+    /**
+     * How the walls are turned into static rigid bodies.
+     */
+    public enum Layout {
+        /**
+         * One body per wall, with either a box shape or a convex hull shape.
+         */
+        SEPARATE,
+        /**
+         * The same shapes as {@link Layout#SEPARATE}, but grouped into one compound body per square block of map
+         * cells. The broadphase only has to deal with a few large bodies and a body only has to check the walls in
+         * the blocks it overlaps.
+         */
+        COMPOUND_GRID,
+        /**
+         * A single body with a triangle mesh shape whose quantized bounding volume hierarchy is built once.
+         */
+        TRIANGLE_MESH
+    }
+
     public static ForestWalls generate(final MazeMap map) {
-        final float worldWidth = map.getWidth();
-        final float worldDepth = map.getDepth();
-        final float halfWorldWidth = worldWidth * .5f;
-        final float halfWorldDepth = worldDepth * .5f;
+        return generate(map, Layout.SEPARATE);
+    }
+
+    public static ForestWalls generate(final MazeMap map, final Layout layout) {
+        final RigidBody[] wallBodies;
+        switch (layout) {
+            case COMPOUND_GRID:
+                wallBodies = makeCompoundGridBodies(map);
+                break;
+            case TRIANGLE_MESH:
+                wallBodies = map.getWalls().isEmpty() ? new RigidBody[0] : new RigidBody[]{makeTriangleMeshBody(map)};
+                break;
+            default:
+                wallBodies = makeSeparateBodies(map);
+                break;
+        }
+
+        for (final var body : wallBodies) {
+            body.setCollisionFlags(CollisionFlags.STATIC_OBJECT);
+            body.setFriction(.7f);
+            body.setRestitution(0);
+        }
+
+        return new ForestWalls(wallBodies);
+    }
+
+    private static RigidBody[] makeSeparateBodies(final MazeMap map) {
         final Vector3f tmpVector3 = new Vector3f();
+        return map.getWalls().stream().map(wall -> {
+            final CollisionShape shape = makeShape(map, wall, tmpVector3);
+            final var body = new RigidBody(0f, new DefaultMotionState(), shape);
+            body.translate(tmpVector3);
+            return body;
+        }).toArray(RigidBody[]::new);
+    }
+
+    private static RigidBody[] makeCompoundGridBodies(final MazeMap map) {
+        final int blockColumns = Math.max(1, (map.getColumnCount() + CELLS_PER_BLOCK - 1) / CELLS_PER_BLOCK);
+        final int blockRows = Math.max(1, (map.getRowCount() + CELLS_PER_BLOCK - 1) / CELLS_PER_BLOCK);
+        final CompoundShape[] blocks = new CompoundShape[blockColumns * blockRows];
+
+        final Transform childTransform = new Transform();
+        for (final MazeWall wall : map.getWalls()) {
+            final List<Vector2> points = wall.getPolygon().getPoints();
+            final float centerX = (float) points.stream().mapToDouble(Vector2::getX).average().orElse(0.0);
+            final float centerY = (float) points.stream().mapToDouble(Vector2::getY).average().orElse(0.0);
+            final int blockColumn = Math.min(blockColumns - 1, Math.max(0, (int) (centerX * blockColumns)));
+            final int blockRow = Math.min(blockRows - 1, Math.max(0, (int) (centerY * blockRows)));
+            final int blockIndex = blockRow * blockColumns + blockColumn;
+            if (blocks[blockIndex] == null) {
+                blocks[blockIndex] = new CompoundShape();
+            }
 
-        final RigidBody[] wallBodies = map.getWalls().stream().map(wall -> {
-            final var points = wall.getPolygon().getPoints();
-            if (points.size() == 4) {
-                // Rectangle -> box
-                final float minX = points.stream().map(Vector2::getX).min(Float::compare).orElse(0f) * worldWidth;
-                final float minY = points.stream().map(Vector2::getY).min(Float::compare).orElse(0f) * worldDepth;
-                final float maxX =
-                    points.stream().map(Vector2::getX).max(Float::compare).orElse(minX + 1f) * worldWidth;
-                final float maxY =
-                    points.stream().map(Vector2::getY).max(Float::compare).orElse(minY + 1f) * worldDepth;
-                tmpVector3.set((maxX - minX) * .5f, HALF_HEIGHT, (maxY - minY) * .5f);
-                final var shape = new BoxShape(tmpVector3);
-                final var body = new RigidBody(0f, new DefaultMotionState(), shape);
-                tmpVector3.set((maxX + minX) * .5f - halfWorldWidth, HALF_HEIGHT, (maxY + minY) * .5f - halfWorldDepth);
-                body.translate(tmpVector3);
-                return body;
+            childTransform.setIdentity();
+            blocks[blockIndex].addChildShape(childTransform, makeShape(map, wall, childTransform.origin));
+        }
+
+        final List<RigidBody> result = new ArrayList<>(blocks.length);
+        for (final CompoundShape block : blocks) {
+            if (block != null) {
+                result.add(new RigidBody(0f, new DefaultMotionState(), block));
             }
-            // Polygon -> polyhedron
+        }
+        return result.toArray(new RigidBody[0]);
+    }
+
+    /**
+     * Each wall becomes a prism: its polygon on the ground extruded up to {@link ForestWalls#HEIGHT}, without a bottom
+     * face since it is always on the ground.
+     */
+    private static RigidBody makeTriangleMeshBody(final MazeMap map) {
+        final float worldWidth = map.getWidth();
+        final float worldDepth = map.getDepth();
 
-            // The average position of the points will be the center
-            final float xSum = (float) points.stream().mapToDouble(Vector2::getX).sum();
-            final float ySum = (float) points.stream().mapToDouble(Vector2::getY).sum();
-            tmpVector3.set(xSum * worldWidth / points.size(), HALF_HEIGHT, ySum * worldDepth / points.size());
+        int vertexCount = 0;
+        int triangleCount = 0;
+        for (final MazeWall wall : map.getWalls()) {
+            final int pointCount = wall.getPolygon().getPoints().size();
+            vertexCount += pointCount * 2;
+            // Two triangles per side and a fan for the top face
+            triangleCount += pointCount * 2 + pointCount - 2;
+        }
 
-            final ObjectArrayList<Vector3f> shapePoints = new ObjectArrayList<>(points.size() * 2);
+        final ByteBuffer vertices = ByteBuffer.allocateDirect(vertexCount * 3 * Float.BYTES)
+            .order(ByteOrder.nativeOrder());
+        final ByteBuffer indices = ByteBuffer.allocateDirect(triangleCount * 3 * Integer.BYTES)
+            .order(ByteOrder.nativeOrder());
+        int firstVertex = 0;
+        for (final MazeWall wall : map.getWalls()) {
+            final List<Vector2> points = wall.getPolygon().getPoints();
             for (final Vector2 point : points) {
-                final float x = point.getX() * worldWidth - tmpVector3.x;
-                final float z = point.getY() * worldDepth - tmpVector3.z;
-                shapePoints.add(new Vector3f(x, -HALF_HEIGHT, z));
-                shapePoints.add(new Vector3f(x, HALF_HEIGHT, z));
+                final float x = point.getX() * worldWidth - worldWidth * .5f;
+                final float z = point.getY() * worldDepth - worldDepth * .5f;
+                vertices.putFloat(x).putFloat(0f).putFloat(z);
+                vertices.putFloat(x).putFloat(HEIGHT).putFloat(z);
             }
-            final var shape = new ConvexHullShape(shapePoints);
-            final var body = new RigidBody(0f, new DefaultMotionState(), shape);
+            final int pointCount = points.size();
+            for (int i = 0; i < pointCount; i++) {
+                final int bottom = firstVertex + i * 2;
+                final int nextBottom = firstVertex + ((i + 1) % pointCount) * 2;
+                indices.putInt(bottom).putInt(nextBottom).putInt(bottom + 1);
+                indices.putInt(bottom + 1).putInt(nextBottom).putInt(nextBottom + 1);
+            }
+            for (int i = 1; i < pointCount - 1; i++) {
+                indices.putInt(firstVertex + 1).putInt(firstVertex + i * 2 + 1).putInt(firstVertex + i * 2 + 3);
+            }
+            firstVertex += pointCount * 2;
+        }
+        vertices.flip();
+        indices.flip();
 
-            tmpVector3.x -= halfWorldWidth;
-            tmpVector3.z -= halfWorldDepth;
-            body.translate(tmpVector3);
-            return body;
-        }).toArray(RigidBody[]::new);
+        final var mesh = new TriangleIndexVertexArray(triangleCount, indices, 3 * Integer.BYTES, vertexCount,
+            vertices, 3 * Float.BYTES);
+        return new RigidBody(0f, new DefaultMotionState(), new BvhTriangleMeshShape(mesh, true));
+    }
 
-        for (final var body : wallBodies) {
-            body.setCollisionFlags(CollisionFlags.STATIC_OBJECT);
-            body.setFriction(.7f);
-            body.setRestitution(0);
+    /**
+     * @param map    The map the wall is in.
+     * @param wall   The wall to make a shape of.
+     * @param center Where to put the position the shape should be centered at.
+     * @return The shape of the wall: a box if it's a rectangle or a convex hull otherwise.
+     */
+    private static CollisionShape makeShape(final MazeMap map, final MazeWall wall, final Vector3f center) {
+        final float worldWidth = map.getWidth();
+        final float worldDepth = map.getDepth();
+        final float halfWorldWidth = worldWidth * .5f;
+        final float halfWorldDepth = worldDepth * .5f;
+
+        final var points = wall.getPolygon().getPoints();
+        if (points.size() == 4) {
+            // Rectangle -> box
+            final float minX = points.stream().map(Vector2::getX).min(Float::compare).orElse(0f) * worldWidth;
+            final float minY = points.stream().map(Vector2::getY).min(Float::compare).orElse(0f) * worldDepth;
+            final float maxX = points.stream().map(Vector2::getX).max(Float::compare).orElse(minX + 1f) * worldWidth;
+            final float maxY = points.stream().map(Vector2::getY).max(Float::compare).orElse(minY + 1f) * worldDepth;
+            center.set((maxX - minX) * .5f, HALF_HEIGHT, (maxY - minY) * .5f);
+            final var shape = new BoxShape(center);
+            center.set((maxX + minX) * .5f - halfWorldWidth, HALF_HEIGHT, (maxY + minY) * .5f - halfWorldDepth);
+            return shape;
         }
+        // Polygon -> polyhedron
 
-        return new ForestWalls(wallBodies);
+        // The average position of the points will be the center
+        final float xSum = (float) points.stream().mapToDouble(Vector2::getX).sum();
+        final float ySum = (float) points.stream().mapToDouble(Vector2::getY).sum();
+        center.set(xSum * worldWidth / points.size(), HALF_HEIGHT, ySum * worldDepth / points.size());
+
+        final ObjectArrayList<Vector3f> shapePoints = new ObjectArrayList<>(points.size() * 2);
+        for (final Vector2 point : points) {
+            final float x = point.getX() * worldWidth - center.x;
+            final float z = point.getY() * worldDepth - center.z;
+            shapePoints.add(new Vector3f(x, -HALF_HEIGHT, z));
+            shapePoints.add(new Vector3f(x, HALF_HEIGHT, z));
+        }
+        center.x -= halfWorldWidth;
+        center.z -= halfWorldDepth;
+        return new ConvexHullShape(shapePoints);
     }
 }
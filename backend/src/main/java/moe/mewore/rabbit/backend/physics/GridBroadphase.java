@@ -0,0 +1,259 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Vector3f;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bulletphysics.collision.broadphase.BroadphaseInterface;
+import com.bulletphysics.collision.broadphase.BroadphaseNativeType;
+import com.bulletphysics.collision.broadphase.BroadphasePair;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
+import com.bulletphysics.collision.broadphase.CollisionFilterGroups;
+import com.bulletphysics.collision.broadphase.Dispatcher;
+import com.bulletphysics.collision.broadphase.HashedOverlappingPairCache;
+import com.bulletphysics.collision.broadphase.OverlapCallback;
+import com.bulletphysics.collision.broadphase.OverlappingPairCache;
+
+import moe.mewore.rabbit.world.MazeMap;
+
+/**
+ * A broadphase which puts every proxy into the cells of a uniform horizontal grid that matches the cells of a
+ * {@link MazeMap}. The cell indices wrap around just like the map, so proxies outside of the map (like the ghosts of
+ * {@link SeamGhosts}) are in cells too. Whether two proxies overlap is still decided by their actual bounding boxes, so
+ * two proxies on opposite edges of the map are never paired - colliding across the seams is up to their ghosts.
+ * <p>
+ * Only non-static proxies look for pairs, and only in the cells they are in, so finding the pairs of a proxy takes
+ * constant time as long as the objects are not crowded into the same cells. Proxies which cover too many cells (like
+ * the ground) are kept aside and checked against every non-static proxy instead.
+ */
+public class GridBroadphase extends BroadphaseInterface {
+
+    private static final int MAXIMUM_CELLS_PER_PROXY = 256;
+
+    private static final float VERTICAL_EXTENT = 1e6f;
+
+    private final int columnCount;
+
+    private final int rowCount;
+
+    private final float cellWidth;
+
+    private final float cellDepth;
+
+    private final float minX;
+
+    private final float minZ;
+
+    private final List<List<GridProxy>> cells;
+
+    private final List<GridProxy> proxies = new ArrayList<>();
+
+    private final List<GridProxy> largeProxies = new ArrayList<>();
+
+    private final OverlappingPairCache pairCache = new HashedOverlappingPairCache();
+
+    private final OverlapCallback nonOverlappingPairCallback = new OverlapCallback() {
+        @Override
+        public boolean processOverlap(final BroadphasePair pair) {
+            return !overlap((GridProxy) pair.pProxy0, (GridProxy) pair.pProxy1);
+        }
+    };
+
+    private int queryId = 0;
+
+    private int nextProxyId = 0;
+
+    /**
+     * @param width       The width of the whole grid (along the X axis).
+     * @param depth       The depth of the whole grid (along the Z axis).
+     * @param columnCount The number of cells along the X axis.
+     * @param rowCount    The number of cells along the Z axis.
+     */
+    public GridBroadphase(final float width, final float depth, final int columnCount, final int rowCount) {
+        if (columnCount <= 0 || rowCount <= 0 || width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException(
+                "Cannot create a " + columnCount + "x" + rowCount + " grid with a size of " + width + "x" + depth);
+        }
+        this.columnCount = columnCount;
+        this.rowCount = rowCount;
+        cellWidth = width / columnCount;
+        cellDepth = depth / rowCount;
+        // The physics world is centered at the origin
+        minX = -width * .5f;
+        minZ = -depth * .5f;
+        cells = new ArrayList<>(columnCount * rowCount);
+        for (int i = 0; i < columnCount * rowCount; i++) {
+            cells.add(new ArrayList<>(0));
+        }
+    }
+
+    public GridBroadphase(final MazeMap map) {
+        this(map.getWidth(), map.getDepth(), map.getColumnCount(), map.getRowCount());
+    }
+
+    private static boolean overlap(final GridProxy first, final GridProxy second) {
+        return first.aabbMin.x <= second.aabbMax.x && second.aabbMin.x <= first.aabbMax.x &&
+            first.aabbMin.y <= second.aabbMax.y && second.aabbMin.y <= first.aabbMax.y &&
+            first.aabbMin.z <= second.aabbMax.z && second.aabbMin.z <= first.aabbMax.z;
+    }
+
+    private static boolean isStatic(final GridProxy proxy) {
+        return (proxy.collisionFilterGroup & CollisionFilterGroups.STATIC_FILTER) != 0;
+    }
+
+    @Override
+    public BroadphaseProxy createProxy(final Vector3f aabbMin, final Vector3f aabbMax,
+        final BroadphaseNativeType shapeType, final Object userPtr, final short collisionFilterGroup,
+        final short collisionFilterMask, final Dispatcher dispatcher, final Object multiSapProxy) {
+        final var proxy = new GridProxy(userPtr, collisionFilterGroup, collisionFilterMask, multiSapProxy);
+        proxy.uniqueId = ++nextProxyId;
+        proxies.add(proxy);
+        setAabb(proxy, aabbMin, aabbMax, dispatcher);
+        return proxy;
+    }
+
+    @Override
+    public void destroyProxy(final BroadphaseProxy proxy, final Dispatcher dispatcher) {
+        final var gridProxy = (GridProxy) proxy;
+        removeFromCells(gridProxy);
+        proxies.remove(gridProxy);
+        pairCache.removeOverlappingPairsContainingProxy(gridProxy, dispatcher);
+    }
+
+    @Override
+    public void setAabb(final BroadphaseProxy proxy, final Vector3f aabbMin, final Vector3f aabbMax,
+        final Dispatcher dispatcher) {
+        final var gridProxy = (GridProxy) proxy;
+        gridProxy.aabbMin.set(aabbMin);
+        gridProxy.aabbMax.set(aabbMax);
+
+        final int fromColumn = (int) Math.floor((aabbMin.x - minX) / cellWidth);
+        final int toColumn = (int) Math.floor((aabbMax.x - minX) / cellWidth);
+        final int fromRow = (int) Math.floor((aabbMin.z - minZ) / cellDepth);
+        final int toRow = (int) Math.floor((aabbMax.z - minZ) / cellDepth);
+        if (gridProxy.isInCells && fromColumn == gridProxy.fromColumn && toColumn == gridProxy.toColumn &&
+            fromRow == gridProxy.fromRow && toRow == gridProxy.toRow) {
+            return;
+        }
+        removeFromCells(gridProxy);
+        gridProxy.fromColumn = fromColumn;
+        gridProxy.toColumn = Math.min(toColumn, fromColumn + columnCount - 1);
+        gridProxy.fromRow = fromRow;
+        gridProxy.toRow = Math.min(toRow, fromRow + rowCount - 1);
+        gridProxy.isLarge = (long) (gridProxy.toColumn - fromColumn + 1) * (gridProxy.toRow - fromRow + 1) >
+            MAXIMUM_CELLS_PER_PROXY;
+        if (gridProxy.isLarge) {
+            largeProxies.add(gridProxy);
+        } else {
+            for (int row = fromRow; row <= gridProxy.toRow; row++) {
+                for (int column = fromColumn; column <= gridProxy.toColumn; column++) {
+                    getCell(row, column).add(gridProxy);
+                }
+            }
+        }
+        gridProxy.isInCells = true;
+    }
+
+    private void removeFromCells(final GridProxy proxy) {
+        if (!proxy.isInCells) {
+            return;
+        }
+        if (proxy.isLarge) {
+            largeProxies.remove(proxy);
+        } else {
+            for (int row = proxy.fromRow; row <= proxy.toRow; row++) {
+                for (int column = proxy.fromColumn; column <= proxy.toColumn; column++) {
+                    getCell(row, column).remove(proxy);
+                }
+            }
+        }
+        proxy.isInCells = false;
+    }
+
+    private List<GridProxy> getCell(final int row, final int column) {
+        return cells.get(Math.floorMod(row, rowCount) * columnCount + Math.floorMod(column, columnCount));
+    }
+
+    @Override
+    public void calculateOverlappingPairs(final Dispatcher dispatcher) {
+        // Indexed loops instead of iterators so that this does not allocate anything on every step
+        for (int i = 0; i < proxies.size(); i++) {
+            final GridProxy proxy = proxies.get(i);
+            if (isStatic(proxy)) {
+                continue;
+            }
+            proxy.lastQueryId = ++queryId;
+            if (proxy.isLarge) {
+                addPairsIfOverlapping(proxy, proxies);
+                continue;
+            }
+            for (int row = proxy.fromRow; row <= proxy.toRow; row++) {
+                for (int column = proxy.fromColumn; column <= proxy.toColumn; column++) {
+                    addPairsIfOverlapping(proxy, getCell(row, column));
+                }
+            }
+            addPairsIfOverlapping(proxy, largeProxies);
+        }
+        pairCache.processAllOverlappingPairs(nonOverlappingPairCallback, dispatcher);
+    }
+
+    private void addPairsIfOverlapping(final GridProxy proxy, final List<GridProxy> others) {
+        for (int i = 0; i < others.size(); i++) {
+            addPairIfOverlapping(proxy, others.get(i));
+        }
+    }
+
+    private void addPairIfOverlapping(final GridProxy proxy, final GridProxy other) {
+        if (other.lastQueryId == queryId) {
+            return;
+        }
+        other.lastQueryId = queryId;
+        // The pair cache ignores pairs which it already has
+        if (overlap(proxy, other)) {
+            pairCache.addOverlappingPair(proxy, other);
+        }
+    }
+
+    @Override
+    public OverlappingPairCache getOverlappingPairCache() {
+        return pairCache;
+    }
+
+    @Override
+    public void getBroadphaseAabb(final Vector3f aabbMin, final Vector3f aabbMax) {
+        aabbMin.set(minX, -VERTICAL_EXTENT, minZ);
+        aabbMax.set(minX + cellWidth * columnCount, VERTICAL_EXTENT, minZ + cellDepth * rowCount);
+    }
+
+    @Override
+    public void printStats() {
+        System.out.printf("Grid broadphase: %dx%d cells, %d proxies (%d large), %d pairs%n", columnCount, rowCount,
+            proxies.size(), largeProxies.size(), pairCache.getNumOverlappingPairs());
+    }
+
+    private static class GridProxy extends BroadphaseProxy {
+
+        private final Vector3f aabbMin = new Vector3f();
+
+        private final Vector3f aabbMax = new Vector3f();
+
+        private int fromColumn;
+
+        private int toColumn;
+
+        private int fromRow;
+
+        private int toRow;
+
+        private boolean isInCells = false;
+
+        private boolean isLarge = false;
+
+        private int lastQueryId = 0;
+
+        GridProxy(final Object userPtr, final short collisionFilterGroup, final short collisionFilterMask,
+            final Object multiSapParentProxy) {
+            super(userPtr, collisionFilterGroup, collisionFilterMask, multiSapParentProxy);
+        }
+    }
+}
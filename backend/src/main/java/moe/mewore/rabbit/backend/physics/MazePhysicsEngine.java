@@ -0,0 +1,786 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Vector3f;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.Synchronized;
+import moe.mewore.rabbit.backend.physics.engine.BodyShape;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
+import moe.mewore.rabbit.backend.physics.engine.RayHit;
+import moe.mewore.rabbit.geometry.Vector2;
+import moe.mewore.rabbit.world.MazeMap;
+import moe.mewore.rabbit.world.MazeWall;
+import moe.mewore.rabbit.world.WallIndex;
+
+/**
+ * A {@link PhysicsEngine} made for the maze. All of its static geometry is made of vertical prisms standing on the
+ * ground, so instead of doing full rigid-body physics, it moves every dynamic body as an upright cylinder and collides
+ * it with the prisms as a circle against convex polygons on the ground plane, with the vertical motion handled
+ * separately.
+ * <ul>
+ *     <li>The walls are looked up through the map cells the bodies are in, so each body only goes through the walls
+ *     right next to it.</li>
+ *     <li>A dynamic body is the cylinder around its shape and a static one is the prism of its box, rotated around
+ *     the Y axis.</li>
+ *     <li>Bodies neither rotate nor fall asleep and their contacts are found anew on every step, so the position and
+ *     the velocity of a body are all there is to save in order to replay a step exactly.</li>
+ * </ul>
+ * The world wraps around, so each body collides with the copy of every wall, static body and other dynamic body
+ * which is closest to it.
+ */
+public class MazePhysicsEngine implements PhysicsEngine {
+
+    /**
+     * How many times the collisions of each step are resolved, since resolving one may cause another.
+     */
+    private static final int ITERATIONS = 2;
+
+    private static final int MAXIMUM_CONTACTS_PER_BODY = 8;
+
+    /**
+     * How far below the top of a prism the bottom of a body may have been before the step for the body to still land
+     * on top of it instead of being pushed out to the side.
+     */
+    private static final float VERTICAL_TOLERANCE = .01f;
+
+    /**
+     * How far from a prism a body can be while still being in contact with it, so that a body which is resting
+     * against a wall keeps touching it.
+     */
+    private static final float CONTACT_MARGIN = .01f;
+
+    private static final float WALL_FRICTION = .7f;
+
+    /**
+     * The same as the active state of JBullet. The state is only kept so that it can be saved and restored.
+     */
+    private static final int ACTIVE_STATE = 1;
+
+    private final float width;
+
+    private final float depth;
+
+    private final Vector3f gravity = new Vector3f();
+
+    private volatile MazeBody[] dynamicBodies = new MazeBody[0];
+
+    private volatile MazeBody[] staticBodies = new MazeBody[0];
+
+    private @Nullable MazeMap map = null;
+
+    private Prism[] walls = new Prism[0];
+
+    /**
+     * The last step in which each wall has been checked against the current body, so that the walls next to several
+     * of the cells it is in are only checked once.
+     */
+    private int[] wallStamps = new int[0];
+
+    private int stamp = 0;
+
+    private float stepDeltaSeconds = 0f;
+
+    /**
+     * Slower bounces than this are stopped instead, so that resting bodies do not keep bouncing ever so slightly.
+     */
+    private float minimumBounceSpeed = 0f;
+
+    // The result of the last call to {@link MazePhysicsEngine#collide}
+    private float contactNormalX;
+
+    private float contactNormalZ;
+
+    private float contactDepth;
+
+    /**
+     * @param width The width of the world (along the X axis), centered at the origin.
+     * @param depth The depth of the world (along the Z axis), centered at the origin.
+     */
+    public MazePhysicsEngine(final float width, final float depth) {
+        this.width = width;
+        this.depth = depth;
+    }
+
+    /**
+     * @return The coordinate of the copy of a point which is the closest to another coordinate.
+     */
+    private static float wrapNear(final float coordinate, final float target, final float size) {
+        return coordinate - Math.round((coordinate - target) / size) * size;
+    }
+
+    private static MazeBody getMazeBody(final PhysicsBody body) {
+        return (MazeBody) body;
+    }
+
+    private static MazeBody[] withBody(final MazeBody[] bodies, final MazeBody body) {
+        final MazeBody[] result = Arrays.copyOf(bodies, bodies.length + 1);
+        result[bodies.length] = body;
+        return result;
+    }
+
+    private static MazeBody[] withoutBody(final MazeBody[] bodies, final MazeBody body) {
+        for (int i = 0; i < bodies.length; i++) {
+            if (bodies[i] == body) {
+                final MazeBody[] result = new MazeBody[bodies.length - 1];
+                System.arraycopy(bodies, 0, result, 0, i);
+                System.arraycopy(bodies, i + 1, result, i, result.length - i);
+                return result;
+            }
+        }
+        return bodies;
+    }
+
+    @Override
+    public void setGravity(final Vector3f gravity) {
+        this.gravity.set(gravity);
+    }
+
+    @Override
+    public PhysicsBody createBody(final BodyShape shape, final float mass, final Vector3f position,
+        final float rotationY) {
+        return new MazeBody(shape, mass, position, rotationY);
+    }
+
+    @Override
+    @Synchronized
+    public void addBody(final PhysicsBody body) {
+        final MazeBody mazeBody = getMazeBody(body);
+        if (mazeBody.prism != null) {
+            staticBodies = withBody(staticBodies, mazeBody);
+        } else {
+            dynamicBodies = withBody(dynamicBodies, mazeBody);
+        }
+    }
+
+    @Override
+    @Synchronized
+    public void removeBody(final PhysicsBody body) {
+        final MazeBody mazeBody = getMazeBody(body);
+        staticBodies = withoutBody(staticBodies, mazeBody);
+        dynamicBodies = withoutBody(dynamicBodies, mazeBody);
+    }
+
+    @Override
+    public void addWalls(final MazeMap map) {
+        final List<MazeWall> mapWalls = map.getWalls();
+        final Prism[] newWalls = new Prism[mapWalls.size()];
+        for (int i = 0; i < newWalls.length; i++) {
+            final List<Vector2> points = mapWalls.get(i).getPolygon().getPoints();
+            final float[] xs = new float[points.size()];
+            final float[] zs = new float[points.size()];
+            for (int j = 0; j < xs.length; j++) {
+                xs[j] = points.get(j).getX() * width - width * .5f;
+                zs[j] = points.get(j).getY() * depth - depth * .5f;
+            }
+            newWalls[i] = new Prism(xs, zs, 0f, ForestWalls.HEIGHT);
+            newWalls[i].friction = WALL_FRICTION;
+        }
+        walls = newWalls;
+        wallStamps = new int[newWalls.length];
+        this.map = map;
+    }
+
+    /**
+     * The walls are looked up by the cells of a single map, so the walls of a chunked world cannot be added.
+     */
+    @Override
+    public List<PhysicsBody> addChunkWalls(final MazeMap chunk, final float offsetX, final float offsetZ) {
+        throw new UnsupportedOperationException("The maze physics engine only supports the walls of a single map");
+    }
+
+    @Override
+    public void step(final float deltaSeconds) {
+        stepDeltaSeconds = deltaSeconds;
+        minimumBounceSpeed = gravity.length() * deltaSeconds * 2f;
+        final MazeBody[] bodies = dynamicBodies;
+        for (final MazeBody body : bodies) {
+            body.integrate(gravity, deltaSeconds);
+        }
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            for (int i = 0; i < bodies.length; i++) {
+                collideWithStaticGeometry(bodies[i]);
+                for (int j = i + 1; j < bodies.length; j++) {
+                    collideBodies(bodies[i], bodies[j]);
+                }
+            }
+        }
+    }
+
+    private void collideWithStaticGeometry(final MazeBody body) {
+        for (final MazeBody staticBody : staticBodies) {
+            final @Nullable Prism prism = staticBody.prism;
+            if (prism != null) {
+                collideWithPrism(body, prism);
+            }
+        }
+
+        final @Nullable MazeMap currentMap = map;
+        if (currentMap == null || walls.length == 0) {
+            return;
+        }
+        ++stamp;
+        final float cellWidth = width / currentMap.getColumnCount();
+        final float cellDepth = depth / currentMap.getRowCount();
+        final float x = body.position.x + width * .5f;
+        final float z = body.position.z + depth * .5f;
+        final int fromColumn = (int) Math.floor((x - body.radius) / cellWidth);
+        final int toColumn = (int) Math.floor((x + body.radius) / cellWidth);
+        final int fromRow = (int) Math.floor((z - body.radius) / cellDepth);
+        final int toRow = (int) Math.floor((z + body.radius) / cellDepth);
+        final WallIndex wallIndex = currentMap.getWallIndex();
+        final int rowCount = currentMap.getRowCount();
+        final int columnCount = currentMap.getColumnCount();
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                final int cell = Math.floorMod(row, rowCount) * columnCount + Math.floorMod(column, columnCount);
+                for (int position = wallIndex.getCellStart(cell); position < wallIndex.getCellEnd(cell); position++) {
+                    final int wall = wallIndex.getWall(position);
+                    if (wallStamps[wall] != stamp) {
+                        wallStamps[wall] = stamp;
+                        collideWithPrism(body, walls[wall]);
+                    }
+                }
+            }
+        }
+    }
+
+    private void collideWithPrism(final MazeBody body, final Prism prism) {
+        if (body.position.y - body.halfHeight >= prism.top || body.position.y + body.halfHeight <= prism.bottom) {
+            return;
+        }
+        final float centerX = wrapNear(body.position.x, prism.centerX, width);
+        final float centerZ = wrapNear(body.position.z, prism.centerZ, depth);
+        if (!collide(prism, centerX, centerZ, body.radius)) {
+            return;
+        }
+
+        final float restitution = body.restitution * prism.restitution;
+        if (body.previousBottom >= prism.top - VERTICAL_TOLERANCE) {
+            body.position.y = prism.top + body.halfHeight;
+            if (body.velocity.y < 0f) {
+                body.velocity.y = bounce(-body.velocity.y * restitution);
+                body.applyFriction(body.friction * prism.friction * -gravity.y * stepDeltaSeconds);
+            }
+            body.addContact(0f, 1f, 0f);
+        } else if (body.previousTop <= prism.bottom + VERTICAL_TOLERANCE) {
+            body.position.y = prism.bottom - body.halfHeight;
+            if (body.velocity.y > 0f) {
+                body.velocity.y = -bounce(body.velocity.y * restitution);
+            }
+            body.addContact(0f, -1f, 0f);
+        } else {
+            body.position.x += contactNormalX * Math.max(contactDepth, 0f);
+            body.position.z += contactNormalZ * Math.max(contactDepth, 0f);
+            body.reflectVelocity(contactNormalX, contactNormalZ, restitution);
+            body.addContact(contactNormalX, 0f, contactNormalZ);
+        }
+    }
+
+    private void collideBodies(final MazeBody first, final MazeBody second) {
+        if (first.position.y - first.halfHeight >= second.position.y + second.halfHeight ||
+            first.position.y + first.halfHeight <= second.position.y - second.halfHeight) {
+            return;
+        }
+        final float deltaX = wrapNear(second.position.x, first.position.x, width) - first.position.x;
+        final float deltaZ = wrapNear(second.position.z, first.position.z, depth) - first.position.z;
+        final float distanceSquared = deltaX * deltaX + deltaZ * deltaZ;
+        final float radiusSum = first.radius + second.radius;
+        if (distanceSquared >= radiusSum * radiusSum) {
+            return;
+        }
+
+        if (first.previousBottom >= second.previousTop - VERTICAL_TOLERANCE) {
+            standOn(first, second);
+            return;
+        }
+        if (second.previousBottom >= first.previousTop - VERTICAL_TOLERANCE) {
+            standOn(second, first);
+            return;
+        }
+
+        final float distance = (float) Math.sqrt(distanceSquared);
+        final float normalX = distance > 1e-6f ? deltaX / distance : 1f;
+        final float normalZ = distance > 1e-6f ? deltaZ / distance : 0f;
+        final float inverseMassSum = first.inverseMass + second.inverseMass;
+        final float penetration = radiusSum - distance;
+        first.position.x -= normalX * penetration * first.inverseMass / inverseMassSum;
+        first.position.z -= normalZ * penetration * first.inverseMass / inverseMassSum;
+        second.position.x += normalX * penetration * second.inverseMass / inverseMassSum;
+        second.position.z += normalZ * penetration * second.inverseMass / inverseMassSum;
+
+        final float normalSpeed = (second.velocity.x - first.velocity.x) * normalX +
+            (second.velocity.z - first.velocity.z) * normalZ;
+        if (normalSpeed < 0f) {
+            final float impulse = -(1f + first.restitution * second.restitution) * normalSpeed / inverseMassSum;
+            first.velocity.x -= normalX * impulse * first.inverseMass;
+            first.velocity.z -= normalZ * impulse * first.inverseMass;
+            second.velocity.x += normalX * impulse * second.inverseMass;
+            second.velocity.z += normalZ * impulse * second.inverseMass;
+        }
+        first.addContact(-normalX, 0f, -normalZ);
+        second.addContact(normalX, 0f, normalZ);
+    }
+
+    private static void standOn(final MazeBody upper, final MazeBody lower) {
+        upper.position.y = lower.position.y + lower.halfHeight + upper.halfHeight;
+        upper.velocity.y = Math.max(upper.velocity.y, lower.velocity.y);
+        upper.addContact(0f, 1f, 0f);
+        lower.addContact(0f, -1f, 0f);
+    }
+
+    private float bounce(final float speed) {
+        return speed < minimumBounceSpeed ? 0f : speed;
+    }
+
+    /**
+     * Finds how deep a circle is in a convex polygon, the same way Box2D does it: the edge the center of the circle is
+     * the farthest out of is the one which is the closest to it, and if the center is beyond one of its ends, the
+     * closest point is that end.
+     *
+     * @return Whether the circle overlaps with the polygon or is within {@link MazePhysicsEngine#CONTACT_MARGIN} of it.
+     * If it does, the normal to push it out along and how far to push it (or a negative distance if it does not have
+     * to be pushed) are put into {@link MazePhysicsEngine#contactNormalX}, {@link MazePhysicsEngine#contactNormalZ} and
+     * {@link MazePhysicsEngine#contactDepth}.
+     */
+    private boolean collide(final Prism prism, final float centerX, final float centerZ, final float radius) {
+        final int pointCount = prism.xs.length;
+        final float reach = radius + CONTACT_MARGIN;
+        int edge = 0;
+        float separation = -Float.MAX_VALUE;
+        for (int i = 0; i < pointCount; i++) {
+            final float edgeSeparation = prism.normalXs[i] * (centerX - prism.xs[i]) +
+                prism.normalZs[i] * (centerZ - prism.zs[i]);
+            if (edgeSeparation >= reach) {
+                return false;
+            }
+            if (edgeSeparation > separation) {
+                separation = edgeSeparation;
+                edge = i;
+            }
+        }
+
+        final int nextPoint = (edge + 1) % pointCount;
+        final float fromX = prism.xs[edge];
+        final float fromZ = prism.zs[edge];
+        final float toX = prism.xs[nextPoint];
+        final float toZ = prism.zs[nextPoint];
+        if (separation > 0f) {
+            final boolean beforeFrom = (centerX - fromX) * (toX - fromX) + (centerZ - fromZ) * (toZ - fromZ) <= 0f;
+            final boolean afterTo = (centerX - toX) * (fromX - toX) + (centerZ - toZ) * (fromZ - toZ) <= 0f;
+            if (beforeFrom || afterTo) {
+                final float deltaX = centerX - (beforeFrom ? fromX : toX);
+                final float deltaZ = centerZ - (beforeFrom ? fromZ : toZ);
+                final float distanceSquared = deltaX * deltaX + deltaZ * deltaZ;
+                if (distanceSquared >= reach * reach) {
+                    return false;
+                }
+                final float distance = (float) Math.sqrt(distanceSquared);
+                contactNormalX = deltaX / distance;
+                contactNormalZ = deltaZ / distance;
+                contactDepth = radius - distance;
+                return true;
+            }
+        }
+        contactNormalX = prism.normalXs[edge];
+        contactNormalZ = prism.normalZs[edge];
+        contactDepth = radius - separation;
+        return true;
+    }
+
+    /**
+     * Goes through the walls and the static bodies as they are in the middle copy of the world, and through the
+     * copies of the dynamic bodies which are the closest to the start of the ray.
+     */
+    @Override
+    public boolean rayTest(final Vector3f from, final Vector3f to, final RayHit result) {
+        final var ray = new Ray(from, to);
+        for (final Prism wall : walls) {
+            ray.test(wall, null);
+        }
+        for (final MazeBody body : staticBodies) {
+            if (body.prism != null) {
+                ray.test(body.prism, body);
+            }
+        }
+        for (final MazeBody body : dynamicBodies) {
+            ray.test(body, wrapNear(body.position.x, from.x, width), wrapNear(body.position.z, from.z, depth));
+        }
+        if (ray.fraction > 1f) {
+            return false;
+        }
+        result.fraction = ray.fraction;
+        result.point.interpolate(from, to, ray.fraction);
+        result.normal.set(ray.normal);
+        result.body = ray.body;
+        return true;
+    }
+
+    @Override
+    public void forEachContactNormal(final PhysicsBody body, final Consumer<Vector3f> consumer) {
+        final MazeBody mazeBody = getMazeBody(body);
+        for (int i = 0; i < mazeBody.contactCount; i++) {
+            mazeBody.tmpNormal.set(mazeBody.contacts[i * 3], mazeBody.contacts[i * 3 + 1],
+                mazeBody.contacts[i * 3 + 2]);
+            consumer.accept(mazeBody.tmpNormal);
+        }
+    }
+
+    /**
+     * A convex polygon on the ground plane, extruded from {@link Prism#bottom} up to {@link Prism#top}.
+     */
+    private static class Prism {
+
+        private final float[] xs;
+
+        private final float[] zs;
+
+        /**
+         * The outward normal of the edge from each point to the next one.
+         */
+        private final float[] normalXs;
+
+        private final float[] normalZs;
+
+        private final float centerX;
+
+        private final float centerZ;
+
+        private final float bottom;
+
+        private final float top;
+
+        private float friction = .5f;
+
+        private float restitution = 0f;
+
+        private Prism(final float[] xs, final float[] zs, final float bottom, final float top) {
+            this.xs = xs;
+            this.zs = zs;
+            this.bottom = bottom;
+            this.top = top;
+
+            float doubleArea = 0f;
+            float sumX = 0f;
+            float sumZ = 0f;
+            for (int i = 0; i < xs.length; i++) {
+                final int next = (i + 1) % xs.length;
+                doubleArea += xs[i] * zs[next] - xs[next] * zs[i];
+                sumX += xs[i];
+                sumZ += zs[i];
+            }
+            centerX = sumX / xs.length;
+            centerZ = sumZ / xs.length;
+
+            // The outward side of each edge depends on which way the points go around the polygon
+            final float orientation = doubleArea < 0f ? -1f : 1f;
+            normalXs = new float[xs.length];
+            normalZs = new float[xs.length];
+            for (int i = 0; i < xs.length; i++) {
+                final int next = (i + 1) % xs.length;
+                final float edgeX = xs[next] - xs[i];
+                final float edgeZ = zs[next] - zs[i];
+                final float length = (float) Math.sqrt(edgeX * edgeX + edgeZ * edgeZ);
+                normalXs[i] = length > 0f ? orientation * edgeZ / length : 0f;
+                normalZs[i] = length > 0f ? -orientation * edgeX / length : 0f;
+            }
+        }
+
+        /**
+         * @return The prism of a box, rotated around the Y axis the same way JBullet does it.
+         */
+        private static Prism ofBox(final Vector3f center, final BodyShape shape, final float rotationY) {
+            final float cos = (float) Math.cos(rotationY);
+            final float sin = (float) Math.sin(rotationY);
+            final float[] cornerXs = {-1f, 1f, 1f, -1f};
+            final float[] cornerZs = {-1f, -1f, 1f, 1f};
+            final float[] xs = new float[4];
+            final float[] zs = new float[4];
+            for (int i = 0; i < 4; i++) {
+                final float x = cornerXs[i] * shape.getHalfWidth();
+                final float z = cornerZs[i] * shape.getHalfDepth();
+                xs[i] = center.x + x * cos + z * sin;
+                zs[i] = center.z - x * sin + z * cos;
+            }
+            return new Prism(xs, zs, center.y - shape.getHalfHeight(), center.y + shape.getHalfHeight());
+        }
+    }
+
+    /**
+     * A body of this engine: an upright cylinder if it is dynamic, or a prism if it is static.
+     */
+    private static class MazeBody implements PhysicsBody {
+
+        private final Vector3f position = new Vector3f();
+
+        private final Vector3f velocity = new Vector3f();
+
+        private final BodyShape shape;
+
+        private final float radius;
+
+        private final float halfHeight;
+
+        private final float inverseMass;
+
+        private final float rotationY;
+
+        private @Nullable Prism prism;
+
+        private float friction = .5f;
+
+        private float restitution = 0f;
+
+        private int activationState = ACTIVE_STATE;
+
+        private float deactivationTime = 0f;
+
+        private float previousBottom;
+
+        private float previousTop;
+
+        /**
+         * The normals of the contacts of the last step, three coordinates each.
+         */
+        private final float[] contacts = new float[MAXIMUM_CONTACTS_PER_BODY * 3];
+
+        private int contactCount = 0;
+
+        private final Vector3f tmpNormal = new Vector3f();
+
+        private MazeBody(final BodyShape shape, final float mass, final Vector3f position, final float rotationY) {
+            this.shape = shape;
+            this.rotationY = rotationY;
+            this.position.set(position);
+            radius = Math.max(shape.getHalfWidth(), shape.getHalfDepth());
+            halfHeight = shape.getHalfHeight();
+            inverseMass = mass > 0f ? 1f / mass : 0f;
+            prism = mass > 0f ? null : Prism.ofBox(position, shape, rotationY);
+        }
+
+        private void integrate(final Vector3f gravity, final float deltaSeconds) {
+            previousBottom = position.y - halfHeight;
+            previousTop = position.y + halfHeight;
+            velocity.scaleAdd(deltaSeconds, gravity, velocity);
+            position.scaleAdd(deltaSeconds, velocity, position);
+            contactCount = 0;
+        }
+
+        private void addContact(final float normalX, final float normalY, final float normalZ) {
+            if (contactCount < MAXIMUM_CONTACTS_PER_BODY) {
+                contacts[contactCount * 3] = normalX;
+                contacts[contactCount * 3 + 1] = normalY;
+                contacts[contactCount * 3 + 2] = normalZ;
+                ++contactCount;
+            }
+        }
+
+        /**
+         * Removes (or bounces back) the part of the horizontal velocity which goes against a normal.
+         */
+        private void reflectVelocity(final float normalX, final float normalZ, final float restitution) {
+            final float normalSpeed = velocity.x * normalX + velocity.z * normalZ;
+            if (normalSpeed < 0f) {
+                velocity.x -= (1f + restitution) * normalSpeed * normalX;
+                velocity.z -= (1f + restitution) * normalSpeed * normalZ;
+            }
+        }
+
+        /**
+         * Slows the horizontal motion down by a certain speed, without reversing it.
+         */
+        private void applyFriction(final float speedLoss) {
+            final float speed = (float) Math.sqrt(velocity.x * velocity.x + velocity.z * velocity.z);
+            if (speed > 0f && speedLoss > 0f) {
+                final float multiplier = Math.max(0f, speed - speedLoss) / speed;
+                velocity.x *= multiplier;
+                velocity.z *= multiplier;
+            }
+        }
+
+        @Override
+        public Vector3f getPosition(final Vector3f target) {
+            target.set(position);
+            return target;
+        }
+
+        /**
+         * Static bodies are moved along with their prisms.
+         */
+        @Override
+        public void setPosition(final Vector3f position) {
+            this.position.set(position);
+            if (prism != null) {
+                final float friction = prism.friction;
+                final float restitution = prism.restitution;
+                prism = Prism.ofBox(position, shape, rotationY);
+                prism.friction = friction;
+                prism.restitution = restitution;
+            }
+        }
+
+        @Override
+        public Vector3f getLinearVelocity(final Vector3f target) {
+            target.set(velocity);
+            return target;
+        }
+
+        @Override
+        public void setLinearVelocity(final Vector3f velocity) {
+            this.velocity.set(velocity);
+        }
+
+        @Override
+        public void activate() {
+            // Bodies never fall asleep
+        }
+
+        @Override
+        public int getActivationState() {
+            return activationState;
+        }
+
+        @Override
+        public void setActivationState(final int activationState) {
+            this.activationState = activationState;
+        }
+
+        @Override
+        public float getDeactivationTime() {
+            return deactivationTime;
+        }
+
+        @Override
+        public void setDeactivationTime(final float deactivationTime) {
+            this.deactivationTime = deactivationTime;
+        }
+
+        @Override
+        public void setFriction(final float friction) {
+            this.friction = friction;
+            if (prism != null) {
+                prism.friction = friction;
+            }
+        }
+
+        @Override
+        public void setRestitution(final float restitution) {
+            this.restitution = restitution;
+            if (prism != null) {
+                prism.restitution = restitution;
+            }
+        }
+    }
+
+    /**
+     * A ray which is clipped to the closest thing it goes through.
+     */
+    private static class Ray {
+
+        private final Vector3f from;
+
+        private final Vector3f direction = new Vector3f();
+
+        private final Vector3f normal = new Vector3f();
+
+        private float fraction = Float.MAX_VALUE;
+
+        private @Nullable PhysicsBody body = null;
+
+        private Ray(final Vector3f from, final Vector3f to) {
+            this.from = from;
+            direction.sub(to, from);
+        }
+
+        private void hit(final float hitFraction, final float normalX, final float normalY, final float normalZ,
+            final @Nullable PhysicsBody hitBody) {
+            if (hitFraction >= 0f && hitFraction <= 1f && hitFraction < fraction) {
+                fraction = hitFraction;
+                normal.set(normalX, normalY, normalZ);
+                body = hitBody;
+            }
+        }
+
+        /**
+         * Clips the ray to each side of the prism, which is a half-space, keeping track of the side it enters the
+         * prism through last.
+         */
+        private void test(final Prism prism, final @Nullable PhysicsBody prismBody) {
+            float enter = 0f;
+            float exit = 1f;
+            float enterNormalX = 0f;
+            float enterNormalY = 0f;
+            float enterNormalZ = 0f;
+            boolean entered = false;
+            for (int i = -2; i < prism.xs.length; i++) {
+                final float normalX = i < 0 ? 0f : prism.normalXs[i];
+                final float normalY = i == -2 ? 1f : (i == -1 ? -1f : 0f);
+                final float normalZ = i < 0 ? 0f : prism.normalZs[i];
+                final float limit = i == -2
+                    ? prism.top
+                    : (i == -1 ? -prism.bottom : normalX * prism.xs[i] + normalZ * prism.zs[i]);
+                final float speed = normalX * direction.x + normalY * direction.y + normalZ * direction.z;
+                final float distance = limit - (normalX * from.x + normalY * from.y + normalZ * from.z);
+                if (speed == 0f) {
+                    if (distance < 0f) {
+                        return;
+                    }
+                    continue;
+                }
+                final float t = distance / speed;
+                if (speed < 0f) {
+                    if (t > enter || !entered) {
+                        enter = Math.max(enter, t);
+                        enterNormalX = normalX;
+                        enterNormalY = normalY;
+                        enterNormalZ = normalZ;
+                        entered = true;
+                    }
+                } else if (t < exit) {
+                    exit = t;
+                }
+                if (enter > exit) {
+                    return;
+                }
+            }
+            if (entered && enter > 0f) {
+                hit(enter, enterNormalX, enterNormalY, enterNormalZ, prismBody);
+            }
+        }
+
+        private void test(final MazeBody body, final float centerX, final float centerZ) {
+            final float bottom = body.position.y - body.halfHeight;
+            final float top = body.position.y + body.halfHeight;
+            final float relativeX = from.x - centerX;
+            final float relativeZ = from.z - centerZ;
+
+            final float a = direction.x * direction.x + direction.z * direction.z;
+            if (a > 0f) {
+                final float b = 2f * (relativeX * direction.x + relativeZ * direction.z);
+                final float c = relativeX * relativeX + relativeZ * relativeZ - body.radius * body.radius;
+                final float discriminant = b * b - 4f * a * c;
+                if (discriminant >= 0f) {
+                    final float t = (-b - (float) Math.sqrt(discriminant)) / (2f * a);
+                    final float y = from.y + direction.y * t;
+                    if (y >= bottom && y <= top) {
+                        hit(t, (relativeX + direction.x * t) / body.radius, 0f,
+                            (relativeZ + direction.z * t) / body.radius, body);
+                    }
+                }
+            }
+            if (direction.y != 0f) {
+                final float capY = direction.y < 0f ? top : bottom;
+                final float t = (capY - from.y) / direction.y;
+                final float x = relativeX + direction.x * t;
+                final float z = relativeZ + direction.z * t;
+                if (x * x + z * z <= body.radius * body.radius) {
+                    hit(t, 0f, direction.y < 0f ? 1f : -1f, 0f, body);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package moe.mewore.rabbit.backend.physics;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.bulletphysics.collision.broadphase.BroadphasePair;
+import com.bulletphysics.collision.broadphase.CollisionAlgorithm;
+import com.bulletphysics.collision.broadphase.DispatchFunc;
+import com.bulletphysics.collision.broadphase.Dispatcher;
+import com.bulletphysics.collision.broadphase.DispatcherInfo;
+import com.bulletphysics.collision.broadphase.OverlappingPairCache;
+import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.ManifoldResult;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.collision.shapes.CollisionShape;
+import com.bulletphysics.util.ObjectArrayList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A collision dispatcher which can find the contact points of the overlapping pairs on several threads at once.
+ * <p>
+ * The collision algorithms and contact manifolds of the pairs are still created in order on the calling thread, so
+ * the order of the manifolds (and the contacts the solver goes through) is the same as without parallelism. Each pair
+ * has an algorithm and a manifold of its own, so processing the pairs in any order gives the same contact points.
+ * <p>
+ * The exception is the pairs with a compound or a concave shape, whose algorithms temporarily replace the shape of
+ * their object with each of its children or use caches shared by the whole shape. All pairs of the same such object
+ * or shape are processed by the same thread, one after another, and a pair with two of them is processed by the
+ * calling thread before the rest.
+ */
+public class ParallelCollisionDispatcher extends CollisionDispatcher {
+
+    /**
+     * How many independent pairs each task processes. Most pairs take very little time, so processing each one in a
+     * separate task would take longer than processing all of them on a single thread.
+     */
+    private static final int PAIRS_PER_TASK = 16;
+
+    private final ThreadLocal<ManifoldResult> manifoldResult = ThreadLocal.withInitial(ManifoldResult::new);
+
+    /**
+     * The pairs of each task, reused from step to step - only the first {@link #taskCount} of them are the tasks of
+     * the current step.
+     */
+    private final List<List<BroadphasePair>> tasks = new ArrayList<>();
+
+    private int taskCount = 0;
+
+    private final Map<Object, List<BroadphasePair>> tasksBySharedStateOwner = new IdentityHashMap<>();
+
+    @Getter
+    @Setter
+    private boolean parallel = false;
+
+    public ParallelCollisionDispatcher(final ThreadSafeCollisionConfiguration configuration) {
+        super(configuration);
+    }
+
+    /**
+     * @return The object or shape which the pair should be processed together with other pairs of, or {@code null} if
+     * it can be processed independently.
+     */
+    private static @Nullable Object getSharedStateOwner(final CollisionObject object) {
+        final CollisionShape shape = object.getCollisionShape();
+        if (shape.isCompound()) {
+            return object;
+        }
+        return shape.isConcave() ? shape : null;
+    }
+
+    private void processPair(final BroadphasePair pair, final DispatcherInfo dispatchInfo) {
+        final var first = (CollisionObject) pair.pProxy0.clientObject;
+        final var second = (CollisionObject) pair.pProxy1.clientObject;
+        final ManifoldResult result = manifoldResult.get();
+        result.init(first, second);
+        pair.algorithm.processCollision(first, second, dispatchInfo, result);
+    }
+
+    private void processPairs(final List<BroadphasePair> pairs, final DispatcherInfo dispatchInfo) {
+        for (int i = 0; i < pairs.size(); i++) {
+            processPair(pairs.get(i), dispatchInfo);
+        }
+    }
+
+    private List<BroadphasePair> startTask() {
+        if (taskCount == tasks.size()) {
+            tasks.add(new ArrayList<>(PAIRS_PER_TASK));
+        }
+        final List<BroadphasePair> task = tasks.get(taskCount++);
+        task.clear();
+        return task;
+    }
+
+    @Override
+    public void dispatchAllCollisionPairs(final OverlappingPairCache pairCache, final DispatcherInfo dispatchInfo,
+        final Dispatcher dispatcher) {
+        if (!parallel || dispatchInfo.dispatchFunc != DispatchFunc.DISPATCH_DISCRETE) {
+            super.dispatchAllCollisionPairs(pairCache, dispatchInfo, dispatcher);
+            return;
+        }
+
+        final ObjectArrayList<BroadphasePair> pairs = pairCache.getOverlappingPairArray();
+        taskCount = 0;
+        tasksBySharedStateOwner.clear();
+        @Nullable List<BroadphasePair> independentPairs = null;
+        for (int i = 0; i < pairs.size(); i++) {
+            final BroadphasePair pair = pairs.getQuick(i);
+            final var first = (CollisionObject) pair.pProxy0.clientObject;
+            final var second = (CollisionObject) pair.pProxy1.clientObject;
+            if (!needsCollision(first, second)) {
+                continue;
+            }
+            if (pair.algorithm == null) {
+                pair.algorithm = findAlgorithm(first, second);
+                if (pair.algorithm == null) {
+                    continue;
+                }
+            }
+
+            final @Nullable Object firstOwner = getSharedStateOwner(first);
+            final @Nullable Object secondOwner = getSharedStateOwner(second);
+            if (firstOwner != null && secondOwner != null) {
+                processPair(pair, dispatchInfo);
+            } else if (firstOwner != null || secondOwner != null) {
+                final Object owner = firstOwner != null ? firstOwner : secondOwner;
+                @Nullable List<BroadphasePair> task = tasksBySharedStateOwner.get(owner);
+                if (task == null) {
+                    task = startTask();
+                    tasksBySharedStateOwner.put(owner, task);
+                }
+                task.add(pair);
+            } else {
+                if (independentPairs == null || independentPairs.size() >= PAIRS_PER_TASK) {
+                    independentPairs = startTask();
+                }
+                independentPairs.add(pair);
+            }
+        }
+        // The owners are not needed until the next step, so they should not be kept from being garbage collected
+        tasksBySharedStateOwner.clear();
+        IntStream.range(0, taskCount).parallel().forEach(task -> processPairs(tasks.get(task), dispatchInfo));
+    }
+
+    // The algorithms of concave shapes create and free an algorithm for every triangle they touch, which goes through
+    // the (shared) pools of the dispatcher, so everything to do with them is synchronized.
+
+    @Override
+    public synchronized CollisionAlgorithm findAlgorithm(final CollisionObject body0, final CollisionObject body1,
+        final PersistentManifold sharedManifold) {
+        return super.findAlgorithm(body0, body1, sharedManifold);
+    }
+
+    @Override
+    public synchronized void freeCollisionAlgorithm(final CollisionAlgorithm algorithm) {
+        super.freeCollisionAlgorithm(algorithm);
+    }
+
+    @Override
+    public synchronized PersistentManifold getNewManifold(final Object body0, final Object body1) {
+        return super.getNewManifold(body0, body1);
+    }
+
+    @Override
+    public synchronized void releaseManifold(final PersistentManifold manifold) {
+        super.releaseManifold(manifold);
+    }
+}
@@ -1,18 +1,12 @@
 package moe.mewore.rabbit.backend.physics;
 
-import javax.vecmath.Quat4f;
 import javax.vecmath.Vector3f;
 
-import com.bulletphysics.collision.dispatch.CollisionFlags;
-import com.bulletphysics.collision.shapes.BoxShape;
-import com.bulletphysics.dynamics.RigidBody;
-import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
-import com.bulletphysics.linearmath.DefaultMotionState;
-import com.bulletphysics.linearmath.QuaternionUtil;
-import com.bulletphysics.linearmath.Transform;
-
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import moe.mewore.rabbit.backend.physics.engine.BodyShape;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.data.BinaryEntity;
 import moe.mewore.rabbit.data.SafeDataOutput;
 
@@ -25,9 +19,6 @@ public class PhysicsDummyBox extends BinaryEntity {
 
     private static final int DUMMY_BOX_COUNT = 20;
 
-    @Getter
-    private final RigidBody body;
-
     private final float width;
 
     private final float height;
@@ -43,10 +34,6 @@ public class PhysicsDummyBox extends BinaryEntity {
         final var position = new Vector3f(-30, 0, -30);
         float dummyBoxHeight = 10f;
         final PhysicsDummyBox[] result = new PhysicsDummyBox[DUMMY_BOX_COUNT];
-
-        final var boxTransform = new Transform();
-        boxTransform.setIdentity();
-        final var tmpQuaternion = new Quat4f();
         for (int i = 0; i < DUMMY_BOX_COUNT; i++) {
             final float width = 15 + (i == 9 ? 15 : 0) + (i == DUMMY_BOX_COUNT - 1 ? 25 : 0);
 
@@ -61,16 +48,6 @@ public class PhysicsDummyBox extends BinaryEntity {
             currentPosition.y = y;
             final var currentRotation = (i - 0.5f) * ROTATION_PER_BOX;
 
-            final var shape = new BoxShape(new Vector3f(width / 2f, currentHeight / 2f, width / 2f));
-            QuaternionUtil.setEuler(tmpQuaternion, currentRotation, 0f, 0f);
-            boxTransform.origin.set(currentPosition);
-            boxTransform.setRotation(tmpQuaternion);
-            final var constructionInfo = new RigidBodyConstructionInfo(0f, new DefaultMotionState(boxTransform), shape);
-            final RigidBody body = new RigidBody(constructionInfo);
-            body.setCollisionFlags(CollisionFlags.STATIC_OBJECT);
-            body.setFriction(0.25f);
-            body.setRestitution(0.4f);
-
             final float currentSpeed = i == 8 ? physicsDummyBoxSpeed * 1.5f : physicsDummyBoxSpeed;
             final var movementAngle = i * ROTATION_PER_BOX + (float) Math.PI / 2;
             position.set(position.x + (float) Math.sin(movementAngle) * currentSpeed, position.y,
@@ -78,11 +55,23 @@ public class PhysicsDummyBox extends BinaryEntity {
             physicsDummyBoxSpeed += physicsDummyBoxAcceleration;
 
             dummyBoxHeight += HEIGHT_INCREASES[i % HEIGHT_INCREASES.length];
-            result[i] = new PhysicsDummyBox(body, width, currentHeight, currentPosition, currentRotation);
+            result[i] = new PhysicsDummyBox(width, currentHeight, currentPosition, currentRotation);
         }
         return result;
     }
 
+    /**
+     * @param physics The physics engine to create the body of the box with.
+     * @return The static body of the box, not added to the world yet.
+     */
+    public PhysicsBody createBody(final PhysicsEngine physics) {
+        final PhysicsBody body = physics.createBody(BodyShape.box(width / 2f, height / 2f, width / 2f), 0f, position,
+            rotationY);
+        body.setFriction(0.25f);
+        body.setRestitution(0.4f);
+        return body;
+    }
+
     @Override
     public void appendToBinaryOutput(final SafeDataOutput output) {
         output.writeFloat(width);
@@ -5,41 +5,48 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.bulletphysics.collision.shapes.SphereShape;
-import com.bulletphysics.dynamics.RigidBody;
-import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
-import com.bulletphysics.linearmath.DefaultMotionState;
-import com.bulletphysics.linearmath.Transform;
-
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import moe.mewore.rabbit.backend.physics.engine.BodyShape;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.backend.simulation.data.FrameCompiler;
 import moe.mewore.rabbit.backend.simulation.data.FrameDataType;
 import moe.mewore.rabbit.backend.simulation.data.FrameSection;
 import moe.mewore.rabbit.backend.simulation.data.FrameSerializableEntity;
 
 import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.BYTE;
+import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.FLOAT;
 import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.VECTOR3F;
 
 @RequiredArgsConstructor
 public class PhysicsDummySphere implements FrameSerializableEntity {
 
-    private static final FrameDataType[] FRAME_DATA_TYPES = new FrameDataType[]{BYTE, VECTOR3F, VECTOR3F};
+    private static final FrameDataType[] FRAME_DATA_TYPES = new FrameDataType[]{BYTE, FLOAT, VECTOR3F, VECTOR3F};
 
     private static final Vector3f OFFSET = new Vector3f(0f, 20f, 0f);
 
     private static final int BOXES_PER_SPHERE = 6;
 
-    private final Transform tmpTransform = new Transform();
+    private static final BodyShape SHAPE = BodyShape.sphere(10f);
+
+    private final Vector3f tmpPosition = new Vector3f();
 
     private final Vector3f tmpVector = new Vector3f();
 
     @Getter
-    private final RigidBody body;
+    private final PhysicsBody body;
 
     private final FrameSection frameView;
 
-    public static PhysicsDummySphere[] makeSpheres(final PhysicsDummyBox[] boxes, final FrameCompiler frameCompiler) {
+    /**
+     * @param boxes         The boxes to put some of the spheres above.
+     * @param frameCompiler The frame compiler to reserve the frame sections of the spheres with.
+     * @param physics       The physics engine to create the bodies of the spheres with. They are not added to it.
+     * @return The spheres.
+     */
+    public static PhysicsDummySphere[] makeSpheres(final PhysicsDummyBox[] boxes, final FrameCompiler frameCompiler,
+        final PhysicsEngine physics) {
         final List<PhysicsDummySphere> result = new ArrayList<>();
 
         final AtomicInteger counter = new AtomicInteger(0);
@@ -47,12 +54,9 @@ public class PhysicsDummySphere implements FrameSerializableEntity {
             if (counter.decrementAndGet() <= 0) {
                 counter.set(BOXES_PER_SPHERE);
 
-                final var sphereShape = new SphereShape(10f);
-                final var sphereConstructionInfo = new RigidBodyConstructionInfo(1, new DefaultMotionState(),
-                    sphereShape);
-                final RigidBody sphere = new RigidBody(sphereConstructionInfo);
-                sphere.translate(boxes[i].getPosition());
-                sphere.translate(OFFSET);
+                final var position = new Vector3f(boxes[i].getPosition());
+                position.add(OFFSET);
+                final PhysicsBody sphere = physics.createBody(SHAPE, 1f, position, 0f);
                 sphere.setFriction(.5f);
                 sphere.setRestitution(1f);
 
@@ -64,7 +68,7 @@ public class PhysicsDummySphere implements FrameSerializableEntity {
     }
 
     private Vector3f getPosition() {
-        return body.getWorldTransform(tmpTransform).origin;
+        return body.getPosition(tmpPosition);
     }
 
     private Vector3f getMotion() {
@@ -74,17 +78,18 @@ public class PhysicsDummySphere implements FrameSerializableEntity {
     public void load(final byte[] frame) {
         frameView.setFrame(frame);
         body.setActivationState(frameView.readByte());
+        body.setDeactivationTime(frameView.readFloat());
 
-        frameView.readIntoVector3f(tmpTransform.origin);
-        body.setWorldTransform(tmpTransform);
+        body.setPosition(frameView.readIntoVector3f(tmpPosition));
 
-        getBody().setLinearVelocity(frameView.readIntoVector3f(tmpVector));
+        body.setLinearVelocity(frameView.readIntoVector3f(tmpVector));
     }
 
     @Override
     public void store(final byte[] frame) {
         frameView.setFrame(frame);
         frameView.writeByte(body.getActivationState());
+        frameView.writeFloat(body.getDeactivationTime());
         frameView.writeVector3f(getPosition());
         frameView.writeVector3f(getMotion());
     }
@@ -5,28 +5,28 @@ import javax.vecmath.Vector3f;
 import java.util.List;
 import java.util.function.Consumer;
 
-import com.bulletphysics.collision.broadphase.Dispatcher;
-import com.bulletphysics.collision.dispatch.CollisionWorld;
-import com.bulletphysics.collision.narrowphase.PersistentManifold;
-import com.bulletphysics.dynamics.ActionInterface;
-import com.bulletphysics.dynamics.RigidBody;
-import com.bulletphysics.linearmath.IDebugDraw;
-import com.bulletphysics.linearmath.Transform;
-
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.backend.simulation.data.FrameDataType;
 import moe.mewore.rabbit.backend.simulation.data.FrameSection;
 import moe.mewore.rabbit.backend.simulation.data.FrameSerializableEntity;
 
+import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.BYTE;
 import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.FLOAT;
 import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.VECTOR3F;
 
 @RequiredArgsConstructor
-public class RigidBodyController extends ActionInterface implements FrameSerializableEntity {
+public class RigidBodyController implements FrameSerializableEntity {
+
+    public static final List<FrameDataType> FRAME_DATA_TYPES = List.of(BYTE, FLOAT, VECTOR3F, VECTOR3F, FLOAT, FLOAT);
 
-    public static final List<FrameDataType> FRAME_DATA_TYPES = List.of(VECTOR3F, VECTOR3F, FLOAT, FLOAT);
+    /**
+     * Where the position is in the frame section, after the activation state and the deactivation time.
+     */
+    private static final int POSITION_OFFSET = Byte.BYTES + Float.BYTES;
 
     private static final float JUMP_SPEED = 110f;
 
@@ -36,7 +36,7 @@ public class RigidBodyController extends ActionInterface implements FrameSeriali
 
     private static final float GROUND_CHECK_REQUIRED_NORMAL_Y = .3f;
 
-    private final Transform tmpTransform = new Transform();
+    private final Vector3f tmpPosition = new Vector3f();
 
     private final Vector3f tmpVector3 = new Vector3f();
 
@@ -44,7 +44,7 @@ public class RigidBodyController extends ActionInterface implements FrameSeriali
 
     public float jumpControlLeniency = 0.1f;
 
-    private final RigidBody body;
+    private final PhysicsBody body;
 
     private final FrameSection frameSection;
 
@@ -56,20 +56,33 @@ public class RigidBodyController extends ActionInterface implements FrameSeriali
 
     public float jumpControlTimeLeft = -1f;
 
+    /**
+     * Kept as a field so that a new one does not have to be allocated after every step.
+     */
+    private final Consumer<Vector3f> groundCollisionCallback = collisionNormal -> {
+        if (1 - collisionNormal.y < GROUND_CHECK_REQUIRED_NORMAL_Y) {
+            groundTimeLeft = groundLeniency;
+        }
+    };
+
     private Vector3f getPosition() {
-        return getPosition(tmpTransform);
+        return getPosition(tmpPosition);
     }
 
-    public Vector3f getPosition(final Transform target) {
-        return body.getWorldTransform(target).origin;
+    public Vector3f getPosition(final Vector3f target) {
+        return body.getPosition(target);
+    }
+
+    /**
+     * Reads the position from a frame the body has been stored in, without loading the frame. Unlike
+     * {@link RigidBodyController#getPosition(Vector3f)}, it can be done on any thread.
+     */
+    public Vector3f readPosition(final byte[] frame, final Vector3f target) {
+        return frameSection.peekVector3f(frame, POSITION_OFFSET, target);
     }
 
     public void setPosition(final Vector3f position) {
-        if (position != tmpTransform.origin) {
-            tmpTransform.setIdentity();
-            tmpTransform.origin.set(position);
-        }
-        body.setWorldTransform(tmpTransform);
+        body.setPosition(position);
     }
 
     public Vector3f getMotion(final Vector3f target) {
@@ -96,9 +109,11 @@ public class RigidBodyController extends ActionInterface implements FrameSeriali
         return jumpControlTimeLeft >= 0;
     }
 
-    @Override
-    public void updateAction(final CollisionWorld world, final float deltaTimeStep) {
+    public void updateAction(final float deltaTimeStep) {
         final var motion = getMotion(tmpVector3);
+        final float oldMotionX = motion.x;
+        final float oldMotionY = motion.y;
+        final float oldMotionZ = motion.z;
         final var motionDx = targetHorizontalMotion.x - motion.x;
         final var motionDz = targetHorizontalMotion.y - motion.z;
         final var motionDistanceSquared = motionDx * motionDx + motionDz * motionDz;
@@ -120,7 +135,9 @@ public class RigidBodyController extends ActionInterface implements FrameSeriali
 
         body.setLinearVelocity(motion);
 
-        if (Math.abs(motion.x) > 0 || Math.abs(motion.y) > 0 || Math.abs(motion.z) > 0) {
+        // Waking the body up only when its motion is changed here lets it fall asleep while it is standing still,
+        // even if it is left with a tiny bit of velocity from resting on the ground
+        if (motion.x != oldMotionX || motion.y != oldMotionY || motion.z != oldMotionZ) {
             body.activate();
         }
 
@@ -128,43 +145,22 @@ public class RigidBodyController extends ActionInterface implements FrameSeriali
         groundTimeLeft -= deltaTimeStep;
     }
 
-    @Override
-    public void debugDraw(final IDebugDraw debugDrawer) {
-        // Do nothing for now
-    }
-
-    public void afterPhysics(final CollisionWorld world) {
-        forEachGroundCollision(world, collisionNormal -> groundTimeLeft = groundLeniency);
-    }
-
-    private void forEachGroundCollision(final CollisionWorld world, final Consumer<Vector3f> callback) {
-        final Dispatcher dispatcher = world.getDispatcher();
-        for (int i = 0; i < dispatcher.getNumManifolds(); i++) {
-            final PersistentManifold manifold = dispatcher.getManifoldByIndexInternal(i);
-            final var isFirstBody = manifold.getBody0() == body;
-            final var isSecondBody = !isFirstBody && manifold.getBody1() == body;
-            if (isFirstBody || isSecondBody) {
-                for (int j = 0; j < manifold.getNumContacts(); j++) {
-                    final var normal = manifold.getContactPoint(j).normalWorldOnB;
-                    if ((isFirstBody ? (1 - normal.y) : (1 + normal.y)) < GROUND_CHECK_REQUIRED_NORMAL_Y) {
-                        tmpVector3.set(normal);
-                        if (!isFirstBody) {
-                            tmpVector3.negate();
-                        }
-                        callback.accept(tmpVector3);
-                    }
-                }
-            }
-        }
+    public void afterPhysics(final PhysicsEngine physics) {
+        physics.forEachContactNormal(body, groundCollisionCallback);
     }
 
+    /**
+     * The body can fall asleep, so whether it is asleep and for how long it has been still are restored as well.
+     * Otherwise, after a rollback it would keep the activation state it had in the future frame and the physics
+     * world would be stepped differently than the first time.
+     */
     @Override
     public void load(final byte[] frame) {
         frameSection.setFrame(frame);
+        body.setActivationState(frameSection.readByte());
+        body.setDeactivationTime(frameSection.readFloat());
 
-        tmpTransform.setIdentity();
-        frameSection.readIntoVector3f(tmpTransform.origin);
-        body.setWorldTransform(tmpTransform);
+        body.setPosition(frameSection.readIntoVector3f(tmpPosition));
 
         body.setLinearVelocity(frameSection.readIntoVector3f(tmpVector3));
 
@@ -175,6 +171,8 @@ public class RigidBodyController extends ActionInterface implements FrameSeriali
     @Override
     public void store(final byte[] frame) {
         frameSection.setFrame(frame);
+        frameSection.writeByte(body.getActivationState());
+        frameSection.writeFloat(body.getDeactivationTime());
 
         frameSection.writeVector3f(getPosition());
         frameSection.writeVector3f(getMotion());
@@ -0,0 +1,339 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Vector3f;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.bulletphysics.collision.dispatch.CollisionFlags;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.shapes.CollisionShape;
+import com.bulletphysics.collision.shapes.CompoundShape;
+import com.bulletphysics.dynamics.DynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.Synchronized;
+
+/**
+ * Makes bodies collide with what is on the other side of the seams of a wrapping world. Bodies do not have to be
+ * copied across the whole world for this - only the ones which are close enough to a seam to touch something on the
+ * other side.
+ * <ul>
+ *     <li>Static bodies near a seam get static copies on the other side of it once, when they are added.</li>
+ *     <li>Dynamic bodies near a seam get kinematic ghosts on the other side of it, which follow them every step. A
+ *     ghost pushes the dynamic bodies it touches without being pushed back, but since a body on the other side of
+ *     the seam has a ghost of its own, both bodies still push each other.</li>
+ * </ul>
+ * Ghosts and copies are ordinary collision objects, so the broadphase pairs them up like any other.
+ */
+public class SeamGhosts {
+
+    /**
+     * The ghost offsets of a body near a corner: across the X seam, across the Z seam, and across both.
+     */
+    private static final int MAXIMUM_GHOSTS_PER_BODY = 3;
+
+    private final Transform tmpTransform = new Transform();
+
+    private final Vector3f tmpMin = new Vector3f();
+
+    private final Vector3f tmpMax = new Vector3f();
+
+    private final Vector3f tmpVelocity = new Vector3f();
+
+    private final DynamicsWorld world;
+
+    private final float width;
+
+    private final float depth;
+
+    private final float margin;
+
+    /**
+     * Replaced with a new array whenever a body is tracked or untracked so that it can be iterated over without locking
+     * or allocating anything.
+     */
+    private volatile TrackedBody[] trackedBodies = new TrackedBody[0];
+
+    private final Map<CollisionObject, List<RigidBody>> staticCopiesByBody = new IdentityHashMap<>();
+
+    private int staticCopyCount = 0;
+
+    private int ghostCount = 0;
+
+    /**
+     * @param world  The physics world to add the ghosts and copies to.
+     * @param width  The width of the world (along the X axis), centered at the origin.
+     * @param depth  The depth of the world (along the Z axis), centered at the origin.
+     * @param margin How close to a seam a body has to be to get a ghost or a copy.
+     */
+    public SeamGhosts(final DynamicsWorld world, final float width, final float depth, final float margin) {
+        if (margin * 2f >= width || margin * 2f >= depth) {
+            throw new IllegalArgumentException(
+                "The seam margin " + margin + " is too large for a world with a size of " + width + "x" + depth);
+        }
+        this.world = world;
+        this.width = width;
+        this.depth = depth;
+        this.margin = margin;
+    }
+
+    /**
+     * @return How much a body with the given extent along an axis has to be moved to get to the other side of the seam
+     * it is close to, or 0 if it isn't close to one. Bodies which are too large would overlap with their own ghosts,
+     * so they never get any.
+     */
+    private static float getOffset(final float min, final float max, final float size, final float margin) {
+        if (max - min >= size - margin * 2f) {
+            return 0f;
+        }
+        if (max > size * .5f - margin) {
+            return -size;
+        }
+        return min < -size * .5f + margin ? size : 0f;
+    }
+
+    private static boolean isGhostNeeded(final int ghostIndex, final float offsetX, final float offsetZ) {
+        switch (ghostIndex) {
+            case 0:
+                return offsetX != 0f;
+            case 1:
+                return offsetZ != 0f;
+            default:
+                return offsetX != 0f && offsetZ != 0f;
+        }
+    }
+
+    private static void shift(final Transform transform, final int ghostIndex, final float offsetX,
+        final float offsetZ) {
+        if (ghostIndex != 1) {
+            transform.origin.x += offsetX;
+        }
+        if (ghostIndex != 0) {
+            transform.origin.z += offsetZ;
+        }
+    }
+
+    private static RigidBody makeGhost(final RigidBody body) {
+        final var ghost = new Ghost(body.getCollisionShape());
+        ghost.setCollisionFlags(ghost.getCollisionFlags() | CollisionFlags.KINEMATIC_OBJECT);
+        ghost.setFriction(body.getFriction());
+        ghost.setRestitution(body.getRestitution());
+        return ghost;
+    }
+
+    /**
+     * Adds copies of a static body on the other side of the seams it is close to. Bodies which span (almost) the
+     * whole world, like the ground, do not need any. Only the children of a compound shape which are close to the seams
+     * are copied.
+     *
+     * @param body The static body, which should already be in the world.
+     */
+    @Synchronized
+    public void addStaticCopies(final RigidBody body) {
+        body.getAabb(tmpMin, tmpMax);
+        final float offsetX = getOffset(tmpMin.x, tmpMax.x, width, margin);
+        final float offsetZ = getOffset(tmpMin.z, tmpMax.z, depth, margin);
+        for (int i = 0; i < MAXIMUM_GHOSTS_PER_BODY; i++) {
+            if (!isGhostNeeded(i, offsetX, offsetZ)) {
+                continue;
+            }
+            final @Nullable CollisionShape shape = getShapeNearSeams(body, i, offsetX, offsetZ);
+            if (shape == null) {
+                continue;
+            }
+            body.getWorldTransform(tmpTransform);
+            shift(tmpTransform, i, offsetX, offsetZ);
+            final var copy = new RigidBody(0f, new DefaultMotionState(tmpTransform), shape);
+            copy.setCollisionFlags(body.getCollisionFlags());
+            copy.setFriction(body.getFriction());
+            copy.setRestitution(body.getRestitution());
+            world.addRigidBody(copy);
+            staticCopiesByBody.computeIfAbsent(body, key -> new ArrayList<>(MAXIMUM_GHOSTS_PER_BODY)).add(copy);
+            ++staticCopyCount;
+        }
+    }
+
+    /**
+     * Removes the copies of a static body from the world, if it has any.
+     *
+     * @param body The static body, which is being removed from the world.
+     */
+    @Synchronized
+    public void removeStaticCopies(final CollisionObject body) {
+        final @Nullable List<RigidBody> copies = staticCopiesByBody.remove(body);
+        if (copies == null) {
+            return;
+        }
+        for (final RigidBody copy : copies) {
+            world.removeRigidBody(copy);
+        }
+        staticCopyCount -= copies.size();
+    }
+
+    /**
+     * @return The shape of a body, or if it is a compound one, a compound of only the children which are close to the
+     * same seams as the body itself. {@code null} if there are no such children.
+     */
+    private @Nullable CollisionShape getShapeNearSeams(final RigidBody body, final int ghostIndex,
+        final float offsetX, final float offsetZ) {
+        if (!(body.getCollisionShape() instanceof CompoundShape)) {
+            return body.getCollisionShape();
+        }
+        final var compound = (CompoundShape) body.getCollisionShape();
+        final Transform bodyTransform = body.getWorldTransform(new Transform());
+        final Transform childTransform = new Transform();
+        final Transform childWorldTransform = new Transform();
+        @Nullable CompoundShape result = null;
+        for (int i = 0; i < compound.getNumChildShapes(); i++) {
+            compound.getChildTransform(i, childTransform);
+            childWorldTransform.mul(bodyTransform, childTransform);
+            compound.getChildShape(i).getAabb(childWorldTransform, tmpMin, tmpMax);
+            if ((ghostIndex == 1 || getOffset(tmpMin.x, tmpMax.x, width, margin) == offsetX) &&
+                (ghostIndex == 0 || getOffset(tmpMin.z, tmpMax.z, depth, margin) == offsetZ)) {
+                if (result == null) {
+                    result = new CompoundShape();
+                }
+                result.addChildShape(childTransform, compound.getChildShape(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts giving a dynamic body ghosts whenever it is near a seam.
+     *
+     * @param body The dynamic body.
+     */
+    @Synchronized
+    public void track(final RigidBody body) {
+        final TrackedBody[] oldTrackedBodies = trackedBodies;
+        for (final TrackedBody trackedBody : oldTrackedBodies) {
+            if (trackedBody.body == body) {
+                return;
+            }
+        }
+        final TrackedBody[] newTrackedBodies = Arrays.copyOf(oldTrackedBodies, oldTrackedBodies.length + 1);
+        newTrackedBodies[oldTrackedBodies.length] = new TrackedBody(body);
+        trackedBodies = newTrackedBodies;
+    }
+
+    /**
+     * Stops giving a dynamic body ghosts and removes the ones it has from the world.
+     *
+     * @param body The dynamic body.
+     */
+    @Synchronized
+    public void untrack(final CollisionObject body) {
+        final TrackedBody[] oldTrackedBodies = trackedBodies;
+        for (int i = 0; i < oldTrackedBodies.length; i++) {
+            if (oldTrackedBodies[i].body != body) {
+                continue;
+            }
+            final TrackedBody[] newTrackedBodies = new TrackedBody[oldTrackedBodies.length - 1];
+            System.arraycopy(oldTrackedBodies, 0, newTrackedBodies, 0, i);
+            System.arraycopy(oldTrackedBodies, i + 1, newTrackedBodies, i, newTrackedBodies.length - i);
+            trackedBodies = newTrackedBodies;
+
+            for (final @Nullable RigidBody ghost : oldTrackedBodies[i].ghosts) {
+                if (ghost != null && ghost.getBroadphaseHandle() != null) {
+                    world.removeRigidBody(ghost);
+                    --ghostCount;
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Moves the ghosts to where the bodies they follow are, adding and removing them as the bodies get closer to or
+     * farther from the seams. Should be called right before each step of the world.
+     */
+    public void update() {
+        for (final TrackedBody trackedBody : trackedBodies) {
+            final RigidBody body = trackedBody.body;
+            final @Nullable RigidBody[] ghosts = trackedBody.ghosts;
+            body.getAabb(tmpMin, tmpMax);
+            final float offsetX = getOffset(tmpMin.x, tmpMax.x, width, margin);
+            final float offsetZ = getOffset(tmpMin.z, tmpMax.z, depth, margin);
+            for (int i = 0; i < MAXIMUM_GHOSTS_PER_BODY; i++) {
+                @Nullable RigidBody ghost = ghosts[i];
+                if (!isGhostNeeded(i, offsetX, offsetZ)) {
+                    if (ghost != null && ghost.getBroadphaseHandle() != null) {
+                        world.removeRigidBody(ghost);
+                        --ghostCount;
+                    }
+                    continue;
+                }
+                if (ghost == null) {
+                    ghost = makeGhost(body);
+                    ghosts[i] = ghost;
+                }
+                body.getWorldTransform(tmpTransform);
+                shift(tmpTransform, i, offsetX, offsetZ);
+                ghost.setWorldTransform(tmpTransform);
+                ghost.setInterpolationWorldTransform(tmpTransform);
+                ghost.setLinearVelocity(body.getLinearVelocity(tmpVelocity));
+                ghost.setAngularVelocity(body.getAngularVelocity(tmpVelocity));
+                // An awake kinematic body wakes up whatever it touches, so the ghost sleeps whenever its body does
+                ghost.forceActivationState(body.getActivationState());
+                ghost.setDeactivationTime(body.getDeactivationTime());
+                if (ghost.getBroadphaseHandle() == null) {
+                    world.addRigidBody(ghost);
+                    ++ghostCount;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of ghosts currently in the world.
+     */
+    public int getGhostCount() {
+        return ghostCount;
+    }
+
+    /**
+     * @return The number of static copies in the world.
+     */
+    public int getStaticCopyCount() {
+        return staticCopyCount;
+    }
+
+    /**
+     * A kinematic body which keeps the velocity it is given instead of calculating it from how much it has moved, which
+     * is also how JBullet would do it but with a few new objects on every step.
+     */
+    private static class Ghost extends RigidBody {
+
+        private final Vector3f tmpVelocity = new Vector3f();
+
+        private Ghost(final CollisionShape shape) {
+            super(0f, null, shape);
+        }
+
+        @Override
+        public void saveKinematicState(final float timeStep) {
+            interpolationLinearVelocity.set(getLinearVelocity(tmpVelocity));
+            interpolationAngularVelocity.set(getAngularVelocity(tmpVelocity));
+            interpolationWorldTransform.set(worldTransform);
+        }
+    }
+
+    private static class TrackedBody {
+
+        private final RigidBody body;
+
+        private final @Nullable RigidBody[] ghosts = new RigidBody[MAXIMUM_GHOSTS_PER_BODY];
+
+        private TrackedBody(final RigidBody body) {
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.broadphase.CollisionAlgorithm;
+import com.bulletphysics.collision.broadphase.CollisionAlgorithmConstructionInfo;
+import com.bulletphysics.collision.broadphase.DispatcherInfo;
+import com.bulletphysics.collision.dispatch.CollisionAlgorithmCreateFunc;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
+import com.bulletphysics.collision.dispatch.ManifoldResult;
+import com.bulletphysics.collision.narrowphase.ConvexPenetrationDepthSolver;
+import com.bulletphysics.collision.narrowphase.DiscreteCollisionDetectorInterface;
+import com.bulletphysics.collision.narrowphase.GjkEpaPenetrationDepthSolver;
+import com.bulletphysics.collision.narrowphase.GjkPairDetector;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.collision.narrowphase.SimplexSolverInterface;
+import com.bulletphysics.collision.narrowphase.VoronoiSimplexSolver;
+import com.bulletphysics.collision.shapes.ConvexShape;
+import com.bulletphysics.linearmath.IDebugDraw;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The default collision configuration, except that the collision algorithms of convex shapes can be used by several
+ * threads at once. By default, all of them share the same simplex and penetration depth solvers, which keep the state
+ * of the calculation they are in the middle of, so here every thread gets solvers of its own instead. The default
+ * algorithms also take their temporary objects from the pool of the thread which has created them rather than the
+ * one which is using them, so they are replaced with algorithms which have temporary objects of their own.
+ */
+public class ThreadSafeCollisionConfiguration extends DefaultCollisionConfiguration {
+
+    public ThreadSafeCollisionConfiguration() {
+        convexConvexCreateFunc = new ConvexConvexCreateFunc(new ThreadLocalSimplexSolver(),
+            new ThreadLocalPenetrationDepthSolver());
+    }
+
+    private static class ConvexConvexCreateFunc extends CollisionAlgorithmCreateFunc {
+
+        private final ObjectArrayList<ConvexConvexAlgorithm> pool = new ObjectArrayList<>();
+
+        private final SimplexSolverInterface simplexSolver;
+
+        private final ConvexPenetrationDepthSolver penetrationDepthSolver;
+
+        private ConvexConvexCreateFunc(final SimplexSolverInterface simplexSolver,
+            final ConvexPenetrationDepthSolver penetrationDepthSolver) {
+            this.simplexSolver = simplexSolver;
+            this.penetrationDepthSolver = penetrationDepthSolver;
+        }
+
+        @Override
+        public synchronized CollisionAlgorithm createCollisionAlgorithm(final CollisionAlgorithmConstructionInfo info,
+            final CollisionObject body0, final CollisionObject body1) {
+            final ConvexConvexAlgorithm algorithm = pool.isEmpty()
+                ? new ConvexConvexAlgorithm()
+                : pool.remove(pool.size() - 1);
+            algorithm.init(info, body0, body1, simplexSolver, penetrationDepthSolver);
+            return algorithm;
+        }
+
+        @Override
+        public synchronized void releaseCollisionAlgorithm(final CollisionAlgorithm algorithm) {
+            pool.add((ConvexConvexAlgorithm) algorithm);
+        }
+    }
+
+    /**
+     * The same as the default {@link com.bulletphysics.collision.dispatch.ConvexConvexAlgorithm}, including the contact
+     * manifold it shares with the algorithm which has created it (if any), but without continuous collision detection,
+     * which only the continuous dispatching (that none of the worlds here use) needs.
+     * <p>
+     * Its own manifold is created along with it (if its objects need to collide at all) rather than when it first
+     * processes its objects, because the manifolds of the world are solved in the order they have been created in, and
+     * the algorithms are created in a fixed order while they may process their objects in any order.
+     */
+    private static class ConvexConvexAlgorithm extends CollisionAlgorithm {
+
+        private final GjkPairDetector pairDetector = new GjkPairDetector();
+
+        private final DiscreteCollisionDetectorInterface.ClosestPointInput input =
+            new DiscreteCollisionDetectorInterface.ClosestPointInput();
+
+        private @Nullable PersistentManifold manifold = null;
+
+        private boolean ownManifold = false;
+
+        private void init(final CollisionAlgorithmConstructionInfo info, final CollisionObject body0,
+            final CollisionObject body1, final SimplexSolverInterface simplexSolver,
+            final ConvexPenetrationDepthSolver penetrationDepthSolver) {
+            super.init(info);
+            pairDetector.init(null, null, simplexSolver, penetrationDepthSolver);
+            ownManifold = info.manifold == null && dispatcher.needsCollision(body0, body1);
+            manifold = ownManifold ? dispatcher.getNewManifold(body0, body1) : info.manifold;
+        }
+
+        @Override
+        public void destroy() {
+            if (ownManifold && manifold != null) {
+                dispatcher.releaseManifold(manifold);
+            }
+            manifold = null;
+            ownManifold = false;
+        }
+
+        @Override
+        public void processCollision(final CollisionObject body0, final CollisionObject body1,
+            final DispatcherInfo dispatchInfo, final ManifoldResult resultOut) {
+            final @Nullable PersistentManifold manifold = this.manifold;
+            if (manifold == null) {
+                return;
+            }
+            resultOut.setPersistentManifold(manifold);
+
+            final var shape0 = (ConvexShape) body0.getCollisionShape();
+            final var shape1 = (ConvexShape) body1.getCollisionShape();
+            input.init();
+            pairDetector.setMinkowskiA(shape0);
+            pairDetector.setMinkowskiB(shape1);
+            final float maximumDistance = shape0.getMargin() + shape1.getMargin() +
+                manifold.getContactBreakingThreshold();
+            input.maximumDistanceSquared = maximumDistance * maximumDistance;
+            body0.getWorldTransform(input.transformA);
+            body1.getWorldTransform(input.transformB);
+            pairDetector.getClosestPoints(input, resultOut, dispatchInfo.debugDraw);
+
+            if (ownManifold) {
+                resultOut.refreshContactPoints();
+            }
+        }
+
+        @Override
+        public float calculateTimeOfImpact(final CollisionObject body0, final CollisionObject body1,
+            final DispatcherInfo dispatchInfo, final ManifoldResult resultOut) {
+            return 1f;
+        }
+
+        @Override
+        public void getAllContactManifolds(final ObjectArrayList<PersistentManifold> manifoldArray) {
+            if (manifold != null && ownManifold) {
+                manifoldArray.add(manifold);
+            }
+        }
+    }
+
+    private static class ThreadLocalSimplexSolver extends SimplexSolverInterface {
+
+        private final ThreadLocal<VoronoiSimplexSolver> solver = ThreadLocal.withInitial(VoronoiSimplexSolver::new);
+
+        @Override
+        public void reset() {
+            solver.get().reset();
+        }
+
+        @Override
+        public void addVertex(final Vector3f w, final Vector3f p, final Vector3f q) {
+            solver.get().addVertex(w, p, q);
+        }
+
+        @Override
+        public boolean closest(final Vector3f v) {
+            return solver.get().closest(v);
+        }
+
+        @Override
+        public float maxVertex() {
+            return solver.get().maxVertex();
+        }
+
+        @Override
+        public boolean fullSimplex() {
+            return solver.get().fullSimplex();
+        }
+
+        @Override
+        public int getSimplex(final Vector3f[] pBuf, final Vector3f[] qBuf, final Vector3f[] yBuf) {
+            return solver.get().getSimplex(pBuf, qBuf, yBuf);
+        }
+
+        @Override
+        public boolean inSimplex(final Vector3f w) {
+            return solver.get().inSimplex(w);
+        }
+
+        @Override
+        public void backup_closest(final Vector3f v) {
+            solver.get().backup_closest(v);
+        }
+
+        @Override
+        public boolean emptySimplex() {
+            return solver.get().emptySimplex();
+        }
+
+        @Override
+        public void compute_points(final Vector3f p1, final Vector3f p2) {
+            solver.get().compute_points(p1, p2);
+        }
+
+        @Override
+        public int numVertices() {
+            return solver.get().numVertices();
+        }
+    }
+
+    private static class ThreadLocalPenetrationDepthSolver extends ConvexPenetrationDepthSolver {
+
+        private final ThreadLocal<GjkEpaPenetrationDepthSolver> solver = ThreadLocal.withInitial(
+            GjkEpaPenetrationDepthSolver::new);
+
+        @Override
+        public boolean calcPenDepth(final SimplexSolverInterface simplexSolver, final ConvexShape convexA,
+            final ConvexShape convexB, final Transform transA, final Transform transB, final Vector3f v,
+            final Vector3f pa, final Vector3f pb, final IDebugDraw debugDraw) {
+            return solver.get().calcPenDepth(simplexSolver, convexA, convexB, transA, transB, v, pa, pb, debugDraw);
+        }
+    }
+}
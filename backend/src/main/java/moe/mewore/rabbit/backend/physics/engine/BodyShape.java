@@ -0,0 +1,43 @@
+package moe.mewore.rabbit.backend.physics.engine;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * The shape of a {@link PhysicsBody}, centered at the position of the body. It only describes the shape, so every
+ * {@link PhysicsEngine} can build its own kind of shape out of it.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class BodyShape {
+
+    public enum Type {
+        BOX,
+        SPHERE,
+        /**
+         * Upright, along the Y axis.
+         */
+        CYLINDER,
+    }
+
+    Type type;
+
+    float halfWidth;
+
+    float halfHeight;
+
+    float halfDepth;
+
+    public static BodyShape box(final float halfWidth, final float halfHeight, final float halfDepth) {
+        return new BodyShape(Type.BOX, halfWidth, halfHeight, halfDepth);
+    }
+
+    public static BodyShape sphere(final float radius) {
+        return new BodyShape(Type.SPHERE, radius, radius, radius);
+    }
+
+    public static BodyShape cylinder(final float radius, final float halfHeight) {
+        return new BodyShape(Type.CYLINDER, radius, halfHeight, radius);
+    }
+}
@@ -0,0 +1,61 @@
+package moe.mewore.rabbit.backend.physics.engine;
+
+import javax.vecmath.Vector3f;
+
+/**
+ * A handle of a rigid body in a {@link PhysicsEngine}. Everything the simulation keeps in its frames can be read and
+ * written through it, so the state of the body can be saved and restored.
+ */
+public interface PhysicsBody {
+
+    /**
+     * @param target The vector to write the position into.
+     * @return The target.
+     */
+    Vector3f getPosition(Vector3f target);
+
+    /**
+     * Moves the body and resets its rotation.
+     *
+     * @param position The new position of the body.
+     */
+    void setPosition(Vector3f position);
+
+    /**
+     * @param target The vector to write the velocity into.
+     * @return The target.
+     */
+    Vector3f getLinearVelocity(Vector3f target);
+
+    void setLinearVelocity(Vector3f velocity);
+
+    /**
+     * Wakes the body up if it has fallen asleep.
+     */
+    void activate();
+
+    /**
+     * @return Whether the body is awake or asleep (and whether it can fall asleep at all), as a value which only the
+     * engine needs to understand. It fits in a byte.
+     */
+    int getActivationState();
+
+    /**
+     * @param activationState A value returned by {@link PhysicsBody#getActivationState()}.
+     */
+    void setActivationState(int activationState);
+
+    /**
+     * @return How long the body has been still for, in seconds. It falls asleep once this is long enough.
+     */
+    float getDeactivationTime();
+
+    /**
+     * @param deactivationTime A value returned by {@link PhysicsBody#getDeactivationTime()}.
+     */
+    void setDeactivationTime(float deactivationTime);
+
+    void setFriction(float friction);
+
+    void setRestitution(float restitution);
+}
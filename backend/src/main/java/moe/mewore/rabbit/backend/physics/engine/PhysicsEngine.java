@@ -0,0 +1,86 @@
+package moe.mewore.rabbit.backend.physics.engine;
+
+import javax.vecmath.Vector3f;
+import java.util.List;
+import java.util.function.Consumer;
+
+import moe.mewore.rabbit.world.MazeMap;
+
+/**
+ * The physics simulation of a world, as far as the game needs it. Everything else about how it is done is up to the
+ * engine, so different ones can be swapped in and compared.
+ * <p>
+ * The world wraps around along the X and Z axes, so bodies near one of its edges have to collide with what is near
+ * the opposite edge as well.
+ */
+public interface PhysicsEngine {
+
+    void setGravity(Vector3f gravity);
+
+    /**
+     * Creates a body without adding it to the world. Dynamic bodies do not get any rotational inertia, so collisions
+     * do not make them rotate.
+     *
+     * @param shape     The shape of the body.
+     * @param mass      The mass of the body, or 0 if it is static.
+     * @param position  The initial position of the body.
+     * @param rotationY The initial rotation of the body around the Y axis, in radians.
+     * @return The new body.
+     */
+    PhysicsBody createBody(BodyShape shape, float mass, Vector3f position, float rotationY);
+
+    /**
+     * @param body A body created by this engine, which is not in the world yet.
+     */
+    void addBody(PhysicsBody body);
+
+    /**
+     * @param body A body in the world.
+     */
+    void removeBody(PhysicsBody body);
+
+    /**
+     * Adds the static walls of a map to the world.
+     *
+     * @param map The map the world is for.
+     */
+    void addWalls(MazeMap map);
+
+    /**
+     * Adds the static walls of a chunk of a larger world (see {@link moe.mewore.rabbit.world.ChunkedMazeWorld}), so
+     * that they can be removed again with {@link PhysicsEngine#removeBody(PhysicsBody)} when they are no longer needed.
+     *
+     * @param chunk   The chunk, as a map centered at the origin.
+     * @param offsetX Where the center of the chunk is in the world, along the X axis.
+     * @param offsetZ Where the center of the chunk is in the world, along the Z axis.
+     * @return The bodies of the walls, which are already in the world.
+     */
+    List<PhysicsBody> addChunkWalls(MazeMap chunk, float offsetX, float offsetZ);
+
+    /**
+     * Advances the world by a single step.
+     *
+     * @param deltaSeconds The duration of the step.
+     */
+    void step(float deltaSeconds);
+
+    /**
+     * Finds the closest thing which a ray hits.
+     *
+     * @param from   The start of the ray.
+     * @param to     The end of the ray.
+     * @param result Where to write the hit into. Left unchanged if nothing is hit.
+     * @return Whether anything has been hit.
+     */
+    boolean rayTest(Vector3f from, Vector3f to, RayHit result);
+
+    /**
+     * Goes through the contact points of a body, as of the last step. Does not allocate anything, and can be called
+     * for several bodies at once from different threads.
+     *
+     * @param body     A body in the world.
+     * @param consumer Given the normal of each contact, pointing towards the body. The same vector may be reused for
+     *                 the next contact, so it should not be kept.
+     */
+    void forEachContactNormal(PhysicsBody body, Consumer<Vector3f> consumer);
+}
@@ -0,0 +1,29 @@
+package moe.mewore.rabbit.backend.physics.engine;
+
+import javax.vecmath.Vector3f;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Where a ray has hit something. Meant to be reused for many ray tests.
+ */
+public class RayHit {
+
+    public final Vector3f point = new Vector3f();
+
+    /**
+     * The normal of the surface which has been hit, pointing towards the start of the ray.
+     */
+    public final Vector3f normal = new Vector3f();
+
+    /**
+     * How far along the ray the hit is, from 0 (at its start) to 1 (at its end).
+     */
+    public float fraction = 1f;
+
+    /**
+     * The body which has been hit, or {@code null} if it is not one which has been created through the engine (like
+     * the walls).
+     */
+    public @Nullable PhysicsBody body = null;
+}
@@ -21,6 +21,8 @@ public class ServerPhysicsDebug extends IDebugDraw {
 
     private final Color[] colors = new Color[MAX_LINE_COUNT];
 
+    private final Vector3f tmpTargetPoint = new Vector3f();
+
     private final float mapWidth;
 
     private final float mapDepth;
@@ -86,7 +88,8 @@ public class ServerPhysicsDebug extends IDebugDraw {
     @Override
     public void drawContactPoint(final Vector3f pointOnB, final Vector3f normalOnB, final float distance,
         final int lifeTime, final Vector3f color) {
-        final Vector3f targetPoint = new Vector3f(normalOnB);
+        final Vector3f targetPoint = tmpTargetPoint;
+        targetPoint.set(normalOnB);
         targetPoint.scale(distance);
         targetPoint.add(pointOnB);
         drawLine(pointOnB, targetPoint, color);
@@ -6,10 +6,13 @@ import java.awt.image.BufferedImage;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.dynamics.DynamicsWorld;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import moe.mewore.rabbit.backend.game.RabbitPlayer;
 import moe.mewore.rabbit.backend.game.RabbitWorld;
+import moe.mewore.rabbit.backend.physics.BulletPhysicsEngine;
 import moe.mewore.rabbit.world.MazeMap;
 
 public class ServerPreviewCanvas extends Canvas {
@@ -46,7 +49,7 @@ public class ServerPreviewCanvas extends Canvas {
 
     private static final Color TARGET_MOTION_COLOR = new Color(255, 100, 20, 150);
 
-    private final Transform tmpTransform = new Transform();
+    private final Vector3f tmpPosition = new Vector3f();
 
     private final Vector3f tmpVector3f = new Vector3f();
 
@@ -60,6 +63,11 @@ public class ServerPreviewCanvas extends Canvas {
 
     private final ServerPhysicsDebug debugDrawer;
 
+    /**
+     * Only JBullet worlds can be drawn for now.
+     */
+    private final @Nullable DynamicsWorld debugWorld;
+
     private int offsetX = 0;
 
     private int offsetY = 0;
@@ -81,7 +89,12 @@ public class ServerPreviewCanvas extends Canvas {
         image = new BufferedImage(mapImage.getWidth(), mapImage.getHeight(), BufferedImage.TYPE_INT_ARGB);
 
         debugDrawer = new ServerPhysicsDebug(map.getWidth(), map.getDepth(), imageWidth, imageHeight);
-        this.world.getPhysicsWorld().setDebugDrawer(debugDrawer);
+        debugWorld = world.getPhysics() instanceof BulletPhysicsEngine
+            ? ((BulletPhysicsEngine) world.getPhysics()).getWorld()
+            : null;
+        if (debugWorld != null) {
+            debugWorld.setDebugDrawer(debugDrawer);
+        }
     }
 
     private static double wrapNormalized(final double coordinate) {
@@ -103,7 +116,9 @@ public class ServerPreviewCanvas extends Canvas {
 
     public void updateOverlay() {
         debugDrawer.clear();
-        world.getPhysicsWorld().debugDrawWorld();
+        if (debugWorld != null) {
+            debugWorld.debugDrawWorld();
+        }
 
         final List<PlayerPreview> playerPreviews = makeCurrentPlayerPreviews();
         final int newPlayerPreviewHash = playerPreviews.hashCode();
@@ -211,7 +226,7 @@ public class ServerPreviewCanvas extends Canvas {
     }
 
     private PlayerPreview makePlayerPreview(final RabbitPlayer player) {
-        final var position = player.getPosition(tmpTransform);
+        final var position = player.getPosition(tmpPosition);
         final int x = (int) (wrapNormalized(position.x / map.getWidth() + 0.5) * image.getWidth());
         final int y = (int) (wrapNormalized(position.z / map.getDepth() + 0.5) * image.getHeight());
 
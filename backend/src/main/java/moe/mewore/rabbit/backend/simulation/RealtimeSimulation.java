@@ -7,11 +7,13 @@ import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import lombok.Getter;
+import lombok.Setter;
 import lombok.Synchronized;
 import moe.mewore.rabbit.backend.simulation.player.Player;
 import moe.mewore.rabbit.backend.simulation.player.PlayerInput;
@@ -64,9 +66,23 @@ public class RealtimeSimulation<I extends PlayerInput> {
      */
     private final List<Queue<I>> pendingInputsByPlayerId;
 
+    /**
+     * The input IDs that have been received, per player.
+     */
+    private final ReceivedInputWindow[] receivedInputWindows;
+
+    private final Object inputLock = new Object();
+
     @Getter
     private @Nullable List<PlayerInputEvent<I>> lastAppliedInputs;
 
+    /**
+     * Gives the number of milliseconds an input of a player (by index) may be late by. Inputs which are later than
+     * that are moved forward so that a player with a bad connection cannot cause unnecessarily long rollbacks.
+     */
+    @Setter
+    private @Nullable IntUnaryOperator maximumInputDelayByPlayerIndex = null;
+
     public RealtimeSimulation(final World<I, ?> world) {
         this.world = world;
         frames = new byte[FRAME_BUFFER_SIZE][world.getFrameSize()];
@@ -75,20 +91,57 @@ public class RealtimeSimulation<I extends PlayerInput> {
 
         relevantInputsByPlayerId = new ArrayList<>(world.getMaxPlayerCount());
         pendingInputsByPlayerId = new ArrayList<>(world.getMaxPlayerCount());
+        receivedInputWindows = new ReceivedInputWindow[world.getMaxPlayerCount()];
         for (int i = 0; i < world.getMaxPlayerCount(); i++) {
             relevantInputsByPlayerId.add(new PriorityQueue<>(INPUT_FRAME_COMPARATOR));
             pendingInputsByPlayerId.add(new PriorityQueue<>(INPUT_FRAME_COMPARATOR));
+            receivedInputWindows[i] = new ReceivedInputWindow();
         }
     }
 
+    /**
+     * Accepts an input of a player even if its ID has already been received, since a client re-sends an input with
+     * the same ID (but a corrected frame) when the server turns out not to have the one it expects.
+     *
+     * @param player The player the input is from.
+     * @param input  The input.
+     * @throws InterruptedException If interrupted while enqueueing the input.
+     */
     public void acceptInput(final Player<? extends I> player, final I input) throws InterruptedException {
         pendingInputs.put(new PlayerInputEvent<>(player.getIndex(), player.getUid(), input));
     }
 
+    /**
+     * Accepts several inputs of the same player at once. Since a batch may repeat inputs which have already been
+     * received (in a previous batch or in the same one), only the ones which are new are enqueued.
+     *
+     * @param player The player the inputs are from.
+     * @param inputs The inputs, in any order.
+     * @throws InterruptedException If interrupted while enqueueing the inputs.
+     */
+    public void acceptInputs(final Player<? extends I> player, final List<? extends I> inputs)
+        throws InterruptedException {
+        for (final I input : inputs) {
+            if (markAsReceived(player, input)) {
+                acceptInput(player, input);
+            }
+        }
+    }
+
+    /**
+     * Only the received inputs are tracked while holding the lock, so enqueueing them never blocks it.
+     *
+     * @return Whether the input is new.
+     */
+    @Synchronized("inputLock")
+    private boolean markAsReceived(final Player<? extends I> player, final I input) {
+        return receivedInputWindows[player.getIndex()].markAsReceived(player.getUid(), input.getId());
+    }
+
     @Synchronized
     private void applyInputEvent(final PlayerInputEvent<I> inputEvent) {
         final I input = inputEvent.getInput();
-        restrictInputFrame(input);
+        restrictInputFrame(input, inputEvent.getPlayerId());
 
         final int frameOffset = (int) (input.getFrameId() - world.getFrameId());
         assert frameOffset >= -FRAME_BUFFER_SIZE + FUTURE_FRAME_BUFFER + 2 && frameOffset <= FUTURE_FRAME_BUFFER :
@@ -114,15 +167,19 @@ public class RealtimeSimulation<I extends PlayerInput> {
         pendingInputsByPlayerId.get(playerId).add(input);
     }
 
-    private void restrictInputFrame(final I input) {
+    private void restrictInputFrame(final I input, final int playerIndex) {
         long inputFrame = input.getFrameId();
         inputFrame = Math.abs(input.getFrameId() - inputFrame) <= MAX_INPUT_FRAME_SHIFT
             ? input.getFrameId()
             : inputFrame + (inputFrame > input.getFrameId() ? -MAX_INPUT_FRAME_SHIFT : MAX_INPUT_FRAME_SHIFT);
 
         final long currentFrame = world.getFrameId();
-        inputFrame = Math.min(currentFrame + FUTURE_FRAME_BUFFER,
-            Math.max(currentFrame - FRAME_BUFFER_SIZE + FUTURE_FRAME_BUFFER + 2, Math.max(0, inputFrame)));
+        long minimumFrame = currentFrame - FRAME_BUFFER_SIZE + FUTURE_FRAME_BUFFER + 2;
+        if (maximumInputDelayByPlayerIndex != null) {
+            final int maximumInputDelay = maximumInputDelayByPlayerIndex.applyAsInt(playerIndex);
+            minimumFrame = Math.max(minimumFrame, currentFrame - (long) maximumInputDelay * FPS / 1000);
+        }
+        inputFrame = Math.min(currentFrame + FUTURE_FRAME_BUFFER, Math.max(minimumFrame, Math.max(0, inputFrame)));
 
         if (inputFrame != input.getFrameId()) {
             System.out.printf(
@@ -0,0 +1,51 @@
+package moe.mewore.rabbit.backend.simulation;
+
+/**
+ * Keeps track of which of the most recent input IDs of a single player have already been received, so that inputs
+ * which are sent more than once (for example, the redundant ones in a batch) are accepted only once.
+ */
+class ReceivedInputWindow {
+
+    private int playerUid = -1;
+
+    private int latestInputId;
+
+    /**
+     * Bit {@code i} is set if input {@code latestInputId - 1 - i} has been received.
+     */
+    private long receivedMask;
+
+    /**
+     * Marks an input as received.
+     *
+     * @param playerUid The UID of the player the input is from. If it is different from the last one, the window
+     *                  starts anew because the player slot has been taken by someone else.
+     * @param inputId   The ID of the input.
+     * @return Whether the input is new, i.e., whether it has <b>not</b> been received before. Inputs which are too old
+     * to be tracked are considered already received.
+     */
+    boolean markAsReceived(final int playerUid, final int inputId) {
+        if (playerUid != this.playerUid) {
+            this.playerUid = playerUid;
+            latestInputId = inputId;
+            receivedMask = 0L;
+            return true;
+        }
+        if (inputId > latestInputId) {
+            final long shift = (long) inputId - latestInputId;
+            receivedMask = shift > Long.SIZE ? 0L : ((receivedMask << 1) | 1L) << (shift - 1);
+            latestInputId = inputId;
+            return true;
+        }
+        final long age = (long) latestInputId - inputId - 1;
+        if (age < 0 || age >= Long.SIZE) {
+            return false;
+        }
+        final long bit = 1L << age;
+        if ((receivedMask & bit) != 0) {
+            return false;
+        }
+        receivedMask |= bit;
+        return true;
+    }
+}
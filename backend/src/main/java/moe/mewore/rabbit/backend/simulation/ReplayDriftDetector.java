@@ -0,0 +1,104 @@
+package moe.mewore.rabbit.backend.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import moe.mewore.rabbit.backend.simulation.player.PlayerInput;
+import moe.mewore.rabbit.backend.simulation.player.PlayerInputEvent;
+
+/**
+ * Checks whether rolling a world back and replaying it reproduces the frames it has already produced, the way
+ * {@link RealtimeSimulation} does it. Any state which the world does not save into its frames but which still affects
+ * its steps (like the caches of a physics engine) makes the replayed frames drift away from the original ones, which
+ * shows up as a difference in their hashes.
+ *
+ * @param <I> The type of the player inputs.
+ */
+public class ReplayDriftDetector<I extends PlayerInput> {
+
+    private static final Comparator<PlayerInput> INPUT_FRAME_COMPARATOR = Comparator.comparingLong(
+        PlayerInput::getFrameId);
+
+    private final World<I, ?> world;
+
+    private final float deltaSeconds;
+
+    /**
+     * @param world        The world to check. It is stepped, so it should not be used for anything else meanwhile.
+     * @param deltaSeconds The duration of each step.
+     */
+    public ReplayDriftDetector(final World<I, ?> world, final float deltaSeconds) {
+        this.world = world;
+        this.deltaSeconds = deltaSeconds;
+    }
+
+    /**
+     * @param frame A stored frame.
+     * @return A hash of the frame, which is equal for equal frames.
+     */
+    public static int hashFrame(final byte[] frame) {
+        return Arrays.hashCode(frame);
+    }
+
+    /**
+     * Steps the world forward while applying the recorded inputs, and then rolls it back to every
+     * {@code rollbackFrames}-th of the frames it has gone through and replays it from there. Unless there is a drift,
+     * the world is left at the last frame it has been stepped forward to.
+     *
+     * @param inputs         The recorded inputs, each one applied at its frame.
+     * @param frameCount     The number of frames to step the world forward by.
+     * @param rollbackFrames How many frames each rollback goes back by.
+     * @return The ID of the first replayed frame which is different from the original, or -1 if there is none.
+     */
+    public long findDrift(final List<PlayerInputEvent<I>> inputs, final int frameCount, final int rollbackFrames) {
+        if (frameCount <= 0 || rollbackFrames <= 0) {
+            throw new IllegalArgumentException(
+                "Cannot replay " + frameCount + " frames with rollbacks of " + rollbackFrames + " frames");
+        }
+        final long firstFrameId = world.getFrameId();
+        final byte[][] frames = new byte[frameCount + 1][world.getFrameSize()];
+        final int[] hashes = new int[frameCount + 1];
+        world.store(frames[0]);
+        hashes[0] = hashFrame(frames[0]);
+
+        List<Queue<I>> pendingInputs = queueInputs(inputs);
+        for (int i = 1; i <= frameCount; i++) {
+            world.applyInputs(pendingInputs, false);
+            world.doStep(deltaSeconds);
+            world.store(frames[i]);
+            hashes[i] = hashFrame(frames[i]);
+        }
+
+        final byte[] replayedFrame = new byte[world.getFrameSize()];
+        for (int start = frameCount - rollbackFrames; start >= 0; start -= rollbackFrames) {
+            pendingInputs = queueInputs(inputs);
+            world.load(frames[start]);
+            world.applyInputs(pendingInputs, true);
+            for (int i = start + 1; i <= start + rollbackFrames; i++) {
+                world.applyInputs(pendingInputs, false);
+                world.doStep(deltaSeconds);
+                world.store(replayedFrame);
+                if (hashFrame(replayedFrame) != hashes[i]) {
+                    return firstFrameId + i;
+                }
+            }
+        }
+        world.load(frames[frameCount]);
+        return -1;
+    }
+
+    private List<Queue<I>> queueInputs(final List<PlayerInputEvent<I>> inputs) {
+        final List<Queue<I>> result = new ArrayList<>(world.getMaxPlayerCount());
+        for (int i = 0; i < world.getMaxPlayerCount(); i++) {
+            result.add(new PriorityQueue<>(INPUT_FRAME_COMPARATOR));
+        }
+        for (final PlayerInputEvent<I> input : inputs) {
+            result.get(input.getPlayerId()).add(input.getInput());
+        }
+        return result;
+    }
+}
@@ -63,6 +63,29 @@ public class FrameSection {
         return target;
     }
 
+    /**
+     * Reads a vector from a frame without changing the frame or the index of this section, so unlike the other reads,
+     * it can be done on any thread.
+     *
+     * @param frame  The frame to read from.
+     * @param offset Where the vector is in this section, in bytes.
+     * @param target The vector to read into.
+     * @return The target vector.
+     */
+    public Vector3f peekVector3f(final byte[] frame, final int offset, final Vector3f target) {
+        final int start = from + offset;
+        assert start >= from && start + 3 * Float.BYTES <= to :
+            "The vector at " + offset + " should be within the section, which is " + (to - from) + " bytes long";
+        target.set(peekFloat(frame, start), peekFloat(frame, start + Float.BYTES),
+            peekFloat(frame, start + 2 * Float.BYTES));
+        return target;
+    }
+
+    private static float peekFloat(final byte[] frame, final int index) {
+        return Float.intBitsToFloat(((frame[index] & 0xff) << 24) | ((frame[index + 1] & 0xff) << 16) |
+            ((frame[index + 2] & 0xff) << 8) | (frame[index + 3] & 0xff));
+    }
+
     public void writeBoolean(final boolean value) {
         writeByte(value ? 1 : 0);
     }
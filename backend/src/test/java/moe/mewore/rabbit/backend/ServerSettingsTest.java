@@ -6,7 +6,9 @@ import java.util.Map;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ServerSettingsTest {
 
@@ -37,6 +39,78 @@ class ServerSettingsTest {
             Collections.emptyMap()).getExternalStaticLocation());
     }
 
+    @Test
+    void testGetMapCacheLocation() {
+        assertEquals("cache/maps", new ServerSettings(new String[]{"--rabbit.map.cache=cache/maps"},
+            Collections.emptyMap()).getMapCacheLocation());
+    }
+
+    @Test
+    void testGetMapCacheLocation_unset() {
+        assertNull(new ServerSettings(new String[]{}, Collections.emptyMap()).getMapCacheLocation());
+    }
+
+    @Test
+    void testIsDeterministicPhysics() {
+        assertTrue(new ServerSettings(new String[]{"--rabbit.physics.deterministic=true"},
+            Collections.emptyMap()).isDeterministicPhysics());
+    }
+
+    @Test
+    void testIsDeterministicPhysics_unset() {
+        assertFalse(new ServerSettings(new String[]{}, Collections.emptyMap()).isDeterministicPhysics());
+    }
+
+    @Test
+    void testIsParallelPhysics() {
+        assertTrue(new ServerSettings(new String[]{"--rabbit.physics.parallel=true"},
+            Collections.emptyMap()).isParallelPhysics());
+    }
+
+    @Test
+    void testIsParallelPhysics_unset() {
+        assertFalse(new ServerSettings(new String[]{}, Collections.emptyMap()).isParallelPhysics());
+    }
+
+    @Test
+    void testIsMazePhysics() {
+        assertTrue(new ServerSettings(new String[]{"--rabbit.physics.maze=true"},
+            Collections.emptyMap()).isMazePhysics());
+    }
+
+    @Test
+    void testIsMazePhysics_unset() {
+        assertFalse(new ServerSettings(new String[]{}, Collections.emptyMap()).isMazePhysics());
+    }
+
+    @Test
+    void testGetDistanceFieldSamplesPerCell() {
+        assertEquals(4, new ServerSettings(new String[]{"--rabbit.distanceField.samplesPerCell=4"},
+            Collections.emptyMap()).getDistanceFieldSamplesPerCell());
+    }
+
+    @Test
+    void testGetDistanceFieldSamplesPerCell_unset() {
+        assertEquals(0, new ServerSettings(new String[]{}, Collections.emptyMap()).getDistanceFieldSamplesPerCell());
+    }
+
+    @Test
+    void testGetDistanceFieldSamplesPerCell_invalid() {
+        assertEquals(0, new ServerSettings(new String[]{"--rabbit.distanceField.samplesPerCell=-1"},
+            Collections.emptyMap()).getDistanceFieldSamplesPerCell());
+    }
+
+    @Test
+    void testGetChunkRadius() {
+        assertEquals(3, new ServerSettings(new String[]{"--rabbit.map.chunkRadius=3"},
+            Collections.emptyMap()).getChunkRadius());
+    }
+
+    @Test
+    void testGetChunkRadius_unset() {
+        assertEquals(0, new ServerSettings(new String[]{}, Collections.emptyMap()).getChunkRadius());
+    }
+
     @Test
     void testGetExternalStaticLocation_unset() {
         assertNull(new ServerSettings(new String[]{}, Collections.emptyMap()).getExternalStaticLocation());
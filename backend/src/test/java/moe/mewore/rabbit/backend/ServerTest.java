@@ -4,18 +4,24 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -32,9 +38,13 @@ import moe.mewore.rabbit.backend.messages.MessageType;
 import moe.mewore.rabbit.backend.mock.FakeMap;
 import moe.mewore.rabbit.backend.mock.ws.FakeWsSession;
 import moe.mewore.rabbit.backend.mutations.MutationType;
+import moe.mewore.rabbit.backend.mutations.PlayerInputBatchMutation;
 import moe.mewore.rabbit.backend.physics.PhysicsDummyBox;
 import moe.mewore.rabbit.backend.physics.PhysicsDummySphere;
 import moe.mewore.rabbit.backend.simulation.RealtimeSimulation;
+import moe.mewore.rabbit.noise.DiamondSquareNoise;
+import moe.mewore.rabbit.world.ChunkedMazeWorld;
+import moe.mewore.rabbit.world.WorldProperties;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -48,7 +58,9 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -66,12 +78,17 @@ class ServerTest {
     @Mock
     private RealtimeSimulation<RabbitPlayerInput> worldSimulation;
 
+    @Captor
+    private ArgumentCaptor<List<RabbitPlayerInput>> inputCaptor;
+
     private RabbitPlayer firstPlayer;
 
     private RabbitPlayer secondPlayer;
 
     private ScheduledExecutorService threadPool;
 
+    private ExecutorService chunkGenerator;
+
     private Javalin javalin;
 
     @BeforeEach
@@ -81,8 +98,9 @@ class ServerTest {
         secondPlayer = mock(RabbitPlayer.class);
         world = mock(RabbitWorld.class);
         threadPool = mock(ScheduledExecutorService.class);
+        chunkGenerator = mock(ExecutorService.class);
         server = new Server(new ServerSettings(new String[0], Map.of()), javalin, new FakeMap(), world, worldSimulation,
-            threadPool);
+            threadPool, chunkGenerator);
     }
 
     @Test
@@ -92,7 +110,7 @@ class ServerTest {
         final ArgumentCaptor<Long> rateCaptor = ArgumentCaptor.forClass(Long.class);
         verify(threadPool, times(2)).scheduleAtFixedRate(any(), eq(0L), rateCaptor.capture(),
             same(TimeUnit.MILLISECONDS));
-        assertEquals(List.of(100L, 33L), rateCaptor.getAllValues());
+        assertEquals(List.of(50L, 33L), rateCaptor.getAllValues());
 
         verify(javalin).start(8100);
     }
@@ -112,6 +130,7 @@ class ServerTest {
         server.stop();
 
         verify(threadPool).shutdown();
+        verify(chunkGenerator).shutdownNow();
         verify(javalin).stop();
     }
 
@@ -241,6 +260,35 @@ class ServerTest {
         verify(thread).interrupt();
     }
 
+    @Test
+    void testHandleBinaryMessage_playerInputBatch() throws InterruptedException {
+        final var session = new FakeWsSession("session");
+        when(world.getBoxes()).thenReturn(NO_BOXES);
+        simulateConnect(session);
+        when(world.createPlayer(anyBoolean())).thenReturn(firstPlayer);
+        when(firstPlayer.getUsername()).thenReturn("");
+        simulateJoin(session);
+
+        simulateBinaryData(session, new PlayerInputBatchMutation(
+            List.of(new RabbitPlayerInput(1, 0, 0f, 10L), new RabbitPlayerInput(2, 0, 0f, 11L))).encodeToBinary());
+
+        verify(worldSimulation).acceptInputs(same(firstPlayer), inputCaptor.capture());
+        assertEquals(List.of(1, 2),
+            inputCaptor.getValue().stream().map(RabbitPlayerInput::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testHandleBinaryMessage_playerInputBatch_noPlayer() {
+        final var session = new FakeWsSession("session");
+        when(world.getBoxes()).thenReturn(NO_BOXES);
+        simulateConnect(session);
+
+        final byte[] data = new PlayerInputBatchMutation(List.of()).encodeToBinary();
+        final Exception exception = assertThrows(IllegalArgumentException.class,
+            () -> simulateBinaryData(session, data));
+        assertEquals("There is no player for session session", exception.getMessage());
+    }
+
     @Test
     void testHandleBinaryMessage_heartbeat() {
         final var session = new FakeWsSession("session");
@@ -278,6 +326,147 @@ class ServerTest {
         assertEquals("There is no mutation type with index 25", exception.getMessage());
     }
 
+    @Test
+    void testHandleBinaryMessage_negativeMutationType() {
+        when(world.getBoxes()).thenReturn(NO_BOXES);
+        final var session = new FakeWsSession("session");
+        simulateConnect(session);
+        final Exception exception = assertThrows(IllegalArgumentException.class,
+            () -> simulateBinaryData(session, new byte[]{-3}));
+        assertEquals("There is no mutation type with index -3", exception.getMessage());
+    }
+
+    @Test
+    void testHandleBinaryMessage_chunkRequest() {
+        final var session = new FakeWsSession("session");
+        joinChunkedWorld(session);
+        simulateChunkRequest(session, 1, -62);
+
+        final ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(chunkGenerator).execute(taskCaptor.capture());
+        taskCaptor.getValue().run();
+        assertEquals(List.of(MessageType.MAP_DATA, MessageType.UPDATE, MessageType.JOIN, MessageType.CHUNK_DATA),
+            session.getSentMessageTypes());
+        final byte[] chunkData = session.getSentData().get(3);
+        // The chunk coordinates are wrapped around
+        assertEquals(1, chunkData[4]);
+        assertEquals(-1, chunkData[8]);
+    }
+
+    @Test
+    void testHandleBinaryMessage_chunkRequest_tooFar() {
+        final var session = new FakeWsSession("session");
+        joinChunkedWorld(session);
+        simulateChunkRequest(session, 25, 0);
+
+        verify(chunkGenerator, never()).execute(any());
+    }
+
+    @Test
+    void testHandleBinaryMessage_chunkRequest_queued() {
+        final var session = new FakeWsSession("session");
+        joinChunkedWorld(session);
+        simulateChunkRequest(session, 1, 1);
+        // The same chunk, which is already waiting to be sent
+        simulateChunkRequest(session, -60, 1);
+
+        final ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(chunkGenerator).execute(taskCaptor.capture());
+        taskCaptor.getValue().run();
+        simulateChunkRequest(session, 1, 1);
+        verify(chunkGenerator, times(2)).execute(any());
+    }
+
+    @Test
+    void testHandleBinaryMessage_chunkRequest_tooManyQueued() {
+        final var session = new FakeWsSession("session");
+        joinChunkedWorld(session);
+        for (int i = -5; i < 5; i++) {
+            simulateChunkRequest(session, i, 0);
+        }
+
+        verify(chunkGenerator, times(8)).execute(any());
+    }
+
+    @Test
+    void testHandleBinaryMessage_chunkRequest_rejected() {
+        final var session = new FakeWsSession("session");
+        joinChunkedWorld(session);
+        doThrow(new RejectedExecutionException()).doNothing().when(chunkGenerator).execute(any());
+        simulateChunkRequest(session, 1, 1);
+        simulateChunkRequest(session, 1, 1);
+
+        verify(chunkGenerator, times(2)).execute(any());
+    }
+
+    @Test
+    void testHandleBinaryMessage_chunkRequest_nothingPublished() {
+        final var session = new FakeWsSession("session");
+        when(world.getBoxes()).thenReturn(NO_BOXES);
+        simulateConnect(session);
+        when(world.createPlayer(anyBoolean())).thenReturn(firstPlayer);
+        when(firstPlayer.getUsername()).thenReturn("");
+        simulateJoin(session);
+        when(world.getChunkedWorld()).thenReturn(makeChunkedWorld());
+        simulateChunkRequest(session, 0, 0);
+
+        verify(chunkGenerator, never()).execute(any());
+    }
+
+    @Test
+    void testHandleBinaryMessage_chunkRequest_noPlayer() {
+        final var session = new FakeWsSession("session");
+        when(world.getBoxes()).thenReturn(NO_BOXES);
+        simulateConnect(session);
+        when(world.getChunkedWorld()).thenReturn(makeChunkedWorld());
+        final Exception exception = assertThrows(IllegalArgumentException.class,
+            () -> simulateChunkRequest(session, 0, 0));
+        assertEquals("There is no player for session session", exception.getMessage());
+    }
+
+    @Test
+    void testHandleBinaryMessage_chunkRequest_noChunks() {
+        final var session = new FakeWsSession("session");
+        when(world.getBoxes()).thenReturn(NO_BOXES);
+        simulateConnect(session);
+        final Exception exception = assertThrows(IllegalArgumentException.class,
+            () -> simulateChunkRequest(session, 0, 0));
+        assertEquals("The world is not made of chunks, so there are none to request", exception.getMessage());
+    }
+
+    /**
+     * Connects a session to a world made of chunks, sends it an update and then has it join with a player at the
+     * origin, as far as the last update is concerned.
+     */
+    private void joinChunkedWorld(final FakeWsSession session) {
+        when(world.getBoxes()).thenReturn(NO_BOXES);
+        simulateConnect(session);
+        when(worldSimulation.getCurrentSnapshot()).thenReturn(new byte[0]);
+        when(world.getSpheres()).thenReturn(new PhysicsDummySphere[0]);
+        server.updateWorld();
+
+        when(world.createPlayer(anyBoolean())).thenReturn(firstPlayer);
+        when(firstPlayer.getUsername()).thenReturn("");
+        simulateJoin(session);
+        when(firstPlayer.readPosition(any(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(world.getChunkedWorld()).thenReturn(makeChunkedWorld());
+    }
+
+    private static ChunkedMazeWorld makeChunkedWorld() {
+        return new ChunkedMazeWorld(new WorldProperties("seed", 20, 16, 2.5, 2.5, 3, 3, ""),
+            seed -> DiamondSquareNoise.createSeamless(3, new Random(seed), 1.0, 2.5), 30, 4);
+    }
+
+    @Test
+    void testHandleBinaryMessage_withOffset() {
+        final var session = new FakeWsSession("session");
+        when(world.createPlayer(anyBoolean())).thenReturn(firstPlayer);
+        when(firstPlayer.getUsername()).thenReturn("");
+        final byte[] data = new byte[]{25, 25, MutationType.PLAYER_JOIN.getIndex(), 1, 25};
+        server.handleBinaryMessage(new WsBinaryMessageContext(session.getId(), session, data, 2, 2));
+        verify(world).createPlayer(true);
+    }
+
     @Test
     void testHandleBinaryMessage_join_alreadyConnected() {
         final var session = new FakeWsSession("session");
@@ -410,6 +599,20 @@ class ServerTest {
         simulateBinaryData(session, byteArrayOutputStream.toByteArray());
     }
 
+    private void simulateChunkRequest(final FakeWsSession session, final int chunkX, final int chunkZ) {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        byteArrayOutputStream.write(MutationType.CHUNK_REQUEST.getIndex());
+        final DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+        writeInt(dataOutputStream, chunkX);
+        writeInt(dataOutputStream, chunkZ);
+        simulateBinaryData(session, byteArrayOutputStream.toByteArray());
+    }
+
+    @SneakyThrows
+    private static void writeInt(final DataOutputStream output, final int value) {
+        output.writeInt(value);
+    }
+
     @SneakyThrows
     private void simulateBinaryData(final FakeWsSession session, final byte[] data) {
         server.handleBinaryMessage(new WsBinaryMessageContext(session.getId(), session, data, 0, data.length));
@@ -1,13 +1,14 @@
 package moe.mewore.rabbit.backend.game;
 
 import javax.vecmath.Vector2f;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
+import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
 
+import moe.mewore.rabbit.data.ByteArrayDataInput;
+import moe.mewore.rabbit.data.ByteArrayDataOutput;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -24,15 +25,27 @@ class RabbitPlayerInputTest {
     }
 
     @Test
-    void testDecodeEncode() throws IOException {
-        final byte[] initialData = new byte[Integer.BYTES + Long.BYTES + 1 + Float.BYTES];
+    void testDecodeEncode() {
+        final byte[] initialData = new byte[1 + 1 + 1 + Float.BYTES];
         Arrays.fill(initialData, (byte) 25);
-        final RabbitPlayerInput decoded = RabbitPlayerInput.decodeFromBinary(
-            new DataInputStream(new ByteArrayInputStream(initialData)));
+        final RabbitPlayerInput decoded = RabbitPlayerInput.decodeFromBinary(new ByteArrayDataInput(initialData));
         final byte[] encoded = decoded.encodeToBinary();
         assertArrayEquals(encoded, initialData);
     }
 
+    @Test
+    void testDecodeEncode_withBaseFrameId() {
+        final RabbitPlayerInput input = new RabbitPlayerInput(-1, RabbitPlayerInput.INPUT_UP_BIT, .5f, 1000000L);
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        input.appendToBinaryOutput(new ByteArrayDataOutput(byteArrayOutputStream), 1000003L);
+        final byte[] encoded = byteArrayOutputStream.toByteArray();
+        assertEquals(1 + 1 + 1 + Float.BYTES, encoded.length);
+
+        final RabbitPlayerInput decoded = RabbitPlayerInput.decodeFromBinary(new ByteArrayDataInput(encoded), 1000003L);
+        assertEquals(-1, decoded.getId());
+        assertEquals(1000000L, decoded.getFrameId());
+    }
+
     @Test
     void testApplyToTargetHorizontalMotion() {
         final RabbitPlayerInput input = new RabbitPlayerInput(0, RabbitPlayerInput.INPUT_UP_BIT, 1f, 0);
@@ -2,19 +2,17 @@ package moe.mewore.rabbit.backend.game;
 
 import javax.vecmath.Vector3f;
 
-import com.bulletphysics.collision.dispatch.CollisionWorld;
-import com.bulletphysics.dynamics.RigidBody;
-
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import moe.mewore.rabbit.backend.physics.RigidBodyController;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.world.MazeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyDouble;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -25,7 +23,7 @@ class RabbitPlayerTest {
 
     private RabbitPlayer player;
 
-    private CollisionWorld world;
+    private PhysicsEngine physics;
 
     private RigidBodyController controller;
 
@@ -36,9 +34,9 @@ class RabbitPlayerTest {
 
     @BeforeEach
     void setUp() {
-        world = mock(CollisionWorld.class);
+        physics = mock(PhysicsEngine.class);
         controller = mock(RigidBodyController.class);
-        player = new RabbitPlayer(25, 0, "Player", true, world, mock(RigidBody.class), controller);
+        player = new RabbitPlayer(25, 0, "Player", true, physics, mock(PhysicsBody.class), controller);
     }
 
     @Test
@@ -54,7 +52,7 @@ class RabbitPlayerTest {
         player.beforePhysics(1f);
         verify(controller).setTargetHorizontalMotion(any());
         verify(controller, never()).jump();
-        verify(controller).updateAction(same(world), eq(1f));
+        verify(controller).updateAction(1f);
     }
 
     @Test
@@ -75,7 +73,7 @@ class RabbitPlayerTest {
         when(map.wrapZ(anyDouble())).thenReturn(3.0);
         player.afterPhysics(map);
 
-        verify(controller).afterPhysics(same(world));
+        verify(controller).afterPhysics(same(physics));
         verify(controller).setPosition(same(position));
         assertEquals("(2.00, 100.00, 3.00)", String.format("(%.2f, %.2f, %.2f)", position.x, position.y, position.z));
     }
@@ -1,16 +1,30 @@
 package moe.mewore.rabbit.backend.game;
 
+import javax.vecmath.Vector3f;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import moe.mewore.rabbit.backend.physics.BulletPhysicsEngine;
+import moe.mewore.rabbit.backend.physics.MazePhysicsEngine;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
+import moe.mewore.rabbit.backend.simulation.ReplayDriftDetector;
 import moe.mewore.rabbit.backend.simulation.data.FrameSerializationTestUtil;
+import moe.mewore.rabbit.backend.simulation.player.PlayerInputEvent;
 import moe.mewore.rabbit.world.MazeMap;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -28,10 +42,12 @@ class RabbitWorldIT {
 
     @Test
     void testSerialization() {
-        final var world = new RabbitWorld(1, map, RabbitWorld.createPhysicsWorld());
+        final var world = new RabbitWorld(1, map,
+            new BulletPhysicsEngine(BulletPhysicsEngine.createWorld(), 1f, 1f));
         world.createPlayer(true);
 
-        final var otherWorld = new RabbitWorld(1, map, RabbitWorld.createPhysicsWorld());
+        final var otherWorld = new RabbitWorld(1, map,
+            new BulletPhysicsEngine(BulletPhysicsEngine.createWorld(), 1f, 1f));
         final var player = otherWorld.createPlayer(false);
         assertNotNull(player);
         final var input = new RabbitPlayerInput(1,
@@ -44,4 +60,134 @@ class RabbitWorldIT {
         FrameSerializationTestUtil.testSerialization(() -> new byte[world.getFrameSize()],
             world.getHeaderFrameSection(), otherWorld.getHeaderFrameSection(), world, otherWorld);
     }
+
+    /**
+     * @return A map without any walls. It is not mocked because a mocked map allocates whenever it is called.
+     */
+    private static MazeMap emptyMap() {
+        return emptyMap(25);
+    }
+
+    private static MazeMap emptyMap(final int cellsPerSide) {
+        return new MazeMap(4.0, new boolean[cellsPerSide][cellsPerSide], Collections.emptyList(),
+            new int[cellsPerSide][cellsPerSide][0]) {
+        };
+    }
+
+    private static BulletPhysicsEngine makeDeterministicPhysics(final MazeMap realMap, final boolean parallel) {
+        final var physicsWorld = BulletPhysicsEngine.createWorld(realMap, parallel);
+        physicsWorld.setDeterministic(true);
+        physicsWorld.setParallel(parallel);
+        return new BulletPhysicsEngine(physicsWorld, realMap.getWidth(), realMap.getDepth());
+    }
+
+    private static void assertReplaysWithoutDrift(final MazeMap realMap, final PhysicsEngine physics) {
+        final var world = new RabbitWorld(2, realMap, physics);
+        world.initialize();
+        final var firstPlayer = world.createPlayer(true);
+        final var secondPlayer = world.createPlayer(false);
+        assertNotNull(firstPlayer);
+        assertNotNull(secondPlayer);
+
+        final List<PlayerInputEvent<RabbitPlayerInput>> inputs = new ArrayList<>();
+        final var random = new Random(11L);
+        for (int frame = 0; frame < 300; frame += 15) {
+            inputs.add(new PlayerInputEvent<>(0, firstPlayer.getUid(),
+                new RabbitPlayerInput(frame, (byte) random.nextInt(32), random.nextFloat() * 6f, frame)));
+            inputs.add(new PlayerInputEvent<>(1, secondPlayer.getUid(),
+                new RabbitPlayerInput(frame, (byte) random.nextInt(32), random.nextFloat() * 6f, frame)));
+        }
+        assertEquals(-1L, new ReplayDriftDetector<>(world, 1f / 60f).findDrift(inputs, 300, 7));
+    }
+
+    @Test
+    void testReplay_deterministic() {
+        final MazeMap realMap = emptyMap();
+        assertReplaysWithoutDrift(realMap, makeDeterministicPhysics(realMap, false));
+    }
+
+    @Test
+    void testReplay_deterministicParallel() {
+        final MazeMap realMap = emptyMap();
+        assertReplaysWithoutDrift(realMap, makeDeterministicPhysics(realMap, true));
+    }
+
+    @Test
+    void testReplay_mazePhysics() {
+        final MazeMap realMap = emptyMap();
+        assertReplaysWithoutDrift(realMap, new MazePhysicsEngine(realMap.getWidth(), realMap.getDepth()));
+    }
+
+    @Test
+    @Tag("allocation")
+    void testDoStep_noAllocations() {
+        assertNoAllocationsPerStep(false);
+    }
+
+    @Test
+    @Tag("allocation")
+    void testDoStep_noAllocations_deterministic() {
+        assertNoAllocationsPerStep(true);
+    }
+
+    private static void assertNoAllocationsPerStep(final boolean deterministic) {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        // 1000 by 1000, so that there is room for the players far away from the seams and from the dummy boxes
+        final MazeMap realMap = emptyMap(250);
+        final var physicsWorld = BulletPhysicsEngine.createWorld(realMap);
+        physicsWorld.setDeterministic(deterministic);
+        final var world = new RabbitWorld(2, realMap,
+            new BulletPhysicsEngine(physicsWorld, realMap.getWidth(), realMap.getDepth()));
+        world.initialize();
+        final var firstPlayer = world.createPlayer(true);
+        final var secondPlayer = world.createPlayer(false);
+        assertNotNull(firstPlayer);
+        assertNotNull(secondPlayer);
+        // Idle players fall asleep, after which the physics world is not stepped at all, so the players keep running.
+        // They do not jump and they run where there is nothing to run into, because JBullet allocates whenever it
+        // resolves a deep penetration (like a landing or the players spawning inside each other).
+        final var input = new RabbitPlayerInput(1, RabbitPlayerInput.INPUT_UP_BIT, (float) (Math.PI * .5), 0L);
+        world.applyInputs(List.of(new ArrayDeque<>(List.of(input)), new ArrayDeque<>(List.of(input))), false);
+        final var firstStart = new Vector3f(-80f, 5f, 350f);
+        final var secondStart = new Vector3f(-80f, 5f, -350f);
+        for (int i = 0; i < 2000; i++) {
+            if (i % 100 == 0) {
+                firstPlayer.getBody().setPosition(firstStart);
+                secondPlayer.getBody().setPosition(secondStart);
+            }
+            world.doStep(1f / 60f);
+        }
+
+        // Requesting the C2 compilation of a method makes the JVM resolve the string constants of its class on this
+        // thread, which allocates them once. Only steps during which nothing has been compiled are measured, and the
+        // allocationTest task runs these tests with -Xbatch so that such a compilation also finishes within the steps
+        // that have requested it.
+        final var compilationBean = ManagementFactory.getCompilationMXBean();
+        assumeTrue(compilationBean != null && compilationBean.isCompilationTimeMonitoringSupported());
+        final long threadId = Thread.currentThread().getId();
+        for (int window = 0; window < 50; window++) {
+            // Each window of steps takes the players less than 170 units away from where they start
+            firstPlayer.getBody().setPosition(firstStart);
+            secondPlayer.getBody().setPosition(secondStart);
+            assertTrue(isAwake(firstPlayer) && isAwake(secondPlayer));
+            final long compilationTimeBefore = compilationBean.getTotalCompilationTime();
+            final long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 100; i++) {
+                world.doStep(1f / 60f);
+            }
+            final long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            if (compilationBean.getTotalCompilationTime() == compilationTimeBefore) {
+                assertEquals(0L, allocated);
+                return;
+            }
+        }
+        fail("Something has been compiled during each of the 50 windows of 100 steps after the warm-up");
+    }
+
+    private static boolean isAwake(final RabbitPlayer player) {
+        return ((BulletPhysicsEngine.BulletBody) player.getBody()).getRigidBody().isActive();
+    }
 }
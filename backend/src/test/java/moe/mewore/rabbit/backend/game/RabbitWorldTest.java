@@ -3,13 +3,12 @@ package moe.mewore.rabbit.backend.game;
 import javax.vecmath.Vector3f;
 import java.util.Collections;
 
-import com.bulletphysics.dynamics.DynamicsWorld;
-import com.bulletphysics.dynamics.RigidBody;
-import com.bulletphysics.linearmath.Transform;
-
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import moe.mewore.rabbit.backend.physics.engine.BodyShape;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.world.MazeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -17,11 +16,11 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -30,7 +29,7 @@ class RabbitWorldTest {
 
     private MazeMap map;
 
-    private DynamicsWorld physicsWorld;
+    private PhysicsEngine physics;
 
     private RabbitWorld world;
 
@@ -41,32 +40,35 @@ class RabbitWorldTest {
         when(map.getDepth()).thenReturn(1f);
         when(map.getWalls()).thenReturn(Collections.emptyList());
 
-        physicsWorld = mock(DynamicsWorld.class);
+        physics = mock(PhysicsEngine.class);
+        when(physics.createBody(any(), anyFloat(), any(), anyFloat())).thenAnswer(
+            invocation -> mock(PhysicsBody.class));
 
-        world = new RabbitWorld(2, map, physicsWorld);
+        world = new RabbitWorld(2, map, physics);
     }
 
     @Test
     void testInitialize() {
-        verify(physicsWorld, never()).addRigidBody(any());
+        verify(physics, never()).addBody(any());
         world.initialize();
-        verify(physicsWorld, times(25)).addRigidBody(any());
+        verify(physics, times(25)).addBody(any());
+        verify(physics).addWalls(same(map));
     }
 
     @Test
     void testGetPlayers() {
-        assertEquals(Collections.emptyMap(), new RabbitWorld(1, map, physicsWorld).getPlayersAsMap());
+        assertEquals(Collections.emptyMap(), new RabbitWorld(1, map, physics).getPlayersAsMap());
     }
 
     @Test
     void testCreatePlayer() {
-        final RabbitPlayer player = new RabbitWorld(1, map, physicsWorld).createPlayer(true);
+        final RabbitPlayer player = new RabbitWorld(1, map, physics).createPlayer(true);
         assertNotNull(player);
         assertEquals("Player 1", player.getUsername());
         assertEquals(0, player.getIndex());
         assertTrue(player.isReisen());
-        assertEquals(new Vector3f(0f, 5f, 0f), player.getBody().getWorldTransform(new Transform()).origin);
-        verify(physicsWorld, only()).addRigidBody(same((RigidBody) player.getBody()));
+        verify(physics).createBody(BodyShape.cylinder(3f, 5f), 1f, new Vector3f(0f, 5f, 0f), 0f);
+        verify(physics).addBody(same(player.getBody()));
     }
 
     @Test
@@ -77,23 +79,25 @@ class RabbitWorldTest {
 
         world.removePlayer(player);
         assertTrue(world.getPlayersAsMap().isEmpty());
-        verify(physicsWorld).removeCollisionObject(same(player.getBody()));
+        verify(physics).removeBody(same(player.getBody()));
     }
 
     @Test
     void testGetFrameSize() {
-        assertEquals(172, new RabbitWorld(2, map, physicsWorld).getFrameSize());
+        assertEquals(198, new RabbitWorld(2, map, physics).getFrameSize());
     }
 
     @Test
     void testDoStep() {
         world.doStep(.25f);
-        verify(physicsWorld, only()).stepSimulation(.25f, 0, .25f);
+        verify(physics).step(.25f);
+        assertEquals(1L, world.getFrameId());
     }
 
     @Test
     void testDoStep_brokenWorld() {
-        doThrow(new NullPointerException("oof")).when(physicsWorld).stepSimulation(.25f, 0, .25f);
+        doThrow(new NullPointerException("oof")).when(physics).step(.25f);
         world.doStep(.25f);
+        assertEquals(1L, world.getFrameId());
     }
 }
@@ -1,12 +1,11 @@
 package moe.mewore.rabbit.backend.messages;
 
-import com.bulletphysics.collision.dispatch.CollisionObject;
-import com.bulletphysics.collision.dispatch.CollisionWorld;
-
 import org.junit.jupiter.api.Test;
 
 import moe.mewore.rabbit.backend.game.RabbitPlayer;
 import moe.mewore.rabbit.backend.physics.RigidBodyController;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
@@ -15,7 +14,7 @@ class PlayerJoinMessageTest {
 
     @Test
     void testEncode() {
-        final var player = new RabbitPlayer(1, 1, "User", true, mock(CollisionWorld.class), mock(CollisionObject.class),
+        final var player = new RabbitPlayer(1, 1, "User", true, mock(PhysicsEngine.class), mock(PhysicsBody.class),
             mock(RigidBodyController.class));
         assertEquals(15, new PlayerJoinMessage(player, false).encodeToBinary().length);
     }
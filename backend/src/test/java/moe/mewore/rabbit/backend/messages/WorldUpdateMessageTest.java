@@ -29,7 +29,7 @@ class WorldUpdateMessageTest {
         when(world.getMaxPlayerCount()).thenReturn(2);
         when(world.getSpheres()).thenReturn(new PhysicsDummySphere[10]);
 
-        assertEquals(59,
+        assertEquals(21,
             new WorldUpdateMessage(world, List.of(new PlayerInputEvent<>(1, 125, new RabbitPlayerInput(4, 0, 0, 124L))),
                 new byte[1]).encodeToBinary().length);
     }
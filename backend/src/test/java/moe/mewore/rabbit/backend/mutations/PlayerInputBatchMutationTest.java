@@ -0,0 +1,44 @@
+package moe.mewore.rabbit.backend.mutations;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import moe.mewore.rabbit.backend.game.RabbitPlayerInput;
+import moe.mewore.rabbit.data.ByteArrayDataInput;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PlayerInputBatchMutationTest {
+
+    @Test
+    void testDecodeEncode() {
+        final byte[] encoded = new PlayerInputBatchMutation(
+            List.of(new RabbitPlayerInput(1, 2, .5f, 3L), new RabbitPlayerInput(4, 5, .25f, 6L))).encodeToBinary();
+        assertEquals(MutationType.PLAYER_INPUT_BATCH.getIndex(), encoded[0]);
+
+        final PlayerInputBatchMutation decoded = PlayerInputBatchMutation.decodeFromBinary(
+            new ByteArrayDataInput(Arrays.copyOfRange(encoded, 1, encoded.length)));
+        assertEquals(List.of(1, 4),
+            decoded.getInputs().stream().map(RabbitPlayerInput::getId).collect(Collectors.toList()));
+        assertArrayEquals(encoded, decoded.encodeToBinary());
+    }
+
+    @Test
+    void testEncode() {
+        final var inputs = List.of(RabbitPlayerInput.EMPTY, RabbitPlayerInput.EMPTY, RabbitPlayerInput.EMPTY);
+        assertEquals(2 + 1 + 7 * 3, new PlayerInputBatchMutation(inputs).encodeToBinary().length);
+    }
+
+    @Test
+    void testEncode_tooManyInputs() {
+        final var mutation = new PlayerInputBatchMutation(
+            Arrays.asList(new RabbitPlayerInput[PlayerInputBatchMutation.MAX_INPUT_COUNT + 1]));
+        final Exception exception = assertThrows(IllegalStateException.class, mutation::encodeToBinary);
+        assertEquals("Cannot encode 256 inputs; the maximum is 255", exception.getMessage());
+    }
+}
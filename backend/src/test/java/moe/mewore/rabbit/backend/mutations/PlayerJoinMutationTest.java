@@ -1,23 +1,21 @@
 package moe.mewore.rabbit.backend.mutations;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
 
+import moe.mewore.rabbit.data.ByteArrayDataInput;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class PlayerJoinMutationTest {
 
     @Test
-    void testDecodeEncode() throws IOException {
+    void testDecodeEncode() {
         final byte[] initialData = new byte[]{1};
 
-        final PlayerJoinMutation decoded = PlayerJoinMutation.decodeFromBinary(
-            new DataInputStream(new ByteArrayInputStream(initialData)));
+        final PlayerJoinMutation decoded = PlayerJoinMutation.decodeFromBinary(new ByteArrayDataInput(initialData));
 
         final byte[] encoded = decoded.encodeToBinary();
         assertArrayEquals(Arrays.copyOfRange(encoded, 1, encoded.length), initialData);
@@ -23,11 +23,14 @@ class HeartTest {
     @Mock
     private Consumer<Integer> latencyConsumer;
 
+    @Mock
+    private Consumer<Integer> jitterConsumer;
+
     private Heart heart;
 
     @BeforeEach
     void setUp() {
-        heart = new Heart(latencyConsumer);
+        heart = new Heart(latencyConsumer, jitterConsumer);
     }
 
     @Test
@@ -52,11 +55,38 @@ class HeartTest {
         final var integerCaptor = ArgumentCaptor.forClass(Integer.class);
         verify(latencyConsumer).accept(integerCaptor.capture());
         assertTrue(integerCaptor.getValue() > 0);
+        verify(jitterConsumer).accept(any());
+    }
+
+    @Test
+    void testReceive_jitter() throws InterruptedException {
+        final Integer first = heart.prepareBeat();
+        assertNotNull(first);
+        Thread.sleep(50);
+        heart.receive(first);
+
+        final var jitterCaptor = ArgumentCaptor.forClass(Integer.class);
+        verify(jitterConsumer).accept(jitterCaptor.capture());
+        // The RTT estimate starts at 200 ms with no deviation; a ~50 ms sample makes the deviation ~150 / 4 = ~37 ms,
+        // which is ~18 ms when halved like the latency
+        final int jitter = jitterCaptor.getValue();
+        assertTrue(jitter >= 12 && jitter <= 18, "The jitter should be ~18 ms but it is " + jitter + " ms");
+        assertEquals(1, heart.getRttEstimator().getSampleCount());
+    }
+
+    @Test
+    void testReceive_twice() {
+        final Integer first = heart.prepareBeat();
+        assertNotNull(first);
+        heart.receive(first);
+        heart.receive(first);
+        verify(latencyConsumer).accept(any());
     }
 
     @Test
     void testReceive_invalidId() {
         heart.receive(-1);
         verify(latencyConsumer, never()).accept(any());
+        verify(jitterConsumer, never()).accept(any());
     }
 }
@@ -1,6 +1,8 @@
 package moe.mewore.rabbit.backend.net;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.BiConsumer;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -14,6 +16,7 @@ import lombok.NonNull;
 import moe.mewore.rabbit.backend.game.RabbitPlayer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
@@ -105,6 +108,35 @@ class MultiPlayerHeartTest {
         verify(player).setLatency(anyInt());
     }
 
+    @Test
+    void testGetStatistics() {
+        final RabbitPlayer player = mock(RabbitPlayer.class);
+        when(player.getIndex()).thenReturn(1);
+        heart.addPlayer(player);
+
+        final Map<Integer, RttStatistics> statistics = heart.getStatistics();
+        assertEquals(Set.of(1), statistics.keySet());
+        assertEquals(200, statistics.get(1).getSmoothedRtt());
+        assertEquals(0, statistics.get(1).getSampleCount());
+    }
+
+    @Test
+    void testGetMaximumInputDelay() {
+        final RabbitPlayer player = mock(RabbitPlayer.class);
+        when(player.getIndex()).thenReturn(0);
+        heart.addPlayer(player);
+        assertEquals(Integer.MAX_VALUE, heart.getMaximumInputDelay(0));
+        assertEquals(Integer.MAX_VALUE, heart.getMaximumInputDelay(1));
+
+        heart.doStep();
+        final var beatIdCaptor = ArgumentCaptor.forClass(Integer.class);
+        verify(sendFunction).accept(eq(0), beatIdCaptor.capture());
+        heart.receive(player, beatIdCaptor.getValue());
+        final int maximumInputDelay = heart.getMaximumInputDelay(0);
+        assertTrue(maximumInputDelay >= 250 && maximumInputDelay < 1000,
+            "The maximum input delay should be reasonable but it is " + maximumInputDelay);
+    }
+
     @Test
     void testReceive_noSuchPlayer() {
         final RabbitPlayer player = mock(RabbitPlayer.class);
@@ -0,0 +1,100 @@
+package moe.mewore.rabbit.backend.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RttEstimatorTest {
+
+    @Test
+    void testInitialState() {
+        final var estimator = new RttEstimator(200);
+        assertEquals(200, estimator.getSmoothedRtt());
+        assertEquals(0, estimator.getRttDeviation());
+        assertEquals(200, estimator.getPercentile(.99));
+        assertEquals(200, estimator.getHighPercentile());
+        assertEquals(0, estimator.getSampleCount());
+    }
+
+    @Test
+    void testAddSample() {
+        final var estimator = new RttEstimator(200);
+        estimator.addSample(120);
+        assertEquals(190, estimator.getSmoothedRtt());
+        assertEquals(20, estimator.getRttDeviation());
+    }
+
+    @Test
+    void testAddSample_converges() {
+        final var estimator = new RttEstimator(200);
+        for (int i = 0; i < 100; i++) {
+            estimator.addSample(i % 2 == 0 ? 40 : 60);
+        }
+        assertTrue(Math.abs(estimator.getSmoothedRtt() - 50) <= 2, "RTT: " + estimator.getSmoothedRtt());
+        assertTrue(Math.abs(estimator.getRttDeviation() - 10) <= 2, "Deviation: " + estimator.getRttDeviation());
+    }
+
+    @Test
+    void testGetPercentile() {
+        final var estimator = new RttEstimator(200);
+        for (int i = 1; i <= 100; i++) {
+            estimator.addSample(i == 100 ? 1000 : 50);
+        }
+        // Only the last 64 samples are in the histogram and one of them is the spike
+        assertEquals(55, estimator.getPercentile(.5));
+        assertEquals(55, estimator.getPercentile(.95));
+        assertEquals(1005, estimator.getPercentile(.99));
+        assertEquals(1005, estimator.getHighPercentile());
+    }
+
+    @Test
+    void testGetPercentile_tooLarge() {
+        final var estimator = new RttEstimator(200);
+        estimator.addSample(1000000);
+        assertEquals(RttEstimator.BUCKET_COUNT * RttEstimator.BUCKET_WIDTH, estimator.getPercentile(.5));
+    }
+
+    @Test
+    void testGetPercentile_windowIsRolling() {
+        final var estimator = new RttEstimator(200);
+        estimator.addSample(1000);
+        for (int i = 0; i < RttEstimator.WINDOW_SIZE; i++) {
+            estimator.addSample(10);
+        }
+        assertEquals(15, estimator.getPercentile(1));
+    }
+
+    @Test
+    void testAddSample_parallel() throws Exception {
+        final var estimator = new RttEstimator(100);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        estimator.addSample(100);
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(4000, estimator.getSampleCount());
+        assertEquals(100, estimator.getSmoothedRtt());
+        assertEquals(105, estimator.getPercentile(.5));
+        final RttStatistics statistics = estimator.getStatistics();
+        assertEquals(105, statistics.getP99());
+        assertEquals(4000, statistics.getSampleCount());
+    }
+}
@@ -0,0 +1,66 @@
+package moe.mewore.rabbit.backend.net;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import moe.mewore.rabbit.backend.game.RabbitPlayerInput;
+import moe.mewore.rabbit.backend.simulation.player.PlayerInputEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpdateScheduleTest {
+
+    @Test
+    void testGetTicksPerUpdate() {
+        assertEquals(1, UpdateSchedule.getTicksPerUpdate(30, 10));
+        assertEquals(2, UpdateSchedule.getTicksPerUpdate(Heart.DEFAULT_LATENCY, 0));
+        assertEquals(2, UpdateSchedule.getTicksPerUpdate(60, 30));
+        assertEquals(3, UpdateSchedule.getTicksPerUpdate(100, 60));
+        assertEquals(6, UpdateSchedule.getTicksPerUpdate(2000, 0));
+    }
+
+    @Test
+    void testGetSnapshotDelay() {
+        assertEquals(300, UpdateSchedule.getSnapshotDelay(200, 0));
+        assertEquals(320, UpdateSchedule.getSnapshotDelay(200, 10));
+    }
+
+    @Test
+    void testTick_lowLatency() {
+        final var schedule = new UpdateSchedule();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(schedule.tick(10, 0, null));
+        }
+    }
+
+    @Test
+    void testTick_highLatency() {
+        final var schedule = new UpdateSchedule();
+        assertTrue(schedule.tick(250, 0, null));
+        assertFalse(schedule.tick(250, 0, null));
+        assertFalse(schedule.tick(250, 0, null));
+        assertTrue(schedule.tick(250, 0, null));
+        assertFalse(schedule.tick(250, 0, null));
+    }
+
+    @Test
+    void testCollectInputs() {
+        final var schedule = new UpdateSchedule();
+        final var firstInputs = List.of(new PlayerInputEvent<>(0, 1, new RabbitPlayerInput(1, 0, 0f, 10L)));
+        final var secondInputs = List.of(new PlayerInputEvent<>(0, 1, new RabbitPlayerInput(2, 0, 0f, 11L)));
+
+        assertTrue(schedule.tick(150, 0, firstInputs));
+        assertSame(firstInputs, schedule.collectInputs(firstInputs));
+
+        assertFalse(schedule.tick(150, 0, secondInputs));
+        assertTrue(schedule.tick(150, 0, null));
+        final List<PlayerInputEvent<RabbitPlayerInput>> collected = schedule.collectInputs(null);
+        assertEquals(secondInputs, collected);
+        assertNull(schedule.collectInputs(null));
+    }
+}
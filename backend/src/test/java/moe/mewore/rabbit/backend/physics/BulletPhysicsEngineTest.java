@@ -0,0 +1,161 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Vector3f;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
+import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
+import com.bulletphysics.dynamics.DynamicsWorld;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.util.ObjectArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import moe.mewore.rabbit.backend.physics.engine.BodyShape;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.RayHit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulletPhysicsEngineTest {
+
+    private static DynamicsWorld makeWorldWithObject(final boolean isStaticOrKinematic, final boolean isActive) {
+        final var world = mock(DynamicsWorld.class);
+        final var object = mock(CollisionObject.class);
+        when(object.isStaticOrKinematicObject()).thenReturn(isStaticOrKinematic);
+        when(object.isActive()).thenReturn(isActive);
+        final ObjectArrayList<CollisionObject> objects = new ObjectArrayList<>();
+        objects.add(object);
+        when(world.getNumCollisionObjects()).thenReturn(1);
+        when(world.getCollisionObjectArray()).thenReturn(objects);
+        return world;
+    }
+
+    /**
+     * @return A sphere resting on a ground box, in a world which has already been stepped once.
+     */
+    private static PhysicsBody addSphereOnGround(final BulletPhysicsEngine physics) {
+        physics.addBody(physics.createBody(BodyShape.box(50f, 1f, 50f), 0f, new Vector3f(0f, -1f, 0f), 0f));
+        final PhysicsBody sphere = physics.createBody(BodyShape.sphere(1f), 1f, new Vector3f(0f, .9f, 0f), 0f);
+        physics.addBody(sphere);
+        physics.step(1f / 60f);
+        return sphere;
+    }
+
+    private static List<Vector3f> getContactNormals(final BulletPhysicsEngine physics, final PhysicsBody body) {
+        final List<Vector3f> result = new ArrayList<>();
+        physics.forEachContactNormal(body, normal -> result.add(new Vector3f(normal)));
+        return result;
+    }
+
+    @Test
+    void testStep() {
+        final DynamicsWorld world = makeWorldWithObject(false, true);
+        new BulletPhysicsEngine(world, 100f, 100f).step(.25f);
+        verify(world).stepSimulation(.25f, 0, .25f);
+    }
+
+    @Test
+    void testStep_asleep() {
+        final DynamicsWorld world = makeWorldWithObject(false, false);
+        new BulletPhysicsEngine(world, 100f, 100f).step(.25f);
+        verify(world, never()).stepSimulation(anyFloat(), anyInt(), anyFloat());
+    }
+
+    @Test
+    void testStep_onlyStaticObjectsAwake() {
+        final DynamicsWorld world = makeWorldWithObject(true, true);
+        new BulletPhysicsEngine(world, 100f, 100f).step(.25f);
+        verify(world, never()).stepSimulation(anyFloat(), anyInt(), anyFloat());
+    }
+
+    @Test
+    void testCreateBody() {
+        final var physics = new BulletPhysicsEngine(mock(DynamicsWorld.class), 100f, 100f);
+        final PhysicsBody body = physics.createBody(BodyShape.cylinder(1f, 2f), 1f, new Vector3f(1f, 2f, 3f), 0f);
+        assertEquals(new Vector3f(1f, 2f, 3f), body.getPosition(new Vector3f()));
+
+        body.setPosition(new Vector3f(4f, 5f, 6f));
+        assertEquals(new Vector3f(4f, 5f, 6f), body.getPosition(new Vector3f()));
+    }
+
+    @Test
+    void testAddBody_deterministic() {
+        final var world = (FixedDiscreteDynamicWorld) BulletPhysicsEngine.createWorld();
+        world.setDeterministic(true);
+        final var physics = new BulletPhysicsEngine(world, 100f, 100f);
+        final PhysicsBody body = physics.createBody(BodyShape.sphere(1f), 1f, new Vector3f(), 0f);
+        physics.addBody(body);
+        assertEquals(CollisionObject.DISABLE_DEACTIVATION, body.getActivationState());
+        assertEquals(1, world.getNumCollisionObjects());
+    }
+
+    @Test
+    void testRemoveBody() {
+        final DynamicsWorld world = BulletPhysicsEngine.createWorld();
+        final var physics = new BulletPhysicsEngine(world, 100f, 100f);
+        final PhysicsBody body = physics.createBody(BodyShape.sphere(1f), 1f, new Vector3f(), 0f);
+        physics.addBody(body);
+        physics.removeBody(body);
+        assertEquals(0, world.getNumCollisionObjects());
+    }
+
+    @Test
+    void testForEachContactNormal() {
+        final var physics = new BulletPhysicsEngine(BulletPhysicsEngine.createWorld(), 100f, 100f);
+        final List<Vector3f> normals = getContactNormals(physics, addSphereOnGround(physics));
+        assertFalse(normals.isEmpty());
+        for (final Vector3f normal : normals) {
+            assertTrue(normal.y > .99f, "The normal " + normal + " should point up, towards the sphere");
+        }
+    }
+
+    @Test
+    void testForEachContactNormal_noContactTracker() {
+        final var configuration = new DefaultCollisionConfiguration();
+        final var world = new DiscreteDynamicsWorld(new CollisionDispatcher(configuration), new DbvtBroadphase(),
+            new SequentialImpulseConstraintSolver(), configuration);
+        final var physics = new BulletPhysicsEngine(world, 100f, 100f);
+        final List<Vector3f> normals = getContactNormals(physics, addSphereOnGround(physics));
+        assertFalse(normals.isEmpty());
+        for (final Vector3f normal : normals) {
+            assertTrue(normal.y > .99f, "The normal " + normal + " should point up, towards the sphere");
+        }
+    }
+
+    @Test
+    void testRayTest() {
+        final var physics = new BulletPhysicsEngine(BulletPhysicsEngine.createWorld(), 100f, 100f);
+        final PhysicsBody sphere = addSphereOnGround(physics);
+        final var hit = new RayHit();
+        assertTrue(physics.rayTest(new Vector3f(0f, 10f, 0f), new Vector3f(0f, -10f, 0f), hit));
+        assertSame(sphere, hit.body);
+        assertTrue(hit.point.y > 1f && hit.point.y < 3f, "The ray should have hit the top of the sphere");
+        assertTrue(hit.normal.y > .99f);
+        assertTrue(hit.fraction > 0f && hit.fraction < .5f);
+    }
+
+    @Test
+    void testRayTest_miss() {
+        final var physics = new BulletPhysicsEngine(BulletPhysicsEngine.createWorld(), 100f, 100f);
+        addSphereOnGround(physics);
+        final var hit = new RayHit();
+        assertFalse(physics.rayTest(new Vector3f(0f, 10f, 0f), new Vector3f(0f, 5f, 0f), hit));
+        assertNull(hit.body);
+        assertEquals(1f, hit.fraction);
+    }
+}
@@ -0,0 +1,83 @@
+package moe.mewore.rabbit.backend.physics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import moe.mewore.rabbit.noise.DiamondSquareNoise;
+import moe.mewore.rabbit.world.ChunkedMazeWorld;
+import moe.mewore.rabbit.world.WorldProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkWallsTest {
+
+    private BulletPhysicsEngine physics;
+
+    private ChunkedMazeWorld chunkedWorld;
+
+    private ChunkWalls chunkWalls;
+
+    @BeforeEach
+    void setUp() {
+        // Each chunk is 2000 by 1600 and the whole world is 6000 by 4800
+        chunkedWorld = new ChunkedMazeWorld(new WorldProperties("seed", 20, 16, 100.0, 2.5, 3, 3, ""),
+            seed -> DiamondSquareNoise.createSeamless(3, new Random(seed), 1.0, 2.5), 1, 4);
+        physics = new BulletPhysicsEngine(BulletPhysicsEngine.createWorld(chunkedWorld, false),
+            chunkedWorld.getWidth(), chunkedWorld.getDepth());
+        chunkWalls = new ChunkWalls(chunkedWorld, physics, Runnable::run);
+    }
+
+    @Test
+    void testUpdate() {
+        chunkWalls.update(new float[]{0f, 0f}, 1);
+        assertEquals(1, chunkWalls.getLoadedChunkCount());
+        final int chunkObjectCount = physics.getWorld().getNumCollisionObjects();
+        assertTrue(chunkObjectCount > 0);
+
+        // Close enough to the next chunk to load it, but not far enough from the first one to unload it
+        chunkWalls.update(new float[]{1700f, 0f}, 1);
+        assertEquals(2, chunkWalls.getLoadedChunkCount());
+
+        // Far enough from the first chunk to unload it
+        chunkWalls.update(new float[]{2500f, 0f}, 1);
+        assertEquals(1, chunkWalls.getLoadedChunkCount());
+    }
+
+    @Test
+    void testUpdate_acrossSeam() {
+        // The chunk at -1 is loaded from across the seam of the world
+        chunkWalls.update(new float[]{2900f, 0f}, 1);
+        assertEquals(2, chunkWalls.getLoadedChunkCount());
+    }
+
+    @Test
+    void testUpdate_noPoints() {
+        chunkWalls.update(new float[]{0f, 0f, 2900f, 0f}, 2);
+        assertEquals(3, chunkWalls.getLoadedChunkCount());
+
+        // The coordinates after the points are ignored
+        chunkWalls.update(new float[]{0f, 0f}, 0);
+        assertEquals(0, chunkWalls.getLoadedChunkCount());
+        assertEquals(0, physics.getWorld().getNumCollisionObjects());
+    }
+
+    @Test
+    void testUpdate_notGenerated() {
+        final List<Runnable> tasks = new ArrayList<>();
+        chunkWalls = new ChunkWalls(chunkedWorld, physics, tasks::add);
+        // Inside the chunk at 1, which is not generated yet, and too far from the one at 0 to add its walls
+        chunkWalls.update(new float[]{1500f, 0f}, 1);
+        assertEquals(0, chunkWalls.getLoadedChunkCount());
+        assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+        chunkWalls.update(new float[]{1500f, 0f}, 1);
+        assertEquals(1, chunkWalls.getLoadedChunkCount());
+        assertEquals(2, chunkedWorld.getCachedChunkCount());
+    }
+}
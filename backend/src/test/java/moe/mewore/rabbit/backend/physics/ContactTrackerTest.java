@@ -0,0 +1,104 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.dispatch.CollisionFlags;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.collision.shapes.BoxShape;
+import com.bulletphysics.collision.shapes.SphereShape;
+import com.bulletphysics.dynamics.DynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContactTrackerTest {
+
+    private DynamicsWorld world;
+
+    private ContactTracker contactTracker;
+
+    private RigidBody ground;
+
+    private final ObjectArrayList<PersistentManifold> manifolds = new ObjectArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        world = BulletPhysicsEngine.createWorld();
+        final var tracker = ((FixedDiscreteDynamicWorld) world).getContactTracker();
+        assertNotNull(tracker);
+        contactTracker = tracker;
+
+        ground = new RigidBody(0f, new DefaultMotionState(), new BoxShape(new Vector3f(50f, 1f, 50f)));
+        ground.setCollisionFlags(CollisionFlags.STATIC_OBJECT);
+        world.addRigidBody(ground);
+    }
+
+    private RigidBody makeSphere(final float x) {
+        final var transform = new Transform();
+        transform.setIdentity();
+        transform.origin.set(x, 1.9f, 0f);
+        return new RigidBody(1f, new DefaultMotionState(transform), new SphereShape(1f));
+    }
+
+    private void step() {
+        world.stepSimulation(1f / 60f, 0, 1f / 60f);
+    }
+
+    @Test
+    void testGetContactManifolds() {
+        final var sphere = makeSphere(0f);
+        contactTracker.track(sphere);
+        world.addRigidBody(sphere);
+        world.addRigidBody(makeSphere(20f));
+        step();
+
+        contactTracker.getContactManifolds(sphere, world.getPairCache(), manifolds);
+        assertEquals(1, manifolds.size());
+        final PersistentManifold manifold = manifolds.getQuick(0);
+        assertTrue(manifold.getBody0() == sphere || manifold.getBody1() == sphere);
+        assertTrue(manifold.getBody0() == ground || manifold.getBody1() == ground);
+    }
+
+    @Test
+    void testGetContactManifolds_untracked() {
+        final var sphere = makeSphere(0f);
+        world.addRigidBody(sphere);
+        step();
+
+        manifolds.add(null);
+        contactTracker.getContactManifolds(sphere, world.getPairCache(), manifolds);
+        assertEquals(0, manifolds.size());
+    }
+
+    @Test
+    void testGetContactManifolds_removedPartner() {
+        final var sphere = makeSphere(0f);
+        contactTracker.track(sphere);
+        world.addRigidBody(sphere);
+        step();
+
+        world.removeRigidBody(ground);
+        contactTracker.getContactManifolds(sphere, world.getPairCache(), manifolds);
+        assertEquals(0, manifolds.size());
+    }
+
+    @Test
+    void testUntrack() {
+        final var sphere = makeSphere(0f);
+        contactTracker.track(sphere);
+        world.addRigidBody(sphere);
+        step();
+
+        contactTracker.untrack(sphere);
+        contactTracker.getContactManifolds(sphere, world.getPairCache(), manifolds);
+        assertEquals(0, manifolds.size());
+    }
+}
@@ -1,8 +1,12 @@
 package moe.mewore.rabbit.backend.physics;
 
+import javax.vecmath.Vector3f;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.bulletphysics.collision.shapes.BvhTriangleMeshShape;
+import com.bulletphysics.collision.shapes.CompoundShape;
+
 import org.junit.jupiter.api.Test;
 
 import moe.mewore.rabbit.geometry.ConvexPolygon;
@@ -11,13 +15,13 @@ import moe.mewore.rabbit.world.MazeMap;
 import moe.mewore.rabbit.world.MazeWall;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 class ForestWallsTest {
 
-    @Test
-    void testGenerate() {
+    private static MazeMap makeMap() {
         final MazeMap map = mock(MazeMap.class);
         final List<MazeWall> walls = new ArrayList<>();
         walls.add(new MazeWall(0, 0, 1, 1,
@@ -25,8 +29,65 @@ class ForestWallsTest {
         walls.add(new MazeWall(0, 0, 2, 2,
             new ConvexPolygon(List.of(new Vector2(0, 1), new Vector2(2, 2), new Vector2(1, 0)))));
         when(map.getWalls()).thenReturn(walls);
+        return map;
+    }
+
+    private static MazeMap makeLargeMap() {
+        final MazeMap map = mock(MazeMap.class);
+        when(map.getWidth()).thenReturn(160f);
+        when(map.getDepth()).thenReturn(160f);
+        when(map.getColumnCount()).thenReturn(16);
+        when(map.getRowCount()).thenReturn(16);
+        final List<MazeWall> walls = new ArrayList<>();
+        // Two walls in the top-left block and one in the bottom-right one
+        walls.add(new MazeWall(0, 0, 0, 0, new ConvexPolygon(
+            List.of(new Vector2(.1f, .1f), new Vector2(.1f, .2f), new Vector2(.2f, .2f), new Vector2(.2f, .1f)))));
+        walls.add(new MazeWall(0, 0, 0, 0,
+            new ConvexPolygon(List.of(new Vector2(.3f, .3f), new Vector2(.4f, .3f), new Vector2(.35f, .4f)))));
+        walls.add(new MazeWall(0, 0, 0, 0, new ConvexPolygon(
+            List.of(new Vector2(.8f, .8f), new Vector2(.8f, .9f), new Vector2(.9f, .9f), new Vector2(.9f, .8f)))));
+        when(map.getWalls()).thenReturn(walls);
+        return map;
+    }
+
+    @Test
+    void testGenerate() {
+        final ForestWalls forestWalls = ForestWalls.generate(makeMap());
+        assertEquals(2, forestWalls.getBodies().length);
+    }
 
-        final ForestWalls forestWalls = ForestWalls.generate(map);
+    @Test
+    void testGenerate_compoundGrid() {
+        final ForestWalls forestWalls = ForestWalls.generate(makeLargeMap(), ForestWalls.Layout.COMPOUND_GRID);
         assertEquals(2, forestWalls.getBodies().length);
+
+        final var firstBlock = (CompoundShape) forestWalls.getBodies()[0].getCollisionShape();
+        assertEquals(2, firstBlock.getNumChildShapes());
+        final var min = new Vector3f();
+        final var max = new Vector3f();
+        forestWalls.getBodies()[1].getAabb(min, max);
+        assertEquals(48f, min.x, 1f);
+        assertEquals(64f, max.z, 1f);
+        assertEquals(500f, max.y, 1f);
+    }
+
+    @Test
+    void testGenerate_triangleMesh() {
+        final ForestWalls forestWalls = ForestWalls.generate(makeLargeMap(), ForestWalls.Layout.TRIANGLE_MESH);
+        assertEquals(1, forestWalls.getBodies().length);
+        assertTrue(forestWalls.getBodies()[0].getCollisionShape() instanceof BvhTriangleMeshShape);
+
+        final var min = new Vector3f();
+        final var max = new Vector3f();
+        forestWalls.getBodies()[0].getAabb(min, max);
+        assertEquals(-64f, min.x, 1f);
+        assertEquals(64f, max.z, 1f);
+    }
+
+    @Test
+    void testGenerate_triangleMesh_noWalls() {
+        final MazeMap map = mock(MazeMap.class);
+        when(map.getWalls()).thenReturn(List.of());
+        assertEquals(0, ForestWalls.generate(map, ForestWalls.Layout.TRIANGLE_MESH).getBodies().length);
     }
 }
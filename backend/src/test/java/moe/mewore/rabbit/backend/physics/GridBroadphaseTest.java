@@ -0,0 +1,150 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.broadphase.BroadphaseNativeType;
+import com.bulletphysics.collision.broadphase.BroadphaseProxy;
+import com.bulletphysics.collision.broadphase.CollisionFilterGroups;
+import com.bulletphysics.collision.broadphase.Dispatcher;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class GridBroadphaseTest {
+
+    private GridBroadphase broadphase;
+
+    private Dispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        // 10x10 cells which are 10 units wide, from -50 to 50
+        broadphase = new GridBroadphase(100f, 100f, 10, 10);
+        dispatcher = mock(Dispatcher.class);
+    }
+
+    private BroadphaseProxy addDynamic(final float x, final float z, final float halfSize) {
+        return add(x, z, halfSize, CollisionFilterGroups.DEFAULT_FILTER, CollisionFilterGroups.ALL_FILTER);
+    }
+
+    private BroadphaseProxy addStatic(final float x, final float z, final float halfSize) {
+        return add(x, z, halfSize, CollisionFilterGroups.STATIC_FILTER,
+            (short) (CollisionFilterGroups.ALL_FILTER ^ CollisionFilterGroups.STATIC_FILTER));
+    }
+
+    private BroadphaseProxy add(final float x, final float z, final float halfSize, final short group,
+        final short mask) {
+        return broadphase.createProxy(new Vector3f(x - halfSize, 0f, z - halfSize),
+            new Vector3f(x + halfSize, 1f, z + halfSize), BroadphaseNativeType.BOX_SHAPE_PROXYTYPE, new Object(),
+            group, mask, dispatcher, null);
+    }
+
+    private void move(final BroadphaseProxy proxy, final float x, final float z, final float halfSize) {
+        broadphase.setAabb(proxy, new Vector3f(x - halfSize, 0f, z - halfSize),
+            new Vector3f(x + halfSize, 1f, z + halfSize), dispatcher);
+    }
+
+    private int getPairCount() {
+        return broadphase.getOverlappingPairCache().getNumOverlappingPairs();
+    }
+
+    @Test
+    void testInvalidGrid() {
+        assertThrows(IllegalArgumentException.class, () -> new GridBroadphase(100f, 100f, 0, 10));
+    }
+
+    @Test
+    void testCalculateOverlappingPairs() {
+        final var first = addDynamic(1f, 1f, 2f);
+        final var second = addDynamic(3f, 3f, 2f);
+        addDynamic(20f, 20f, 2f);
+        broadphase.calculateOverlappingPairs(dispatcher);
+        assertEquals(1, getPairCount());
+        assertNotNull(broadphase.getOverlappingPairCache().findPair(first, second));
+    }
+
+    @Test
+    void testCalculateOverlappingPairs_static() {
+        addStatic(1f, 1f, 2f);
+        addStatic(3f, 3f, 2f);
+        broadphase.calculateOverlappingPairs(dispatcher);
+        assertEquals(0, getPairCount());
+
+        addDynamic(2f, 2f, 1f);
+        broadphase.calculateOverlappingPairs(dispatcher);
+        assertEquals(2, getPairCount());
+    }
+
+    @Test
+    void testCalculateOverlappingPairs_large() {
+        final var ground = addStatic(0f, 0f, 200f);
+        final var dynamic = addDynamic(-45f, 45f, 1f);
+        broadphase.calculateOverlappingPairs(dispatcher);
+        assertEquals(1, getPairCount());
+        assertNotNull(broadphase.getOverlappingPairCache().findPair(ground, dynamic));
+    }
+
+    @Test
+    void testCalculateOverlappingPairs_noLongerOverlapping() {
+        final var first = addDynamic(1f, 1f, 2f);
+        final var second = addDynamic(3f, 3f, 2f);
+        broadphase.calculateOverlappingPairs(dispatcher);
+        assertEquals(1, getPairCount());
+
+        move(second, 30f, 30f, 2f);
+        broadphase.calculateOverlappingPairs(dispatcher);
+        assertEquals(0, getPairCount());
+        assertNull(broadphase.getOverlappingPairCache().findPair(first, second));
+    }
+
+    @Test
+    void testCalculateOverlappingPairs_acrossSeam() {
+        // Sticks out of the right side of the grid so it is also in the leftmost cells
+        final var first = addDynamic(49f, 0f, 3f);
+        final var second = addDynamic(51f, 0f, 1f);
+        broadphase.calculateOverlappingPairs(dispatcher);
+        assertEquals(1, getPairCount());
+        assertNotNull(broadphase.getOverlappingPairCache().findPair(first, second));
+    }
+
+    @Test
+    void testCalculateOverlappingPairs_oppositeEdges() {
+        // In the same cells but on opposite sides of the seam, which is not crossed without ghosts
+        addDynamic(-49f, 0f, 1f);
+        addDynamic(49f, 0f, 1f);
+        addStatic(-49f, 20f, 1f);
+        addDynamic(49f, 20f, 1f);
+        broadphase.calculateOverlappingPairs(dispatcher);
+        assertEquals(0, getPairCount());
+    }
+
+    @Test
+    void testDestroyProxy() {
+        addDynamic(1f, 1f, 2f);
+        final var second = addDynamic(3f, 3f, 2f);
+        broadphase.calculateOverlappingPairs(dispatcher);
+        assertEquals(1, getPairCount());
+
+        broadphase.destroyProxy(second, dispatcher);
+        assertEquals(0, getPairCount());
+        broadphase.calculateOverlappingPairs(dispatcher);
+        assertEquals(0, getPairCount());
+    }
+
+    @Test
+    void testGetBroadphaseAabb() {
+        final Vector3f min = new Vector3f();
+        final Vector3f max = new Vector3f();
+        broadphase.getBroadphaseAabb(min, max);
+        assertEquals(-50f, min.x);
+        assertEquals(-50f, min.z);
+        assertEquals(50f, max.x);
+        assertEquals(50f, max.z);
+    }
+}
@@ -0,0 +1,176 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Vector3f;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import moe.mewore.rabbit.backend.physics.engine.BodyShape;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.RayHit;
+import moe.mewore.rabbit.geometry.ConvexPolygon;
+import moe.mewore.rabbit.geometry.Vector2;
+import moe.mewore.rabbit.world.MazeMap;
+import moe.mewore.rabbit.world.MazeWall;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MazePhysicsEngineTest {
+
+    private static final float DELTA_SECONDS = 1f / 60f;
+
+    private MazePhysicsEngine physics;
+
+    /**
+     * @return A 20x20 map with a 4x4 wall in the middle and a 2x4 one at the right seam, both of which are next to
+     * every cell.
+     */
+    private static MazeMap makeMap() {
+        final List<MazeWall> walls = new ArrayList<>();
+        walls.add(new MazeWall(2, 2, 2, 2, new ConvexPolygon(
+            Arrays.asList(new Vector2(.4f, .4f), new Vector2(.6f, .4f), new Vector2(.6f, .6f),
+                new Vector2(.4f, .6f)))));
+        walls.add(new MazeWall(2, 4, 2, 4, new ConvexPolygon(
+            Arrays.asList(new Vector2(.9f, .4f), new Vector2(.9f, .6f), new Vector2(1f, .6f),
+                new Vector2(1f, .4f)))));
+        final int[][][] relevantPolygonIndices = new int[5][5][];
+        for (final int[][] row : relevantPolygonIndices) {
+            Arrays.fill(row, new int[]{0, 1});
+        }
+        return new MazeMap(4.0, new boolean[5][5], walls, relevantPolygonIndices) {
+        };
+    }
+
+    private PhysicsBody addBody(final BodyShape shape, final float mass, final float x, final float y,
+        final float z) {
+        final PhysicsBody body = physics.createBody(shape, mass, new Vector3f(x, y, z), 0f);
+        physics.addBody(body);
+        return body;
+    }
+
+    private void step(final int steps) {
+        for (int i = 0; i < steps; i++) {
+            physics.step(DELTA_SECONDS);
+        }
+    }
+
+    private List<Vector3f> getContactNormals(final PhysicsBody body) {
+        final List<Vector3f> result = new ArrayList<>();
+        physics.forEachContactNormal(body, normal -> result.add(new Vector3f(normal)));
+        return result;
+    }
+
+    @BeforeEach
+    void setUp() {
+        physics = new MazePhysicsEngine(20f, 20f);
+        physics.setGravity(new Vector3f(0f, -10f, 0f));
+        physics.addWalls(makeMap());
+        addBody(BodyShape.box(50f, 1f, 50f), 0f, 0f, -1f, 0f);
+    }
+
+    @Test
+    void testStep_landOnGround() {
+        final PhysicsBody sphere = addBody(BodyShape.sphere(1f), 1f, -6f, 3f, -6f);
+        step(60);
+        assertEquals(1f, sphere.getPosition(new Vector3f()).y, .001f);
+        assertEquals(0f, sphere.getLinearVelocity(new Vector3f()).y, .001f);
+        assertEquals(List.of(new Vector3f(0f, 1f, 0f)), getContactNormals(sphere));
+    }
+
+    @Test
+    void testStep_landOnBox() {
+        addBody(BodyShape.box(2f, 1f, 2f), 0f, 6f, 1f, 6f);
+        final PhysicsBody sphere = addBody(BodyShape.sphere(1f), 1f, 6f, 5f, 6f);
+        step(60);
+        assertEquals(3f, sphere.getPosition(new Vector3f()).y, .001f);
+    }
+
+    @Test
+    void testStep_stoppedByWall() {
+        final PhysicsBody cylinder = addBody(BodyShape.cylinder(1f, 1f), 1f, -6f, 1f, 0f);
+        cylinder.setLinearVelocity(new Vector3f(20f, 0f, 0f));
+        step(30);
+        final Vector3f position = cylinder.getPosition(new Vector3f());
+        assertEquals(-3f, position.x, .001f);
+        assertEquals(0f, position.z, .001f);
+        assertTrue(getContactNormals(cylinder).contains(new Vector3f(-1f, 0f, 0f)));
+    }
+
+    @Test
+    void testStep_stoppedByWallAcrossSeam() {
+        final PhysicsBody cylinder = addBody(BodyShape.cylinder(1f, 1f), 1f, -7f, 1f, 0f);
+        cylinder.setLinearVelocity(new Vector3f(-20f, 0f, 0f));
+        step(30);
+        assertEquals(-9f, cylinder.getPosition(new Vector3f()).x, .001f);
+        assertTrue(getContactNormals(cylinder).contains(new Vector3f(1f, 0f, 0f)));
+    }
+
+    @Test
+    void testStep_bodiesCollide() {
+        final PhysicsBody left = addBody(BodyShape.sphere(1f), 1f, -8f, 1f, 6f);
+        final PhysicsBody right = addBody(BodyShape.sphere(1f), 1f, -4f, 1f, 6f);
+        left.setLinearVelocity(new Vector3f(5f, 0f, 0f));
+        right.setLinearVelocity(new Vector3f(-5f, 0f, 0f));
+        step(30);
+        final Vector3f leftPosition = left.getPosition(new Vector3f());
+        final Vector3f rightPosition = right.getPosition(new Vector3f());
+        assertTrue(rightPosition.x - leftPosition.x >= 2f - .001f);
+        assertTrue(left.getLinearVelocity(new Vector3f()).x <= 0f);
+        assertTrue(right.getLinearVelocity(new Vector3f()).x >= 0f);
+    }
+
+    @Test
+    void testStep_removedBody() {
+        final PhysicsBody sphere = addBody(BodyShape.sphere(1f), 1f, -6f, 3f, -6f);
+        physics.removeBody(sphere);
+        step(1);
+        assertEquals(3f, sphere.getPosition(new Vector3f()).y);
+    }
+
+    @Test
+    void testStep_restoredState() {
+        final PhysicsBody sphere = addBody(BodyShape.sphere(1f), 1f, -6f, 3f, 0f);
+        sphere.setLinearVelocity(new Vector3f(15f, 2f, 1f));
+        final Vector3f position = sphere.getPosition(new Vector3f());
+        final Vector3f velocity = sphere.getLinearVelocity(new Vector3f());
+        step(40);
+        final Vector3f expected = sphere.getPosition(new Vector3f());
+
+        sphere.setPosition(position);
+        sphere.setLinearVelocity(velocity);
+        step(40);
+        assertEquals(expected, sphere.getPosition(new Vector3f()));
+    }
+
+    @Test
+    void testRayTest_wall() {
+        final var hit = new RayHit();
+        assertTrue(physics.rayTest(new Vector3f(-8f, 1f, 0f), new Vector3f(8f, 1f, 0f), hit));
+        assertEquals(new Vector3f(-2f, 1f, 0f), hit.point);
+        assertEquals(new Vector3f(-1f, 0f, 0f), hit.normal);
+        assertEquals(.375f, hit.fraction, .0001f);
+        assertNull(hit.body);
+    }
+
+    @Test
+    void testRayTest_body() {
+        final PhysicsBody sphere = addBody(BodyShape.sphere(1f), 1f, 6f, 1f, 6f);
+        final var hit = new RayHit();
+        assertTrue(physics.rayTest(new Vector3f(6f, 10f, 6f), new Vector3f(6f, -10f, 6f), hit));
+        assertEquals(new Vector3f(6f, 2f, 6f), hit.point);
+        assertEquals(new Vector3f(0f, 1f, 0f), hit.normal);
+        assertSame(sphere, hit.body);
+    }
+
+    @Test
+    void testRayTest_miss() {
+        assertFalse(physics.rayTest(new Vector3f(-8f, 1f, 6f), new Vector3f(8f, 1f, 6f), new RayHit()));
+    }
+}
@@ -0,0 +1,144 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Vector3f;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.shapes.BoxShape;
+import com.bulletphysics.collision.shapes.BvhTriangleMeshShape;
+import com.bulletphysics.collision.shapes.CollisionShape;
+import com.bulletphysics.collision.shapes.CompoundShape;
+import com.bulletphysics.collision.shapes.SphereShape;
+import com.bulletphysics.collision.shapes.TriangleIndexVertexArray;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelCollisionDispatcherTest {
+
+    private static final int STEPS = 120;
+
+    private static RigidBody makeBody(final float mass, final CollisionShape shape, final float x, final float y,
+        final float z) {
+        final var transform = new Transform();
+        transform.setIdentity();
+        transform.origin.set(x, y, z);
+        final var inertia = new Vector3f();
+        if (mass > 0f) {
+            shape.calculateLocalInertia(mass, inertia);
+        }
+        return new RigidBody(new RigidBodyConstructionInfo(mass, new DefaultMotionState(transform), shape, inertia));
+    }
+
+    private static CollisionShape makeRamp() {
+        final ByteBuffer vertices = ByteBuffer.allocateDirect(4 * 3 * Float.BYTES).order(ByteOrder.nativeOrder());
+        vertices.putFloat(-5f).putFloat(0f).putFloat(-5f);
+        vertices.putFloat(5f).putFloat(3f).putFloat(-5f);
+        vertices.putFloat(5f).putFloat(3f).putFloat(5f);
+        vertices.putFloat(-5f).putFloat(0f).putFloat(5f);
+        vertices.flip();
+        final ByteBuffer indices = ByteBuffer.allocateDirect(2 * 3 * Integer.BYTES).order(ByteOrder.nativeOrder());
+        indices.putInt(0).putInt(1).putInt(2);
+        indices.putInt(0).putInt(2).putInt(3);
+        indices.flip();
+        return new BvhTriangleMeshShape(
+            new TriangleIndexVertexArray(2, indices, 3 * Integer.BYTES, 4, vertices, 3 * Float.BYTES), true);
+    }
+
+    /**
+     * Builds a world with separate piles of spheres and boxes (each one an island of its own) on top of a ground box,
+     * a compound wall and a triangle mesh ramp, and steps it.
+     *
+     * @return The positions of the dynamic bodies after the last step.
+     */
+    private static float[] simulate(final boolean parallelDispatcher, final boolean parallelWorld) {
+        final var configuration = new ThreadSafeCollisionConfiguration();
+        final var dispatcher = new ParallelCollisionDispatcher(configuration);
+        final var world = new FixedDiscreteDynamicWorld(dispatcher, new DbvtBroadphase(),
+            new SequentialImpulseConstraintSolver(), configuration);
+        world.setGravity(new Vector3f(0f, -10f, 0f));
+        world.setParallel(parallelWorld);
+        dispatcher.setParallel(parallelDispatcher);
+
+        world.addRigidBody(makeBody(0f, new BoxShape(new Vector3f(50f, 1f, 50f)), 0f, -1f, 0f));
+        final var wallShape = new CompoundShape();
+        final var childTransform = new Transform();
+        childTransform.setIdentity();
+        childTransform.origin.set(-2f, 0f, 0f);
+        wallShape.addChildShape(childTransform, new BoxShape(new Vector3f(1f, 2f, 8f)));
+        childTransform.origin.set(2f, 0f, 0f);
+        wallShape.addChildShape(childTransform, new BoxShape(new Vector3f(1f, 2f, 8f)));
+        world.addRigidBody(makeBody(0f, wallShape, -20f, 2f, 0f));
+        world.addRigidBody(makeBody(0f, makeRamp(), 20f, 0f, 0f));
+
+        final List<RigidBody> bodies = new ArrayList<>();
+        final float[] pileX = {-24f, -20f, -16f, 0f, 10f, 20f};
+        for (final float x : pileX) {
+            for (int i = 0; i < 6; i++) {
+                final CollisionShape shape = i % 2 == 0
+                    ? new SphereShape(.5f)
+                    : new BoxShape(new Vector3f(.4f, .4f, .4f));
+                final var body = makeBody(1f, shape, x + (i % 3) * .3f, 5f + i * 1.1f, (i % 2) * .2f);
+                world.addRigidBody(body);
+                bodies.add(body);
+            }
+        }
+
+        for (int i = 0; i < STEPS; i++) {
+            world.stepSimulation(1f / 60f, 0);
+        }
+
+        final float[] result = new float[bodies.size() * 3];
+        final var transform = new Transform();
+        for (int i = 0; i < bodies.size(); i++) {
+            bodies.get(i).getWorldTransform(transform);
+            result[i * 3] = transform.origin.x;
+            result[i * 3 + 1] = transform.origin.y;
+            result[i * 3 + 2] = transform.origin.z;
+        }
+        return result;
+    }
+
+    @Test
+    void testDispatchAllCollisionPairs() {
+        final float[] serial = simulate(false, false);
+        final float[] parallel = simulate(true, false);
+        assertArrayEquals(serial, parallel);
+        for (int i = 1; i < serial.length; i += 3) {
+            assertTrue(serial[i] > -.1f, "Nothing should fall through the ground");
+        }
+    }
+
+    @Test
+    void testSolveConstraints_parallel() {
+        final float[] first = simulate(true, true);
+        assertArrayEquals(first, simulate(true, true));
+        assertArrayEquals(first, simulate(false, true));
+        for (int i = 1; i < first.length; i += 3) {
+            assertTrue(first[i] > -.1f, "Nothing should fall through the ground");
+        }
+    }
+
+    @Test
+    void testSetParallel() {
+        final var configuration = new ThreadSafeCollisionConfiguration();
+        final var dispatcher = new ParallelCollisionDispatcher(configuration);
+        final var world = new FixedDiscreteDynamicWorld(dispatcher, new DbvtBroadphase(),
+            new SequentialImpulseConstraintSolver(), configuration);
+        world.setParallel(true);
+        assertTrue(dispatcher.isParallel());
+        world.setParallel(false);
+        assertFalse(dispatcher.isParallel());
+    }
+}
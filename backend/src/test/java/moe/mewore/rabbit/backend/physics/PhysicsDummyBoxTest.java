@@ -3,10 +3,11 @@ package moe.mewore.rabbit.backend.physics;
 import javax.vecmath.Vector3f;
 import java.io.ByteArrayOutputStream;
 
-import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.DynamicsWorld;
 
 import org.junit.jupiter.api.Test;
 
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
 import moe.mewore.rabbit.data.ByteArrayDataOutput;
 import moe.mewore.rabbit.data.SafeDataOutput;
 
@@ -21,12 +22,18 @@ class PhysicsDummyBoxTest {
         assertEquals(20, result.length);
     }
 
+    @Test
+    void testCreateBody() {
+        final var physics = new BulletPhysicsEngine(mock(DynamicsWorld.class), 100f, 100f);
+        final PhysicsBody body = new PhysicsDummyBox(1f, 2f, new Vector3f(1f, 2f, 3f), 1f).createBody(physics);
+        assertEquals(new Vector3f(1f, 2f, 3f), body.getPosition(new Vector3f()));
+    }
+
     @Test
     void testAppendToBinaryOutput() {
         final var byteStream = new ByteArrayOutputStream();
         final SafeDataOutput dataOutput = new ByteArrayDataOutput(byteStream);
-        new PhysicsDummyBox(mock(RigidBody.class), 1f, 2f, new Vector3f(1f, 2f, 3f),
-            (float) Math.PI).appendToBinaryOutput(dataOutput);
+        new PhysicsDummyBox(1f, 2f, new Vector3f(1f, 2f, 3f), (float) Math.PI).appendToBinaryOutput(dataOutput);
 
         assertEquals(24, byteStream.toByteArray().length);
     }
@@ -2,19 +2,19 @@ package moe.mewore.rabbit.backend.physics;
 
 import javax.vecmath.Vector3f;
 
-import com.bulletphysics.collision.shapes.TriangleShape;
-import com.bulletphysics.dynamics.RigidBody;
-import com.bulletphysics.linearmath.DefaultMotionState;
-import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.dynamics.DynamicsWorld;
 
 import org.junit.jupiter.api.Test;
 
+import moe.mewore.rabbit.backend.physics.engine.BodyShape;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.backend.simulation.data.FrameCompiler;
 import moe.mewore.rabbit.backend.simulation.data.FrameDataType;
 import moe.mewore.rabbit.backend.simulation.data.FrameSection;
 import moe.mewore.rabbit.backend.simulation.data.FrameSerializationTestUtil;
 
 import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.BYTE;
+import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.FLOAT;
 import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.VECTOR3F;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
@@ -23,34 +23,32 @@ import static org.mockito.Mockito.verify;
 
 class PhysicsDummySphereTest {
 
-    private static final FrameDataType[] FRAME_DATA_TYPES = new FrameDataType[]{BYTE, VECTOR3F, VECTOR3F};
+    private static final FrameDataType[] FRAME_DATA_TYPES = new FrameDataType[]{BYTE, FLOAT, VECTOR3F, VECTOR3F};
+
+    private final PhysicsEngine physics = new BulletPhysicsEngine(mock(DynamicsWorld.class), 100f, 100f);
 
     @Test
     void testMakeSpheres() {
-        final RigidBody mockBody = mock(RigidBody.class);
-        final PhysicsDummyBox[] boxes = new PhysicsDummyBox[]{new PhysicsDummyBox(mockBody, 1f, 1f,
-            new Vector3f(1f, 1f, 1f), 1f), new PhysicsDummyBox(mockBody, 1f, 1f, new Vector3f(1f, 1f, 1f), 1f)};
+        final PhysicsDummyBox[] boxes = new PhysicsDummyBox[]{new PhysicsDummyBox(1f, 1f, new Vector3f(1f, 1f, 1f),
+            1f), new PhysicsDummyBox(1f, 1f, new Vector3f(1f, 1f, 1f), 1f)};
 
         final var frameCompiler = mock(FrameCompiler.class);
-        final PhysicsDummySphere[] result = PhysicsDummySphere.makeSpheres(boxes, frameCompiler);
+        final PhysicsDummySphere[] result = PhysicsDummySphere.makeSpheres(boxes, frameCompiler, physics);
         assertEquals(1, result.length);
-        assertEquals(new Vector3f(1f, 21f, 1f), result[0].getBody().getWorldTransform(new Transform()).origin);
-        verify(frameCompiler, times(1)).reserve(FRAME_DATA_TYPES[0], FRAME_DATA_TYPES[1], FRAME_DATA_TYPES[2]);
+        assertEquals(new Vector3f(1f, 21f, 1f), result[0].getBody().getPosition(new Vector3f()));
+        verify(frameCompiler, times(1)).reserve(FRAME_DATA_TYPES[0], FRAME_DATA_TYPES[1], FRAME_DATA_TYPES[2],
+            FRAME_DATA_TYPES[3]);
     }
 
     @Test
     void testSerialization() {
         final FrameCompiler frameCompiler = new FrameCompiler();
         final FrameSection frameSection = frameCompiler.reserve(FRAME_DATA_TYPES);
-        final var shape = new TriangleShape();
-        final Transform transform = new Transform();
+        final var shape = BodyShape.sphere(1f);
 
-        transform.origin.set(2f, 2f, 2f);
-        final var firstSphere = new PhysicsDummySphere(new RigidBody(1, new DefaultMotionState(transform), shape),
+        final var firstSphere = new PhysicsDummySphere(physics.createBody(shape, 1f, new Vector3f(2f, 2f, 2f), 0f),
             frameSection);
-
-        transform.origin.set(3f, 3f, 3f);
-        final var secondSphere = new PhysicsDummySphere(new RigidBody(1, new DefaultMotionState(transform), shape),
+        final var secondSphere = new PhysicsDummySphere(physics.createBody(shape, 1f, new Vector3f(3f, 3f, 3f), 0f),
             frameSection);
 
         FrameSerializationTestUtil.testSerialization(frameCompiler, frameSection, firstSphere, secondSphere);
@@ -1,32 +1,29 @@
 package moe.mewore.rabbit.backend.physics;
 
 import javax.vecmath.Vector3f;
+import java.util.function.Consumer;
 
-import com.bulletphysics.collision.broadphase.Dispatcher;
-import com.bulletphysics.collision.dispatch.CollisionWorld;
-import com.bulletphysics.collision.narrowphase.ManifoldPoint;
-import com.bulletphysics.collision.narrowphase.PersistentManifold;
-import com.bulletphysics.collision.shapes.CollisionShape;
-import com.bulletphysics.dynamics.RigidBody;
-import com.bulletphysics.linearmath.DefaultMotionState;
-import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.dynamics.DynamicsWorld;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import moe.mewore.rabbit.backend.physics.engine.BodyShape;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.backend.simulation.data.FrameCompiler;
-import moe.mewore.rabbit.backend.simulation.data.FrameDataType;
 import moe.mewore.rabbit.backend.simulation.data.FrameSection;
 import moe.mewore.rabbit.backend.simulation.data.FrameSerializationTestUtil;
 
-import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.FLOAT;
-import static moe.mewore.rabbit.backend.simulation.data.FrameDataType.VECTOR3F;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -34,83 +31,70 @@ import static org.mockito.Mockito.when;
 
 class RigidBodyControllerTest {
 
-    private static final FrameDataType[] FRAME_DATA_TYPES = new FrameDataType[]{VECTOR3F, VECTOR3F, FLOAT, FLOAT};
-
-    private static final RigidBody OTHER_BODY = mock(RigidBody.class);
-
-    private RigidBody body;
+    private PhysicsBody body;
 
     private RigidBodyController controller;
 
-    private static void setWorldCollisions(final CollisionWorld world, final PersistentManifold... collisionPairs) {
-        final var dispatcher = mock(Dispatcher.class);
-        when(world.getDispatcher()).thenReturn(dispatcher);
-        when(dispatcher.getNumManifolds()).thenReturn(collisionPairs.length);
-
-        for (int i = 0; i < collisionPairs.length; i++) {
-            when(dispatcher.getManifoldByIndexInternal(i)).thenReturn(collisionPairs[i]);
-        }
-    }
-
-    private static PersistentManifold makeCollisionPair(final RigidBody firstBody, final RigidBody secondBody,
-        final float... normalYCoordinates) {
-        final var collisionPair = mock(PersistentManifold.class);
-        when(collisionPair.getNumContacts()).thenReturn(normalYCoordinates.length);
-        when(collisionPair.getBody0()).thenReturn(firstBody);
-        when(collisionPair.getBody1()).thenReturn(secondBody);
-        for (int i = 0; i < normalYCoordinates.length; i++) {
-            final var contact = new ManifoldPoint(new Vector3f(), new Vector3f(),
-                new Vector3f(0f, normalYCoordinates[i], 0f), 1f);
-            when(collisionPair.getContactPoint(i)).thenReturn(contact);
-        }
-        return collisionPair;
+    private PhysicsEngine makePhysics(final float... contactNormalYCoordinates) {
+        final var physics = mock(PhysicsEngine.class);
+        doAnswer(invocation -> {
+            final Consumer<Vector3f> consumer = invocation.getArgument(1);
+            for (final float normalY : contactNormalYCoordinates) {
+                consumer.accept(new Vector3f(0f, normalY, 0f));
+            }
+            return null;
+        }).when(physics).forEachContactNormal(same(body), any());
+        return physics;
     }
 
-    private static RigidBody makeBody(final float x, final float y, final float z, final float vx, final float vy,
+    private static PhysicsBody makeBody(final float x, final float y, final float z, final float vx, final float vy,
         final float vz) {
-        final var transform = new Transform();
-        transform.origin.set(x, y, z);
-
-        final var result = new RigidBody(1f, new DefaultMotionState(transform), mock(CollisionShape.class));
-
+        final var physics = new BulletPhysicsEngine(mock(DynamicsWorld.class), 100f, 100f);
+        final PhysicsBody result = physics.createBody(BodyShape.sphere(1f), 1f, new Vector3f(x, y, z), 0f);
         result.setLinearVelocity(new Vector3f(vx, vy, vz));
         return result;
     }
 
+    @BeforeEach
+    void setUp() {
+        body = mock(PhysicsBody.class);
+        controller = new RigidBodyController(body, mock(FrameSection.class));
+    }
+
     @Test
     void testUpdateAction() {
-        final var world = mock(CollisionWorld.class);
-
         final var motion = new Vector3f();
         when(body.getLinearVelocity(any())).thenReturn(motion);
-        controller.updateAction(world, .1f);
+        controller.updateAction(.1f);
         verify(body).setLinearVelocity(same(motion));
         verify(body, never()).activate();
     }
 
     @Test
-    void testUpdateAction_moving() {
-        final var world = mock(CollisionWorld.class);
+    void testUpdateAction_restingOnGround() {
+        when(body.getLinearVelocity(any())).thenReturn(new Vector3f(0f, -.01f, 0f));
+        controller.updateAction(.1f);
+        verify(body, never()).activate();
+    }
 
+    @Test
+    void testUpdateAction_moving() {
         controller.getTargetHorizontalMotion().x = 10000f;
         when(body.getLinearVelocity(any())).thenReturn(new Vector3f());
-        controller.updateAction(world, .1f);
+        controller.updateAction(.1f);
         verify(body).activate();
         verify(body).setLinearVelocity(eq(new Vector3f(40f, 0f, 0f)));
     }
 
     @Test
     void testUpdateAction_jump() {
-        final var world = mock(CollisionWorld.class);
-
         // Make it so that the character is on the ground
-        setWorldCollisions(world, makeCollisionPair(body, OTHER_BODY, 1f));
-        controller.afterPhysics(world);
+        controller.afterPhysics(makePhysics(1f));
 
         controller.jump();
 
         when(body.getLinearVelocity(any())).thenReturn(new Vector3f());
-        controller.updateAction(world, .1f);
+        controller.updateAction(.1f);
 
         verify(body).setLinearVelocity(eq(new Vector3f(0f, 110f, 0f)));
     }
@@ -119,38 +103,33 @@ class RigidBodyControllerTest {
     void testAfterPhysics() {
         assertFalse(controller.onGround());
 
-        final var world = mock(CollisionWorld.class);
-        setWorldCollisions(world, makeCollisionPair(body, OTHER_BODY, 1f));
-        controller.afterPhysics(world);
+        controller.afterPhysics(makePhysics(1f));
         assertTrue(controller.onGround());
     }
 
     @Test
     void testAfterPhysics_notOnGround() {
-        final var world = mock(CollisionWorld.class);
-        setWorldCollisions(world, makeCollisionPair(body, OTHER_BODY, 0f));
-        controller.afterPhysics(world);
+        controller.afterPhysics(makePhysics(0f));
         assertFalse(controller.onGround());
     }
 
     @Test
-    void testAfterPhysics_manyCollisions() {
-        final var world = mock(CollisionWorld.class);
-        setWorldCollisions(world, makeCollisionPair(body, OTHER_BODY, 1f, 0f), makeCollisionPair(OTHER_BODY, body, 3f),
-            makeCollisionPair(OTHER_BODY, OTHER_BODY, 5f));
-        controller.afterPhysics(world);
+    void testAfterPhysics_ceiling() {
+        controller.afterPhysics(makePhysics(-1f));
+        assertFalse(controller.onGround());
     }
 
-    @BeforeEach
-    void setUp() {
-        body = mock(RigidBody.class);
-        controller = new RigidBodyController(body, mock(FrameSection.class));
+    @Test
+    void testAfterPhysics_manyCollisions() {
+        controller.afterPhysics(makePhysics(0f, -1f, .9f));
+        assertTrue(controller.onGround());
     }
 
     @Test
     void testSetPosition() {
-        controller.setPosition(new Vector3f(1f, 1f, 1f));
-        verify(body).setWorldTransform(any());
+        final var position = new Vector3f(1f, 1f, 1f);
+        controller.setPosition(position);
+        verify(body).setPosition(same(position));
     }
 
     @Test
@@ -163,9 +142,9 @@ class RigidBodyControllerTest {
 
     @Test
     void testGetPosition() {
-        final Transform transform = new Transform();
-        when(body.getWorldTransform(any())).thenReturn(transform);
-        assertSame(transform.origin, controller.getPosition(new Transform()));
+        final Vector3f target = new Vector3f();
+        when(body.getPosition(same(target))).thenReturn(target);
+        assertSame(target, controller.getPosition(target));
     }
 
     @Test
@@ -182,12 +161,29 @@ class RigidBodyControllerTest {
         assertSame(result, controller.getMotion(new Vector3f()));
     }
 
+    @Test
+    void testReadPosition() {
+        final var frameCompiler = new FrameCompiler();
+        frameCompiler.reserve(RigidBodyController.FRAME_DATA_TYPES);
+        final FrameSection frameSection = frameCompiler.reserve(RigidBodyController.FRAME_DATA_TYPES);
+        final byte[] frame = new byte[frameCompiler.getSize()];
+        new RigidBodyController(makeBody(1, 2, 3, 4, 5, 6), frameSection).store(frame);
+
+        final var otherController = new RigidBodyController(makeBody(7, 8, 9, 0, 1, 2), frameSection);
+        final Vector3f target = new Vector3f();
+        assertSame(target, otherController.readPosition(frame, target));
+        assertEquals(new Vector3f(1f, 2f, 3f), target);
+    }
+
     @Test
     void testSerialization() {
         final var frameCompiler = new FrameCompiler();
         final FrameSection frameSection = frameCompiler.reserve(RigidBodyController.FRAME_DATA_TYPES);
 
-        final var firstController = new RigidBodyController(makeBody(1, 2, 3, 4, 5, 6), frameSection);
+        final PhysicsBody firstBody = makeBody(1, 2, 3, 4, 5, 6);
+        firstBody.setActivationState(CollisionObject.ISLAND_SLEEPING);
+        firstBody.setDeactivationTime(3f);
+        final var firstController = new RigidBodyController(firstBody, frameSection);
         final var otherController = new RigidBodyController(makeBody(7, 8, 9, 0, 1, 2), frameSection);
 
         FrameSerializationTestUtil.testSerialization(frameCompiler, frameSection, firstController, otherController);
@@ -0,0 +1,176 @@
+package moe.mewore.rabbit.backend.physics;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.dispatch.CollisionFlags;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.shapes.BoxShape;
+import com.bulletphysics.collision.shapes.CompoundShape;
+import com.bulletphysics.collision.shapes.SphereShape;
+import com.bulletphysics.dynamics.DynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeamGhostsTest {
+
+    private DynamicsWorld world;
+
+    private SeamGhosts seamGhosts;
+
+    @BeforeEach
+    void setUp() {
+        world = BulletPhysicsEngine.createWorld();
+        world.setGravity(new Vector3f());
+        seamGhosts = new SeamGhosts(world, 100f, 100f, 10f);
+    }
+
+    private RigidBody addSphere(final float x, final float z) {
+        final var transform = new Transform();
+        transform.setIdentity();
+        transform.origin.set(x, 0f, z);
+        final var body = new RigidBody(
+            new RigidBodyConstructionInfo(1f, new DefaultMotionState(transform), new SphereShape(1f)));
+        body.setActivationState(CollisionObject.DISABLE_DEACTIVATION);
+        world.addRigidBody(body);
+        seamGhosts.track(body);
+        return body;
+    }
+
+    private RigidBody addWall(final float x, final float z) {
+        final var transform = new Transform();
+        transform.setIdentity();
+        transform.origin.set(x, 0f, z);
+        final var body = new RigidBody(0f, new DefaultMotionState(transform), new BoxShape(new Vector3f(1f, 1f, 1f)));
+        body.setCollisionFlags(CollisionFlags.STATIC_OBJECT);
+        world.addRigidBody(body);
+        seamGhosts.addStaticCopies(body);
+        return body;
+    }
+
+    private static Vector3f getPosition(final RigidBody body) {
+        return body.getWorldTransform(new Transform()).origin;
+    }
+
+    @Test
+    void testInvalidMargin() {
+        assertThrows(IllegalArgumentException.class, () -> new SeamGhosts(world, 100f, 10f, 5f));
+    }
+
+    @Test
+    void testUpdate() {
+        final var body = addSphere(0f, 0f);
+        seamGhosts.update();
+        assertEquals(0, seamGhosts.getGhostCount());
+        assertEquals(1, world.getNumCollisionObjects());
+
+        body.translate(new Vector3f(45f, 0f, 0f));
+        seamGhosts.update();
+        assertEquals(1, seamGhosts.getGhostCount());
+        assertEquals(2, world.getNumCollisionObjects());
+
+        body.translate(new Vector3f(0f, 0f, -45f));
+        seamGhosts.update();
+        assertEquals(3, seamGhosts.getGhostCount());
+        assertEquals(4, world.getNumCollisionObjects());
+
+        body.translate(new Vector3f(-45f, 0f, 45f));
+        seamGhosts.update();
+        assertEquals(0, seamGhosts.getGhostCount());
+        assertEquals(1, world.getNumCollisionObjects());
+    }
+
+    @Test
+    void testUntrack() {
+        final var body = addSphere(-45f, -45f);
+        seamGhosts.update();
+        assertEquals(3, seamGhosts.getGhostCount());
+
+        seamGhosts.untrack(body);
+        assertEquals(0, seamGhosts.getGhostCount());
+        assertEquals(1, world.getNumCollisionObjects());
+        seamGhosts.untrack(body);
+    }
+
+    @Test
+    void testAddStaticCopies() {
+        addWall(0f, 0f);
+        addWall(-48f, 0f);
+        addWall(48f, 48f);
+        assertEquals(4, seamGhosts.getStaticCopyCount());
+        assertEquals(7, world.getNumCollisionObjects());
+    }
+
+    @Test
+    void testRemoveStaticCopies() {
+        addWall(-48f, 0f);
+        final var corner = addWall(48f, 48f);
+        world.removeRigidBody(corner);
+        seamGhosts.removeStaticCopies(corner);
+        assertEquals(1, seamGhosts.getStaticCopyCount());
+        assertEquals(2, world.getNumCollisionObjects());
+
+        // Removing them again does nothing
+        seamGhosts.removeStaticCopies(corner);
+        assertEquals(1, seamGhosts.getStaticCopyCount());
+    }
+
+    @Test
+    void testAddStaticCopies_compound() {
+        final var shape = new CompoundShape();
+        final var childTransform = new Transform();
+        childTransform.setIdentity();
+        for (final float x : new float[]{-48f, -30f, -20f}) {
+            childTransform.origin.set(x, 0f, 0f);
+            shape.addChildShape(childTransform, new BoxShape(new Vector3f(1f, 1f, 1f)));
+        }
+        final var body = new RigidBody(0f, new DefaultMotionState(), shape);
+        body.setCollisionFlags(CollisionFlags.STATIC_OBJECT);
+        world.addRigidBody(body);
+        seamGhosts.addStaticCopies(body);
+
+        assertEquals(1, seamGhosts.getStaticCopyCount());
+        final var copy = (RigidBody) world.getCollisionObjectArray().get(1);
+        final var copyShape = (CompoundShape) copy.getCollisionShape();
+        assertEquals(1, copyShape.getNumChildShapes());
+        assertEquals(-48f, copyShape.getChildTransform(0, new Transform()).origin.x);
+        assertEquals(100f, getPosition(copy).x);
+    }
+
+    @Test
+    void testCollisionAcrossSeam() {
+        // The wall is just across the seam from the sphere, which is moving towards it
+        addWall(-49f, 0f);
+        final var body = addSphere(46f, 0f);
+        body.setLinearVelocity(new Vector3f(20f, 0f, 0f));
+        for (int i = 0; i < 30; i++) {
+            seamGhosts.update();
+            world.stepSimulation(1f / 60f, 0, 1f / 60f);
+        }
+        assertTrue(getPosition(body).x < 50f - 1f, "The sphere should have been stopped at " + getPosition(body));
+    }
+
+    @Test
+    void testCollisionAcrossSeam_dynamic() {
+        final var first = addSphere(48.5f, 0f);
+        final var second = addSphere(-48.5f, 0f);
+        first.setLinearVelocity(new Vector3f(10f, 0f, 0f));
+        second.setLinearVelocity(new Vector3f(-10f, 0f, 0f));
+        for (int i = 0; i < 30; i++) {
+            seamGhosts.update();
+            world.stepSimulation(1f / 60f, 0, 1f / 60f);
+        }
+        assertTrue(getPosition(first).x < 49f, "The first sphere should have bounced back to " + getPosition(first));
+        assertTrue(getPosition(second).x > -49f,
+            "The second sphere should have bounced back to " + getPosition(second));
+    }
+}
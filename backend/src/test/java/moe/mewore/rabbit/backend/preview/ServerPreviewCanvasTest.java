@@ -6,7 +6,6 @@ import java.awt.image.BufferedImage;
 import java.util.Collections;
 import java.util.Map;
 
-import com.bulletphysics.collision.dispatch.CollisionObject;
 import com.bulletphysics.dynamics.DynamicsWorld;
 
 import org.junit.jupiter.api.Test;
@@ -14,7 +13,10 @@ import org.junit.jupiter.api.Test;
 import moe.mewore.rabbit.backend.game.RabbitPlayer;
 import moe.mewore.rabbit.backend.game.RabbitPlayerInput;
 import moe.mewore.rabbit.backend.game.RabbitWorld;
+import moe.mewore.rabbit.backend.physics.BulletPhysicsEngine;
 import moe.mewore.rabbit.backend.physics.RigidBodyController;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsBody;
+import moe.mewore.rabbit.backend.physics.engine.PhysicsEngine;
 import moe.mewore.rabbit.world.MazeMap;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -40,8 +42,12 @@ class ServerPreviewCanvasTest {
     }
 
     private static RabbitWorld makeWorld(final Map<Integer, RabbitPlayer> players, final DynamicsWorld physicsWorld) {
+        return makeWorld(players, new BulletPhysicsEngine(physicsWorld, 1f, 1f));
+    }
+
+    private static RabbitWorld makeWorld(final Map<Integer, RabbitPlayer> players, final PhysicsEngine physics) {
         final var world = mock(RabbitWorld.class);
-        when(world.getPhysicsWorld()).thenReturn(physicsWorld);
+        when(world.getPhysics()).thenReturn(physics);
         when(world.getPlayersAsMap()).thenReturn(players);
         return world;
     }
@@ -60,6 +66,13 @@ class ServerPreviewCanvasTest {
         verify(physicsWorld).debugDrawWorld();
     }
 
+    @Test
+    void testUpdateOverlay_otherEngine() {
+        final var world = makeWorld(Collections.emptyMap(), mock(PhysicsEngine.class));
+        final var canvas = new ServerPreviewCanvas(makeMap(1, 1), world);
+        canvas.updateOverlay();
+    }
+
     @Test
     void testUpdateOverlay_noChanges() {
         final var physicsWorld = mock(DynamicsWorld.class);
@@ -71,19 +84,19 @@ class ServerPreviewCanvasTest {
 
     @Test
     void testUpdateOverlay_players() {
-        final var physicsWorld = mock(DynamicsWorld.class);
-        final var body = mock(CollisionObject.class);
+        final var physics = mock(PhysicsEngine.class);
+        final var body = mock(PhysicsBody.class);
         final var controller = mock(RigidBodyController.class);
         when(controller.getPosition(any())).thenReturn(new Vector3f());
         when(controller.getMotion(any())).thenReturn(new Vector3f());
-        final var playerWithTargetMotion = new RabbitPlayer(0, 0, "Player 1", false, physicsWorld, body, controller);
+        final var playerWithTargetMotion = new RabbitPlayer(0, 0, "Player 1", false, physics, body, controller);
         final var input = new RabbitPlayerInput(1, RabbitPlayerInput.INPUT_UP_BIT, 1f, 1L);
         playerWithTargetMotion.applyInput(input);
 
         final var controller2 = mock(RigidBodyController.class);
         when(controller2.getPosition(any())).thenReturn(new Vector3f());
         when(controller2.getMotion(any())).thenReturn(new Vector3f(1, 1, 1));
-        final var playerWithMotion = new RabbitPlayer(1, 1, "Player 2", true, physicsWorld, body, controller2);
+        final var playerWithMotion = new RabbitPlayer(1, 1, "Player 2", true, physics, body, controller2);
 
         final var world = makeWorld(Map.of(0, playerWithTargetMotion, 1, playerWithMotion));
         final var map = makeMap(1, 2);
@@ -156,6 +156,64 @@ class RealtimeSimulationTest {
         verifyLastAppliedInputFrames(simulation, 20L, 20L);
     }
 
+    @Test
+    void testAcceptInput_withMaximumInputDelay() throws InterruptedException {
+        when(world.getFrameId()).thenReturn(100L);
+        final var simulation = new RealtimeSimulation<>(world);
+        simulation.setMaximumInputDelayByPlayerIndex(playerIndex -> 500);
+        simulation.acceptInput(DEFAULT_PLAYER, new FakeInput(0, 90L));
+        simulation.acceptInput(DEFAULT_PLAYER, new FakeInput(1, 10L));
+
+        simulation.advanceToFrame(100L);
+        verifyLastAppliedInputFrames(simulation, 70L, 90L);
+    }
+
+    @Test
+    void testAcceptInput_resent() throws InterruptedException {
+        when(world.getFrameId()).thenReturn(0L);
+        final var simulation = new RealtimeSimulation<>(world);
+        simulation.acceptInputs(DEFAULT_PLAYER, List.of(new FakeInput(1, 1L), new FakeInput(2, 2L)));
+        // The client re-sends an input the server does not have with the same ID, which is applied again
+        simulation.acceptInput(DEFAULT_PLAYER, new FakeInput(2, 3L));
+
+        simulation.advanceToFrame(0L);
+        verifyLastAppliedInputFrames(simulation, 1L, 2L, 3L);
+    }
+
+    @Test
+    void testAcceptInputs() throws InterruptedException {
+        when(world.getFrameId()).thenReturn(0L);
+        final var simulation = new RealtimeSimulation<>(world);
+        simulation.acceptInputs(DEFAULT_PLAYER, List.of(new FakeInput(1, 1L), new FakeInput(2, 2L)));
+        simulation.acceptInputs(DEFAULT_PLAYER, List.of(new FakeInput(1, 1L), new FakeInput(2, 2L),
+            new FakeInput(3, 3L)));
+        simulation.acceptInputs(DEFAULT_PLAYER, List.of(new FakeInput(3, 3L), new FakeInput(3, 3L)));
+
+        simulation.advanceToFrame(0L);
+        verifyLastAppliedInputFrames(simulation, 1L, 2L, 3L);
+    }
+
+    @Test
+    void testAcceptInputs_outOfOrder() throws InterruptedException {
+        when(world.getFrameId()).thenReturn(0L);
+        final var simulation = new RealtimeSimulation<>(world);
+        simulation.acceptInputs(DEFAULT_PLAYER, List.of(new FakeInput(5, 5L), new FakeInput(3, 3L)));
+        simulation.acceptInputs(DEFAULT_PLAYER, List.of(new FakeInput(3, 3L), new FakeInput(4, 4L)));
+
+        simulation.advanceToFrame(0L);
+        verifyLastAppliedInputFrames(simulation, 3L, 4L, 5L);
+    }
+
+    @Test
+    void testAcceptInputs_tooOld() throws InterruptedException {
+        when(world.getFrameId()).thenReturn(0L);
+        final var simulation = new RealtimeSimulation<>(world);
+        simulation.acceptInputs(DEFAULT_PLAYER, List.of(new FakeInput(100, 10L), new FakeInput(30, 3L)));
+
+        simulation.advanceToFrame(0L);
+        verifyLastAppliedInputFrames(simulation, 10L);
+    }
+
     @Test
     void testAdvanceToFrame() {
         final var simulation = new RealtimeSimulation<>(prepareWorld());
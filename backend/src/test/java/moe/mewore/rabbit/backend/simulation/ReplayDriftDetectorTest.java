@@ -0,0 +1,60 @@
+package moe.mewore.rabbit.backend.simulation;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import moe.mewore.rabbit.backend.simulation.player.PlayerInput;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReplayDriftDetectorTest {
+
+    @Test
+    void testFindDrift() {
+        final var world = new FakeWorld();
+        assertEquals(-1L, new ReplayDriftDetector<>(world, .1f).findDrift(Collections.emptyList(), 10, 3));
+        assertEquals(10L, world.getFrameId());
+    }
+
+    @Test
+    void testFindDrift_hiddenState() {
+        // Counts its steps without loading the count back from its frames, so each rollback makes it drift
+        final var world = new FakeWorld() {
+            private byte stepCount = 0;
+
+            @Override
+            public int getFrameSize() {
+                return super.getFrameSize() + 1;
+            }
+
+            @Override
+            public void doStep(final float deltaSeconds) {
+                super.doStep(deltaSeconds);
+                ++stepCount;
+            }
+
+            @Override
+            public void store(final byte[] frame) {
+                super.store(frame);
+                frame[frame.length - 1] = stepCount;
+            }
+        };
+        assertEquals(8L, new ReplayDriftDetector<>(world, .1f).findDrift(Collections.emptyList(), 10, 3));
+    }
+
+    @Test
+    void testFindDrift_invalid() {
+        final var detector = new ReplayDriftDetector<PlayerInput>(new FakeWorld(), .1f);
+        assertThrows(IllegalArgumentException.class, () -> detector.findDrift(Collections.emptyList(), 0, 1));
+    }
+
+    @Test
+    void testHashFrame() {
+        assertEquals(ReplayDriftDetector.hashFrame(new byte[]{1, 2}), ReplayDriftDetector.hashFrame(new byte[]{1, 2}));
+        assertNotEquals(ReplayDriftDetector.hashFrame(new byte[]{1, 2}),
+            ReplayDriftDetector.hashFrame(new byte[]{2, 1}));
+    }
+}
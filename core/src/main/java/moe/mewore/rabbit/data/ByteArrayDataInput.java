@@ -0,0 +1,47 @@
+package moe.mewore.rabbit.data;
+
+import java.nio.charset.Charset;
+
+/**
+ * A {@link SafeDataInput} which reads directly from a byte array. It can be pointed at new data with
+ * {@link ByteArrayDataInput#reset(byte[], int, int)} so that a single instance can be reused for many messages.
+ */
+public class ByteArrayDataInput extends IndexedDataInput {
+
+    private static final byte[] NO_DATA = new byte[0];
+
+    private byte[] data = NO_DATA;
+
+    public ByteArrayDataInput() {
+    }
+
+    public ByteArrayDataInput(final byte[] data) {
+        reset(data, 0, data.length);
+    }
+
+    public ByteArrayDataInput reset(final byte[] data, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IllegalArgumentException(
+                "The range [" + offset + ", " + (offset + length) + ") is not within the data range [0, " +
+                    data.length + ")");
+        }
+        this.data = data;
+        setRange(offset, offset + length);
+        return this;
+    }
+
+    @Override
+    protected byte getByte(final int index) {
+        return data[index];
+    }
+
+    @Override
+    protected void getBytes(final int index, final byte[] target, final int offset, final int length) {
+        System.arraycopy(data, index, target, offset, length);
+    }
+
+    @Override
+    protected String getString(final int index, final int length, final Charset charset) {
+        return new String(data, index, length, charset);
+    }
+}
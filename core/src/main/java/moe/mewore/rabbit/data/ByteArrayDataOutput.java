@@ -14,6 +14,12 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class ByteArrayDataOutput implements SafeDataOutput {
 
+    static final int VAR_INT_GROUP_SIZE = 7;
+
+    static final int VAR_INT_GROUP_MASK = (1 << VAR_INT_GROUP_SIZE) - 1;
+
+    static final int VAR_INT_CONTINUATION_BIT = 1 << VAR_INT_GROUP_SIZE;
+
     private final ByteArrayOutputStream outputStream;
 
     @Override
@@ -79,6 +85,36 @@ public class ByteArrayDataOutput implements SafeDataOutput {
         writeLong(Double.doubleToLongBits(v));
     }
 
+    @Override
+    public void writeVarInt(final int v) {
+        int remaining = v;
+        while ((remaining & ~VAR_INT_GROUP_MASK) != 0) {
+            outputStream.write((remaining & VAR_INT_GROUP_MASK) | VAR_INT_CONTINUATION_BIT);
+            remaining >>>= VAR_INT_GROUP_SIZE;
+        }
+        outputStream.write(remaining);
+    }
+
+    @Override
+    public void writeSignedVarInt(final int v) {
+        writeVarInt((v << 1) ^ (v >> (Integer.SIZE - 1)));
+    }
+
+    @Override
+    public void writeVarLong(final long v) {
+        long remaining = v;
+        while ((remaining & ~VAR_INT_GROUP_MASK) != 0) {
+            outputStream.write((int) (remaining & VAR_INT_GROUP_MASK) | VAR_INT_CONTINUATION_BIT);
+            remaining >>>= VAR_INT_GROUP_SIZE;
+        }
+        outputStream.write((int) remaining);
+    }
+
+    @Override
+    public void writeSignedVarLong(final long v) {
+        writeVarLong((v << 1) ^ (v >> (Long.SIZE - 1)));
+    }
+
     @Override
     public void writeBytes(final @NonNull String s) {
         write(s.getBytes(StandardCharsets.UTF_8));
@@ -0,0 +1,45 @@
+package moe.mewore.rabbit.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A {@link SafeDataInput} which reads directly from a byte buffer (from its position up to its limit), without copying
+ * it into an array first. Meant for memory-mapped files, whose contents are then only read as they are needed.
+ */
+public class ByteBufferDataInput extends IndexedDataInput {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * A view of the same buffer which bulk reads are positioned in, since Java 11 has no absolute bulk reads.
+     */
+    private final ByteBuffer bulkView;
+
+    /**
+     * @param buffer The buffer to read from. Its position and limit are left as they are.
+     */
+    public ByteBufferDataInput(final ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+        bulkView = this.buffer.duplicate();
+        setRange(0, this.buffer.limit());
+    }
+
+    @Override
+    protected byte getByte(final int index) {
+        return buffer.get(index);
+    }
+
+    @Override
+    protected void getBytes(final int index, final byte[] target, final int offset, final int length) {
+        bulkView.position(index);
+        bulkView.get(target, offset, length);
+    }
+
+    @Override
+    protected String getString(final int index, final int length, final Charset charset) {
+        final byte[] bytes = new byte[length];
+        getBytes(index, bytes, 0, length);
+        return new String(bytes, charset);
+    }
+}
@@ -0,0 +1,185 @@
+package moe.mewore.rabbit.data;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A {@link SafeDataInput} which decodes its data from any source that its bytes can be read from by index. Every read
+ * is checked against the range of the data, so reading past its end throws an {@link IllegalArgumentException}.
+ */
+public abstract class IndexedDataInput implements SafeDataInput {
+
+    private int index = 0;
+
+    private int limit = 0;
+
+    /**
+     * @param from The index of the first byte to read.
+     * @param to   The index after the last byte to read.
+     */
+    protected void setRange(final int from, final int to) {
+        index = from;
+        limit = to;
+    }
+
+    protected abstract byte getByte(int index);
+
+    protected abstract void getBytes(int index, byte[] target, int offset, int length);
+
+    protected abstract String getString(int index, int length, Charset charset);
+
+    @Override
+    public int getRemaining() {
+        return limit - index;
+    }
+
+    private int advance(final int byteCount) {
+        if (byteCount > limit - index) {
+            throw new IllegalArgumentException(
+                "Cannot read " + byteCount + " byte(s) at index " + index + " because there are only " +
+                    (limit - index) + " left");
+        }
+        final int result = index;
+        index += byteCount;
+        return result;
+    }
+
+    @Override
+    public void readFully(final byte @NonNull [] b) {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(final byte @NonNull [] b, final int off, final int len) {
+        getBytes(advance(len), b, off, len);
+    }
+
+    @Override
+    public int skipBytes(final int n) {
+        final int skipped = Math.max(0, Math.min(n, limit - index));
+        index += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() {
+        return getByte(advance(1));
+    }
+
+    @Override
+    public int readUnsignedByte() {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() {
+        return (short) readUnsignedShort();
+    }
+
+    @Override
+    public int readUnsignedShort() {
+        final int from = advance(Short.BYTES);
+        return ((getByte(from) & 0xFF) << 8) | (getByte(from + 1) & 0xFF);
+    }
+
+    @Override
+    public char readChar() {
+        return (char) readUnsignedShort();
+    }
+
+    @Override
+    public int readInt() {
+        final int from = advance(Integer.BYTES);
+        return ((getByte(from) & 0xFF) << 24) | ((getByte(from + 1) & 0xFF) << 16) |
+            ((getByte(from + 2) & 0xFF) << 8) | (getByte(from + 3) & 0xFF);
+    }
+
+    @Override
+    public long readLong() {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public int readVarInt() {
+        final int from = index;
+        int result = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += ByteArrayDataOutput.VAR_INT_GROUP_SIZE) {
+            final byte b = readByte();
+            result |= (b & ByteArrayDataOutput.VAR_INT_GROUP_MASK) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("The variable-length int at index " + from + " is too long");
+    }
+
+    @Override
+    public int readSignedVarInt() {
+        final int zigZag = readVarInt();
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    @Override
+    public long readVarLong() {
+        final int from = index;
+        long result = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += ByteArrayDataOutput.VAR_INT_GROUP_SIZE) {
+            final byte b = readByte();
+            result |= (long) (b & ByteArrayDataOutput.VAR_INT_GROUP_MASK) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("The variable-length long at index " + from + " is too long");
+    }
+
+    @Override
+    public long readSignedVarLong() {
+        final long zigZag = readVarLong();
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    /**
+     * @return The bytes up to the next line feed (or the end of the data) as ISO-8859-1 characters.
+     */
+    @Override
+    public String readLine() {
+        final int from = index;
+        while (index < limit && getByte(index) != '\n') {
+            index++;
+        }
+        final String result = getString(from, index - from, StandardCharsets.ISO_8859_1);
+        if (index < limit) {
+            index++;
+        }
+        return result;
+    }
+
+    /**
+     * The counterpart of {@link ByteArrayDataOutput#writeUTF(String)}, which writes the string without its length.
+     *
+     * @return All of the remaining bytes as a UTF-8 string.
+     */
+    @Override
+    public String readUTF() {
+        final int length = limit - index;
+        return getString(advance(length), length, StandardCharsets.UTF_8);
+    }
+}
@@ -10,6 +10,12 @@ import org.checkerframework.checker.nullness.qual.NonNull;
  */
 public interface SafeDataInput extends DataInput {
 
+    /**
+     * @return How many bytes are left to read, which the decoders check the sizes they read against before allocating
+     * anything for them.
+     */
+    int getRemaining();
+
     @Override
     void readFully(byte @NonNull [] b);
 
@@ -49,6 +55,26 @@ public interface SafeDataInput extends DataInput {
     @Override
     double readDouble();
 
+    /**
+     * @return An int written with {@link SafeDataOutput#writeVarInt(int)}.
+     */
+    int readVarInt();
+
+    /**
+     * @return An int written with {@link SafeDataOutput#writeSignedVarInt(int)}.
+     */
+    int readSignedVarInt();
+
+    /**
+     * @return A long written with {@link SafeDataOutput#writeVarLong(long)}.
+     */
+    long readVarLong();
+
+    /**
+     * @return A long written with {@link SafeDataOutput#writeSignedVarLong(long)}.
+     */
+    long readSignedVarLong();
+
     @Override
     String readLine();
 
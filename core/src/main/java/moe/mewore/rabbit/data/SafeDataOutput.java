@@ -58,6 +58,29 @@ public interface SafeDataOutput extends DataOutput {
     @Override
     void writeUTF(@NonNull String s);
 
+    /**
+     * Writes an int in 7-bit groups, from the least significant one, with the highest bit of every byte except the
+     * last one set. Small non-negative values take a single byte but negative ones always take 5 bytes, so
+     * {@link SafeDataOutput#writeSignedVarInt(int)} should be preferred for them.
+     */
+    void writeVarInt(int v);
+
+    /**
+     * Writes an int with {@link SafeDataOutput#writeVarInt(int)} after ZigZag-encoding it so that values with a small
+     * absolute value take few bytes regardless of their sign.
+     */
+    void writeSignedVarInt(int v);
+
+    /**
+     * The {@code long} version of {@link SafeDataOutput#writeVarInt(int)}.
+     */
+    void writeVarLong(long v);
+
+    /**
+     * The {@code long} version of {@link SafeDataOutput#writeSignedVarInt(int)}.
+     */
+    void writeSignedVarLong(long v);
+
     void writeAsciiWithLength(@NonNull String s);
 
     <T extends BinaryEntity> void writeArray(@NonNull T @NonNull [] entities);
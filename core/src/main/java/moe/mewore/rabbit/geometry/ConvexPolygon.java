@@ -6,10 +6,20 @@ import java.util.List;
 
 import lombok.Getter;
 import moe.mewore.rabbit.data.BinaryEntity;
+import moe.mewore.rabbit.data.SafeDataInput;
 import moe.mewore.rabbit.data.SafeDataOutput;
 
 public class ConvexPolygon extends BinaryEntity {
 
+    private static final int MINIMUM_POINT_COUNT = 3;
+
+    private static final int POINT_ENCODED_SIZE = Float.BYTES * 2;
+
+    /**
+     * The number of bytes a polygon takes at the very least when encoded - its point count and three points.
+     */
+    public static final int MINIMUM_ENCODED_SIZE = Integer.BYTES + POINT_ENCODED_SIZE * MINIMUM_POINT_COUNT;
+
     @Getter
     private final List<Vector2> points;
 
@@ -26,6 +36,24 @@ public class ConvexPolygon extends BinaryEntity {
         aabb = new AxisAlignedRectangle(points);
     }
 
+    /**
+     * @throws IllegalArgumentException If the number of points is not that of a polygon or there are not enough bytes
+     *                                  left for them.
+     */
+    public static ConvexPolygon decodeFromBinary(final SafeDataInput input) {
+        final int pointCount = input.readInt();
+        if (pointCount < MINIMUM_POINT_COUNT || pointCount > input.getRemaining() / POINT_ENCODED_SIZE) {
+            throw new IllegalArgumentException(
+                "A polygon of " + pointCount + " points cannot be decoded from the remaining " + input.getRemaining() +
+                    " byte(s)");
+        }
+        final List<Vector2> points = new ArrayList<>(pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            points.add(new Vector2(input.readFloat(), input.readFloat()));
+        }
+        return new ConvexPolygon(points);
+    }
+
     public ConvexPolygon withOffset(final Vector2 offset) {
         final List<Vector2> newPoints = new ArrayList<>(points.size());
         for (final Vector2 point : points) {
@@ -0,0 +1,182 @@
+package moe.mewore.rabbit.world;
+
+import lombok.Getter;
+import moe.mewore.rabbit.data.BinaryEntity;
+import moe.mewore.rabbit.data.SafeDataInput;
+import moe.mewore.rabbit.data.SafeDataOutput;
+
+/**
+ * A grid of bits which wraps around at its edges, with every row packed into longs. Ranges of cells in a row are
+ * counted a whole word at a time.
+ */
+public class BitGrid extends BinaryEntity {
+
+    private static final int WORD_SHIFT = 6;
+
+    private static final int WORD_SIZE = 1 << WORD_SHIFT;
+
+    @Getter
+    private final int rowCount;
+
+    @Getter
+    private final int columnCount;
+
+    private final int wordsPerRow;
+
+    private final long[] words;
+
+    public BitGrid(final int rowCount, final int columnCount) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        wordsPerRow = (columnCount + WORD_SIZE - 1) >>> WORD_SHIFT;
+        words = new long[rowCount * wordsPerRow];
+    }
+
+    public static BitGrid of(final boolean[][] cells) {
+        final BitGrid result = new BitGrid(cells.length, cells[0].length);
+        for (int i = 0; i < cells.length; i++) {
+            for (int j = 0; j < cells[i].length; j++) {
+                result.set(i, j, cells[i][j]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The counterpart of {@link BitGrid#appendToBinaryOutput(SafeDataOutput)}.
+     */
+    public static BitGrid decodeFromBinary(final SafeDataInput input, final int rowCount, final int columnCount) {
+        final BitGrid result = new BitGrid(rowCount, columnCount);
+        int currentByte = 0;
+        int bitsInByte = 0;
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < columnCount; j++) {
+                if (bitsInByte == 0) {
+                    currentByte = input.readUnsignedByte();
+                    bitsInByte = Byte.SIZE;
+                }
+                result.set(i, j, (currentByte & (1 << (Byte.SIZE - bitsInByte))) != 0);
+                bitsInByte--;
+            }
+        }
+        return result;
+    }
+
+    private int getWordIndex(final int row, final int col) {
+        return Math.floorMod(row, rowCount) * wordsPerRow + (Math.floorMod(col, columnCount) >>> WORD_SHIFT);
+    }
+
+    public boolean get(final int row, final int col) {
+        return (words[getWordIndex(row, col)] & (1L << Math.floorMod(col, columnCount))) != 0;
+    }
+
+    public void set(final int row, final int col, final boolean value) {
+        final int wordIndex = getWordIndex(row, col);
+        final long bit = 1L << Math.floorMod(col, columnCount);
+        words[wordIndex] = value ? words[wordIndex] | bit : words[wordIndex] & ~bit;
+    }
+
+    public void flip(final int row, final int col) {
+        words[getWordIndex(row, col)] ^= 1L << Math.floorMod(col, columnCount);
+    }
+
+    /**
+     * @param other A grid of the same size as this one, whose cells to copy into this one.
+     */
+    public void copyFrom(final BitGrid other) {
+        System.arraycopy(other.words, 0, words, 0, words.length);
+    }
+
+    /**
+     * @param other A grid of the same size as this one, whose set cells to also set in this one.
+     */
+    public void or(final BitGrid other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+    }
+
+    public void invert() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = ~words[i];
+        }
+    }
+
+    /**
+     * @param row     The row of the cells. Wrapped around if it is outside the grid.
+     * @param fromCol The column of the first cell. Wrapped around if it is outside the grid.
+     * @param length  How many cells to count, continuing from the start of the row if the end of the row is reached.
+     * @return How many of the cells are set.
+     */
+    public int count(final int row, final int fromCol, final int length) {
+        final int rowStart = Math.floorMod(row, rowCount) * wordsPerRow;
+        int col = Math.floorMod(fromCol, columnCount);
+        int remaining = length;
+        int result = 0;
+        while (remaining > 0) {
+            final int toCol = Math.min(columnCount, col + remaining);
+            result += countInRow(rowStart, col, toCol);
+            remaining -= toCol - col;
+            col = 0;
+        }
+        return result;
+    }
+
+    private int countInRow(final int rowStart, final int fromCol, final int toCol) {
+        final int firstWord = fromCol >>> WORD_SHIFT;
+        final int lastWord = (toCol - 1) >>> WORD_SHIFT;
+        int result = 0;
+        for (int word = firstWord; word <= lastWord; word++) {
+            long bits = words[rowStart + word];
+            if (word == firstWord) {
+                bits &= -1L << fromCol;
+            }
+            if (word == lastWord) {
+                bits &= -1L >>> (WORD_SIZE - 1 - ((toCol - 1) & (WORD_SIZE - 1)));
+            }
+            result += Long.bitCount(bits);
+        }
+        return result;
+    }
+
+    /**
+     * @return How many of the 8 cells around a cell are set.
+     */
+    public int countNeighbours(final int row, final int col) {
+        return count(row - 1, col - 1, 3) + count(row + 1, col - 1, 3) + count(row, col - 1, 1) +
+            count(row, col + 1, 1);
+    }
+
+    /**
+     * @return How many of the 4 cells above, below, to the left of and to the right of a cell are set.
+     */
+    public int countOrthogonalNeighbours(final int row, final int col) {
+        return (get(row - 1, col) ? 1 : 0) + (get(row + 1, col) ? 1 : 0) + (get(row, col - 1) ? 1 : 0) +
+            (get(row, col + 1) ? 1 : 0);
+    }
+
+    /**
+     * Only the cells themselves are written, row by row and 8 of them to a byte, so the size of the grid has to be
+     * known in order to read them.
+     */
+    @Override
+    public void appendToBinaryOutput(final SafeDataOutput output) {
+        int currentByte = 0;
+        int bitsInByte = 0;
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < columnCount; j++) {
+                if (get(i, j)) {
+                    currentByte |= 1 << bitsInByte;
+                }
+                if (++bitsInByte == Byte.SIZE) {
+                    output.writeByte(currentByte);
+                    currentByte = 0;
+                    bitsInByte = 0;
+                }
+            }
+        }
+        if (bitsInByte > 0) {
+            output.writeByte(currentByte);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package moe.mewore.rabbit.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import moe.mewore.rabbit.noise.Noise;
+
+/**
+ * A world made of maze maps (chunks) side by side, with the same number of chunks along each axis. Like a single maze
+ * map, it wraps around, and the chunk at (0, 0) is centered at the origin. The chunks go from {@code -chunkRadius} to
+ * {@code chunkRadius} along each axis, and any other chunk coordinates are wrapped into that range.
+ * <p>
+ * Each chunk is generated from the seed of the world and its own position only, so it can be generated whenever it is
+ * needed and dropped when it is not. Only the most recently used chunks are kept.
+ * <p>
+ * The cells at the edges of every chunk are open, so the chunks fit together no matter what is inside them and there
+ * is a path between any two of them.
+ */
+public class ChunkedMazeWorld implements WrappingArea {
+
+    private static final long CHUNK_X_SALT = 0x9E3779B97F4A7C15L;
+
+    private static final long CHUNK_Z_SALT = 0xC2B2AE3D27D4EB4FL;
+
+    private final WorldProperties chunkProperties;
+
+    private final long seed;
+
+    private final LongFunction<Noise> opennessNoiseFactory;
+
+    private final Map<Long, CachedChunk> chunks = new ConcurrentHashMap<>();
+
+    /**
+     * The keys of the chunks which have been handed to an executor to be generated, but have not been generated yet.
+     */
+    private final Set<Long> chunksBeingPrefetched = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong useCounter = new AtomicLong();
+
+    private final int maxCachedChunks;
+
+    @Getter
+    private final int chunkRadius;
+
+    /**
+     * The number of chunks along each axis.
+     */
+    @Getter
+    private final int chunkCount;
+
+    @Getter
+    private final double chunkWidth;
+
+    @Getter
+    private final double chunkDepth;
+
+    @Getter
+    private final float width;
+
+    @Getter
+    private final float depth;
+
+    /**
+     * @param properties           The properties of every chunk. The cells flipped in them are ignored, since they are
+     *                             meant for a single map.
+     * @param opennessNoiseFactory Makes the openness noise of a chunk out of a seed.
+     * @param chunkRadius          How many chunks there are on each side of the chunk at the origin, along each axis.
+     * @param maxCachedChunks      How many of the most recently used chunks to keep.
+     */
+    public ChunkedMazeWorld(final WorldProperties properties, final LongFunction<Noise> opennessNoiseFactory,
+        final int chunkRadius, final int maxCachedChunks) {
+        if (chunkRadius < 0) {
+            throw new IllegalArgumentException("The chunk radius cannot be negative, but it is " + chunkRadius);
+        }
+        chunkProperties = new WorldProperties(properties.getSeed(), properties.getColumnCount(),
+            properties.getRowCount(), properties.getCellSize(), properties.getNoiseSharpness(),
+            properties.getNoiseResolution(), properties.getSmoothingPasses(), "");
+        seed = properties.getSeedAsLong();
+        this.opennessNoiseFactory = opennessNoiseFactory;
+        this.chunkRadius = chunkRadius;
+        chunkCount = chunkRadius * 2 + 1;
+        chunkWidth = properties.getColumnCount() * properties.getCellSize();
+        chunkDepth = properties.getRowCount() * properties.getCellSize();
+        width = (float) (chunkWidth * chunkCount);
+        depth = (float) (chunkDepth * chunkCount);
+        this.maxCachedChunks = maxCachedChunks;
+    }
+
+    /**
+     * @param chunkCoordinate The X or Z coordinate of a chunk, in chunks.
+     * @return The same coordinate, but between {@code -chunkRadius} and {@code chunkRadius}.
+     */
+    public int wrapChunk(final int chunkCoordinate) {
+        return Math.floorMod(chunkCoordinate + chunkRadius, chunkCount) - chunkRadius;
+    }
+
+    /**
+     * @param chunkX The X coordinate of a chunk, in chunks. Wrapped around if it is outside the world.
+     * @param chunkZ The Z coordinate of a chunk, in chunks. Wrapped around if it is outside the world.
+     * @return A key which is the same for the same chunk and different for different chunks.
+     */
+    public long getChunkKey(final int chunkX, final int chunkZ) {
+        return ((long) wrapChunk(chunkX) << Integer.SIZE) | (wrapChunk(chunkZ) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Generates a chunk if it is not cached. A chunk which is already being generated is waited for rather than
+     * generated again.
+     *
+     * @param chunkX The X coordinate of the chunk, in chunks. Wrapped around if it is outside the world.
+     * @param chunkZ The Z coordinate of the chunk, in chunks. Wrapped around if it is outside the world.
+     * @return The chunk.
+     */
+    public MazeMap getChunk(final int chunkX, final int chunkZ) {
+        final @Nullable MazeMap cached = getCachedChunk(chunkX, chunkZ);
+        if (cached != null) {
+            return cached;
+        }
+        final int wrappedX = wrapChunk(chunkX);
+        final int wrappedZ = wrapChunk(chunkZ);
+        final CachedChunk generated = chunks.computeIfAbsent(getChunkKey(wrappedX, wrappedZ),
+            newKey -> new CachedChunk(generateChunk(wrappedX, wrappedZ)));
+        // Marked as used before the eviction so that it is not evicted itself
+        generated.lastUse = useCounter.incrementAndGet();
+        if (chunks.size() > maxCachedChunks) {
+            evictLeastRecentlyUsed();
+        }
+        return generated.chunk;
+    }
+
+    /**
+     * Like {@link ChunkedMazeWorld#getChunk(int, int)}, but never generates the chunk, so it never takes long.
+     *
+     * @return The chunk, or {@code null} if it is not cached.
+     */
+    public @Nullable MazeMap getCachedChunk(final int chunkX, final int chunkZ) {
+        final @Nullable CachedChunk cached = chunks.get(getChunkKey(chunkX, chunkZ));
+        if (cached == null) {
+            return null;
+        }
+        cached.lastUse = useCounter.incrementAndGet();
+        return cached.chunk;
+    }
+
+    /**
+     * Generates a chunk with an executor so that it is cached by the time it is needed, unless it is cached already
+     * or it has been handed to an executor before and has not been generated yet. A cached chunk is marked as used
+     * instead, so that it is not evicted. If the executor rejects the chunk, it can be prefetched again later.
+     *
+     * @param chunkX   The X coordinate of the chunk, in chunks. Wrapped around if it is outside the world.
+     * @param chunkZ   The Z coordinate of the chunk, in chunks. Wrapped around if it is outside the world.
+     * @param executor The executor to generate the chunk with.
+     */
+    public void prefetchChunk(final int chunkX, final int chunkZ, final Executor executor) {
+        if (getCachedChunk(chunkX, chunkZ) != null) {
+            return;
+        }
+        final long key = getChunkKey(chunkX, chunkZ);
+        if (!chunksBeingPrefetched.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    getChunk(chunkX, chunkZ);
+                } finally {
+                    chunksBeingPrefetched.remove(key);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            chunksBeingPrefetched.remove(key);
+        }
+    }
+
+    public int getCachedChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Only the evictions are done one at a time, so that several of them do not evict more chunks than needed.
+     */
+    private synchronized void evictLeastRecentlyUsed() {
+        while (chunks.size() > maxCachedChunks) {
+            long oldestKey = 0L;
+            long oldestUse = Long.MAX_VALUE;
+            for (final Map.Entry<Long, CachedChunk> entry : chunks.entrySet()) {
+                if (entry.getValue().lastUse < oldestUse) {
+                    oldestKey = entry.getKey();
+                    oldestUse = entry.getValue().lastUse;
+                }
+            }
+            chunks.remove(oldestKey);
+        }
+    }
+
+    private MazeMap generateChunk(final int chunkX, final int chunkZ) {
+        final long chunkSeed = new SplittableRandom(seed ^ (chunkX * CHUNK_X_SALT) ^ (chunkZ * CHUNK_Z_SALT))
+            .nextLong();
+        final MazeMap chunk = MazeMap.createSeamless(chunkProperties, new Random(chunkSeed),
+            opennessNoiseFactory.apply(chunkSeed));
+        final int rowCount = chunk.getRowCount();
+        final int columnCount = chunk.getColumnCount();
+        final List<Integer> changedCells = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < columnCount; j++) {
+                if ((i == 0 || j == 0 || i == rowCount - 1 || j == columnCount - 1) && !chunk.getCell(i, j)) {
+                    chunk.setCell(i, j, true);
+                    changedCells.add(i * columnCount + j);
+                }
+            }
+        }
+
+        // The open cells are all reachable from the center, but they may not reach the edges
+        final BitGrid cells = new BitGrid(rowCount, columnCount);
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < columnCount; j++) {
+                cells.set(i, j, chunk.getCell(i, j));
+            }
+        }
+        if (!MazeTraversal.of(cells, rowCount / 2, columnCount / 2).isReached(0, columnCount / 2)) {
+            for (int i = 1; i < rowCount / 2; i++) {
+                if (!chunk.getCell(i, columnCount / 2)) {
+                    chunk.setCell(i, columnCount / 2, true);
+                    changedCells.add(i * columnCount + columnCount / 2);
+                }
+            }
+        }
+        if (!changedCells.isEmpty()) {
+            chunk.recomputeWalls(changedCells);
+        }
+        return chunk;
+    }
+
+    @Override
+    public double wrapX(final double x) {
+        return x - Math.floor(x / width + 0.5) * width;
+    }
+
+    @Override
+    public double wrapZ(final double z) {
+        return z - Math.floor(z / depth + 0.5) * depth;
+    }
+
+    /**
+     * @return The X coordinate of the chunk a point is in, in chunks. Not wrapped around.
+     */
+    public int getChunkX(final double x) {
+        return (int) Math.floor(x / chunkWidth + .5);
+    }
+
+    /**
+     * @return The Z coordinate of the chunk a point is in, in chunks. Not wrapped around.
+     */
+    public int getChunkZ(final double z) {
+        return (int) Math.floor(z / chunkDepth + .5);
+    }
+
+    /**
+     * @return Whether a point of the world is inside any of the walls, generating its chunk if it is not cached.
+     */
+    public boolean isInWall(final double x, final double z) {
+        final int chunkX = getChunkX(x);
+        final int chunkZ = getChunkZ(z);
+        return getChunk(chunkX, chunkZ).isInWall(x / chunkWidth + .5 - chunkX, z / chunkDepth + .5 - chunkZ);
+    }
+
+    /**
+     * Goes through the chunks which are at most some distance away from a point (along each axis), without generating
+     * them. Each chunk is given once even if the distance reaches it from both sides.
+     *
+     * @param x        The X coordinate of the point.
+     * @param z        The Z coordinate of the point.
+     * @param distance How far away from the point the chunks can be.
+     * @param consumer Given the wrapped coordinates of each chunk.
+     */
+    public void forEachChunkNear(final double x, final double z, final double distance,
+        final ChunkPositionConsumer consumer) {
+        final int fromX = getChunkX(x - distance);
+        final int toX = Math.min(getChunkX(x + distance), fromX + chunkCount - 1);
+        final int fromZ = getChunkZ(z - distance);
+        final int toZ = Math.min(getChunkZ(z + distance), fromZ + chunkCount - 1);
+        for (int chunkZ = fromZ; chunkZ <= toZ; chunkZ++) {
+            for (int chunkX = fromX; chunkX <= toX; chunkX++) {
+                consumer.accept(wrapChunk(chunkX), wrapChunk(chunkZ));
+            }
+        }
+    }
+
+    /**
+     * @return How far a point is from a chunk along the axis along which it is farther, going across the seams of
+     * the world if that is closer. 0 if the point is inside the chunk.
+     */
+    public double getDistanceToChunk(final double x, final double z, final int chunkX, final int chunkZ) {
+        final double distanceX = Math.abs(wrapX(x - chunkX * chunkWidth)) - chunkWidth * .5;
+        final double distanceZ = Math.abs(wrapZ(z - chunkZ * chunkDepth)) - chunkDepth * .5;
+        return Math.max(0.0, Math.max(distanceX, distanceZ));
+    }
+
+    @RequiredArgsConstructor
+    private static class CachedChunk {
+
+        private final MazeMap chunk;
+
+        private volatile long lastUse = 0L;
+    }
+
+    @FunctionalInterface
+    public interface ChunkPositionConsumer {
+
+        void accept(int chunkX, int chunkZ);
+    }
+}
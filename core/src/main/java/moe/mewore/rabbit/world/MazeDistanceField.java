@@ -0,0 +1,168 @@
+package moe.mewore.rabbit.world;
+
+import java.util.stream.IntStream;
+
+import lombok.Getter;
+import moe.mewore.rabbit.data.BinaryEntity;
+import moe.mewore.rabbit.data.SafeDataOutput;
+
+/**
+ * The signed distance from points of a maze map to the closest wall boundary, in cells. Negative inside the walls.
+ * <p>
+ * The distances are sampled on a grid a few times finer than the cells of the map and looked up with bilinear
+ * interpolation, wrapping around at the edges of the map. They are computed with an exact Euclidean distance
+ * transform (Felzenszwalb and Huttenlocher) - first along every row of samples and then along every column, each of
+ * which is done in parallel - so a sample is off by at most half the distance between two samples.
+ */
+public class MazeDistanceField extends BinaryEntity {
+
+    /**
+     * Large enough to be farther than any sample, but small enough to not overflow when squared and summed.
+     */
+    private static final double FAR = 1e20;
+
+    @Getter
+    private final int samplesPerCell;
+
+    @Getter
+    private final int rowCount;
+
+    @Getter
+    private final int columnCount;
+
+    private final float[] distances;
+
+    private MazeDistanceField(final int samplesPerCell, final int rowCount, final int columnCount,
+        final float[] distances) {
+        this.samplesPerCell = samplesPerCell;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.distances = distances;
+    }
+
+    /**
+     * @param map            The map to compute the distances of.
+     * @param samplesPerCell How many samples there are along each side of a cell.
+     */
+    public static MazeDistanceField of(final MazeMap map, final int samplesPerCell) {
+        final int rowCount = map.getRowCount() * samplesPerCell;
+        final int columnCount = map.getColumnCount() * samplesPerCell;
+        final boolean[] inWall = new boolean[rowCount * columnCount];
+        IntStream.range(0, rowCount).parallel().forEach(row -> {
+            final double y = (row + .5) / rowCount;
+            for (int col = 0; col < columnCount; col++) {
+                inWall[row * columnCount + col] = map.isInWall((col + .5) / columnCount, y);
+            }
+        });
+
+        final double[] toWalls = transform(inWall, true, rowCount, columnCount);
+        final double[] toOpenSpace = transform(inWall, false, rowCount, columnCount);
+        final float[] distances = new float[rowCount * columnCount];
+        for (int sample = 0; sample < distances.length; sample++) {
+            // The boundary is between the closest sample on the other side and the ones next to it
+            final double distance = inWall[sample]
+                ? .5 - Math.sqrt(toOpenSpace[sample])
+                : Math.sqrt(toWalls[sample]) - .5;
+            distances[sample] = (float) Math.min(distance / samplesPerCell, Float.MAX_VALUE);
+        }
+        return new MazeDistanceField(samplesPerCell, rowCount, columnCount, distances);
+    }
+
+    /**
+     * @return The squared distance from every sample to the closest one which is (or is not) in a wall, in samples.
+     */
+    private static double[] transform(final boolean[] inWall, final boolean toWall, final int rowCount,
+        final int columnCount) {
+        final double[] result = new double[inWall.length];
+        for (int sample = 0; sample < inWall.length; sample++) {
+            result[sample] = inWall[sample] == toWall ? 0.0 : FAR;
+        }
+        IntStream.range(0, rowCount)
+            .parallel()
+            .forEach(row -> transformLine(result, row * columnCount, 1, columnCount));
+        IntStream.range(0, columnCount)
+            .parallel()
+            .forEach(col -> transformLine(result, col, columnCount, rowCount));
+        return result;
+    }
+
+    /**
+     * Replaces the values along a line of samples with the lower envelope of the parabolas rooted at them. The line
+     * wraps around, so it is gone through three times in a row and only the middle of the result is taken.
+     *
+     * @param values The squared distances of all samples.
+     * @param from   The index of the first sample of the line.
+     * @param stride How far apart the samples of the line are in the values.
+     * @param length How many samples the line has.
+     */
+    private static void transformLine(final double[] values, final int from, final int stride, final int length) {
+        final int extendedLength = length * 3;
+        final double[] line = new double[extendedLength];
+        for (int i = 0; i < extendedLength; i++) {
+            line[i] = values[from + (i % length) * stride];
+        }
+        final int[] roots = new int[extendedLength];
+        final double[] boundaries = new double[extendedLength + 1];
+        int parabola = 0;
+        boundaries[0] = Double.NEGATIVE_INFINITY;
+        boundaries[1] = Double.POSITIVE_INFINITY;
+        for (int q = 1; q < extendedLength; q++) {
+            double intersection = intersect(line, roots[parabola], q);
+            while (intersection <= boundaries[parabola]) {
+                parabola--;
+                intersection = intersect(line, roots[parabola], q);
+            }
+            parabola++;
+            roots[parabola] = q;
+            boundaries[parabola] = intersection;
+            boundaries[parabola + 1] = Double.POSITIVE_INFINITY;
+        }
+
+        parabola = 0;
+        for (int q = 0; q < extendedLength; q++) {
+            while (boundaries[parabola + 1] < q) {
+                parabola++;
+            }
+            if (q >= length && q < length * 2) {
+                final double offset = q - roots[parabola];
+                values[from + (q - length) * stride] = offset * offset + line[roots[parabola]];
+            }
+        }
+    }
+
+    private static double intersect(final double[] line, final int first, final int second) {
+        return ((line[second] + (double) second * second) - (line[first] + (double) first * first)) /
+            (2.0 * second - 2.0 * first);
+    }
+
+    /**
+     * @param x The normalized X coordinate. Wrapped around if it is outside the map.
+     * @param y The normalized Y coordinate. Wrapped around if it is outside the map.
+     * @return The approximate signed distance from the point to the closest wall boundary, in cells.
+     */
+    public double get(final double x, final double y) {
+        final double sampleX = x * columnCount - .5;
+        final double sampleY = y * rowCount - .5;
+        final double leftX = Math.floor(sampleX);
+        final double topY = Math.floor(sampleY);
+        final double ratioX = sampleX - leftX;
+        final double ratioY = sampleY - topY;
+        final int left = Math.floorMod((long) leftX, columnCount);
+        final int right = left + 1 < columnCount ? left + 1 : 0;
+        final int top = Math.floorMod((long) topY, rowCount) * columnCount;
+        final int bottom = top + columnCount < distances.length ? top + columnCount : 0;
+        final double upper = distances[top + left] + (distances[top + right] - distances[top + left]) * ratioX;
+        final double lower = distances[bottom + left] + (distances[bottom + right] - distances[bottom + left]) * ratioX;
+        return upper + (lower - upper) * ratioY;
+    }
+
+    @Override
+    public void appendToBinaryOutput(final SafeDataOutput output) {
+        output.writeInt(samplesPerCell);
+        output.writeInt(rowCount);
+        output.writeInt(columnCount);
+        for (final float distance : distances) {
+            output.writeFloat(distance);
+        }
+    }
+}
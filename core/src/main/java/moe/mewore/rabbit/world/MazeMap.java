@@ -3,23 +3,26 @@ package moe.mewore.rabbit.world;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Random;
 import java.util.Stack;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import lombok.Getter;
 import lombok.Setter;
 import moe.mewore.rabbit.data.BinaryEntity;
+import moe.mewore.rabbit.data.SafeDataInput;
 import moe.mewore.rabbit.data.SafeDataOutput;
 import moe.mewore.rabbit.geometry.ConvexPolygon;
 import moe.mewore.rabbit.geometry.Vector2;
@@ -27,7 +30,7 @@ import moe.mewore.rabbit.noise.Noise;
 
 // I'm too retarded to make an algorithmic/geometric class which isn't complex.
 @SuppressWarnings({"OverlyComplexMethod", "OverlyComplexClass"})
-public class MazeMap extends BinaryEntity {
+public class MazeMap extends BinaryEntity implements WrappingArea {
 
     private static final int[] dx = {-1, 1, 0, 0, -1, -1, 1, 1};
 
@@ -43,8 +46,39 @@ public class MazeMap extends BinaryEntity {
 
     private static final Color SOLID_COLOR_DARK = SOLID_COLOR.darker().darker();
 
+    /**
+     * Has to be increased whenever {@link MazeMap#createSeamless(WorldProperties, Random, Noise)} generates different
+     * maps out of the same properties, so that the maps generated before are not loaded from a {@link MazeMapCache}.
+     */
+    public static final int GENERATOR_VERSION = 1;
+
     private static final float SMOOTHING = 0.3f;
 
+    /**
+     * How many rows of cells are smoothed as a single task while generating a map.
+     */
+    private static final int ROWS_PER_BAND = 8;
+
+    /**
+     * How many cells a layer of the search for reachable cells has to have for it to be searched in parallel.
+     */
+    private static final int MINIMUM_PARALLEL_LAYER_SIZE = 256;
+
+    /**
+     * How many cells of a large layer of the search for reachable cells are searched as a single task.
+     */
+    private static final int CELLS_PER_LAYER_TASK = 64;
+
+    /**
+     * How many rows of pixels have their fertility sampled at once while applying it to an image.
+     */
+    private static final int FERTILITY_TILE_HEIGHT = 16;
+
+    /**
+     * How far from the walls (in cells) anything is fertile.
+     */
+    private static final double FERTILE_DISTANCE = .8;
+
     @Getter
     private final float width;
 
@@ -62,266 +96,369 @@ public class MazeMap extends BinaryEntity {
 
     private final double cellSize;
 
-    private final boolean[][] map;
+    private final BitGrid map;
 
     @Setter
     private boolean darkMode = false;
 
-    private final int[][][] relevantPolygonIndices;
+    /**
+     * The walls which are relevant to each cell and their geometry. Replaced as a whole whenever the walls change.
+     */
+    @Getter
+    private volatile WallIndex wallIndex;
+
+    /**
+     * The distance field the fertility is looked up in, if one has been computed. Replaced as a whole whenever the
+     * walls change.
+     */
+    @Getter
+    private volatile @Nullable MazeDistanceField distanceField = null;
 
     protected MazeMap(final double cellSize, final boolean[][] map, final List<MazeWall> walls,
         final int[][][] relevantPolygonIndices) {
-        this.rowCount = map.length;
-        this.columnCount = map[0].length;
+        this(cellSize, BitGrid.of(map), walls, relevantPolygonIndices);
+    }
+
+    protected MazeMap(final double cellSize, final BitGrid map, final List<MazeWall> walls,
+        final int[][][] relevantPolygonIndices) {
+        this(cellSize, map, walls, WallIndex.of(walls, relevantPolygonIndices));
+    }
+
+    private MazeMap(final double cellSize, final BitGrid map, final List<MazeWall> walls, final WallIndex wallIndex) {
+        this.rowCount = map.getRowCount();
+        this.columnCount = map.getColumnCount();
         this.cellSize = cellSize;
         this.width = (float) (columnCount * cellSize);
         this.depth = (float) (rowCount * cellSize);
         this.map = map;
         this.walls = walls;
-        this.relevantPolygonIndices = relevantPolygonIndices;
+        this.wallIndex = wallIndex;
     }
 
     public static MazeMap createSeamless(final WorldProperties properties, final Random random,
         final Noise opennessNoise) {
         final int rowCount = properties.getRowCount();
         final int columnCount = properties.getColumnCount();
-        final boolean[][] map = createSeamlessLabyrinth(columnCount, rowCount, random);
+        final BitGrid map = createSeamlessLabyrinth(columnCount, rowCount, random);
 
         for (int i = -1; i <= 1; i++) {
             for (int j = -1; j <= 1; j++) {
-                map[Math.min(Math.max(rowCount / 2 + i, 0), rowCount - 1)][Math.min(Math.max(columnCount / 2 + j, 0),
-                    columnCount - 1)] = true;
+                map.set(Math.min(Math.max(rowCount / 2 + i, 0), rowCount - 1),
+                    Math.min(Math.max(columnCount / 2 + j, 0), columnCount - 1), true);
             }
         }
-        final boolean[][] oldMap = new boolean[rowCount][columnCount];
-        for (int i = 0; i < rowCount; i++) {
-            System.arraycopy(map[i], 0, oldMap[i], 0, map[i].length);
-        }
+        final BitGrid oldMap = new BitGrid(rowCount, columnCount);
+        oldMap.copyFrom(map);
+        final int bandCount = (rowCount + ROWS_PER_BAND - 1) / ROWS_PER_BAND;
+        final double[] openness = new double[rowCount * columnCount];
+        IntStream.range(0, rowCount).parallel().forEach(i -> {
+            for (int j = 0; j < columnCount; j++) {
+                openness[i * columnCount + j] = opennessNoise.get((double) (j) / columnCount, (double) (i) / rowCount);
+            }
+        });
+        final double[] flipRolls = new double[rowCount * columnCount];
         for (int pass = 0; pass < properties.getSmoothingPasses(); pass++) {
-            for (int i = 0; i < rowCount; i++) {
-                System.arraycopy(map[i], 0, oldMap[i], 0, map[i].length);
+            oldMap.copyFrom(map);
+            // The random numbers are drawn cell by cell in order, so the same seed always results in the same map
+            for (int cell = 0; cell < flipRolls.length; cell++) {
+                if (map.get(cell / columnCount, cell % columnCount) != openness[cell] > 0.5) {
+                    flipRolls[cell] = random.nextDouble();
+                }
             }
-            for (int i = 0; i < rowCount; i++) {
-                for (int j = 0; j < columnCount; j++) {
-                    final double openness = opennessNoise.get((double) (j) / columnCount, (double) (i) / rowCount);
-                    if (map[i][j] == openness > 0.5) {
-                        continue;
-                    }
-                    final double baseFlipChance = Math.abs(openness - 0.5) * 2;
-                    int neighbouringWalls = 0;
-                    for (int d = 0; d < 8; d++) {
-                        if (!oldMap[wrap(i + dy[d], rowCount)][wrap(j + dx[d], columnCount)]) {
-                            neighbouringWalls += Math.abs(dy[d]) + Math.abs(dx[d]);
-                        }
-                    }
+            IntStream.range(0, bandCount)
+                .parallel()
+                .forEach(band -> applyNoiseToBand(map, oldMap, band, openness, flipRolls));
+        }
+        IntStream.range(0, bandCount)
+            .parallel()
+            .forEach(band -> smoothBand(map, oldMap, band));
 
-                    final double flipChance = Math.pow(baseFlipChance,
-                        map[i][j] ? (12 - neighbouringWalls) : neighbouringWalls);
+        map.copyFrom(findReachableCells(map, rowCount / 2, columnCount / 2));
+        for (final int cell : properties.getFlippedCellSet()) {
+            map.flip(cell / columnCount, cell % columnCount);
+        }
 
-                    if (random.nextDouble() < flipChance) {
-                        map[i][j] = !map[i][j];
-                    }
+        final List<MazeWall> walls = generateWallsFromMap(columnCount, rowCount, map);
+        return new MazeMap(properties.getCellSize(), map, walls, WallIndex.of(walls, rowCount, columnCount));
+    }
+
+    /**
+     * The counterpart of {@link MazeMap#appendToBinaryOutput(SafeDataOutput)}. The walls relevant to each cell are
+     * found anew, the same way as for a newly generated map.
+     *
+     * @throws IllegalArgumentException If the data is not a valid map.
+     */
+    public static MazeMap decodeFromBinary(final SafeDataInput input) {
+        final int rowCount = input.readInt();
+        final int columnCount = input.readInt();
+        final double cellSize = input.readDouble();
+        if (rowCount <= 0 || columnCount <= 0 ||
+            (long) rowCount * columnCount > (long) input.getRemaining() * Byte.SIZE) {
+            throw new IllegalArgumentException(
+                "A map of " + rowCount + "x" + columnCount + " cells cannot be decoded from the remaining " +
+                    input.getRemaining() + " byte(s)");
+        }
+        if (!(cellSize > 0.0) || Double.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellSize);
+        }
+        final BitGrid map = BitGrid.decodeFromBinary(input, rowCount, columnCount);
+        final int wallCount = input.readInt();
+        if (wallCount < 0 || wallCount > input.getRemaining() / MazeWall.MINIMUM_ENCODED_SIZE) {
+            throw new IllegalArgumentException(
+                wallCount + " walls cannot be decoded from the remaining " + input.getRemaining() + " byte(s)");
+        }
+        final List<MazeWall> walls = new ArrayList<>(wallCount);
+        for (int i = 0; i < wallCount; i++) {
+            walls.add(MazeWall.decodeFromBinary(input));
+        }
+        return new MazeMap(cellSize, map, walls, WallIndex.of(walls, rowCount, columnCount));
+    }
+
+    /**
+     * Flips some of the cells in a band of rows towards their openness, using the random numbers drawn for them.
+     */
+    private static void applyNoiseToBand(final BitGrid map, final BitGrid oldMap, final int band,
+        final double[] openness, final double[] flipRolls) {
+        final int rowCount = map.getRowCount();
+        final int columnCount = map.getColumnCount();
+        for (int i = band * ROWS_PER_BAND; i < Math.min(rowCount, (band + 1) * ROWS_PER_BAND); i++) {
+            for (int j = 0; j < columnCount; j++) {
+                final int cell = i * columnCount + j;
+                if (map.get(i, j) == openness[cell] > 0.5) {
+                    continue;
+                }
+                final double baseFlipChance = Math.abs(openness[cell] - 0.5) * 2;
+                // The walls next to the cell count once and the diagonal ones count twice
+                final int openOrthogonalNeighbours = oldMap.countOrthogonalNeighbours(i, j);
+                final int openDiagonalNeighbours = oldMap.countNeighbours(i, j) - openOrthogonalNeighbours;
+                final int neighbouringWalls = (4 - openOrthogonalNeighbours) + 2 * (4 - openDiagonalNeighbours);
+
+                final double flipChance = Math.pow(baseFlipChance,
+                    map.get(i, j) ? (12 - neighbouringWalls) : neighbouringWalls);
+
+                if (flipRolls[cell] < flipChance) {
+                    map.flip(i, j);
                 }
             }
         }
+    }
 
-        for (int i = 0; i < rowCount; i++) {
-            for (int j = 0; j < columnCount; j++) {
-                if (map[i][j]) {
+    private static void smoothBand(final BitGrid map, final BitGrid oldMap, final int band) {
+        for (int i = band * ROWS_PER_BAND; i < Math.min(map.getRowCount(), (band + 1) * ROWS_PER_BAND); i++) {
+            for (int j = 0; j < map.getColumnCount(); j++) {
+                if (map.get(i, j)) {
                     // Smooth walls out
-                    int neighbouringWalls = 0;
-                    for (int d = 0; d < 4; d++) {
-                        if (!oldMap[wrap(i + dy[d], rowCount)][wrap(j + dx[d], columnCount)]) {
-                            neighbouringWalls++;
-                        }
+                    if (4 - oldMap.countOrthogonalNeighbours(i, j) >= 3) {
+                        map.set(i, j, false);
                     }
-                    if (neighbouringWalls >= 3) {
-                        map[i][j] = false;
-                    }
-                } else if ((oldMap[wrap(i - 1, rowCount)][wrap(j - 1, columnCount)] &&
-                    oldMap[wrap(i + 1, rowCount)][wrap(j + 1, columnCount)]) ||
-                    oldMap[wrap(i - 1, rowCount)][wrap(j + 1, columnCount)] &&
-                        oldMap[wrap(i + 1, rowCount)][wrap(j - 1, columnCount)]) {
+                } else if ((oldMap.get(i - 1, j - 1) && oldMap.get(i + 1, j + 1)) ||
+                    oldMap.get(i - 1, j + 1) && oldMap.get(i + 1, j - 1)) {
                     // Add a small diagonal passage
-                    int neighbouringWalls = 0;
-                    for (int d = 0; d < 8; d++) {
-                        if (!oldMap[wrap(i + dy[d], rowCount)][wrap(j + dx[d], columnCount)]) {
-                            neighbouringWalls++;
-                        }
-                    }
-                    if (neighbouringWalls >= 5) {
-                        map[i][j] = true;
+                    if (8 - oldMap.countNeighbours(i, j) >= 5) {
+                        map.set(i, j, true);
                     }
                 }
             }
         }
-
-
-        final @Nullable CellTraversal[][] traversals = traverse(map, rowCount / 2, columnCount / 2);
-        for (int i = 0; i < rowCount; i++) {
-            for (int j = 0; j < columnCount; j++) {
-                map[i][j] = traversals[i][j] != null;
-            }
-        }
-        for (final int cell : properties.getFlippedCellSet()) {
-            map[cell / columnCount][cell % columnCount] = !map[cell / columnCount][cell % columnCount];
-        }
-
-        final int[][][] relevantPolygonIndices = new int[rowCount][columnCount][];
-        final List<MazeWall> walls = generateWallsFromMap(columnCount, rowCount, map, relevantPolygonIndices);
-        return new MazeMap(properties.getCellSize(), map, walls, relevantPolygonIndices);
     }
 
-    private static List<MazeWall> generateWallsFromMap(final int width, final int height, final boolean[][] map,
-        final int[][][] relevantPolygonIndices) {
-        final int[][] rowSums = new int[height][width];
-        for (int i = 0; i < height; i++) {
-            rowSums[i][0] = map[i][0] ? 0 : 1;
-            for (int j = 1; j < width; j++) {
-                rowSums[i][j] = rowSums[i][j - 1] + (map[i][j] ? 0 : 1);
+    /**
+     * A breadth-first search which goes through the open cells one layer at a time, with the layers kept one after
+     * another in a plain array. The unreached neighbours of the cells in a large layer are found in parallel (since
+     * nothing is marked as reached while that is going on) and then marked in order, so the result is the same as
+     * when searching sequentially.
+     *
+     * @return The open cells which can be reached from a cell, going in any of the 8 directions.
+     */
+    static BitGrid findReachableCells(final BitGrid map, final int fromRow, final int fromCol) {
+        final int width = map.getColumnCount();
+        final BitGrid reached = new BitGrid(map.getRowCount(), width);
+        if (!map.get(fromRow, fromCol)) {
+            return reached;
+        }
+        // Every cell is added to the queue at most once, so it never has to grow
+        final int[] queue = new int[map.getRowCount() * width];
+        int layerStart = 0;
+        int queueEnd = 0;
+        reached.set(fromRow, fromCol, true);
+        queue[queueEnd++] = fromRow * width + fromCol;
+        while (layerStart < queueEnd) {
+            final int layerEnd = queueEnd;
+            if (layerEnd - layerStart < MINIMUM_PARALLEL_LAYER_SIZE) {
+                for (int position = layerStart; position < layerEnd; position++) {
+                    queueEnd = addUnreachedNeighbours(map, reached, true, queue[position], queue, queueEnd);
+                }
+            } else {
+                final int from = layerStart;
+                final int taskCount = (layerEnd - from + CELLS_PER_LAYER_TASK - 1) / CELLS_PER_LAYER_TASK;
+                // Each task has a slice of its own, large enough for all 8 neighbours of each of its cells
+                final int[] candidates = new int[taskCount * CELLS_PER_LAYER_TASK * 8];
+                final int[] candidateCounts = new int[taskCount];
+                IntStream.range(0, taskCount).parallel().forEach(task -> {
+                    final int taskStart = from + task * CELLS_PER_LAYER_TASK;
+                    final int taskEnd = Math.min(layerEnd, taskStart + CELLS_PER_LAYER_TASK);
+                    int count = task * CELLS_PER_LAYER_TASK * 8;
+                    for (int position = taskStart; position < taskEnd; position++) {
+                        count = addUnreachedNeighbours(map, reached, false, queue[position], candidates, count);
+                    }
+                    candidateCounts[task] = count - task * CELLS_PER_LAYER_TASK * 8;
+                });
+                for (int task = 0; task < taskCount; task++) {
+                    final int offset = task * CELLS_PER_LAYER_TASK * 8;
+                    for (int i = offset; i < offset + candidateCounts[task]; i++) {
+                        final int cell = candidates[i];
+                        if (!reached.get(cell / width, cell % width)) {
+                            reached.set(cell / width, cell % width, true);
+                            queue[queueEnd++] = cell;
+                        }
+                    }
+                }
             }
+            layerStart = layerEnd;
         }
+        return reached;
+    }
 
-        final List<List<List<Integer>>> relevantPolygonIndexLists = new ArrayList<>();
-        for (int i = 0; i < height; i++) {
-            relevantPolygonIndexLists.add(new ArrayList<>());
-            for (int j = 0; j < width; j++) {
-                relevantPolygonIndexLists.get(i).add(new ArrayList<>());
+    /**
+     * Adds the open neighbours of a cell which have not been reached yet to a target array.
+     *
+     * @param mark Whether to mark the neighbours as reached right away, rather than leaving that to the caller.
+     * @return The new end of the target.
+     */
+    private static int addUnreachedNeighbours(final BitGrid map, final BitGrid reached, final boolean mark,
+        final int cell, final int[] target, final int targetEnd) {
+        int end = targetEnd;
+        final int height = map.getRowCount();
+        final int width = map.getColumnCount();
+        final int row = cell / width;
+        final int col = cell % width;
+        for (int d = 0; d < 8; d++) {
+            final int nextRow = wrap(row + dy[d], height);
+            final int nextCol = wrap(col + dx[d], width);
+            if (map.get(nextRow, nextCol) && !reached.get(nextRow, nextCol)) {
+                if (mark) {
+                    reached.set(nextRow, nextCol, true);
+                }
+                target[end++] = nextRow * width + nextCol;
             }
         }
+        return end;
+    }
 
-        final boolean[][] occupiedByPolygons = new boolean[height][width];
+    private static List<MazeWall> generateWallsFromMap(final int width, final int height, final BitGrid map) {
+        final BitGrid occupiedByPolygons = new BitGrid(height, width);
         final List<MazeWall> walls = new ArrayList<>();
-
-        int right;
-        int bottom;
-        float leftX;
-        float rightX;
-        float topY;
-        float bottomY;
-
-        int diagonalRow;
-        int diagonalCol;
         for (int top = 0; top < height; top++) {
             for (int left = 0; left < width; left++) {
-                if (map[top][left]) {
-                    topY = top;
-                    leftX = left;
-                    bottomY = top + 1;
-                    rightX = left + 1;
-                    for (int d = 4; d < 8; d++) {
-                        diagonalRow = wrap(top + dy[d], height);
-                        diagonalCol = wrap(left + dx[d], width);
-                        if (map[diagonalRow][diagonalCol] || map[diagonalRow][left] || map[top][diagonalCol]) {
-                            continue;
-                        }
-                        final List<Vector2> points = new ArrayList<>(3);
-                        final Vector2 corner = new Vector2((dx[d] < 0 ? leftX : rightX) / width,
-                            (dy[d] < 0 ? topY : bottomY) / height);
-                        points.add(corner);
-                        final float deltaX = (dx[d] < 0 ? SMOOTHING : -SMOOTHING) / width;
-                        final float deltaY = (dy[d] < 0 ? SMOOTHING : -SMOOTHING) / height;
-                        if (dx[d] * dy[d] > 0) {
-                            // Top-left or bottom-right
-                            points.add(corner.plus(0, deltaY));
-                            points.add(corner.plus(deltaX, 0));
-                        } else {
-                            // Top-right or bottom-left
-                            points.add(corner.plus(deltaX, 0));
-                            points.add(corner.plus(0, deltaY));
-                        }
-                        final int polygonIndex = walls.size();
-                        walls.add(new MazeWall(top, left, top, left, new ConvexPolygon(points)));
-
-                        for (int i = top - 1; i <= top + 1; i++) {
-                            for (int j = left - 1; j <= left + 1; j++) {
-                                relevantPolygonIndexLists.get(wrap(i, height)).get(wrap(j, width)).add(polygonIndex);
-                            }
-                        }
-                    }
-                    continue;
-                }
-                if (occupiedByPolygons[top][left]) {
-                    continue;
-                }
-
-                right = left;
-                while (right + 1 < width && !map[top][right + 1] && !occupiedByPolygons[top][right + 1]) {
-                    right++;
-                }
-                bottom = top;
-                while (bottom + 1 < height &&
-                    rowSums[bottom + 1][right] - (left == 0 ? 0 : rowSums[bottom + 1][left - 1]) == right - left + 1) {
-                    bottom++;
-                }
-                for (int i = top; i <= bottom; i++) {
-                    for (int j = left; j <= right; j++) {
-                        occupiedByPolygons[i][j] = true;
-                    }
-                }
-                leftX = left;
-                rightX = right + 1;
-                topY = top;
-                bottomY = bottom + 1;
-                final List<Vector2> points = new ArrayList<>(4);
-                if (map[bottom][wrap(left - 1, width)] && map[wrap(bottom + 1, height)][left]) {
-                    points.add(new Vector2(leftX / width, (bottomY - SMOOTHING) / height));
-                    points.add(new Vector2((leftX + SMOOTHING) / width, bottomY / height));
-                } else {
-                    points.add(new Vector2(leftX / width, bottomY / height));
-                }
-                if (map[bottom][wrap(right + 1, width)] && map[wrap(bottom + 1, height)][right]) {
-                    points.add(new Vector2((rightX - SMOOTHING) / width, bottomY / height));
-                    points.add(new Vector2(rightX / width, (bottomY - SMOOTHING) / height));
-                } else {
-                    points.add(new Vector2(rightX / width, bottomY / height));
-                }
-                if (map[top][wrap(right + 1, width)] && map[wrap(top - 1, height)][right]) {
-                    points.add(new Vector2(rightX / width, (topY + SMOOTHING) / height));
-                    points.add(new Vector2((rightX - SMOOTHING) / width, topY / height));
-                } else {
-                    points.add(new Vector2(rightX / width, topY / height));
-                }
-                if (map[top][wrap(left - 1, width)] && map[wrap(top - 1, height)][left]) {
-                    points.add(new Vector2((leftX + SMOOTHING) / width, topY / height));
-                    points.add(new Vector2(leftX / width, (topY + SMOOTHING) / height));
-                } else {
-                    points.add(new Vector2(leftX / width, topY / height));
-                }
-                final int polygonIndex = walls.size();
-                walls.add(new MazeWall(top, left, bottom, right, new ConvexPolygon(points)));
-
-                for (int i = top - 1; i <= bottom + 1; i++) {
-                    for (int j = left - 1; j <= right + 1; j++) {
-                        relevantPolygonIndexLists.get(wrap(i, height)).get(wrap(j, width)).add(polygonIndex);
-                    }
+                if (map.get(top, left)) {
+                    addCornerWalls(map, top, left, walls);
+                } else if (!occupiedByPolygons.get(top, left)) {
+                    walls.add(makeRectangleWall(map, occupiedByPolygons, top, left));
                 }
             }
         }
+        return walls;
+    }
 
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                relevantPolygonIndices[i][j] = relevantPolygonIndexLists.get(i)
-                    .get(j)
-                    .stream()
-                    .mapToInt(a -> a)
-                    .toArray();
+    /**
+     * Adds the small triangles which round off the corners of the walls diagonal to an open cell.
+     */
+    private static void addCornerWalls(final BitGrid map, final int top, final int left, final List<MazeWall> walls) {
+        final int height = map.getRowCount();
+        final int width = map.getColumnCount();
+        final float topY = top;
+        final float leftX = left;
+        final float bottomY = top + 1;
+        final float rightX = left + 1;
+        for (int d = 4; d < 8; d++) {
+            final int diagonalRow = wrap(top + dy[d], height);
+            final int diagonalCol = wrap(left + dx[d], width);
+            if (map.get(diagonalRow, diagonalCol) || map.get(diagonalRow, left) || map.get(top, diagonalCol)) {
+                continue;
+            }
+            final List<Vector2> points = new ArrayList<>(3);
+            final Vector2 corner = new Vector2((dx[d] < 0 ? leftX : rightX) / width,
+                (dy[d] < 0 ? topY : bottomY) / height);
+            points.add(corner);
+            final float deltaX = (dx[d] < 0 ? SMOOTHING : -SMOOTHING) / width;
+            final float deltaY = (dy[d] < 0 ? SMOOTHING : -SMOOTHING) / height;
+            if (dx[d] * dy[d] > 0) {
+                // Top-left or bottom-right
+                points.add(corner.plus(0, deltaY));
+                points.add(corner.plus(deltaX, 0));
+            } else {
+                // Top-right or bottom-left
+                points.add(corner.plus(deltaX, 0));
+                points.add(corner.plus(0, deltaY));
             }
+            walls.add(new MazeWall(top, left, top, left, new ConvexPolygon(points)));
         }
+    }
 
-        return walls;
+    /**
+     * Makes the largest rectangle of walls which are not occupied yet, going right from a cell as far as possible and
+     * then down as far as possible, and marks its cells as occupied.
+     */
+    private static MazeWall makeRectangleWall(final BitGrid map, final BitGrid occupiedByPolygons, final int top,
+        final int left) {
+        final int height = map.getRowCount();
+        final int width = map.getColumnCount();
+        int right = left;
+        while (right + 1 < width && !map.get(top, right + 1) && !occupiedByPolygons.get(top, right + 1)) {
+            right++;
+        }
+        int bottom = top;
+        while (bottom + 1 < height && map.count(bottom + 1, left, right - left + 1) == 0 &&
+            occupiedByPolygons.count(bottom + 1, left, right - left + 1) == 0) {
+            bottom++;
+        }
+        for (int i = top; i <= bottom; i++) {
+            for (int j = left; j <= right; j++) {
+                occupiedByPolygons.set(i, j, true);
+            }
+        }
+        final float leftX = left;
+        final float rightX = right + 1;
+        final float topY = top;
+        final float bottomY = bottom + 1;
+        final List<Vector2> points = new ArrayList<>(4);
+        if (map.get(bottom, left - 1) && map.get(bottom + 1, left)) {
+            points.add(new Vector2(leftX / width, (bottomY - SMOOTHING) / height));
+            points.add(new Vector2((leftX + SMOOTHING) / width, bottomY / height));
+        } else {
+            points.add(new Vector2(leftX / width, bottomY / height));
+        }
+        if (map.get(bottom, right + 1) && map.get(bottom + 1, right)) {
+            points.add(new Vector2((rightX - SMOOTHING) / width, bottomY / height));
+            points.add(new Vector2(rightX / width, (bottomY - SMOOTHING) / height));
+        } else {
+            points.add(new Vector2(rightX / width, bottomY / height));
+        }
+        if (map.get(top, right + 1) && map.get(top - 1, right)) {
+            points.add(new Vector2(rightX / width, (topY + SMOOTHING) / height));
+            points.add(new Vector2((rightX - SMOOTHING) / width, topY / height));
+        } else {
+            points.add(new Vector2(rightX / width, topY / height));
+        }
+        if (map.get(top, left - 1) && map.get(top - 1, left)) {
+            points.add(new Vector2((leftX + SMOOTHING) / width, topY / height));
+            points.add(new Vector2(leftX / width, (topY + SMOOTHING) / height));
+        } else {
+            points.add(new Vector2(leftX / width, topY / height));
+        }
+        return new MazeWall(top, left, bottom, right, new ConvexPolygon(points));
     }
 
-    private static boolean[][] createSeamlessLabyrinth(final int width, final int height, final Random random) {
-        final boolean[][] map = new boolean[height][width];
-        final boolean[][] tried = new boolean[height][width];
+    private static BitGrid createSeamlessLabyrinth(final int width, final int height, final Random random) {
+        final BitGrid map = new BitGrid(height, width);
+        final BitGrid tried = new BitGrid(height, width);
 
         final Stack<Integer> cellsToExplore = new Stack<>();
         final int firstRow = random.nextInt(height);
         final int firstCol = random.nextInt(width);
         cellsToExplore.add(firstRow * height + firstCol);
-        map[firstRow][firstCol] = true;
-        tried[firstRow][firstCol] = true;
+        map.set(firstRow, firstCol, true);
+        tried.set(firstRow, firstCol, true);
 
         final int[] dIndices = {0, 1, 2, 3};
         while (!cellsToExplore.isEmpty()) {
@@ -332,21 +469,21 @@ public class MazeMap extends BinaryEntity {
             for (int i = 0; i < 4; i++) {
                 final int nextRow = wrap(row + dy[dIndices[i]], height);
                 final int nextCol = wrap(col + dx[dIndices[i]], width);
-                if (!tried[nextRow][nextCol]) {
+                if (!tried.get(nextRow, nextCol)) {
                     boolean isValid = true;
                     for (int j = 0; j < 8; j++) {
                         final int otherRow = wrap(nextRow + dy[j], height);
                         final int otherCol = wrap(nextCol + dx[j], width);
-                        if (map[otherRow][otherCol] && (Math.abs(otherRow - row) + Math.abs(otherCol - col) >= 2)) {
+                        if (map.get(otherRow, otherCol) && (Math.abs(otherRow - row) + Math.abs(otherCol - col) >= 2)) {
                             isValid = false;
                             break;
                         }
                     }
                     if (isValid) {
-                        map[nextRow][nextCol] = true;
+                        map.set(nextRow, nextCol, true);
                         cellsToExplore.add(nextRow * width + nextCol);
                     }
-                    tried[nextRow][nextCol] = true;
+                    tried.set(nextRow, nextCol, true);
                 }
             }
         }
@@ -370,96 +507,340 @@ public class MazeMap extends BinaryEntity {
         return coordinate < 0 ? coordinate + size : coordinate % size;
     }
 
+    /**
+     * @return The RGB value of a mix of two colors, the same as the one of a {@link Color} made of the mixed
+     * components.
+     */
+    private static int toRgb(final float[] color, final float[] otherColor, final float ratio) {
+        int result = 0xFF;
+        for (int c = 0; c < 3; c++) {
+            final float component = (float) (color[c] * ratio + otherColor[c] * (1.0 - ratio));
+            result = (result << 8) | ((int) (component * 255 + 0.5) & 0xFF);
+        }
+        return result;
+    }
+
+    /**
+     * The same as {@code (coordinate + 1.0) % 1.0}, but without the slow floating point remainder when the coordinate
+     * is at most one map size away from the map, as it usually is.
+     */
+    private static double wrapNormalized(final double coordinate) {
+        final double shifted = coordinate + 1.0;
+        if (shifted >= 0.0 && shifted < 2.0) {
+            return shifted < 1.0 ? shifted : shifted - 1.0;
+        }
+        return shifted % 1.0;
+    }
+
+    @Override
     public double wrapX(final double x) {
         return x - Math.floor(x / width + 0.5) * width;
     }
 
+    @Override
     public double wrapZ(final double z) {
         return z - Math.floor(z / depth + 0.5) * depth;
     }
 
-    private static @Nullable CellTraversal[][] traverse(final boolean[][] map, final int fromRow, final int fromCol) {
-        final int height = map.length;
-        final int width = map[0].length;
-        final @Nullable CellTraversal[][] result = new CellTraversal[height][width];
-        if (!map[fromRow][fromCol]) {
-            return result;
+    public boolean getCell(final int row, final int col) {
+        return map.get(row, col);
+    }
+
+    /**
+     * @param row The row of the cell. Wrapped around if it is outside the map.
+     * @param col The column of the cell. Wrapped around if it is outside the map.
+     * @return A copy of the indices of the walls (in {@link MazeMap#getWalls()}) which are in the cell or in a cell
+     * next to it. See {@link MazeMap#getWallIndex()} for going through them without copying.
+     */
+    public int[] getRelevantPolygonIndices(final int row, final int col) {
+        return wallIndex.getCellWalls(Math.floorMod(row, rowCount) * columnCount + Math.floorMod(col, columnCount));
+    }
+
+    public void setCell(final int row, final int col, final boolean value) {
+        map.set(row, col, value);
+    }
+
+    public void recomputeWalls() {
+        final List<MazeWall> walls = generateWallsFromMap(columnCount, rowCount, map);
+        this.walls.clear();
+        this.walls.addAll(walls);
+        wallIndex = WallIndex.of(this.walls, rowCount, columnCount);
+        recomputeDistanceField();
+    }
+
+    /**
+     * Recomputes only the walls around some changed cells. The walls which are relevant to any of the cells (and so may
+     * depend on them) are replaced and the corners of the open cells next to them are rounded off anew. The indices
+     * of the walls which are relevant to each cell are patched only for the cells around the replaced walls.
+     * <p>
+     * The new walls take the places of the old ones in {@link MazeMap#getWalls()}. If there are fewer of them, the
+     * last walls are moved into the remaining places. The walls may be split into rectangles differently than after
+     * {@link MazeMap#recomputeWalls()}.
+     *
+     * @param changedCells The indices ({@code row * columnCount + column}) of the cells which have been changed.
+     */
+    public void recomputeWalls(final Collection<Integer> changedCells) {
+        final WallIndex index = wallIndex;
+        final boolean[] removed = new boolean[walls.size()];
+        final BitGrid cornersToRedo = new BitGrid(rowCount, columnCount);
+        final BitGrid cellsToCover = new BitGrid(rowCount, columnCount);
+        final List<Integer> cellsToRedo = new ArrayList<>();
+        for (final int cell : changedCells) {
+            final int row = cell / columnCount;
+            final int col = cell % columnCount;
+            for (int position = index.getCellStart(cell); position < index.getCellEnd(cell); position++) {
+                removed[index.getWall(position)] = true;
+            }
+            for (int i = row - 1; i <= row + 1; i++) {
+                for (int j = col - 1; j <= col + 1; j++) {
+                    cornersToRedo.set(i, j, true);
+                    cellsToRedo.add(wrap(i, rowCount) * columnCount + wrap(j, columnCount));
+                }
+            }
+            cellsToCover.set(row, col, true);
         }
 
-        final boolean[][] explored = new boolean[height][width];
-        result[fromRow][fromCol] = new CellTraversal(0, -1, -1);
-        final Queue<Integer> toExplore = new PriorityQueue<>(
-            Comparator.comparingDouble(index -> result[index / width][index % width].getMinDistance()));
-        toExplore.add(fromRow * width + fromCol);
-        while (!toExplore.isEmpty()) {
-            final int row = toExplore.peek() / width;
-            final int col = toExplore.poll() % width;
-            if (explored[row][col]) {
-                continue;
+        final List<MazeWall> removedWalls = new ArrayList<>();
+        for (int wallIndex = 0; wallIndex < removed.length; wallIndex++) {
+            if (removed[wallIndex]) {
+                final MazeWall wall = walls.get(wallIndex);
+                removedWalls.add(wall);
+                for (int i = wall.getTopRow(); i <= wall.getBottomRow(); i++) {
+                    for (int j = wall.getLeftColumn(); j <= wall.getRightColumn(); j++) {
+                        cellsToCover.set(i, j, true);
+                        cellsToRedo.add(i * columnCount + j);
+                    }
+                }
             }
-            explored[row][col] = true;
-            final double distance = result[row][col].getMinDistance();
-
-            for (int d = 0; d < 8; d++) {
-                final int newRow = wrap(row + dy[d], height);
-                final int newCol = wrap(col + dx[d], width);
-                final double newDistance = distance + Math.sqrt(dx[d] * dx[d] + dy[d] * dy[d]);
-
-                if (!explored[newRow][newCol] && map[newRow][newCol] &&
-                    (result[newRow][newCol] == null || result[newRow][newCol].getMinDistance() > newDistance)) {
-                    result[newRow][newCol] = new CellTraversal(newDistance, dx[d], dy[d]);
-                    toExplore.add(newRow * width + newCol);
+        }
+
+        // Everything but the walls which are to be covered anew is already covered by the remaining walls
+        final BitGrid occupiedByPolygons = new BitGrid(rowCount, columnCount);
+        occupiedByPolygons.copyFrom(map);
+        occupiedByPolygons.or(cellsToCover);
+        occupiedByPolygons.invert();
+        final List<MazeWall> newWalls = new ArrayList<>();
+        for (final int cell : cellsToRedo.stream().mapToInt(Integer::intValue).sorted().distinct().toArray()) {
+            final int row = cell / columnCount;
+            final int col = cell % columnCount;
+            if (map.get(row, col)) {
+                if (cornersToRedo.get(row, col)) {
+                    addCornerWalls(map, row, col, newWalls);
                 }
+            } else if (!occupiedByPolygons.get(row, col)) {
+                newWalls.add(makeRectangleWall(map, occupiedByPolygons, row, col));
             }
         }
 
-        return result;
+        final Map<Integer, int[]> patchedCells = new HashMap<>();
+        final int[] newIndices = replaceWalls(index, removed, newWalls, removedWalls, patchedCells);
+        for (int i = 0; i < newWalls.size(); i++) {
+            final int newIndex = newIndices[i];
+            WallIndex.forEachRelevantCell(newWalls.get(i), columnCount, rowCount, (row, col) -> {
+                final int cell = row * columnCount + col;
+                final int[] oldIndices = patchedCells.getOrDefault(cell, index.getCellWalls(cell));
+                final int[] indices = Arrays.copyOf(oldIndices, oldIndices.length + 1);
+                indices[indices.length - 1] = newIndex;
+                patchedCells.put(cell, indices);
+            });
+        }
+        wallIndex = index.withCells(patchedCells, walls);
+        recomputeDistanceField();
     }
 
-    public boolean getCell(final int row, final int col) {
-        return map[wrap(row, rowCount)][wrap(col, columnCount)];
+    /**
+     * Puts new walls in the places of removed ones and removes the indices of the removed walls from the cells they
+     * are relevant to.
+     *
+     * @param oldIndex     The index of the current walls.
+     * @param removed      Whether each of the current walls is to be removed.
+     * @param newWalls     The walls to add.
+     * @param removedWalls The walls which are to be removed.
+     * @param patchedCells Where to put the new indices of the walls which are relevant to each patched cell.
+     * @return The index of each of the new walls.
+     */
+    private int[] replaceWalls(final WallIndex oldIndex, final boolean[] removed, final List<MazeWall> newWalls,
+        final List<MazeWall> removedWalls, final Map<Integer, int[]> patchedCells) {
+        final int[] places = IntStream.range(0, removed.length).filter(index -> removed[index]).toArray();
+        final int[] newIndices = new int[newWalls.size()];
+        for (int i = 0; i < newWalls.size(); i++) {
+            if (i < places.length) {
+                walls.set(places[i], newWalls.get(i));
+                newIndices[i] = places[i];
+            } else {
+                newIndices[i] = walls.size();
+                walls.add(newWalls.get(i));
+            }
+        }
+
+        // Fill in the places left over by moving the last walls into them
+        final int[] movedTo = IntStream.range(0, removed.length).toArray();
+        final List<MazeWall> movedWalls = new ArrayList<>();
+        int nextPlace = newWalls.size();
+        int lastPlace = places.length - 1;
+        while (nextPlace <= lastPlace) {
+            final int lastIndex = walls.size() - 1;
+            if (lastIndex == places[lastPlace]) {
+                lastPlace--;
+            } else {
+                final MazeWall wall = walls.get(lastIndex);
+                walls.set(places[nextPlace], wall);
+                movedTo[lastIndex] = places[nextPlace++];
+                movedWalls.add(wall);
+            }
+            walls.remove(lastIndex);
+        }
+
+        final WallIndex.CellConsumer patchCell = (row, col) -> patchedCells.computeIfAbsent(row * columnCount + col,
+            cell -> Arrays.stream(oldIndex.getCellWalls(cell))
+                .filter(wall -> !removed[wall])
+                .map(wall -> movedTo[wall])
+                .toArray());
+        for (final MazeWall wall : removedWalls) {
+            WallIndex.forEachRelevantCell(wall, columnCount, rowCount, patchCell);
+        }
+        for (final MazeWall wall : movedWalls) {
+            WallIndex.forEachRelevantCell(wall, columnCount, rowCount, patchCell);
+        }
+        return newIndices;
     }
 
-    public void setCell(final int row, final int col, final boolean value) {
-        map[wrap(row, rowCount)][wrap(col, columnCount)] = value;
+    /**
+     * Computes a signed distance field of the walls, which the fertility of the map is looked up in from then on
+     * (instead of going through the walls around each point). It is kept up to date when the walls are recomputed.
+     *
+     * @param samplesPerCell How many samples the field has along each side of a cell.
+     */
+    public void computeDistanceField(final int samplesPerCell) {
+        distanceField = MazeDistanceField.of(this, samplesPerCell);
     }
 
-    public void recomputeWalls() {
-        final List<MazeWall> walls = generateWallsFromMap(columnCount, rowCount, map, relevantPolygonIndices);
-        this.walls.clear();
-        this.walls.addAll(walls);
+    private void recomputeDistanceField() {
+        final MazeDistanceField field = distanceField;
+        if (field != null) {
+            computeDistanceField(field.getSamplesPerCell());
+        }
     }
 
+    /**
+     * @param x The normalized X coordinate. Wrapped around if it is outside the map.
+     * @param y The normalized Y coordinate. Wrapped around if it is outside the map.
+     * @return Whether the point is inside any of the walls.
+     */
+    public boolean isInWall(double x, double y) {
+        x = wrapNormalized(x);
+        y = wrapNormalized(y);
+        final int row = Math.min((int) (y * rowCount), rowCount - 1);
+        final int col = Math.min((int) (x * columnCount), columnCount - 1);
+        final WallIndex index = wallIndex;
+        final int cell = row * columnCount + col;
+        for (int position = index.getCellStart(cell); position < index.getCellEnd(cell); position++) {
+            if (index.containsPoint(index.getWall(position), (float) x, (float) y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return -1 if the point is inside a wall, or else a fertility between 0 (far from the walls) and 1. Looked up
+     * in the distance field if there is one, in which case the distance to the walls is measured in cells rather than
+     * in parts of the larger side of the map (which is the same for square maps).
+     */
     public double get(double x, double y) {
-        x = (x + 1.0) % 1.0;
-        y = (y + 1.0) % 1.0;
+        final MazeDistanceField field = distanceField;
+        if (field != null) {
+            return getFertility(field.get(x, y));
+        }
+        x = wrapNormalized(x);
+        y = wrapNormalized(y);
         final int row = Math.min((int) (y * rowCount), rowCount);
         final int col = Math.min((int) (x * columnCount), columnCount);
-        final int[] wallIndices = relevantPolygonIndices[row][col];
-        for (final int wallIndex : wallIndices) {
-            if (walls.get(wallIndex).getPolygon().containsPoint(new Vector2((float) x, (float) y))) {
+        final WallIndex index = wallIndex;
+        final int cell = row * columnCount + col;
+        return getFertility(index, index.getCellStart(cell), index.getCellEnd(cell), row, col, x, y);
+    }
+
+    /**
+     * Samples the fertility of a rectangle of pixels of an image of the whole map, the same as
+     * {@link MazeMap#get(double, double)} would for each of them. The pixels are gone through row by row and the walls
+     * relevant to a cell are looked up only once for all consecutive pixels in it.
+     *
+     * @param tile        Where to put the fertility of the pixels, row by row. Has to fit at least
+     *                    {@code tileWidth * tileHeight} values.
+     * @param fromX       The X coordinate of the left pixels of the rectangle, which may be outside the image.
+     * @param fromY       The Y coordinate of the top pixels of the rectangle, which may be outside the image.
+     * @param tileWidth   The width of the rectangle, in pixels.
+     * @param tileHeight  The height of the rectangle, in pixels.
+     * @param imageWidth  The width of the image of the whole map.
+     * @param imageHeight The height of the image of the whole map.
+     */
+    public void getFertility(final float[] tile, final int fromX, final int fromY, final int tileWidth,
+        final int tileHeight, final int imageWidth, final int imageHeight) {
+        final WallIndex index = wallIndex;
+        final MazeDistanceField field = distanceField;
+        final double xStep = 1.0 / imageWidth;
+        final double yStep = 1.0 / imageHeight;
+        if (field != null) {
+            for (int i = 0; i < tileHeight; i++) {
+                for (int j = 0; j < tileWidth; j++) {
+                    tile[i * tileWidth + j] = (float) getFertility(field.get((fromX + j) * xStep, (fromY + i) * yStep));
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < tileHeight; i++) {
+            final double y = wrapNormalized((fromY + i) * yStep);
+            final int row = Math.min((int) (y * rowCount), rowCount);
+            int col = -1;
+            int start = 0;
+            int end = 0;
+            for (int j = 0; j < tileWidth; j++) {
+                final double x = wrapNormalized((fromX + j) * xStep);
+                final int currentCol = Math.min((int) (x * columnCount), columnCount);
+                if (currentCol != col) {
+                    col = currentCol;
+                    start = index.getCellStart(row * columnCount + col);
+                    end = index.getCellEnd(row * columnCount + col);
+                }
+                tile[i * tileWidth + j] = (float) getFertility(index, start, end, row, col, x, y);
+            }
+        }
+    }
+
+    /**
+     * @param start Where the walls relevant to the cell of the point start in the index.
+     * @param end   Where the walls relevant to the cell of the point end in the index.
+     * @return -1 if the point is inside a wall, or else a fertility between 0 (far from the walls) and 1.
+     */
+    private double getFertility(final WallIndex index, final int start, final int end, final int row,
+        final int col, final double x, final double y) {
+        for (int position = start; position < end; position++) {
+            if (index.containsPoint(index.getWall(position), (float) x, (float) y)) {
                 return -1.0;
             }
         }
 
-        final double requiredDistance = .8 / Math.max(rowCount, columnCount);
+        // The walls at the other side of the seam are also checked when at the edge of the map
+        final double fromOffsetX = col == columnCount - 1 ? -1.0 : 0.0;
+        final double toOffsetX = col == 0 ? 1.0 : 0.0;
+        final double fromOffsetY = row == rowCount - 1 ? -1.0 : 0.0;
+        final double toOffsetY = row == 0 ? 1.0 : 0.0;
+        final double requiredDistance = FERTILE_DISTANCE / Math.max(rowCount, columnCount);
         final double requiredDistanceSquared = requiredDistance * requiredDistance;
-        final double[] offsetsX = Stream.of(0, col == 0 ? 1 : -10, (col == columnCount - 1) ? -1 : -10)
-            .filter(value -> value > -10)
-            .mapToDouble(a -> a)
-            .toArray();
-        final double[] offsetsY = Stream.of(0, row == 0 ? 1 : -10, (row == rowCount - 1) ? -1 : -10)
-            .filter(value -> value > -10)
-            .mapToDouble(a -> a)
-            .toArray();
-
         double minDistanceSquared = requiredDistanceSquared + 1.0;
-        for (final double offsetX : offsetsX) {
-            for (final double offsetY : offsetsY) {
-                final Vector2 point = new Vector2((float) (x + offsetX), (float) (y + offsetY));
-                for (final int wallIndex : wallIndices) {
-                    minDistanceSquared = Math.min(minDistanceSquared,
-                        walls.get(wallIndex).getPolygon().distanceToPointSquared(point));
+        for (double offsetX = fromOffsetX; offsetX <= toOffsetX; offsetX++) {
+            for (double offsetY = fromOffsetY; offsetY <= toOffsetY; offsetY++) {
+                final float pointX = (float) (x + offsetX);
+                final float pointY = (float) (y + offsetY);
+                for (int position = start; position < end; position++) {
+                    final int wall = index.getWall(position);
+                    // Anything farther than the required distance makes no difference
+                    if (!index.isFartherThan(wall, pointX, pointY,
+                        Math.min(minDistanceSquared, requiredDistanceSquared))) {
+                        minDistanceSquared = Math.min(minDistanceSquared,
+                            index.distanceToPointSquared(wall, pointX, pointY));
+                    }
                 }
             }
         }
@@ -471,19 +852,39 @@ public class MazeMap extends BinaryEntity {
         return maxFertility * maxFertility;
     }
 
+    /**
+     * @param distance The signed distance from a point to the closest wall boundary, in cells.
+     */
+    private static double getFertility(final double distance) {
+        if (distance < 0.0) {
+            return -1.0;
+        }
+        if (distance >= FERTILE_DISTANCE) {
+            return 0.0;
+        }
+        final double maxFertility = 1.0 - distance / FERTILE_DISTANCE;
+        return maxFertility * maxFertility;
+    }
+
     @Override
     public void appendToBinaryOutput(final SafeDataOutput output) {
         output.writeInt(rowCount);
         output.writeInt(columnCount);
         output.writeDouble(cellSize);
-        for (final boolean[] row : map) {
-            for (final boolean value : row) {
-                output.writeBoolean(value);
-            }
-        }
+        map.appendToBinaryOutput(output);
         appendCollectionToBinaryOutput(walls, output);
     }
 
+    /**
+     * Colors the pixels of a region of an image which are still white according to their fertility. The region is
+     * sampled in tiles of rows. If the pixels of the image are stored as integers in an array of their own, the tiles
+     * are sampled in parallel and written directly into it.
+     *
+     * @param fromX The X coordinate of the left pixels of the region, which may be outside the image.
+     * @param fromY The Y coordinate of the top pixels of the region, which may be outside the image.
+     * @param toX   The X coordinate of the right pixels of the region (inclusive).
+     * @param toY   The Y coordinate of the bottom pixels of the region (inclusive).
+     */
     public void applyFertilityToImage(final BufferedImage image, final int fromX, final int fromY, final int toX,
         final int toY) {
         final int imageWidth = image.getWidth();
@@ -497,32 +898,92 @@ public class MazeMap extends BinaryEntity {
         (darkMode ? new Color(20, 100, 50) : new Color(50, 200, 100)).getRGBColorComponents(walkableWithTrees);
         final float[] walkable = new float[3];
         (darkMode ? new Color(10, 15, 30) : Color.WHITE).getRGBColorComponents(walkable);
-        final float[] currentColor = new float[3];
-        final double xStep = 1.0 / imageWidth;
-        final double yStep = 1.0 / imageHeight;
-        double normalizedY = fromY * yStep;
-        double normalizedX;
-        double fertility;
-        int trueY;
-        int trueX;
-        for (int y = fromY; y <= toY; y++, normalizedY += yStep) {
-            normalizedX = fromX * xStep;
-            trueY = wrap(y, imageHeight);
-            for (int x = fromX; x <= toX; x++, normalizedX += xStep) {
-                trueX = wrap(x, imageWidth);
-                if (image.getRGB(trueX, trueY) == -1) {
-                    fertility = get(normalizedX, normalizedY);
-                    if (fertility < 0) {
-                        image.setRGB(trueX, trueY, SOLID_CENTER.getRGB());
-                    } else {
-                        for (int c = 0; c < 3; c++) {
-                            currentColor[c] = (float) (walkableWithTrees[c] * fertility +
-                                walkable[c] * (1.0 - fertility));
-                        }
-                        image.setRGB(trueX, trueY,
-                            new Color(currentColor[0], currentColor[1], currentColor[2]).getRGB());
+        // A region larger than the image would only go over the same pixels again (possibly in parallel)
+        final int leftX = toX - fromX >= imageWidth ? 0 : fromX;
+        final int rightX = toX - fromX >= imageWidth ? imageWidth - 1 : toX;
+        final int topY = toY - fromY >= imageHeight ? 0 : fromY;
+        final int bottomY = toY - fromY >= imageHeight ? imageHeight - 1 : toY;
+        final int tileWidth = rightX - leftX + 1;
+        final int @Nullable [] pixels = getIntPixels(image);
+        IntStream tiles = IntStream.range(0, (bottomY - topY + FERTILITY_TILE_HEIGHT) / FERTILITY_TILE_HEIGHT);
+        if (pixels != null) {
+            tiles = tiles.parallel();
+        }
+        tiles.forEach(tileIndex -> {
+            final int tileY = topY + tileIndex * FERTILITY_TILE_HEIGHT;
+            final int tileHeight = Math.min(FERTILITY_TILE_HEIGHT, bottomY - tileY + 1);
+            final float[] tile = new float[tileWidth * tileHeight];
+            getFertility(tile, leftX, tileY, tileWidth, tileHeight, imageWidth, imageHeight);
+            if (pixels != null) {
+                applyFertilityTileToPixels(image, pixels, tile, leftX, tileY, tileWidth, tileHeight, walkableWithTrees,
+                    walkable);
+            } else {
+                applyFertilityTileToImage(image, tile, leftX, tileY, tileWidth, tileHeight, walkableWithTrees,
+                    walkable);
+            }
+        });
+    }
+
+    /**
+     * @return The pixels of the image if they are stored as integers (with or without alpha) in an array of their own,
+     * row by row and with nothing between the rows.
+     */
+    private static int @Nullable [] getIntPixels(final BufferedImage image) {
+        final int type = image.getType();
+        if ((type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB) ||
+            image.getRaster().getParent() != null) {
+            return null;
+        }
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Colors the pixels of a tile of an image which are still white according to their fertility, directly in the
+     * array the pixels of the image are stored in.
+     */
+    private static void applyFertilityTileToPixels(final BufferedImage image, final int[] pixels, final float[] tile,
+        final int fromX, final int fromY, final int tileWidth, final int tileHeight, final float[] walkableWithTrees,
+        final float[] walkable) {
+        final int imageWidth = image.getWidth();
+        // Without alpha, the alpha bits of the pixels mean nothing (and are not always cleared)
+        final int mask = image.getType() == BufferedImage.TYPE_INT_RGB ? 0xFFFFFF : -1;
+        final int white = Color.WHITE.getRGB() & mask;
+        final int solid = SOLID_CENTER.getRGB() & mask;
+        for (int i = 0; i < tileHeight; i++) {
+            final int rowStart = wrap(fromY + i, image.getHeight()) * imageWidth;
+            for (int j = 0; j < tileWidth; j++) {
+                final int pixel = rowStart + wrap(fromX + j, imageWidth);
+                if ((pixels[pixel] & mask) == white) {
+                    final float fertility = tile[i * tileWidth + j];
+                    pixels[pixel] = fertility < 0 ? solid : toRgb(walkableWithTrees, walkable, fertility) & mask;
+                }
+            }
+        }
+    }
+
+    /**
+     * Colors the pixels of a tile of an image which are still white according to their fertility. The pixels are read
+     * and written a whole span of a row at a time.
+     */
+    private static void applyFertilityTileToImage(final BufferedImage image, final float[] tile, final int fromX,
+        final int fromY, final int tileWidth, final int tileHeight, final float[] walkableWithTrees,
+        final float[] walkable) {
+        final int imageWidth = image.getWidth();
+        final int[] span = new int[Math.min(tileWidth, imageWidth)];
+        for (int i = 0; i < tileHeight; i++) {
+            final int trueY = wrap(fromY + i, image.getHeight());
+            for (int j = 0; j < tileWidth; ) {
+                final int trueX = wrap(fromX + j, imageWidth);
+                final int length = Math.min(tileWidth - j, imageWidth - trueX);
+                image.getRGB(trueX, trueY, length, 1, span, 0, length);
+                for (int k = 0; k < length; k++) {
+                    if (span[k] == -1) {
+                        final float fertility = tile[i * tileWidth + j + k];
+                        span[k] = fertility < 0 ? SOLID_CENTER.getRGB() : toRgb(walkableWithTrees, walkable, fertility);
                     }
                 }
+                image.setRGB(trueX, trueY, length, 1, span, 0, length);
+                j += length;
             }
         }
     }
@@ -585,8 +1046,8 @@ public class MazeMap extends BinaryEntity {
         double centerY = 0.5 * centerYStep;
         for (int i = 0; i < rowCount; i++, centerY += centerYStep) {
             double centerX = 0.5 * centerXStep;
-            for (int j = 0; j < map[i].length; j++, centerX += centerXStep) {
-                if (!map[i][j]) {
+            for (int j = 0; j < columnCount; j++, centerX += centerXStep) {
+                if (!map.get(i, j)) {
                     graphics.setColor(darkMode ? SOLID_CENTER_DARK : SOLID_CENTER);
                     graphics.fillPolygon(
                         new int[]{(int) (centerX - centerHorizontalSize), (int) centerX, (int) (centerX +
@@ -599,24 +1060,17 @@ public class MazeMap extends BinaryEntity {
 
         graphics.setStroke(new BasicStroke((float) (centerYStep * .2)));
 
-        double maxDistance = -1;
-        final @Nullable CellTraversal[][] traversals = traverse(map, rowCount / 2, columnCount / 2);
-        for (final CellTraversal[] row : traversals) {
-            for (final CellTraversal traversal : row) {
-                if (traversal != null) {
-                    maxDistance = Math.max(maxDistance, traversal.getMinDistance());
-                }
-            }
-        }
+        final MazeTraversal traversal = MazeTraversal.of(map, rowCount / 2, columnCount / 2);
+        final double maxDistance = traversal.getMaxDistance();
         centerY = 0.5 * centerYStep;
-        for (int i = 0; i < traversals.length; i++, centerY += centerYStep) {
+        for (int i = 0; i < rowCount; i++, centerY += centerYStep) {
             double centerX = 0.5 * centerXStep;
-            for (int j = 0; j < traversals[i].length; j++, centerX += centerXStep) {
-                if (traversals[i][j] == null || traversals[i][j].getMinDistance() < 0) {
+            for (int j = 0; j < columnCount; j++, centerX += centerXStep) {
+                if (!traversal.isReached(i, j)) {
                     continue;
                 }
 
-                final double distanceRatio = traversals[i][j].getMinDistance() / maxDistance;
+                final double distanceRatio = traversal.getDistance(i, j) / maxDistance;
                 final double extremity = Math.abs((distanceRatio - 0.5) * 2);
                 if (darkMode) {
                     graphics.setColor(
@@ -632,17 +1086,16 @@ public class MazeMap extends BinaryEntity {
                             : new Color(125 - (int) (125 * extremity), 120 + (int) (50 * extremity),
                                 (int) (70 * extremity), PATH_LINE_OPACITY));
                 }
-                graphics.drawLine((int) (centerX), (int) (centerY),
-                    (int) (centerX - centerXStep * traversals[i][j].getDx()),
-                    (int) (centerY - centerYStep * traversals[i][j].getDy()));
-
-                if (i - traversals[i][j].getDy() < 0 || i - traversals[i][j].getDy() >= rowCount ||
-                    j - traversals[i][j].getDx() < 0 || j - traversals[i][j].getDx() >= columnCount) {
-                    final double otherCenterX = (wrap(j - traversals[i][j].getDx(), columnCount) + 0.5) * centerXStep;
-                    final double otherCenterY = (wrap(i - traversals[i][j].getDy(), rowCount) + 0.5) * centerYStep;
+                final int dx = traversal.getDx(i, j);
+                final int dy = traversal.getDy(i, j);
+                graphics.drawLine((int) (centerX), (int) (centerY), (int) (centerX - centerXStep * dx),
+                    (int) (centerY - centerYStep * dy));
+
+                if (i - dy < 0 || i - dy >= rowCount || j - dx < 0 || j - dx >= columnCount) {
+                    final double otherCenterX = (wrap(j - dx, columnCount) + 0.5) * centerXStep;
+                    final double otherCenterY = (wrap(i - dy, rowCount) + 0.5) * centerYStep;
                     graphics.drawLine((int) (otherCenterX), (int) (otherCenterY),
-                        (int) (otherCenterX + centerXStep * traversals[i][j].getDx()),
-                        (int) (otherCenterY + centerYStep * traversals[i][j].getDy()));
+                        (int) (otherCenterX + centerXStep * dx), (int) (otherCenterY + centerYStep * dy));
                 }
 
             }
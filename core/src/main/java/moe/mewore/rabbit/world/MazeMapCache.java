@@ -0,0 +1,139 @@
+package moe.mewore.rabbit.world;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import moe.mewore.rabbit.data.ByteArrayDataOutput;
+import moe.mewore.rabbit.data.ByteBufferDataInput;
+import moe.mewore.rabbit.data.SafeDataOutput;
+
+/**
+ * A directory of generated maps, each in a file named after a hash of the world properties it has been generated from
+ * and of {@link MazeMap#GENERATOR_VERSION}, so that a map does not have to be generated again as long as its properties
+ * and its generator stay the same.
+ * <p>
+ * The files start with a version, which has to be increased whenever maps are encoded differently, so that the maps
+ * cached by older versions are not loaded, and a checksum of the encoded map. They are memory-mapped and decoded
+ * directly from the mapped buffer. A file which cannot be decoded for any reason is treated as if it were not cached.
+ */
+public class MazeMapCache {
+
+    private static final int FORMAT_MAGIC = 0x4D415A45;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int HEADER_SIZE = Integer.BYTES * 3;
+
+    private final Path directory;
+
+    public MazeMapCache(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param properties The properties of the map.
+     * @param generator  Generates the map if it is not cached (or its file cannot be loaded).
+     * @return The cached map, or else the newly generated one, which is cached if possible.
+     */
+    public MazeMap getOrGenerate(final WorldProperties properties, final Supplier<MazeMap> generator) {
+        final Path file = getFile(properties);
+        final @Nullable MazeMap cached = load(file);
+        if (cached != null) {
+            return cached;
+        }
+        final MazeMap map = generator.get();
+        save(file, map);
+        return map;
+    }
+
+    Path getFile(final WorldProperties properties) {
+        return getFile(properties, MazeMap.GENERATOR_VERSION);
+    }
+
+    Path getFile(final WorldProperties properties, final int generatorVersion) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        digest.update(properties.asString().getBytes(StandardCharsets.ISO_8859_1));
+        final byte[] hash = digest.digest(("\ngenerator=" + generatorVersion).getBytes(StandardCharsets.ISO_8859_1));
+        final StringBuilder name = new StringBuilder("map-");
+        for (int i = 0; i < 16; i++) {
+            name.append(String.format("%02x", hash[i]));
+        }
+        return directory.resolve(name.append(".bin").toString());
+    }
+
+    /**
+     * @return The map in the file, or {@code null} if there is no such file or it is not a map of the current version.
+     */
+    private static @Nullable MazeMap load(final Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final ByteBufferDataInput input = new ByteBufferDataInput(buffer);
+            if (input.getRemaining() < HEADER_SIZE || input.readInt() != FORMAT_MAGIC ||
+                input.readInt() != FORMAT_VERSION) {
+                System.out.println("Ignoring the cached map " + file + " because it is of another version");
+                return null;
+            }
+            final int checksum = input.readInt();
+            final CRC32 crc = new CRC32();
+            crc.update(buffer.position(HEADER_SIZE));
+            if ((int) crc.getValue() != checksum) {
+                System.out.println("Ignoring the cached map " + file + " because its checksum does not match");
+                return null;
+            }
+            return MazeMap.decodeFromBinary(input);
+        } catch (final IOException | RuntimeException e) {
+            System.out.println("Error while loading the cached map " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the map into a temporary file first and then moves it into place, so that a partially written file is
+     * never loaded.
+     */
+    private void save(final Path file, final MazeMap map) {
+        try {
+            Files.createDirectories(directory);
+            final Path temporaryFile = Files.createTempFile(directory, "map-", ".tmp");
+            try {
+                final byte[] encodedMap = map.encodeToBinary();
+                final CRC32 crc = new CRC32();
+                crc.update(encodedMap);
+                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(HEADER_SIZE + encodedMap.length);
+                final SafeDataOutput output = new ByteArrayDataOutput(outputStream);
+                output.writeInt(FORMAT_MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeInt((int) crc.getValue());
+                output.write(encodedMap);
+                Files.write(temporaryFile, outputStream.toByteArray());
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (final IOException e) {
+            System.out.println("Error while caching the map in " + file + ": " + e);
+        }
+    }
+}
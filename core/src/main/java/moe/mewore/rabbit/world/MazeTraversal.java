@@ -0,0 +1,125 @@
+package moe.mewore.rabbit.world;
+
+import java.util.Arrays;
+
+/**
+ * The shortest paths from one cell of a maze to all others, going through open cells in any of the 8 directions.
+ * <p>
+ * Diagonal steps cost 99/70 (about the square root of 2) times as much as straight ones, so that all distances are
+ * whole numbers and the cells can be explored with a Dial queue - a circular array of buckets, one for each distance
+ * which may still be waiting to be explored - instead of a priority queue.
+ */
+final class MazeTraversal {
+
+    private static final int STRAIGHT_COST = 70;
+
+    private static final int DIAGONAL_COST = 99;
+
+    private static final int[] STEP_XS = {-1, 1, 0, 0, -1, -1, 1, 1};
+
+    private static final int[] STEP_YS = {0, 0, -1, 1, -1, 1, -1, 1};
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final int columnCount;
+
+    private final int[] distances;
+
+    /**
+     * The index of the step (in {@link MazeTraversal#STEP_XS} and {@link MazeTraversal#STEP_YS}) through which each
+     * cell has been reached, or -1 for the starting cell and the cells which have not been reached.
+     */
+    private final byte[] steps;
+
+    private int maxDistance = 0;
+
+    private MazeTraversal(final int rowCount, final int columnCount) {
+        this.columnCount = columnCount;
+        distances = new int[rowCount * columnCount];
+        Arrays.fill(distances, UNREACHED);
+        steps = new byte[rowCount * columnCount];
+        Arrays.fill(steps, (byte) -1);
+    }
+
+    static MazeTraversal of(final BitGrid map, final int fromRow, final int fromCol) {
+        final int rowCount = map.getRowCount();
+        final int width = map.getColumnCount();
+        final var result = new MazeTraversal(rowCount, width);
+        if (!map.get(fromRow, fromCol)) {
+            return result;
+        }
+
+        final int bucketCount = DIAGONAL_COST + 1;
+        final int[][] buckets = new int[bucketCount][16];
+        final int[] bucketSizes = new int[bucketCount];
+        final int fromCell = fromRow * width + fromCol;
+        result.distances[fromCell] = 0;
+        buckets[0][bucketSizes[0]++] = fromCell;
+        int waiting = 1;
+
+        for (int distance = 0; waiting > 0; distance++) {
+            final int bucket = distance % bucketCount;
+            // Every step costs less than there are buckets, so nothing is added to a bucket while it is being emptied
+            while (bucketSizes[bucket] > 0) {
+                final int cell = buckets[bucket][--bucketSizes[bucket]];
+                --waiting;
+                if (result.distances[cell] != distance) {
+                    // It has been reached through a shorter path since it was added here
+                    continue;
+                }
+                result.maxDistance = distance;
+                final int row = cell / width;
+                final int col = cell % width;
+                for (int step = 0; step < STEP_XS.length; step++) {
+                    final int nextRow = Math.floorMod(row + STEP_YS[step], rowCount);
+                    final int nextCol = Math.floorMod(col + STEP_XS[step], width);
+                    final int nextCell = nextRow * width + nextCol;
+                    final int nextDistance = distance +
+                        (STEP_XS[step] != 0 && STEP_YS[step] != 0 ? DIAGONAL_COST : STRAIGHT_COST);
+                    if (nextDistance < result.distances[nextCell] && map.get(nextRow, nextCol)) {
+                        result.distances[nextCell] = nextDistance;
+                        result.steps[nextCell] = (byte) step;
+                        final int nextBucket = nextDistance % bucketCount;
+                        if (bucketSizes[nextBucket] == buckets[nextBucket].length) {
+                            buckets[nextBucket] = Arrays.copyOf(buckets[nextBucket], buckets[nextBucket].length * 2);
+                        }
+                        buckets[nextBucket][bucketSizes[nextBucket]++] = nextCell;
+                        ++waiting;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    boolean isReached(final int row, final int col) {
+        return distances[row * columnCount + col] != UNREACHED;
+    }
+
+    /**
+     * @return The length of the shortest path to a cell which has been reached, in cells.
+     */
+    double getDistance(final int row, final int col) {
+        return (double) distances[row * columnCount + col] / STRAIGHT_COST;
+    }
+
+    double getMaxDistance() {
+        return (double) maxDistance / STRAIGHT_COST;
+    }
+
+    /**
+     * @return The horizontal part of the last step of the shortest path to a cell, or 0 for the starting cell.
+     */
+    int getDx(final int row, final int col) {
+        final byte step = steps[row * columnCount + col];
+        return step < 0 ? 0 : STEP_XS[step];
+    }
+
+    /**
+     * @return The vertical part of the last step of the shortest path to a cell, or 0 for the starting cell.
+     */
+    int getDy(final int row, final int col) {
+        final byte step = steps[row * columnCount + col];
+        return step < 0 ? 0 : STEP_YS[step];
+    }
+}
@@ -3,23 +3,38 @@ package moe.mewore.rabbit.world;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import moe.mewore.rabbit.data.BinaryEntity;
+import moe.mewore.rabbit.data.SafeDataInput;
 import moe.mewore.rabbit.data.SafeDataOutput;
 import moe.mewore.rabbit.geometry.ConvexPolygon;
 
 @RequiredArgsConstructor
 public class MazeWall extends BinaryEntity {
 
+    /**
+     * The number of bytes a wall takes at the very least when encoded - its cells and a polygon of three points.
+     */
+    static final int MINIMUM_ENCODED_SIZE = Integer.BYTES * 4 + ConvexPolygon.MINIMUM_ENCODED_SIZE;
+
+    @Getter
     private final int topRow;
 
+    @Getter
     private final int leftColumn;
 
+    @Getter
     private final int bottomRow;
 
+    @Getter
     private final int rightColumn;
 
     @Getter
     private final ConvexPolygon polygon;
 
+    public static MazeWall decodeFromBinary(final SafeDataInput input) {
+        return new MazeWall(input.readInt(), input.readInt(), input.readInt(), input.readInt(),
+            ConvexPolygon.decodeFromBinary(input));
+    }
+
     @Override
     public void appendToBinaryOutput(final SafeDataOutput output) {
         output.writeInt(topRow);
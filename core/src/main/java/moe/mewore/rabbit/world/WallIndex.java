@@ -0,0 +1,295 @@
+package moe.mewore.rabbit.world;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import moe.mewore.rabbit.geometry.Vector2;
+
+/**
+ * The walls of a maze map laid out in flat arrays: the indices of the walls which are relevant to each cell in
+ * compressed sparse rows, the vertices of all walls one after another and the equation of every edge of every wall.
+ * <p>
+ * The geometric queries give exactly the same results as the ones of {@link moe.mewore.rabbit.geometry.ConvexPolygon}
+ * without going through any object but the arrays themselves.
+ */
+public final class WallIndex {
+
+    private static final double EPSILON = 0.00001;
+
+    private static final double BOUNDS_MARGIN = 1e-9;
+
+    /**
+     * How many numbers there are for each edge in {@link WallIndex#edges}: the coefficients A, B and C of the line
+     * {@code Ax + By + C = 0}, the inverse of {@code A^2 + B^2} and the range of {@code Ay - Bx} along the edge.
+     */
+    private static final int EDGE_STRIDE = 6;
+
+    private final int[] cellOffsets;
+
+    private final int[] cellWalls;
+
+    /**
+     * Where the vertices of each wall start in {@link WallIndex#vertices}, in vertices rather than in numbers.
+     * Every wall has as many edges as vertices, so this is also where its edges start in {@link WallIndex#edges}.
+     */
+    private final int[] vertexOffsets;
+
+    private final float[] vertices;
+
+    private final double[] edges;
+
+    /**
+     * The minimum X, maximum X, minimum Y and maximum Y of each wall.
+     */
+    private final float[] bounds;
+
+    private WallIndex(final int[] cellOffsets, final int[] cellWalls, final List<MazeWall> walls) {
+        this.cellOffsets = cellOffsets;
+        this.cellWalls = cellWalls;
+
+        vertexOffsets = new int[walls.size() + 1];
+        for (int i = 0; i < walls.size(); i++) {
+            vertexOffsets[i + 1] = vertexOffsets[i] + walls.get(i).getPolygon().getPoints().size();
+        }
+        vertices = new float[vertexOffsets[walls.size()] * 2];
+        edges = new double[vertexOffsets[walls.size()] * EDGE_STRIDE];
+        bounds = new float[walls.size() * 4];
+        for (int i = 0; i < walls.size(); i++) {
+            addWall(i, walls.get(i).getPolygon().getPoints());
+        }
+    }
+
+    /**
+     * @param walls       The walls of the map.
+     * @param rowCount    The number of rows of the map.
+     * @param columnCount The number of columns of the map.
+     * @return An index in which every wall is relevant to the cells it is in and the ones next to them.
+     */
+    public static WallIndex of(final List<MazeWall> walls, final int rowCount, final int columnCount) {
+        final int[] cellOffsets = new int[rowCount * columnCount + 1];
+        for (final MazeWall wall : walls) {
+            forEachRelevantCell(wall, columnCount, rowCount, (row, col) -> cellOffsets[row * columnCount + col + 1]++);
+        }
+        for (int cell = 0; cell < rowCount * columnCount; cell++) {
+            cellOffsets[cell + 1] += cellOffsets[cell];
+        }
+        final int[] cellWalls = new int[cellOffsets[rowCount * columnCount]];
+        final int[] nextPlaces = new int[rowCount * columnCount];
+        System.arraycopy(cellOffsets, 0, nextPlaces, 0, nextPlaces.length);
+        for (int wallIndex = 0; wallIndex < walls.size(); wallIndex++) {
+            final int index = wallIndex;
+            forEachRelevantCell(walls.get(wallIndex), columnCount, rowCount,
+                (row, col) -> cellWalls[nextPlaces[row * columnCount + col]++] = index);
+        }
+        return new WallIndex(cellOffsets, cellWalls, walls);
+    }
+
+    /**
+     * @param walls                  The walls of the map.
+     * @param relevantPolygonIndices The indices of the walls which are relevant to each cell, row by row.
+     */
+    public static WallIndex of(final List<MazeWall> walls, final int[][][] relevantPolygonIndices) {
+        final int columnCount = relevantPolygonIndices.length > 0 ? relevantPolygonIndices[0].length : 0;
+        final int[] cellOffsets = new int[relevantPolygonIndices.length * columnCount + 1];
+        for (int i = 0; i < relevantPolygonIndices.length; i++) {
+            for (int j = 0; j < columnCount; j++) {
+                final int cell = i * columnCount + j;
+                cellOffsets[cell + 1] = cellOffsets[cell] + relevantPolygonIndices[i][j].length;
+            }
+        }
+        final int[] cellWalls = new int[cellOffsets[cellOffsets.length - 1]];
+        for (int i = 0; i < relevantPolygonIndices.length; i++) {
+            for (int j = 0; j < columnCount; j++) {
+                final int[] indices = relevantPolygonIndices[i][j];
+                System.arraycopy(indices, 0, cellWalls, cellOffsets[i * columnCount + j], indices.length);
+            }
+        }
+        return new WallIndex(cellOffsets, cellWalls, walls);
+    }
+
+    /**
+     * @param patchedCells The new indices of the walls which are relevant to some of the cells, by the index of the
+     *                     cell. The rest of the cells keep the ones they have in this index.
+     * @param walls        The walls of the map, whose geometry is taken anew.
+     * @return A copy of this index with the relevant walls of some cells replaced.
+     */
+    WallIndex withCells(final Map<Integer, int[]> patchedCells, final List<MazeWall> walls) {
+        final int cellCount = cellOffsets.length - 1;
+        final int[] newOffsets = new int[cellCount + 1];
+        for (int cell = 0; cell < cellCount; cell++) {
+            final int[] patched = patchedCells.get(cell);
+            newOffsets[cell + 1] = newOffsets[cell] +
+                (patched == null ? cellOffsets[cell + 1] - cellOffsets[cell] : patched.length);
+        }
+        final int[] newWalls = new int[newOffsets[cellCount]];
+        for (int cell = 0; cell < cellCount; cell++) {
+            final int[] patched = patchedCells.get(cell);
+            if (patched == null) {
+                System.arraycopy(cellWalls, cellOffsets[cell], newWalls, newOffsets[cell],
+                    cellOffsets[cell + 1] - cellOffsets[cell]);
+            } else {
+                System.arraycopy(patched, 0, newWalls, newOffsets[cell], patched.length);
+            }
+        }
+        return new WallIndex(newOffsets, newWalls, walls);
+    }
+
+    /**
+     * Goes through the cells which a wall is relevant to - the ones it is in and the ones next to them.
+     */
+    static void forEachRelevantCell(final MazeWall wall, final int width, final int height,
+        final CellConsumer consumer) {
+        for (int i = wall.getTopRow() - 1; i <= wall.getBottomRow() + 1; i++) {
+            for (int j = wall.getLeftColumn() - 1; j <= wall.getRightColumn() + 1; j++) {
+                consumer.accept(Math.floorMod(i, height), Math.floorMod(j, width));
+            }
+        }
+    }
+
+    private void addWall(final int wallIndex, final List<Vector2> points) {
+        final int firstVertex = vertexOffsets[wallIndex];
+        float minX = points.isEmpty() ? 0f : Float.POSITIVE_INFINITY;
+        float maxX = points.isEmpty() ? 0f : Float.NEGATIVE_INFINITY;
+        float minY = points.isEmpty() ? 0f : Float.POSITIVE_INFINITY;
+        float maxY = points.isEmpty() ? 0f : Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < points.size(); i++) {
+            final Vector2 from = points.get(i);
+            final Vector2 to = points.get((i + 1) % points.size());
+            vertices[(firstVertex + i) * 2] = from.getX();
+            vertices[(firstVertex + i) * 2 + 1] = from.getY();
+            minX = Math.min(minX, from.getX());
+            maxX = Math.max(maxX, from.getX());
+            minY = Math.min(minY, from.getY());
+            maxY = Math.max(maxY, from.getY());
+
+            // The same as in Line2D and Segment2D, down to the order of the operations
+            final int edge = (firstVertex + i) * EDGE_STRIDE;
+            final double a = from.getY() - to.getY();
+            final double b = to.getX() - from.getX();
+            edges[edge] = a;
+            edges[edge + 1] = b;
+            edges[edge + 2] = -(a * from.getX() + b * from.getY());
+            edges[edge + 3] = 1.0 / (a * a + b * b);
+            final double fromPerpendicular = a * from.getY() - b * from.getX();
+            final double toPerpendicular = a * to.getY() - b * to.getX();
+            edges[edge + 4] = Math.min(fromPerpendicular, toPerpendicular);
+            edges[edge + 5] = Math.max(fromPerpendicular, toPerpendicular);
+        }
+        bounds[wallIndex * 4] = minX;
+        bounds[wallIndex * 4 + 1] = maxX;
+        bounds[wallIndex * 4 + 2] = minY;
+        bounds[wallIndex * 4 + 3] = maxY;
+    }
+
+    /**
+     * @param cell The index of a cell ({@code row * columnCount + column}).
+     * @return Where the walls which are relevant to the cell start in this index.
+     */
+    public int getCellStart(final int cell) {
+        return cellOffsets[cell];
+    }
+
+    /**
+     * @param cell The index of a cell ({@code row * columnCount + column}).
+     * @return Where the walls which are relevant to the cell end in this index (exclusively).
+     */
+    public int getCellEnd(final int cell) {
+        return cellOffsets[cell + 1];
+    }
+
+    /**
+     * @param cell The index of a cell ({@code row * columnCount + column}).
+     * @return A copy of the indices of the walls which are relevant to the cell.
+     */
+    public int[] getCellWalls(final int cell) {
+        return Arrays.copyOfRange(cellWalls, cellOffsets[cell], cellOffsets[cell + 1]);
+    }
+
+    /**
+     * @param position A position between the start and the end of the walls of a cell.
+     * @return The index of the wall (in {@link MazeMap#getWalls()}) at this position.
+     */
+    public int getWall(final int position) {
+        return cellWalls[position];
+    }
+
+    /**
+     * @return Whether the point is inside the wall. {@code false} if the point is exactly on its boundary.
+     * @see moe.mewore.rabbit.geometry.ConvexPolygon#containsPoint(Vector2)
+     */
+    public boolean containsPoint(final int wall, final float x, final float y) {
+        if (!(x > bounds[wall * 4] && x < bounds[wall * 4 + 1] && y > bounds[wall * 4 + 2] &&
+            y < bounds[wall * 4 + 3])) {
+            return false;
+        }
+        int clockwiseCount = 0;
+        for (int edge = vertexOffsets[wall]; edge < vertexOffsets[wall + 1]; edge++) {
+            final int offset = edge * EDGE_STRIDE;
+            final double clockwiseResult = edges[offset] * x + edges[offset + 1] * y + edges[offset + 2];
+            if (clockwiseResult > EPSILON) {
+                if (clockwiseCount < 0) {
+                    return false;
+                }
+                clockwiseCount = 1;
+            } else if (clockwiseResult < -EPSILON) {
+                if (clockwiseCount > 0) {
+                    return false;
+                }
+                clockwiseCount--;
+            } else if (distanceToEdgeSquared(wall, edge, x, y) < EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The squared distance from the point to the closest edge of the wall.
+     * @see moe.mewore.rabbit.geometry.ConvexPolygon#distanceToPointSquared(Vector2)
+     */
+    public double distanceToPointSquared(final int wall, final float x, final float y) {
+        double result = -1.0;
+        for (int edge = vertexOffsets[wall]; edge < vertexOffsets[wall + 1]; edge++) {
+            final double currentDistance = distanceToEdgeSquared(wall, edge, x, y);
+            result = result < 0 ? currentDistance : Math.min(result, currentDistance);
+        }
+        return result;
+    }
+
+    /**
+     * @return Whether the bounding box of the wall is farther than a distance from the point, in which case so is
+     * the wall. Points in the bounding box are never farther from it than anything.
+     */
+    public boolean isFartherThan(final int wall, final float x, final float y, final double distanceSquared) {
+        final double dx = Math.max(0.0, Math.max(bounds[wall * 4] - x, x - bounds[wall * 4 + 1]));
+        final double dy = Math.max(0.0, Math.max(bounds[wall * 4 + 2] - y, y - bounds[wall * 4 + 3]));
+        // Slightly farther, so that the rounding of the exact distance can never make it the closer one
+        return dx * dx + dy * dy > distanceSquared + BOUNDS_MARGIN;
+    }
+
+    private double distanceToEdgeSquared(final int wall, final int edge, final float x, final float y) {
+        final int offset = edge * EDGE_STRIDE;
+        final double a = edges[offset];
+        final double b = edges[offset + 1];
+        final double perpendicular = a * y - b * x;
+        if (perpendicular > edges[offset + 4] && perpendicular < edges[offset + 5]) {
+            final double numerator = a * x + b * y + edges[offset + 2];
+            return numerator * numerator * edges[offset + 3];
+        }
+        final int to = edge + 1 < vertexOffsets[wall + 1] ? edge + 1 : vertexOffsets[wall];
+        return Math.min(distanceToVertexSquared(edge, x, y), distanceToVertexSquared(to, x, y));
+    }
+
+    private double distanceToVertexSquared(final int vertex, final float x, final float y) {
+        final double dx = x - vertices[vertex * 2];
+        final double dy = y - vertices[vertex * 2 + 1];
+        return dx * dx + dy * dy;
+    }
+
+    @FunctionalInterface
+    interface CellConsumer {
+
+        void accept(int row, int col);
+    }
+}
@@ -0,0 +1,30 @@
+package moe.mewore.rabbit.world;
+
+/**
+ * A horizontal area centered at the origin which wraps around along the X and Z axes, so that going past one of its
+ * edges leads to the opposite one.
+ */
+public interface WrappingArea {
+
+    /**
+     * @return The size of the area along the X axis.
+     */
+    float getWidth();
+
+    /**
+     * @return The size of the area along the Z axis.
+     */
+    float getDepth();
+
+    /**
+     * @param x An X coordinate, which may be outside the area.
+     * @return The same X coordinate, but inside the area.
+     */
+    double wrapX(double x);
+
+    /**
+     * @param z A Z coordinate, which may be outside the area.
+     * @return The same Z coordinate, but inside the area.
+     */
+    double wrapZ(double z);
+}
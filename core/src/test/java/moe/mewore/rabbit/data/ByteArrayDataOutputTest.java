@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import lombok.RequiredArgsConstructor;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class ByteArrayDataOutputTest {
 
@@ -103,6 +104,39 @@ class ByteArrayDataOutputTest {
             byteArrayOutputStream.toByteArray());
     }
 
+    @Test
+    void testWriteVarInt() {
+        dataOutput.writeVarInt(300);
+        assertArrayEquals(new byte[]{(byte) 0xAC, 0x02}, byteArrayOutputStream.toByteArray());
+    }
+
+    @Test
+    void testWriteVarInt_negative() {
+        dataOutput.writeVarInt(-1);
+        assertArrayEquals(new byte[]{-1, -1, -1, -1, 0x0F}, byteArrayOutputStream.toByteArray());
+    }
+
+    @Test
+    void testWriteSignedVarInt() {
+        dataOutput.writeSignedVarInt(-1);
+        dataOutput.writeSignedVarInt(1);
+        dataOutput.writeSignedVarInt(-65);
+        assertArrayEquals(new byte[]{1, 2, (byte) 0x81, 0x01}, byteArrayOutputStream.toByteArray());
+    }
+
+    @Test
+    void testWriteVarLong() {
+        dataOutput.writeVarLong(1L << 35);
+        assertArrayEquals(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01},
+            byteArrayOutputStream.toByteArray());
+    }
+
+    @Test
+    void testWriteSignedVarLong() {
+        dataOutput.writeSignedVarLong(Long.MIN_VALUE);
+        assertEquals(10, byteArrayOutputStream.size());
+    }
+
     @Test
     void testWriteFloat() {
         dataOutput.writeFloat(Float.intBitsToFloat(0xFF34));
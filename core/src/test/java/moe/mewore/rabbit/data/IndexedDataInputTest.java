@@ -0,0 +1,177 @@
+package moe.mewore.rabbit.data;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexedDataInputTest {
+
+    private static Stream<Function<byte[], IndexedDataInput>> inputFactories() {
+        return Stream.of(ByteArrayDataInput::new, data -> new ByteBufferDataInput(ByteBuffer.wrap(data)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputFactories")
+    void testReadWrittenData(final Function<byte[], IndexedDataInput> inputFactory) {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        final ByteArrayDataOutput dataOutput = new ByteArrayDataOutput(byteArrayOutputStream);
+        dataOutput.writeBoolean(true);
+        dataOutput.writeByte(-5);
+        dataOutput.writeShort(-1234);
+        dataOutput.writeChar('x');
+        dataOutput.writeInt(-123456789);
+        dataOutput.writeLong(0x1234567890ABCDEFL);
+        dataOutput.writeFloat(.25f);
+        dataOutput.writeDouble(-.125);
+
+        final SafeDataInput dataInput = inputFactory.apply(byteArrayOutputStream.toByteArray());
+        assertTrue(dataInput.readBoolean());
+        assertEquals(-5, dataInput.readByte());
+        assertEquals(-1234, dataInput.readShort());
+        assertEquals('x', dataInput.readChar());
+        assertEquals(-123456789, dataInput.readInt());
+        assertEquals(0x1234567890ABCDEFL, dataInput.readLong());
+        assertEquals(.25f, dataInput.readFloat());
+        assertEquals(-.125, dataInput.readDouble());
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputFactories")
+    void testReadVarInts(final Function<byte[], IndexedDataInput> inputFactory) {
+        final int[] ints = {0, 1, -1, 63, -64, 64, 127, 128, 300, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        final long[] longs = {0L, -1L, 1L << 35, -(1L << 35), Long.MAX_VALUE, Long.MIN_VALUE};
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        final ByteArrayDataOutput dataOutput = new ByteArrayDataOutput(byteArrayOutputStream);
+        for (final int value : ints) {
+            dataOutput.writeVarInt(value);
+            dataOutput.writeSignedVarInt(value);
+        }
+        for (final long value : longs) {
+            dataOutput.writeVarLong(value);
+            dataOutput.writeSignedVarLong(value);
+        }
+
+        final IndexedDataInput dataInput = inputFactory.apply(byteArrayOutputStream.toByteArray());
+        for (final int value : ints) {
+            assertEquals(value, dataInput.readVarInt());
+            assertEquals(value, dataInput.readSignedVarInt());
+        }
+        for (final long value : longs) {
+            assertEquals(value, dataInput.readVarLong());
+            assertEquals(value, dataInput.readSignedVarLong());
+        }
+        assertEquals(0, dataInput.getRemaining());
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputFactories")
+    void testReadVarInt_tooLong(final Function<byte[], IndexedDataInput> inputFactory) {
+        final SafeDataInput dataInput = inputFactory.apply(new byte[]{0, -1, -1, -1, -1, -1, 0});
+        assertEquals(0, dataInput.readVarInt());
+        final Exception exception = assertThrows(IllegalArgumentException.class, dataInput::readVarInt);
+        assertEquals("The variable-length int at index 1 is too long", exception.getMessage());
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputFactories")
+    void testReadUnsigned(final Function<byte[], IndexedDataInput> inputFactory) {
+        final SafeDataInput dataInput = inputFactory.apply(new byte[]{-1, -1, -2});
+        assertEquals(255, dataInput.readUnsignedByte());
+        assertEquals(0xFFFE, dataInput.readUnsignedShort());
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputFactories")
+    void testReadFully(final Function<byte[], IndexedDataInput> inputFactory) {
+        final SafeDataInput dataInput = inputFactory.apply(new byte[]{1, 2, 3, 4});
+        final byte[] target = new byte[3];
+        dataInput.readFully(target, 1, 2);
+        assertArrayEquals(new byte[]{0, 1, 2}, target);
+        dataInput.readFully(target, 0, 2);
+        assertArrayEquals(new byte[]{3, 4, 2}, target);
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputFactories")
+    void testSkipBytes(final Function<byte[], IndexedDataInput> inputFactory) {
+        final SafeDataInput dataInput = inputFactory.apply(new byte[]{1, 2, 3});
+        assertEquals(2, dataInput.skipBytes(2));
+        assertEquals(1, dataInput.skipBytes(5));
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputFactories")
+    void testReadLine(final Function<byte[], IndexedDataInput> inputFactory) {
+        final SafeDataInput dataInput = inputFactory.apply(new byte[]{'a', 'b', '\n', 'c'});
+        assertEquals("ab", dataInput.readLine());
+        assertEquals("c", dataInput.readLine());
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputFactories")
+    void testReadUTF(final Function<byte[], IndexedDataInput> inputFactory) {
+        final SafeDataInput dataInput = inputFactory.apply(new byte[]{'a', 'b', 'c'});
+        assertEquals("abc", dataInput.readUTF());
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputFactories")
+    void testRead_beyondLimit(final Function<byte[], IndexedDataInput> inputFactory) {
+        final IndexedDataInput dataInput = inputFactory.apply(new byte[]{0, 0});
+        final Exception exception = assertThrows(IllegalArgumentException.class, dataInput::readInt);
+        assertEquals("Cannot read 4 byte(s) at index 0 because there are only 2 left", exception.getMessage());
+        assertFalse(dataInput.readBoolean());
+    }
+
+    @Test
+    void testReset() {
+        final ByteArrayDataInput dataInput = new ByteArrayDataInput();
+        assertEquals(0, dataInput.getRemaining());
+
+        dataInput.reset(new byte[]{1, 2, 3, 4}, 1, 2);
+        assertEquals(2, dataInput.getRemaining());
+        assertEquals(2, dataInput.readByte());
+        assertEquals(3, dataInput.readByte());
+        assertEquals(0, dataInput.getRemaining());
+    }
+
+    @Test
+    void testReset_invalidRange() {
+        final ByteArrayDataInput dataInput = new ByteArrayDataInput();
+        final Exception exception = assertThrows(IllegalArgumentException.class,
+            () -> dataInput.reset(new byte[2], 1, 2));
+        assertEquals("The range [1, 3) is not within the data range [0, 2)", exception.getMessage());
+    }
+
+    @Test
+    void testReset_beyondLimit() {
+        final ByteArrayDataInput dataInput = new ByteArrayDataInput().reset(new byte[]{0, 0, 0, 0}, 1, 2);
+        final Exception exception = assertThrows(IllegalArgumentException.class, dataInput::readInt);
+        assertEquals("Cannot read 4 byte(s) at index 1 because there are only 2 left", exception.getMessage());
+        assertFalse(dataInput.readBoolean());
+    }
+
+    @Test
+    void testByteBuffer_range() {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[]{9, 1, 2, 9});
+        buffer.position(1).limit(3);
+        final ByteBufferDataInput dataInput = new ByteBufferDataInput(buffer);
+        assertEquals(2, dataInput.getRemaining());
+        assertEquals(0x0102, dataInput.readShort());
+        assertEquals(0, dataInput.getRemaining());
+
+        // The buffer itself is not moved
+        assertEquals(1, buffer.position());
+    }
+}
@@ -0,0 +1,104 @@
+package moe.mewore.rabbit.world;
+
+import org.junit.jupiter.api.Test;
+
+import moe.mewore.rabbit.data.ByteArrayDataInput;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BitGridTest {
+
+    @Test
+    void testSet() {
+        final var grid = new BitGrid(3, 70);
+        grid.set(1, 65, true);
+        assertTrue(grid.get(1, 65));
+        assertTrue(grid.get(-2, -5));
+        assertFalse(grid.get(1, 64));
+        assertFalse(grid.get(2, 65));
+        grid.set(1, 65, false);
+        assertFalse(grid.get(1, 65));
+    }
+
+    @Test
+    void testFlip() {
+        final var grid = new BitGrid(2, 2);
+        grid.flip(0, 3);
+        assertTrue(grid.get(0, 1));
+        grid.flip(0, 1);
+        assertFalse(grid.get(0, 1));
+    }
+
+    @Test
+    void testOf() {
+        final var grid = BitGrid.of(new boolean[][]{{true, false}, {false, true}});
+        assertTrue(grid.get(0, 0));
+        assertFalse(grid.get(0, 1));
+        assertFalse(grid.get(1, 0));
+        assertTrue(grid.get(1, 1));
+    }
+
+    @Test
+    void testDecode() {
+        final var grid = new BitGrid(3, 11);
+        grid.set(0, 0, true);
+        grid.set(1, 7, true);
+        grid.set(2, 10, true);
+        final var decoded = BitGrid.decodeFromBinary(new ByteArrayDataInput(grid.encodeToBinary()), 3, 11);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 11; j++) {
+                assertEquals(grid.get(i, j), decoded.get(i, j));
+            }
+        }
+    }
+
+    @Test
+    void testCopyFrom() {
+        final var grid = new BitGrid(2, 100);
+        grid.set(1, 99, true);
+        final var copy = new BitGrid(2, 100);
+        copy.copyFrom(grid);
+        assertTrue(copy.get(1, 99));
+    }
+
+    @Test
+    void testCount() {
+        final var grid = new BitGrid(2, 130);
+        for (int i = 0; i < 130; i += 2) {
+            grid.set(1, i, true);
+        }
+        assertEquals(65, grid.count(1, 0, 130));
+        assertEquals(30, grid.count(1, 60, 60));
+        assertEquals(2, grid.count(1, 127, 5));
+        assertEquals(0, grid.count(0, 0, 130));
+    }
+
+    @Test
+    void testCount_moreThanTheRow() {
+        final var grid = new BitGrid(1, 1);
+        grid.set(0, 0, true);
+        assertEquals(3, grid.count(0, -1, 3));
+    }
+
+    @Test
+    void testCountNeighbours() {
+        final var grid = new BitGrid(4, 4);
+        grid.set(0, 0, true);
+        grid.set(0, 1, true);
+        grid.set(3, 3, true);
+        grid.set(1, 0, true);
+        assertEquals(3, grid.countNeighbours(0, 0));
+        assertEquals(2, grid.countOrthogonalNeighbours(0, 0));
+    }
+
+    @Test
+    void testEncode() {
+        final var grid = new BitGrid(3, 3);
+        grid.set(0, 0, true);
+        grid.set(2, 2, true);
+        assertArrayEquals(new byte[]{1, 1}, grid.encodeToBinary());
+    }
+}
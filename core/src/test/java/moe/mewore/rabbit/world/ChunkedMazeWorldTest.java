@@ -0,0 +1,191 @@
+package moe.mewore.rabbit.world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import moe.mewore.rabbit.noise.DiamondSquareNoise;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkedMazeWorldTest {
+
+    private static final WorldProperties PROPERTIES = new WorldProperties("seed", 20, 16, 2.5, 2.5, 3, 3, "17");
+
+    private static ChunkedMazeWorld createWorld(final int chunkRadius, final int maxCachedChunks) {
+        return new ChunkedMazeWorld(PROPERTIES,
+            seed -> DiamondSquareNoise.createSeamless(3, new Random(seed), 1.0, 2.5), chunkRadius, maxCachedChunks);
+    }
+
+    @Test
+    void testCreate_negativeRadius() {
+        final var exception = assertThrows(IllegalArgumentException.class, () -> createWorld(-1, 1));
+        assertEquals("The chunk radius cannot be negative, but it is -1", exception.getMessage());
+    }
+
+    @Test
+    void testSize() {
+        final ChunkedMazeWorld world = createWorld(2, 1);
+        assertEquals(5, world.getChunkCount());
+        assertEquals(50.0, world.getChunkWidth());
+        assertEquals(40.0, world.getChunkDepth());
+        assertEquals(250f, world.getWidth());
+        assertEquals(200f, world.getDepth());
+        assertEquals(-120.0, world.wrapX(130.0), 1e-9);
+        assertEquals(90.0, world.wrapZ(-110.0), 1e-9);
+    }
+
+    @Test
+    void testGetChunk_cached() {
+        final ChunkedMazeWorld world = createWorld(10, 4);
+        final MazeMap chunk = world.getChunk(-3, 7);
+        assertSame(chunk, world.getChunk(-3, 7));
+        assertEquals(1, world.getCachedChunkCount());
+    }
+
+    @Test
+    void testGetChunk_wrapped() {
+        final ChunkedMazeWorld world = createWorld(2, 4);
+        assertSame(world.getChunk(-2, 1), world.getChunk(3, -4));
+        assertEquals(1, world.getCachedChunkCount());
+        assertEquals(-2, world.wrapChunk(3));
+        assertEquals(2, world.wrapChunk(-3));
+        assertEquals(1, world.wrapChunk(11));
+    }
+
+    @Test
+    void testGetChunk_evicted() {
+        final ChunkedMazeWorld world = createWorld(10, 2);
+        final byte[] first = world.getChunk(-3, 7).encodeToBinary();
+        world.getChunk(0, 0);
+        world.getChunk(1, 0);
+        assertEquals(2, world.getCachedChunkCount());
+
+        // The chunk is generated the same way again
+        assertArrayEquals(first, world.getChunk(-3, 7).encodeToBinary());
+        assertArrayEquals(first, createWorld(10, 1).getChunk(-3, 7).encodeToBinary());
+    }
+
+    @Test
+    void testGetCachedChunk() {
+        final ChunkedMazeWorld world = createWorld(2, 4);
+        assertNull(world.getCachedChunk(1, 1));
+        assertEquals(0, world.getCachedChunkCount());
+
+        final MazeMap chunk = world.getChunk(1, 1);
+        assertSame(chunk, world.getCachedChunk(-4, 1));
+    }
+
+    @Test
+    void testPrefetchChunk() {
+        final ChunkedMazeWorld world = createWorld(2, 4);
+        final List<Runnable> tasks = new ArrayList<>();
+        world.prefetchChunk(1, 1, tasks::add);
+        // The same chunk is not handed to the executor again while it is waiting to be generated
+        world.prefetchChunk(-4, 1, tasks::add);
+        assertEquals(1, tasks.size());
+        assertNull(world.getCachedChunk(1, 1));
+
+        tasks.get(0).run();
+        assertEquals(1, world.getCachedChunkCount());
+        world.prefetchChunk(1, 1, tasks::add);
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    void testPrefetchChunk_rejected() {
+        final ChunkedMazeWorld world = createWorld(2, 4);
+        world.prefetchChunk(1, 1, task -> {
+            throw new RejectedExecutionException();
+        });
+        final List<Runnable> tasks = new ArrayList<>();
+        world.prefetchChunk(1, 1, tasks::add);
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    void testGetChunk_different() {
+        final ChunkedMazeWorld world = createWorld(10, 4);
+        assertFalse(Arrays.equals(world.getChunk(0, 0).encodeToBinary(), world.getChunk(1, 0).encodeToBinary()));
+        assertFalse(Arrays.equals(world.getChunk(0, 0).encodeToBinary(), world.getChunk(0, -1).encodeToBinary()));
+    }
+
+    @Test
+    void testGetChunk_openEdges() {
+        final MazeMap chunk = createWorld(10, 1).getChunk(5, -2);
+        for (int i = 0; i < 16; i++) {
+            assertTrue(chunk.getCell(i, 0));
+            assertTrue(chunk.getCell(i, 19));
+        }
+        for (int j = 0; j < 20; j++) {
+            assertTrue(chunk.getCell(0, j));
+            assertTrue(chunk.getCell(15, j));
+        }
+        assertTrue(MazeTraversal.of(BitGrid.of(getCells(chunk)), 8, 10).isReached(0, 0));
+    }
+
+    private static boolean[][] getCells(final MazeMap chunk) {
+        final boolean[][] cells = new boolean[chunk.getRowCount()][chunk.getColumnCount()];
+        for (int i = 0; i < cells.length; i++) {
+            for (int j = 0; j < cells[i].length; j++) {
+                cells[i][j] = chunk.getCell(i, j);
+            }
+        }
+        return cells;
+    }
+
+    @Test
+    void testIsInWall() {
+        final ChunkedMazeWorld world = createWorld(1, 9);
+        assertEquals(0, world.getChunkX(24.9));
+        assertEquals(1, world.getChunkX(25.1));
+        assertEquals(-1, world.getChunkZ(-20.1));
+
+        final MazeMap chunk = world.getChunk(1, -1);
+        final Random random = new Random(11L);
+        for (int i = 0; i < 1000; i++) {
+            final double x = random.nextDouble();
+            final double z = random.nextDouble();
+            assertEquals(chunk.isInWall(x, z), world.isInWall(50.0 * (x + .5), 40.0 * (z - 1.5)));
+        }
+    }
+
+    @Test
+    void testForEachChunkNear() {
+        final ChunkedMazeWorld world = createWorld(1, 16);
+        final List<String> chunks = new ArrayList<>();
+        world.forEachChunkNear(70.0, 0.0, 10.0, (chunkX, chunkZ) -> chunks.add(chunkX + "," + chunkZ));
+        // Across the seam of the world, the chunk at -1 is next to the one at 1
+        assertEquals(List.of("1,0", "-1,0"), chunks);
+        assertEquals(0, world.getCachedChunkCount());
+    }
+
+    @Test
+    void testForEachChunkNear_wholeWorld() {
+        final ChunkedMazeWorld world = createWorld(0, 16);
+        final List<String> chunks = new ArrayList<>();
+        world.forEachChunkNear(0.0, 0.0, 1000.0, (chunkX, chunkZ) -> chunks.add(chunkX + "," + chunkZ));
+        assertEquals(List.of("0,0"), chunks);
+    }
+
+    @Test
+    void testGetDistanceToChunk() {
+        final ChunkedMazeWorld world = createWorld(1, 1);
+        assertEquals(0.0, world.getDistanceToChunk(10.0, -5.0, 0, 0));
+        assertEquals(5.0, world.getDistanceToChunk(30.0, -5.0, 0, 0), 1e-9);
+        assertEquals(15.0, world.getDistanceToChunk(0.0, -5.0, 0, -1), 1e-9);
+        // Across the seam of the world
+        assertEquals(3.0, world.getDistanceToChunk(72.0, 0.0, -1, 0), 1e-9);
+    }
+}
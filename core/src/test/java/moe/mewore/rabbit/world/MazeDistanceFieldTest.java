@@ -0,0 +1,119 @@
+package moe.mewore.rabbit.world;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import moe.mewore.rabbit.noise.DiamondSquareNoise;
+import moe.mewore.rabbit.noise.Noise;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MazeDistanceFieldTest {
+
+    private static final int SIZE = 20;
+
+    private static final int SAMPLES_PER_CELL = 4;
+
+    private static MazeMap map;
+
+    private static MazeDistanceField field;
+
+    @BeforeAll
+    static void setUp() {
+        final WorldProperties properties = new WorldProperties("", SIZE, SIZE, 2.5, 2.5, 3, 3, "");
+        final Noise opennessNoise = DiamondSquareNoise.createSeamless(4, new Random(5L), 1.0, 2.5);
+        map = MazeMap.createSeamless(properties, new Random(11L), opennessNoise);
+        field = MazeDistanceField.of(map, SAMPLES_PER_CELL);
+    }
+
+    @Test
+    void testGet_sign() {
+        final Random random = new Random(11L);
+        for (int i = 0; i < 10000; i++) {
+            final double x = randomCoordinate(random);
+            final double y = randomCoordinate(random);
+            final double distance = field.get(x, y);
+            // Right at the boundary, the sign depends on which samples are interpolated
+            if (Math.abs(distance) > 1.0 / SAMPLES_PER_CELL) {
+                assertEquals(map.isInWall(x, y), distance < 0, "At " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void testGet_closeToExactDistance() {
+        final WallIndex index = map.getWallIndex();
+        final Random random = new Random(11L);
+        int checked = 0;
+        for (int i = 0; i < 10000; i++) {
+            final double x = randomCoordinate(random);
+            final double y = randomCoordinate(random);
+            if (map.isInWall(x, y)) {
+                continue;
+            }
+            final int cell = (int) (y * SIZE) * SIZE + (int) (x * SIZE);
+            double minDistanceSquared = Double.POSITIVE_INFINITY;
+            for (int offsetX = -1; offsetX <= 1; offsetX++) {
+                for (int offsetY = -1; offsetY <= 1; offsetY++) {
+                    for (int position = index.getCellStart(cell); position < index.getCellEnd(cell); position++) {
+                        minDistanceSquared = Math.min(minDistanceSquared,
+                            index.distanceToPointSquared(index.getWall(position), (float) (x + offsetX),
+                                (float) (y + offsetY)));
+                    }
+                }
+            }
+            // Only the walls next to the cell are relevant to it, so only short distances are exact
+            final double exactDistance = Math.sqrt(minDistanceSquared) * SIZE;
+            if (exactDistance < .8) {
+                assertEquals(exactDistance, field.get(x, y), 1.0 / SAMPLES_PER_CELL, "At " + x + ", " + y);
+                checked++;
+            }
+        }
+        assertTrue(checked > 1000);
+    }
+
+    /**
+     * @return A random normalized coordinate which is not right at the edge of a cell, where two walls may touch
+     * without any of them containing the points between them.
+     */
+    private static double randomCoordinate(final Random random) {
+        return (random.nextInt(SIZE) + .01 + random.nextDouble() * .98) / SIZE;
+    }
+
+    @Test
+    void testGet_wrapsAround() {
+        assertEquals(field.get(.3, .7), field.get(1.3, -.3), 1e-9);
+        assertEquals(field.get(0, .5), field.get(1, .5), 1e-9);
+    }
+
+    @Test
+    void testEncode() {
+        assertEquals(12 + SIZE * SIZE * SAMPLES_PER_CELL * SAMPLES_PER_CELL * 4, field.encodeToBinary().length);
+    }
+
+    @Test
+    void testMazeMapGet() {
+        final WorldProperties properties = new WorldProperties("", SIZE, SIZE, 2.5, 2.5, 3, 3, "");
+        final Noise opennessNoise = DiamondSquareNoise.createSeamless(4, new Random(5L), 1.0, 2.5);
+        final MazeMap fieldMap = MazeMap.createSeamless(properties, new Random(11L), opennessNoise);
+        fieldMap.computeDistanceField(SAMPLES_PER_CELL);
+
+        final double expected = field.get(.31, .47);
+        final double fertility = fieldMap.get(.31, .47);
+        if (expected < 0) {
+            assertEquals(-1.0, fertility);
+        } else {
+            assertEquals(expected >= .8 ? 0.0 : (1.0 - expected / .8) * (1.0 - expected / .8), fertility, 1e-9);
+        }
+
+        // The field is kept up to date when the walls change
+        final boolean open = fieldMap.getCell(3, 3);
+        assertEquals(open, fieldMap.get(3.5 / SIZE, 3.5 / SIZE) >= 0);
+        fieldMap.setCell(3, 3, !open);
+        fieldMap.recomputeWalls();
+        assertEquals(!open, fieldMap.get(3.5 / SIZE, 3.5 / SIZE) >= 0);
+    }
+}
@@ -0,0 +1,129 @@
+package moe.mewore.rabbit.world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import moe.mewore.rabbit.noise.DiamondSquareNoise;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MazeMapCacheTest {
+
+    private static final WorldProperties PROPERTIES = new WorldProperties("seed", 30, 20, 2.5, 2.5, 3, 3, "7,41");
+
+    @TempDir
+    Path directory;
+
+    private final AtomicInteger generatedCount = new AtomicInteger();
+
+    private final Supplier<MazeMap> generator = () -> {
+        generatedCount.incrementAndGet();
+        return MazeMap.createSeamless(PROPERTIES, new Random(11L),
+            DiamondSquareNoise.createSeamless(3, new Random(5L), 1.0, 2.5));
+    };
+
+    @Test
+    void testGetOrGenerate() {
+        final MazeMap generated = new MazeMapCache(directory).getOrGenerate(PROPERTIES, generator);
+        final MazeMap cached = new MazeMapCache(directory).getOrGenerate(PROPERTIES, generator);
+        assertEquals(1, generatedCount.get());
+        assertArrayEquals(generated.encodeToBinary(), cached.encodeToBinary());
+        assertArrayEquals(generated.getRelevantPolygonIndices(4, 29), cached.getRelevantPolygonIndices(4, 29));
+        assertEquals(generated.get(.37, .81), cached.get(.37, .81));
+    }
+
+    @Test
+    void testGetOrGenerate_otherProperties() {
+        final MazeMapCache cache = new MazeMapCache(directory);
+        final WorldProperties otherProperties = new WorldProperties("seed", 30, 20, 2.5, 2.5, 3, 3, "7");
+        assertNotEquals(cache.getFile(PROPERTIES), cache.getFile(otherProperties));
+        cache.getOrGenerate(PROPERTIES, generator);
+        cache.getOrGenerate(otherProperties, generator);
+        assertEquals(2, generatedCount.get());
+    }
+
+    @Test
+    void testGetFile_otherGenerator() {
+        final MazeMapCache cache = new MazeMapCache(directory);
+        assertEquals(cache.getFile(PROPERTIES), cache.getFile(PROPERTIES, MazeMap.GENERATOR_VERSION));
+        assertNotEquals(cache.getFile(PROPERTIES), cache.getFile(PROPERTIES, MazeMap.GENERATOR_VERSION + 1));
+    }
+
+    @Test
+    void testGetOrGenerate_invalidFile() throws IOException {
+        final MazeMapCache cache = new MazeMapCache(directory);
+        Files.write(cache.getFile(PROPERTIES), new byte[]{1, 2, 3});
+        cache.getOrGenerate(PROPERTIES, generator);
+        assertEquals(1, generatedCount.get());
+
+        // The invalid file has been replaced
+        cache.getOrGenerate(PROPERTIES, generator);
+        assertEquals(1, generatedCount.get());
+    }
+
+    @Test
+    void testGetOrGenerate_truncatedFile() throws IOException {
+        final MazeMapCache cache = new MazeMapCache(directory);
+        cache.getOrGenerate(PROPERTIES, generator);
+        final byte[] data = Files.readAllBytes(cache.getFile(PROPERTIES));
+        final byte[] truncated = new byte[data.length / 2];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        Files.write(cache.getFile(PROPERTIES), truncated);
+
+        cache.getOrGenerate(PROPERTIES, generator);
+        assertEquals(2, generatedCount.get());
+    }
+
+    @Test
+    void testGetOrGenerate_corruptFile() throws IOException {
+        final MazeMapCache cache = new MazeMapCache(directory);
+        cache.getOrGenerate(PROPERTIES, generator);
+        final byte[] data = Files.readAllBytes(cache.getFile(PROPERTIES));
+        data[data.length - 1] ^= 1;
+        Files.write(cache.getFile(PROPERTIES), data);
+
+        cache.getOrGenerate(PROPERTIES, generator);
+        assertEquals(2, generatedCount.get());
+    }
+
+    @Test
+    void testGetOrGenerate_corruptHeader() throws IOException {
+        final MazeMapCache cache = new MazeMapCache(directory);
+        cache.getOrGenerate(PROPERTIES, generator);
+        final byte[] data = Files.readAllBytes(cache.getFile(PROPERTIES));
+        final int[][] sizes = {{-1, 30}, {20, -1}, {0, 0}, {100000, 100000}, {20, 30000}};
+        for (final int[] size : sizes) {
+            // The checksum matches, so the sizes themselves are what has to be rejected
+            final ByteBuffer buffer = ByteBuffer.wrap(data);
+            buffer.putInt(12, size[0]).putInt(16, size[1]);
+            final CRC32 crc = new CRC32();
+            crc.update(data, 12, data.length - 12);
+            buffer.putInt(8, (int) crc.getValue());
+            Files.write(cache.getFile(PROPERTIES), data);
+
+            final MazeMap map = cache.getOrGenerate(PROPERTIES, generator);
+            assertEquals(20, map.getRowCount());
+            assertEquals(30, map.getColumnCount());
+        }
+        assertEquals(1 + sizes.length, generatedCount.get());
+    }
+
+    @Test
+    void testGetOrGenerate_missingDirectory() {
+        final Path missingDirectory = directory.resolve("a").resolve("b");
+        new MazeMapCache(missingDirectory).getOrGenerate(PROPERTIES, generator);
+        assertTrue(Files.isRegularFile(new MazeMapCache(missingDirectory).getFile(PROPERTIES)));
+    }
+}
@@ -2,19 +2,33 @@ package moe.mewore.rabbit.world;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 import org.junit.jupiter.api.Test;
 
+import moe.mewore.rabbit.data.ByteArrayDataInput;
+import moe.mewore.rabbit.data.ByteArrayDataOutput;
 import moe.mewore.rabbit.geometry.ConvexPolygon;
 import moe.mewore.rabbit.geometry.Vector2;
+import moe.mewore.rabbit.noise.CompositeNoise;
+import moe.mewore.rabbit.noise.DiamondSquareNoise;
 import moe.mewore.rabbit.noise.Noise;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.Mockito.mock;
@@ -29,14 +43,96 @@ class MazeMapTest {
         when(opennessNoise.get(anyDouble(), anyDouble())).thenReturn(.5);
         final WorldProperties properties = new WorldProperties("", 30, 30, 2.5, 2.5, 3, 3, "");
 
-        // ~20KB
-        assertEquals(12756, MazeMap.createSeamless(properties, random, opennessNoise).encodeToBinary().length);
+        // ~12KB
+        assertEquals(11969, MazeMap.createSeamless(properties, random, opennessNoise).encodeToBinary().length);
+    }
+
+    @Test
+    void testGenerate_reproducible() {
+        final WorldProperties properties = new WorldProperties("", 70, 50, 2.5, 2.5, 3, 4, "");
+        final Noise opennessNoise = DiamondSquareNoise.createSeamless(4, new Random(5L), 1.0, 2.5);
+
+        final byte[] first = MazeMap.createSeamless(properties, new Random(11L), opennessNoise).encodeToBinary();
+        final byte[] second = MazeMap.createSeamless(properties, new Random(11L), opennessNoise).encodeToBinary();
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void testGenerate_shippedWorld() throws IOException {
+        // The flipped cells of the shipped world are authored by hand, so it has to be generated exactly the same way
+        final WorldProperties properties = WorldProperties.getFromFile(new File("src/main/resources/world.properties"));
+        final long seed = properties.getSeedAsLong();
+        final Noise opennessNoise = new CompositeNoise(
+            DiamondSquareNoise.createSeamless(properties.getNoiseResolution(), new Random(seed), 1.0,
+                properties.getNoiseSharpness()),
+            DiamondSquareNoise.createSeamless(properties.getNoiseResolution(), new Random(seed + 1), 1.0,
+                properties.getNoiseSharpness()), CompositeNoise.XNOR_BLENDING);
+
+        final byte[] data = MazeMap.createSeamless(properties, new Random(seed), opennessNoise).encodeToBinary();
+        final CRC32 checksum = new CRC32();
+        checksum.update(data);
+        assertEquals(38189, data.length);
+        assertEquals(0x67c71bceL, checksum.getValue());
+    }
+
+    @Test
+    void testFindReachableCells_largeLayers() {
+        // The layers of an open area grow large enough to be searched in parallel
+        final BitGrid map = new BitGrid(300, 300);
+        for (int i = 0; i < 300; i++) {
+            for (int j = 0; j < 300; j++) {
+                map.set(i, j, true);
+            }
+        }
+        // An enclosed room, which cannot be reached from outside of it
+        for (int k = 200; k <= 260; k++) {
+            map.set(200, k, false);
+            map.set(260, k, false);
+            map.set(k, 200, false);
+            map.set(k, 260, false);
+        }
+
+        final BitGrid reached = MazeMap.findReachableCells(map, 10, 10);
+        for (int i = 0; i < 300; i++) {
+            for (int j = 0; j < 300; j++) {
+                final boolean inRoom = i >= 200 && i <= 260 && j >= 200 && j <= 260;
+                assertEquals(!inRoom, reached.get(i, j), "Cell (" + i + ", " + j + ")");
+            }
+        }
     }
 
     @Test
     void testEncode() {
         final MazeMap map = new MazeMap(2.5, new boolean[3][3], new ArrayList<>(), new int[3][3][0]);
-        assertEquals(29, map.encodeToBinary().length);
+        assertEquals(22, map.encodeToBinary().length);
+    }
+
+    @Test
+    void testDecode() {
+        final WorldProperties properties = new WorldProperties("", 30, 20, 2.5, 2.5, 3, 3, "");
+        final Noise opennessNoise = DiamondSquareNoise.createSeamless(4, new Random(5L), 1.0, 2.5);
+        final MazeMap map = MazeMap.createSeamless(properties, new Random(11L), opennessNoise);
+
+        final byte[] encoded = map.encodeToBinary();
+        final MazeMap decoded = MazeMap.decodeFromBinary(new ByteArrayDataInput(encoded));
+        assertArrayEquals(encoded, decoded.encodeToBinary());
+        assertEquals(map.getWidth(), decoded.getWidth());
+        assertArrayEquals(map.getRelevantPolygonIndices(7, 3), decoded.getRelevantPolygonIndices(7, 3));
+    }
+
+    @Test
+    void testDecode_tooManyWalls() {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final ByteArrayDataOutput output = new ByteArrayDataOutput(outputStream);
+        output.writeInt(2);
+        output.writeInt(2);
+        output.writeDouble(2.5);
+        output.writeByte(0);
+        output.writeInt(1000);
+
+        final Exception exception = assertThrows(IllegalArgumentException.class,
+            () -> MazeMap.decodeFromBinary(new ByteArrayDataInput(outputStream.toByteArray())));
+        assertEquals("1000 walls cannot be decoded from the remaining 0 byte(s)", exception.getMessage());
     }
 
     @Test
@@ -47,6 +143,162 @@ class MazeMapTest {
         assertTrue(map.getCell(1, 1));
     }
 
+    @Test
+    void testGetRelevantPolygonIndices() {
+        final int[][][] relevantPolygonIndices = new int[3][3][0];
+        relevantPolygonIndices[2][0] = new int[]{1, 2};
+        final MazeMap map = new MazeMap(2.5, new boolean[3][3], new ArrayList<>(), relevantPolygonIndices);
+        assertArrayEquals(new int[]{1, 2}, map.getRelevantPolygonIndices(-1, 3));
+        assertArrayEquals(new int[0], map.getRelevantPolygonIndices(1, 1));
+    }
+
+    @Test
+    void testRecomputeWalls_changedCells() {
+        final Set<Integer> changedCells = new HashSet<>();
+        for (int i = 10; i < 14; i++) {
+            for (int j = 0; j < 5; j++) {
+                changedCells.add(i * 40 + j);
+            }
+        }
+        changedCells.add(29 * 40 + 39);
+        changedCells.add(3 * 40 + 20);
+        assertRecomputedWalls(changedCells, (map, cell) -> (cell % 3 == 0) || !map.getCell(cell / 40, cell % 40));
+    }
+
+    @Test
+    void testRecomputeWalls_fewerWalls() {
+        final Set<Integer> changedCells = new HashSet<>();
+        for (int i = 5; i < 20; i++) {
+            for (int j = 5; j < 25; j++) {
+                changedCells.add(i * 40 + j);
+            }
+        }
+        assertRecomputedWalls(changedCells, (map, cell) -> false);
+    }
+
+    /**
+     * Changes some cells of a 40x30 map and checks whether recomputing only the walls around them gives walls which
+     * are just as valid as recomputing all of them.
+     */
+    private static void assertRecomputedWalls(final Set<Integer> changedCells,
+        final BiPredicate<MazeMap, Integer> newValue) {
+        final WorldProperties properties = new WorldProperties("", 40, 30, 2.5, 2.5, 3, 3, "");
+        final Noise opennessNoise = DiamondSquareNoise.createSeamless(4, new Random(5L), 1.0, 2.5);
+        final MazeMap map = MazeMap.createSeamless(properties, new Random(11L), opennessNoise);
+        final MazeMap fullyRecomputedMap = MazeMap.createSeamless(properties, new Random(11L), opennessNoise);
+        for (final int cell : changedCells) {
+            final boolean value = newValue.test(map, cell);
+            map.setCell(cell / 40, cell % 40, value);
+            fullyRecomputedMap.setCell(cell / 40, cell % 40, value);
+        }
+        map.recomputeWalls(changedCells);
+        fullyRecomputedMap.recomputeWalls();
+
+        // Every wall cell is in exactly one rectangle
+        final int[][] rectangleCounts = new int[30][40];
+        for (final MazeWall wall : map.getWalls()) {
+            if (!map.getCell(wall.getTopRow(), wall.getLeftColumn())) {
+                for (int i = wall.getTopRow(); i <= wall.getBottomRow(); i++) {
+                    for (int j = wall.getLeftColumn(); j <= wall.getRightColumn(); j++) {
+                        rectangleCounts[i][j]++;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 40; j++) {
+                assertEquals(map.getCell(i, j) ? 0 : 1, rectangleCounts[i][j]);
+            }
+        }
+
+        // Every cell knows about exactly the walls in it and next to it (as many times as it is next to them when
+        // they wrap around the whole map)
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 40; j++) {
+                final List<Integer> expected = new ArrayList<>();
+                for (int wallIndex = 0; wallIndex < map.getWalls().size(); wallIndex++) {
+                    final MazeWall wall = map.getWalls().get(wallIndex);
+                    final int count = countNear(i, wall.getTopRow(), wall.getBottomRow(), 30) *
+                        countNear(j, wall.getLeftColumn(), wall.getRightColumn(), 40);
+                    for (int k = 0; k < count; k++) {
+                        expected.add(wallIndex);
+                    }
+                }
+                assertEquals(expected, Arrays.stream(map.getRelevantPolygonIndices(i, j))
+                    .sorted()
+                    .boxed()
+                    .collect(Collectors.toList()));
+            }
+        }
+
+        // The walls may be split differently, but they cover the same area (except for the edges between them)
+        for (double y = .0031; y < 1.0; y += .0097) {
+            for (double x = .0031; x < 1.0; x += .0097) {
+                assertEquals(fullyRecomputedMap.get(x, y), map.get(x, y), 1e-6);
+            }
+        }
+    }
+
+    private static int countNear(final int cell, final int from, final int to, final int size) {
+        int result = 0;
+        for (int i = from - 1; i <= to + 1; i++) {
+            if (Math.floorMod(i, size) == cell) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void testGetFertility() {
+        final WorldProperties properties = new WorldProperties("", 20, 16, 2.5, 2.5, 3, 3, "");
+        final Noise opennessNoise = DiamondSquareNoise.createSeamless(4, new Random(5L), 1.0, 2.5);
+        final MazeMap map = MazeMap.createSeamless(properties, new Random(11L), opennessNoise);
+
+        final float[] tile = new float[70 * 30];
+        map.getFertility(tile, -20, -10, 70, 30, 400, 320);
+        boolean hasWall = false;
+        boolean hasFertility = false;
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 70; j++) {
+                final double expected = map.get((j - 20) / 400.0, (i - 10) / 320.0);
+                assertEquals((float) expected, tile[i * 70 + j]);
+                hasWall |= expected < 0;
+                hasFertility |= expected > 0;
+            }
+        }
+        assertTrue(hasWall);
+        assertTrue(hasFertility);
+    }
+
+    @Test
+    void testApplyFertilityToImage() {
+        final WorldProperties properties = new WorldProperties("", 20, 16, 2.5, 2.5, 3, 3, "");
+        final Noise opennessNoise = DiamondSquareNoise.createSeamless(4, new Random(5L), 1.0, 2.5);
+        final MazeMap map = MazeMap.createSeamless(properties, new Random(11L), opennessNoise);
+
+        // The pixels of the first two images are written directly, while the last one is only gone through its colors
+        final BufferedImage[] images = {new BufferedImage(400, 320, BufferedImage.TYPE_INT_ARGB),
+            new BufferedImage(400, 320, BufferedImage.TYPE_INT_RGB),
+            new BufferedImage(400, 320, BufferedImage.TYPE_4BYTE_ABGR)};
+        for (final BufferedImage image : images) {
+            final Graphics2D graphics = image.createGraphics();
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, 400, 320);
+            graphics.setColor(Color.BLACK);
+            graphics.fillRect(100, 100, 10, 10);
+            graphics.dispose();
+            map.applyFertilityToImage(image, -30, 250, 380, 400);
+        }
+
+        final int[] expected = images[2].getRGB(0, 0, 400, 320, null, 0, 400);
+        assertEquals(Color.BLACK.getRGB(), expected[105 * 400 + 105]);
+        assertTrue(Arrays.stream(expected).anyMatch(pixel -> pixel == -1));
+        assertTrue(Arrays.stream(expected).anyMatch(pixel -> pixel != -1 && pixel != Color.BLACK.getRGB()));
+        assertArrayEquals(expected, images[0].getRGB(0, 0, 400, 320, null, 0, 400));
+        assertArrayEquals(expected, images[1].getRGB(0, 0, 400, 320, null, 0, 400));
+    }
+
     @Test
     void testGetRowCount() {
         final MazeMap map = new MazeMap(2.5, new boolean[3][3], new ArrayList<>(), new int[3][3][0]);
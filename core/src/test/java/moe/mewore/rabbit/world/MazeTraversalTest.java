@@ -0,0 +1,64 @@
+package moe.mewore.rabbit.world;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MazeTraversalTest {
+
+    private static BitGrid makeGrid(final String... lines) {
+        final boolean[][] cells = new boolean[lines.length][];
+        for (int i = 0; i < lines.length; i++) {
+            cells[i] = new boolean[lines[i].length()];
+            for (int j = 0; j < lines[i].length(); j++) {
+                cells[i][j] = lines[i].charAt(j) == ' ';
+            }
+        }
+        return BitGrid.of(cells);
+    }
+
+    @Test
+    void testOf() {
+        final MazeTraversal traversal = MazeTraversal.of(makeGrid(
+            "#####",
+            "#   #",
+            "### #",
+            "#   #",
+            "#####"), 1, 1);
+        assertTrue(traversal.isReached(1, 1));
+        assertEquals(0.0, traversal.getDistance(1, 1));
+        assertEquals(0, traversal.getDx(1, 1));
+        assertEquals(2.0, traversal.getDistance(1, 3));
+        assertEquals(1, traversal.getDx(1, 3));
+        assertEquals(0, traversal.getDy(1, 3));
+
+        // Two straight steps and two diagonal ones
+        assertEquals(2 + 2 * 99.0 / 70, traversal.getDistance(3, 1), 1e-9);
+        assertEquals(-1, traversal.getDx(3, 1));
+        assertEquals(0, traversal.getDy(3, 1));
+        assertEquals(traversal.getDistance(3, 1), traversal.getMaxDistance());
+        assertFalse(traversal.isReached(0, 0));
+    }
+
+    @Test
+    void testOf_wrapped() {
+        final MazeTraversal traversal = MazeTraversal.of(makeGrid(
+            "#####",
+            "  #  ",
+            "#####"), 1, 0);
+        assertEquals(1.0, traversal.getDistance(1, 4));
+        assertEquals(-1, traversal.getDx(1, 4));
+        assertEquals(2.0, traversal.getDistance(1, 3));
+    }
+
+    @Test
+    void testOf_wall() {
+        final MazeTraversal traversal = MazeTraversal.of(makeGrid(
+            "# ",
+            "  "), 0, 0);
+        assertFalse(traversal.isReached(0, 0));
+        assertFalse(traversal.isReached(1, 1));
+    }
+}
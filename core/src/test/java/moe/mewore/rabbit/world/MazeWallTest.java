@@ -1,13 +1,17 @@
 package moe.mewore.rabbit.world;
 
+import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
 
+import moe.mewore.rabbit.data.ByteArrayDataInput;
+import moe.mewore.rabbit.data.ByteArrayDataOutput;
 import moe.mewore.rabbit.geometry.ConvexPolygon;
 import moe.mewore.rabbit.geometry.Vector2;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class MazeWallTest {
 
@@ -18,4 +22,33 @@ class MazeWallTest {
                 new Vector2(-2, 4))));
         assertEquals(60, wall.encodeToBinary().length);
     }
+
+    @Test
+    void testDecode() {
+        final MazeWall wall = new MazeWall(0, 1, 2, 3, new ConvexPolygon(
+            Arrays.asList(new Vector2(0, 0), new Vector2(5, 0), new Vector2(7, 3))));
+        final MazeWall decoded = MazeWall.decodeFromBinary(new ByteArrayDataInput(wall.encodeToBinary()));
+        assertEquals(2, decoded.getBottomRow());
+        assertEquals(3, decoded.getRightColumn());
+        assertEquals(3, decoded.getPolygon().getPoints().size());
+        assertEquals(7f, decoded.getPolygon().getPoints().get(2).getX());
+    }
+
+    @Test
+    void testDecode_notAPolygon() {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final ByteArrayDataOutput output = new ByteArrayDataOutput(outputStream);
+        for (int i = 0; i < 4; i++) {
+            output.writeInt(i);
+        }
+        output.writeInt(2);
+        output.writeFloat(0f);
+        output.writeFloat(0f);
+        output.writeFloat(1f);
+        output.writeFloat(1f);
+
+        final Exception exception = assertThrows(IllegalArgumentException.class,
+            () -> MazeWall.decodeFromBinary(new ByteArrayDataInput(outputStream.toByteArray())));
+        assertEquals("A polygon of 2 points cannot be decoded from the remaining 16 byte(s)", exception.getMessage());
+    }
 }
@@ -0,0 +1,102 @@
+package moe.mewore.rabbit.world;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import moe.mewore.rabbit.geometry.ConvexPolygon;
+import moe.mewore.rabbit.geometry.Vector2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WallIndexTest {
+
+    private static final MazeWall SQUARE = new MazeWall(1, 1, 1, 1, new ConvexPolygon(
+        Arrays.asList(new Vector2(.25f, .25f), new Vector2(.5f, .25f), new Vector2(.5f, .5f),
+            new Vector2(.25f, .5f))));
+
+    private static final MazeWall TRIANGLE = new MazeWall(0, 3, 0, 3, new ConvexPolygon(
+        Arrays.asList(new Vector2(.75f, 0f), new Vector2(1f, 0f), new Vector2(1f, .1f))));
+
+    @Test
+    void testOf() {
+        final WallIndex index = WallIndex.of(Arrays.asList(SQUARE, TRIANGLE), 4, 4);
+        assertArrayEquals(new int[]{0, 1}, index.getCellWalls(0));
+        assertArrayEquals(new int[]{0}, index.getCellWalls(2 * 4 + 2));
+        // The triangle is at the top right corner, so it wraps around to the bottom and to the left
+        assertArrayEquals(new int[]{1}, index.getCellWalls(3 * 4 + 3));
+        assertArrayEquals(new int[0], index.getCellWalls(3 * 4 + 1));
+        assertEquals(index.getCellStart(2) + 2, index.getCellEnd(2));
+        assertEquals(1, index.getWall(index.getCellStart(2) + 1));
+    }
+
+    @Test
+    void testOf_relevantPolygonIndices() {
+        final int[][][] relevantPolygonIndices = {{{}, {1, 0}}, {{0}, {}}};
+        final WallIndex index = WallIndex.of(Arrays.asList(SQUARE, TRIANGLE), relevantPolygonIndices);
+        assertArrayEquals(new int[0], index.getCellWalls(0));
+        assertArrayEquals(new int[]{1, 0}, index.getCellWalls(1));
+        assertArrayEquals(new int[]{0}, index.getCellWalls(2));
+        assertArrayEquals(new int[0], index.getCellWalls(3));
+    }
+
+    @Test
+    void testWithCells() {
+        final WallIndex index = WallIndex.of(Collections.singletonList(SQUARE), new int[][][]{{{0}, {0}, {}}});
+        final WallIndex patched = index.withCells(Collections.singletonMap(1, new int[0]),
+            Collections.singletonList(TRIANGLE));
+        assertArrayEquals(new int[]{0}, patched.getCellWalls(0));
+        assertArrayEquals(new int[0], patched.getCellWalls(1));
+        assertTrue(patched.containsPoint(0, .99f, .01f));
+        assertTrue(index.containsPoint(0, .3f, .3f));
+    }
+
+    @Test
+    void testContainsPoint() {
+        final WallIndex index = WallIndex.of(Arrays.asList(SQUARE, TRIANGLE), 4, 4);
+        assertTrue(index.containsPoint(0, .3f, .4f));
+        assertFalse(index.containsPoint(0, .25f, .4f));
+        assertFalse(index.containsPoint(0, .6f, .4f));
+        assertTrue(index.containsPoint(1, .95f, .02f));
+        assertFalse(index.containsPoint(1, .8f, .09f));
+    }
+
+    @Test
+    void testDistanceToPointSquared() {
+        final WallIndex index = WallIndex.of(Arrays.asList(SQUARE, TRIANGLE), 4, 4);
+        assertEquals(.01, index.distanceToPointSquared(0, .6f, .4f), 1e-6);
+        assertEquals(.02, index.distanceToPointSquared(0, .6f, .6f), 1e-6);
+        assertEquals(.0025, index.distanceToPointSquared(0, .3f, .3f), 1e-6);
+    }
+
+    @Test
+    void testIsFartherThan() {
+        final WallIndex index = WallIndex.of(Arrays.asList(SQUARE, TRIANGLE), 4, 4);
+        assertTrue(index.isFartherThan(0, .7f, .25f, .03));
+        assertFalse(index.isFartherThan(0, .7f, .25f, .05));
+        assertFalse(index.isFartherThan(0, .3f, .3f, 0.0));
+    }
+
+    @Test
+    void testQueries_sameAsPolygons() {
+        final List<MazeWall> walls = Arrays.asList(SQUARE, TRIANGLE);
+        final WallIndex index = WallIndex.of(walls, 4, 4);
+        final Random random = new Random(11);
+        for (int i = 0; i < 10000; i++) {
+            final float x = random.nextFloat() * 1.2f - .1f;
+            final float y = random.nextFloat() * 1.2f - .1f;
+            for (int wall = 0; wall < walls.size(); wall++) {
+                final ConvexPolygon polygon = walls.get(wall).getPolygon();
+                assertEquals(polygon.containsPoint(new Vector2(x, y)), index.containsPoint(wall, x, y));
+                assertEquals(polygon.distanceToPointSquared(new Vector2(x, y)),
+                    index.distanceToPointSquared(wall, x, y));
+            }
+        }
+    }
+}
@@ -214,7 +214,7 @@ class MazeMapCanvas extends Canvas {
                         flippedCells.add(cell);
                     }
                 }
-                map.recomputeWalls();
+                map.recomputeWalls(paintedCells);
                 imageData.redrawFlippedCells(paintedCells, flippedCells);
                 paintedCells.clear();
                 imageData.updateUiIndicators(paintedCells, currentPaint, hoveredCell);
@@ -55,6 +55,58 @@ export class SignedBinaryReader {
         return Number(result);
     }
 
+    /**
+     * Read an integer written with {@link SignedBinaryWriter#writeVarInt}.
+     *
+     * @returns The next variable-length integer for this reader, as a signed 32-bit integer.
+     */
+    readVarInt(): number {
+        return this.readVarNumber() | 0;
+    }
+
+    /**
+     * Read an integer written with {@link SignedBinaryWriter#writeSignedVarInt}.
+     *
+     * @returns The next ZigZag-encoded variable-length integer for this reader.
+     */
+    readSignedVarInt(): number {
+        const zigZag = this.readVarNumber() >>> 0;
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    /**
+     * Read a long written with {@link SignedBinaryWriter#writeVarLong}. There is an assumption that the number
+     * is less than 2^53.
+     *
+     * @returns The next variable-length long for this reader.
+     */
+    readVarLong(): number {
+        return this.readVarNumber();
+    }
+
+    /**
+     * Read a long written with {@link SignedBinaryWriter#writeSignedVarLong}. There is an assumption that its absolute
+     * value is less than 2^52.
+     *
+     * @returns The next ZigZag-encoded variable-length long for this reader.
+     */
+    readSignedVarLong(): number {
+        const zigZag = this.readVarNumber();
+        return zigZag % 2 === 0 ? zigZag / 2 : -(zigZag + 1) / 2;
+    }
+
+    private readVarNumber(): number {
+        let result = 0;
+        let multiplier = 1;
+        let byte: number;
+        do {
+            byte = this.dataView.getUint8(this.index++);
+            result += (byte & 0x7f) * multiplier;
+            multiplier *= 128;
+        } while (byte >= 128);
+        return result;
+    }
+
     readFloat(): number {
         const result = this.dataView.getFloat32(this.index);
         this.index += 4;
@@ -15,6 +15,8 @@ enum StringBinaryType {
 
 type BinaryData = [number, NumberBinaryType] | Uint8Array;
 
+const VAR_NUMBER_GROUP_BASE = 128;
+
 export class SignedBinaryWriter {
     private readonly data: BinaryData[] = [];
 
@@ -43,6 +45,37 @@ export class SignedBinaryWriter {
         this.data.push([value, NumberBinaryType.LONG]);
     }
 
+    /**
+     * Write an integer in 7-bit groups, starting from the least significant one. Negative values are written as their
+     * unsigned 32-bit counterparts, which always take 5 bytes, so {@link SignedBinaryWriter#writeSignedVarInt}
+     * should be preferred for them.
+     */
+    writeVarInt(value: number): void {
+        this.data.push(SignedBinaryWriter.encodeVarNumber(value >>> 0));
+    }
+
+    /**
+     * Write a 32-bit integer with {@link SignedBinaryWriter#writeVarInt} after ZigZag-encoding it so that values
+     * with a small absolute value take few bytes regardless of their sign.
+     */
+    writeSignedVarInt(value: number): void {
+        this.data.push(SignedBinaryWriter.encodeVarNumber(((value << 1) ^ (value >> 31)) >>> 0));
+    }
+
+    /**
+     * Write a non-negative long in 7-bit groups. There is an assumption that the number is less than 2^53.
+     */
+    writeVarLong(value: number): void {
+        this.data.push(SignedBinaryWriter.encodeVarNumber(value));
+    }
+
+    /**
+     * Write a ZigZag-encoded long in 7-bit groups. There is an assumption that the absolute value is less than 2^52.
+     */
+    writeSignedVarLong(value: number): void {
+        this.data.push(SignedBinaryWriter.encodeVarNumber(value >= 0 ? value * 2 : -value * 2 - 1));
+    }
+
     writeFloat(value: number): void {
         this.data.push([value, NumberBinaryType.FLOAT]);
     }
@@ -126,6 +159,17 @@ export class SignedBinaryWriter {
         }
     }
 
+    private static encodeVarNumber(value: number): Uint8Array {
+        const bytes: number[] = [];
+        let remaining = value;
+        while (remaining >= VAR_NUMBER_GROUP_BASE) {
+            bytes.push((remaining % VAR_NUMBER_GROUP_BASE) | VAR_NUMBER_GROUP_BASE);
+            remaining = Math.floor(remaining / VAR_NUMBER_GROUP_BASE);
+        }
+        bytes.push(remaining);
+        return new Uint8Array(bytes);
+    }
+
     private static encodeString(value: string, type: StringBinaryType): Uint8Array {
         // NOTE: JS strings are encoded in big-endian UTF-16. Characters that are represented with two 16-bit
         //  parts are considered as two separate characters, which makes encoding much easier.
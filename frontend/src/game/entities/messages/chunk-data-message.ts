@@ -0,0 +1,25 @@
+import { BinaryEntity } from '../binary-entity';
+import { SignedBinaryReader } from '../data/signed-binary-reader';
+import { SignedBinaryWriter } from '../data/signed-binary-writer';
+import { MazeMap } from '../world/maze-map';
+
+/**
+ * A chunk of a world made of chunks, which the server sends when it is requested.
+ */
+export class ChunkDataMessage extends BinaryEntity {
+    constructor(readonly chunkX: number, readonly chunkZ: number, readonly chunk: MazeMap) {
+        super();
+    }
+
+    appendToBinaryOutput(writer: SignedBinaryWriter): void {
+        writer.writeInt(this.chunkX);
+        writer.writeInt(this.chunkZ);
+        this.chunk.appendToBinaryOutput(writer);
+    }
+
+    static decodeFromBinary(reader: SignedBinaryReader): ChunkDataMessage {
+        const chunkX = reader.readInt();
+        const chunkZ = reader.readInt();
+        return new ChunkDataMessage(chunkX, chunkZ, MazeMap.decodeFromBinary(reader));
+    }
+}
@@ -2,19 +2,34 @@ import { BinaryEntity } from '../binary-entity';
 import { SignedBinaryReader } from '../data/signed-binary-reader';
 import { SignedBinaryWriter } from '../data/signed-binary-writer';
 import { DummyBox } from '../world/dummy-box';
+import { MazeDistanceField } from '../world/maze-distance-field';
 import { MazeMap } from '../world/maze-map';
 
 export class MapDataMessage extends BinaryEntity {
-    constructor(readonly map: MazeMap, readonly dummyBoxes: DummyBox[]) {
+    /**
+     * @param map The whole map, or the chunk at the origin if the world is made of chunks.
+     * @param dummyBoxes The dummy boxes in the world.
+     * @param chunkRadius How many chunks there are on each side of the chunk at the origin, along each axis, or 0 if
+     * the map is the whole world.
+     */
+    constructor(readonly map: MazeMap, readonly dummyBoxes: DummyBox[], readonly chunkRadius = 0) {
         super();
     }
 
     appendToBinaryOutput(writer: SignedBinaryWriter): void {
         this.map.appendToBinaryOutput(writer);
         writer.writeEntityArray(this.dummyBoxes);
+        writer.writeBoolean(this.map.distanceField !== undefined);
+        this.map.distanceField?.appendToBinaryOutput(writer);
+        writer.writeInt(this.chunkRadius);
     }
 
     static decodeFromBinary(reader: SignedBinaryReader): MapDataMessage {
-        return new MapDataMessage(MazeMap.decodeFromBinary(reader), reader.readEntityArray(DummyBox));
+        const map = MazeMap.decodeFromBinary(reader);
+        const dummyBoxes = reader.readEntityArray(DummyBox);
+        if (reader.readBoolean()) {
+            map.distanceField = MazeDistanceField.decodeFromBinary(reader);
+        }
+        return new MapDataMessage(map, dummyBoxes, reader.readInt());
     }
 }
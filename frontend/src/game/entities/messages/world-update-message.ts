@@ -37,11 +37,25 @@ export class WorldUpdateMessage extends BinaryEntity {
     }
 
     appendToBinaryOutput(writer: SignedBinaryWriter): void {
-        writer.writeInt(this.maxPlayerCount);
-        writer.writeInt(this.sphereCount);
+        writer.writeVarInt(this.maxPlayerCount);
+        writer.writeVarInt(this.sphereCount);
 
-        writer.writeMap(this.playerLatencyById, writer.int, writer.int);
-        writer.writeMap(this.newPlayerInputs, writer.int, writer.writeEntityArray.bind(writer));
+        writer.writeVarInt(this.playerLatencyById.size);
+        for (const [playerId, latency] of this.playerLatencyById.entries()) {
+            writer.writeVarInt(playerId);
+            writer.writeVarInt(latency);
+        }
+
+        const baseFrameId = this.frameId;
+        writer.writeSignedVarLong(baseFrameId);
+        writer.writeVarInt(this.newPlayerInputs.size);
+        for (const [playerId, inputs] of this.newPlayerInputs.entries()) {
+            writer.writeVarInt(playerId);
+            writer.writeVarInt(inputs.length);
+            for (const input of inputs) {
+                input.appendToBinaryOutput(writer, baseFrameId);
+            }
+        }
 
         for (const value of new Uint8Array(this.frame)) {
             writer.writeByte(value);
@@ -49,11 +63,27 @@ export class WorldUpdateMessage extends BinaryEntity {
     }
 
     static decodeFromBinary(reader: SignedBinaryReader): WorldUpdateMessage {
-        const maxPlayerCount = reader.readInt();
-        const sphereCount = reader.readInt();
+        const maxPlayerCount = reader.readVarInt();
+        const sphereCount = reader.readVarInt();
 
-        const playerLatencyById = reader.readMap(reader.int, reader.int);
-        const playerInputs = reader.readMap(reader.int, () => reader.readEntityArray(PlayerInput));
+        const playerLatencyById = new Map<number, number>();
+        const playerCount = reader.readVarInt();
+        for (let i = 0; i < playerCount; i++) {
+            playerLatencyById.set(reader.readVarInt(), reader.readVarInt());
+        }
+
+        const baseFrameId = reader.readSignedVarLong();
+        const playerInputs = new Map<number, PlayerInput[]>();
+        const playerWithInputsCount = reader.readVarInt();
+        for (let i = 0; i < playerWithInputsCount; i++) {
+            const playerId = reader.readVarInt();
+            const inputs: PlayerInput[] = [];
+            const inputCount = reader.readVarInt();
+            for (let j = 0; j < inputCount; j++) {
+                inputs.push(PlayerInput.decodeFromBinary(reader, baseFrameId));
+            }
+            playerInputs.set(playerId, inputs);
+        }
 
         const frame = reader.readRemainingBytes();
         return new WorldUpdateMessage(maxPlayerCount, sphereCount, playerLatencyById, playerInputs, frame);
@@ -0,0 +1,15 @@
+import { BinaryEntity } from '../binary-entity';
+import { SignedBinaryWriter } from '../data/signed-binary-writer';
+import { MutationType } from './mutation-type';
+
+export class ChunkRequestMutation extends BinaryEntity {
+    constructor(readonly chunkX: number, readonly chunkZ: number) {
+        super();
+    }
+
+    appendToBinaryOutput(writer: SignedBinaryWriter): void {
+        writer.writeByte(MutationType.CHUNK_REQUEST);
+        writer.writeInt(this.chunkX);
+        writer.writeInt(this.chunkZ);
+    }
+}
@@ -2,4 +2,6 @@ export enum MutationType {
     JOIN,
     UPDATE,
     HEARTBEAT_RESPONSE,
+    PLAYER_INPUT_BATCH,
+    CHUNK_REQUEST,
 }
@@ -0,0 +1,27 @@
+import { BinaryEntity } from '../binary-entity';
+import { SignedBinaryWriter } from '../data/signed-binary-writer';
+import { PlayerInput } from '../player/player-input';
+import { MutationType } from './mutation-type';
+
+/**
+ * Several inputs sent together. Repeating the most recent inputs which have already been sent lets the server
+ * recover from a lost message without having to wait for a resend; the server ignores the duplicates. The frame IDs
+ * of the inputs are written relative to that of the first one.
+ */
+export class PlayerInputBatchMutation extends BinaryEntity {
+    constructor(private readonly inputs: PlayerInput[]) {
+        super();
+    }
+
+    appendToBinaryOutput(writer: SignedBinaryWriter): void {
+        writer.writeByte(MutationType.PLAYER_INPUT_BATCH);
+        writer.writeByte(this.inputs.length);
+        if (this.inputs.length > 0) {
+            const baseFrameId = this.inputs[0].frameId;
+            writer.writeSignedVarLong(baseFrameId);
+            for (const input of this.inputs) {
+                input.appendToBinaryOutput(writer, baseFrameId);
+            }
+        }
+    }
+}
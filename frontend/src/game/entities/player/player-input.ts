@@ -43,15 +43,24 @@ export class PlayerInput extends BinaryEntity {
         PlayerInput.applyEncodedInputToTargetMotion(targetMotion, this.byte, this.angle);
     }
 
-    appendToBinaryOutput(writer: SignedBinaryWriter): void {
-        writer.writeInt(this.id);
-        writer.writeLong(this.frameId);
+    /**
+     * @param writer The writer to write to.
+     * @param baseFrameId A frame ID known to the reader; the frame ID of the input is written relative to it.
+     */
+    appendToBinaryOutput(writer: SignedBinaryWriter, baseFrameId = 0): void {
+        writer.writeSignedVarInt(this.id);
+        writer.writeSignedVarLong(this.frameId - baseFrameId);
         writer.writeByte(this.byte);
         writer.writeFloat(this.angle);
     }
 
-    static decodeFromBinary(reader: SignedBinaryReader): PlayerInput {
-        return new PlayerInput(reader.readInt(), reader.readLong(), reader.readByte(), reader.readFloat());
+    static decodeFromBinary(reader: SignedBinaryReader, baseFrameId = 0): PlayerInput {
+        return new PlayerInput(
+            reader.readSignedVarInt(),
+            baseFrameId + reader.readSignedVarLong(),
+            reader.readByte(),
+            reader.readFloat()
+        );
     }
 
     private static applyInputToTargetMotion(
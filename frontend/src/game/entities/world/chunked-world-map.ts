@@ -0,0 +1,215 @@
+import { Vector3 } from 'three';
+
+import { ConvexPolygonEntity } from '../geometry/convex-polygon-entity';
+import { Vector2Entity } from '../geometry/vector2-entity';
+import { MazeMap } from './maze-map';
+import { MazeWall } from './maze-wall';
+import { WorldMap } from './world-map';
+
+const WRAP_X_OFFSETS = [-1, 0, 1];
+const WRAP_Z_OFFSETS = [-1, 0, 1];
+
+const NO_POLYGONS: ReadonlyArray<ConvexPolygonEntity> = [];
+
+interface LoadedChunk {
+    readonly map: MazeMap;
+    /**
+     * The polygons of the walls of the chunk, in the coordinates of the whole world, by their polygon in the chunk.
+     */
+    readonly worldPolygons: Map<ConvexPolygonEntity, ConvexPolygonEntity>;
+}
+
+/**
+ * A world made of chunks (maze maps side by side), only some of which are known at any time. The chunk at (0, 0) is
+ * centered at the origin and the chunks go from `-chunkRadius` to `chunkRadius` along each axis, like on the server.
+ */
+export class ChunkedWorldMap implements WorldMap {
+    /**
+     * The number of chunks along each axis.
+     */
+    readonly chunkCount: number;
+    readonly chunkWidth: number;
+    readonly chunkDepth: number;
+    readonly rowCount: number;
+    readonly columnCount: number;
+    readonly width: number;
+    readonly depth: number;
+    readonly wrappingOffsets: Vector3[];
+
+    private readonly chunks = new Map<number, LoadedChunk>();
+
+    constructor(
+        readonly chunkRadius: number,
+        readonly chunkRowCount: number,
+        readonly chunkColumnCount: number,
+        readonly cellSize: number
+    ) {
+        this.chunkCount = chunkRadius * 2 + 1;
+        this.rowCount = chunkRowCount * this.chunkCount;
+        this.columnCount = chunkColumnCount * this.chunkCount;
+        this.chunkWidth = chunkColumnCount * cellSize;
+        this.chunkDepth = chunkRowCount * cellSize;
+        this.width = this.columnCount * cellSize;
+        this.depth = this.rowCount * cellSize;
+
+        this.wrappingOffsets = WRAP_X_OFFSETS.flatMap((xOffset) =>
+            WRAP_Z_OFFSETS.map((zOffset) => new Vector3(xOffset * this.width, 0, zOffset * this.depth))
+        );
+    }
+
+    get loadedChunkCount(): number {
+        return this.chunks.size;
+    }
+
+    wrapChunk(chunk: number): number {
+        const shifted = chunk + this.chunkRadius;
+        return shifted - Math.floor(shifted / this.chunkCount) * this.chunkCount - this.chunkRadius;
+    }
+
+    getChunkKey(chunkX: number, chunkZ: number): number {
+        return (
+            (this.wrapChunk(chunkZ) + this.chunkRadius) * this.chunkCount + this.wrapChunk(chunkX) + this.chunkRadius
+        );
+    }
+
+    isChunkLoaded(chunkX: number, chunkZ: number): boolean {
+        return this.chunks.has(this.getChunkKey(chunkX, chunkZ));
+    }
+
+    getFirstRow(chunkZ: number): number {
+        return (this.wrapChunk(chunkZ) + this.chunkRadius) * this.chunkRowCount;
+    }
+
+    getFirstColumn(chunkX: number): number {
+        return (this.wrapChunk(chunkX) + this.chunkRadius) * this.chunkColumnCount;
+    }
+
+    /**
+     * @returns The walls of the chunk, with the rows, columns and coordinates of the whole world.
+     */
+    addChunk(chunkX: number, chunkZ: number, chunk: MazeMap): MazeWall[] {
+        const firstRow = this.getFirstRow(chunkZ);
+        const firstColumn = this.getFirstColumn(chunkX);
+        const offsetX = this.wrapChunk(chunkX) + this.chunkRadius;
+        const offsetZ = this.wrapChunk(chunkZ) + this.chunkRadius;
+        const worldPolygons = new Map<ConvexPolygonEntity, ConvexPolygonEntity>();
+        const walls = chunk.walls.map((wall) => {
+            const polygon = new ConvexPolygonEntity(
+                wall.polygon.points.map(
+                    (point) =>
+                        new Vector2Entity((point.x + offsetX) / this.chunkCount, (point.y + offsetZ) / this.chunkCount)
+                )
+            );
+            worldPolygons.set(wall.polygon, polygon);
+            return new MazeWall(
+                wall.topRow + firstRow,
+                wall.leftColumn + firstColumn,
+                wall.bottomRow + firstRow,
+                wall.rightColumn + firstColumn,
+                polygon
+            );
+        });
+        this.chunks.set(this.getChunkKey(chunkX, chunkZ), { map: chunk, worldPolygons });
+        return walls;
+    }
+
+    removeChunk(chunkX: number, chunkZ: number): void {
+        this.chunks.delete(this.getChunkKey(chunkX, chunkZ));
+    }
+
+    private getChunkOfCell(row: number, column: number): LoadedChunk | undefined {
+        return this.chunks.get(
+            this.getChunkKey(
+                Math.floor(this.wrapColumn(column) / this.chunkColumnCount) - this.chunkRadius,
+                Math.floor(this.wrapRow(row) / this.chunkRowCount) - this.chunkRadius
+            )
+        );
+    }
+
+    isLoaded(row: number, column: number): boolean {
+        return !!this.getChunkOfCell(row, column);
+    }
+
+    getCell(row: number, column: number): boolean {
+        const chunk = this.getChunkOfCell(row, column);
+        // The chunk wraps the row and column around by itself
+        return chunk ? chunk.map.getCell(row, column) : true;
+    }
+
+    getRelevantPolygons(row: number, column: number): ReadonlyArray<ConvexPolygonEntity> {
+        const chunk = this.getChunkOfCell(row, column);
+        if (!chunk) {
+            return NO_POLYGONS;
+        }
+        return chunk.map
+            .getRelevantPolygons(row, column)
+            .map((polygon) => chunk.worldPolygons.get(polygon) as ConvexPolygonEntity);
+    }
+
+    getChunkX(x: number): number {
+        return Math.floor(x / this.chunkWidth + 0.5);
+    }
+
+    getChunkZ(z: number): number {
+        return Math.floor(z / this.chunkDepth + 0.5);
+    }
+
+    /**
+     * Goes through the chunks which are at most some distance away from a point (along each axis), each of them once.
+     */
+    forEachChunkNear(x: number, z: number, distance: number, callback: (chunkX: number, chunkZ: number) => void): void {
+        const fromX = this.getChunkX(x - distance);
+        const toX = Math.min(this.getChunkX(x + distance), fromX + this.chunkCount - 1);
+        const fromZ = this.getChunkZ(z - distance);
+        const toZ = Math.min(this.getChunkZ(z + distance), fromZ + this.chunkCount - 1);
+        for (let chunkZ = fromZ; chunkZ <= toZ; chunkZ++) {
+            for (let chunkX = fromX; chunkX <= toX; chunkX++) {
+                callback(this.wrapChunk(chunkX), this.wrapChunk(chunkZ));
+            }
+        }
+    }
+
+    /**
+     * @returns How far a point is from a chunk along the axis along which it is farther, going across the seams of the
+     * world if that is closer. 0 if the point is inside the chunk.
+     */
+    getDistanceToChunk(x: number, z: number, chunkX: number, chunkZ: number): number {
+        const distanceX = Math.abs(this.wrapX(x - chunkX * this.chunkWidth)) - this.chunkWidth * 0.5;
+        const distanceZ = Math.abs(this.wrapZ(z - chunkZ * this.chunkDepth)) - this.chunkDepth * 0.5;
+        return Math.max(0, distanceX, distanceZ);
+    }
+
+    getRow(z: number): number {
+        return Math.floor((this.wrapZ(z) / this.depth + 0.5) * this.rowCount);
+    }
+
+    getColumn(x: number): number {
+        return Math.floor((this.wrapX(x) / this.width + 0.5) * this.columnCount);
+    }
+
+    wrapRow(row: number): number {
+        return row - Math.floor(row / this.rowCount) * this.rowCount;
+    }
+
+    wrapColumn(column: number): number {
+        return column - Math.floor(column / this.columnCount) * this.columnCount;
+    }
+
+    wrapPosition(position: { x: number; z: number }): void {
+        position.x = this.wrapX(position.x);
+        position.z = this.wrapZ(position.z);
+    }
+
+    wrapX(x: number): number {
+        return x - Math.floor(x / this.width + 0.5) * this.width;
+    }
+
+    wrapZ(z: number): number {
+        return z - Math.floor(z / this.depth + 0.5) * this.depth;
+    }
+
+    wrapTowards(source: { x: number; z: number }, target: { x: number; z: number }): void {
+        source.x -= Math.floor((source.x - target.x) / this.width + 0.5) * this.width;
+        source.z -= Math.floor((source.z - target.z) / this.depth + 0.5) * this.depth;
+    }
+}
@@ -0,0 +1,60 @@
+import { BinaryEntity } from '../binary-entity';
+import { SignedBinaryReader } from '../data/signed-binary-reader';
+import { SignedBinaryWriter } from '../data/signed-binary-writer';
+
+/**
+ * The signed distance from points of the map to the closest wall boundary, in cells (negative inside the walls),
+ * sampled a few times per cell and looked up with bilinear interpolation that wraps around the edges of the map.
+ */
+export class MazeDistanceField extends BinaryEntity {
+    constructor(
+        readonly samplesPerCell: number,
+        readonly rowCount: number,
+        readonly columnCount: number,
+        private readonly distances: Float32Array
+    ) {
+        super();
+    }
+
+    /**
+     * @param x The normalized X coordinate. Wrapped around if it is outside the map.
+     * @param y The normalized Y coordinate. Wrapped around if it is outside the map.
+     * @returns The approximate signed distance from the point to the closest wall boundary, in cells.
+     */
+    get(x: number, y: number): number {
+        const sampleX = x * this.columnCount - 0.5;
+        const sampleY = y * this.rowCount - 0.5;
+        const leftX = Math.floor(sampleX);
+        const topY = Math.floor(sampleY);
+        const ratioX = sampleX - leftX;
+        const ratioY = sampleY - topY;
+        const left = leftX - Math.floor(leftX / this.columnCount) * this.columnCount;
+        const right = left + 1 < this.columnCount ? left + 1 : 0;
+        const top = (topY - Math.floor(topY / this.rowCount) * this.rowCount) * this.columnCount;
+        const bottom = top + this.columnCount < this.distances.length ? top + this.columnCount : 0;
+        const distances = this.distances;
+        const upper = distances[top + left] + (distances[top + right] - distances[top + left]) * ratioX;
+        const lower = distances[bottom + left] + (distances[bottom + right] - distances[bottom + left]) * ratioX;
+        return upper + (lower - upper) * ratioY;
+    }
+
+    appendToBinaryOutput(writer: SignedBinaryWriter): void {
+        writer.writeInt(this.samplesPerCell);
+        writer.writeInt(this.rowCount);
+        writer.writeInt(this.columnCount);
+        for (const distance of this.distances) {
+            writer.writeFloat(distance);
+        }
+    }
+
+    static decodeFromBinary(reader: SignedBinaryReader): MazeDistanceField {
+        const samplesPerCell = reader.readInt();
+        const rowCount = reader.readInt();
+        const columnCount = reader.readInt();
+        const distances = new Float32Array(rowCount * columnCount);
+        for (let i = 0; i < distances.length; i++) {
+            distances[i] = reader.readFloat();
+        }
+        return new MazeDistanceField(samplesPerCell, rowCount, columnCount, distances);
+    }
+}
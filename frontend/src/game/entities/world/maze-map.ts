@@ -4,20 +4,27 @@ import { BinaryEntity } from '../binary-entity';
 import { SignedBinaryReader } from '../data/signed-binary-reader';
 import { SignedBinaryWriter } from '../data/signed-binary-writer';
 import { ConvexPolygonEntity } from '../geometry/convex-polygon-entity';
+import { MazeDistanceField } from './maze-distance-field';
 import { MazeWall } from './maze-wall';
+import { WorldMap } from './world-map';
 
 const wallReach = 1;
 
 const WRAP_X_OFFSETS = [-1, 0, 1];
 const WRAP_Z_OFFSETS = [-1, 0, 1];
 
-export class MazeMap extends BinaryEntity {
+export class MazeMap extends BinaryEntity implements WorldMap {
     private readonly relevantPolygons: ReadonlyArray<ConvexPolygonEntity>[][];
 
     readonly width: number;
     readonly depth: number;
     readonly wrappingOffsets: Vector3[];
 
+    /**
+     * The signed distance field of the walls, if the server has sent one. Fertility is looked up in it when it is set.
+     */
+    distanceField?: MazeDistanceField;
+
     constructor(
         readonly rowCount: number,
         readonly columnCount: number,
@@ -50,6 +57,10 @@ export class MazeMap extends BinaryEntity {
         );
     }
 
+    isLoaded(): boolean {
+        return true;
+    }
+
     getCell(row: number, column: number): boolean {
         return this.map[this.wrapRow(row)][this.wrapColumn(column)];
     }
@@ -103,11 +114,23 @@ export class MazeMap extends BinaryEntity {
         writer.writeInt(this.rowCount);
         writer.writeInt(this.columnCount);
         writer.writeDouble(this.cellSize);
+        let currentByte = 0;
+        let bitsInByte = 0;
         for (let i = 0; i < this.rowCount; i++) {
             for (let j = 0; j < this.columnCount; j++) {
-                writer.writeBoolean(this.map[i][j]);
+                if (this.map[i][j]) {
+                    currentByte |= 1 << bitsInByte;
+                }
+                if (++bitsInByte === 8) {
+                    writer.writeByte(currentByte);
+                    currentByte = 0;
+                    bitsInByte = 0;
+                }
             }
         }
+        if (bitsInByte > 0) {
+            writer.writeByte(currentByte);
+        }
         writer.writeEntityArray(this.walls);
     }
 
@@ -115,10 +138,18 @@ export class MazeMap extends BinaryEntity {
         const rowCount = reader.readInt();
         const columnCount = reader.readInt();
         const cellSize = reader.readDouble();
+        // The cells are packed 8 to a byte, row by row
         const map: boolean[][] = Array.from({ length: rowCount }, () => []);
+        let currentByte = 0;
+        let bitsInByte = 0;
         for (let i = 0; i < rowCount; i++) {
             for (let j = 0; j < columnCount; j++) {
-                map[i].push(reader.readBoolean());
+                if (bitsInByte === 0) {
+                    currentByte = reader.readByte();
+                    bitsInByte = 8;
+                }
+                map[i].push((currentByte & (1 << (8 - bitsInByte))) !== 0);
+                bitsInByte--;
             }
         }
         return new MazeMap(rowCount, columnCount, cellSize, map, reader.readEntityArray(MazeWall));
@@ -0,0 +1,43 @@
+import { Vector3 } from 'three';
+
+import { ConvexPolygonEntity } from '../geometry/convex-polygon-entity';
+import { MazeDistanceField } from './maze-distance-field';
+
+/**
+ * The cells and walls of the whole world, which wraps around. The polygons of the walls are in coordinates from 0 to 1
+ * along each axis of the whole world.
+ */
+export interface WorldMap {
+    readonly rowCount: number;
+    readonly columnCount: number;
+    readonly cellSize: number;
+    readonly width: number;
+    readonly depth: number;
+    readonly wrappingOffsets: Vector3[];
+    readonly distanceField?: MazeDistanceField;
+
+    /**
+     * @returns Whether the cell is known. Unknown cells are treated as open.
+     */
+    isLoaded(row: number, column: number): boolean;
+
+    getCell(row: number, column: number): boolean;
+
+    getRelevantPolygons(row: number, column: number): ReadonlyArray<ConvexPolygonEntity>;
+
+    getRow(z: number): number;
+
+    getColumn(x: number): number;
+
+    wrapRow(row: number): number;
+
+    wrapColumn(column: number): number;
+
+    wrapPosition(position: { x: number; z: number }): void;
+
+    wrapX(x: number): number;
+
+    wrapZ(z: number): number;
+
+    wrapTowards(source: { x: number; z: number }, target: { x: number; z: number }): void;
+}
@@ -15,7 +15,7 @@ import {
 } from 'three';
 
 import { ConvexPolygonEntity } from '../entities/geometry/convex-polygon-entity';
-import { MazeMap } from '../entities/world/maze-map';
+import { WorldMap } from '../entities/world/world-map';
 import { BambooModel } from './bamboo-model';
 
 // There are a little more than 1 + 2^2 + 2^6 = 69 unique plant formations (based on the cell and its surrounding cells)
@@ -107,7 +107,7 @@ export class ForestCellData {
     }
 
     static fromMapData(
-        mapData: MazeMap,
+        mapData: WorldMap,
         row: number,
         column: number,
         memorizedPlants: Map<number, BufferAttribute[]>,
@@ -191,7 +191,7 @@ export class ForestCellData {
     }
 
     static generatePlants(
-        mapData: MazeMap,
+        mapData: WorldMap,
         row: number,
         column: number,
         worldWidth: number,
@@ -223,15 +223,17 @@ export class ForestCellData {
         for (let i = 0; i < PLANT_ATTEMPTS_PER_CELL && plants.length < MAX_PLANTS_PER_CELL * 2; i++) {
             plantX = minX + Math.random() * rangeX;
             plantZ = minZ + Math.random() * rangeZ;
-            fertility = ForestCellData.getFertility(
-                plantX,
-                plantZ,
-                offsetsX,
-                offsetsZ,
-                relevantPolygons,
-                distanceDivisorSquared,
-                0
-            );
+            fertility = mapData.distanceField
+                ? ForestCellData.getFertilityFromDistance(mapData.distanceField.get(plantX, plantZ), 0)
+                : ForestCellData.getFertility(
+                      plantX,
+                      plantZ,
+                      offsetsX,
+                      offsetsZ,
+                      relevantPolygons,
+                      distanceDivisorSquared,
+                      0
+                  );
             ForestCellData.spawnAttempts++;
             fertility *= fertility;
             fertility *= fertility;
@@ -255,7 +257,7 @@ export class ForestCellData {
     }
 
     static generateMaterial(
-        mapData: MazeMap,
+        mapData: WorldMap,
         row: number,
         column: number,
         dirtTexturePromise: Promise<Texture>
@@ -288,14 +290,16 @@ export class ForestCellData {
         for (let i = 0; i < ALPHA_TEXTURE_HEIGHT; i++, z += zStep) {
             x = minX;
             for (let j = 0; j < ALPHA_TEXTURE_WIDTH; j++, x += xStep) {
-                fertility = ForestCellData.getFertility(
-                    x,
-                    z,
-                    offsetsX,
-                    offsetsZ,
-                    relevantPolygons,
-                    distanceDivisorSquared
-                );
+                fertility = mapData.distanceField
+                    ? ForestCellData.getFertilityFromDistance(mapData.distanceField.get(x, z))
+                    : ForestCellData.getFertility(
+                          x,
+                          z,
+                          offsetsX,
+                          offsetsZ,
+                          relevantPolygons,
+                          distanceDivisorSquared
+                      );
                 alphaValue = Math.floor(fertility * fertility * 255.9);
                 alphaData[index++] = alphaValue;
                 alphaData[index++] = alphaValue;
@@ -353,6 +357,17 @@ export class ForestCellData {
             : 0.0;
     }
 
+    /**
+     * The same as {@link ForestCellData.getFertility}, but for a point whose signed distance to the closest wall
+     * boundary (in cells) has already been looked up.
+     */
+    private static getFertilityFromDistance(distance: number, innerValue = 1): number {
+        if (distance < 0) {
+            return innerValue;
+        }
+        return distance < MAX_DISTANCE_FROM_WALL ? 1.0 - distance / MAX_DISTANCE_FROM_WALL : 0.0;
+    }
+
     /**
      * Cull the instances of this instanced mesh - skip rendering the instances which don't overlap the frustum.
      *
@@ -0,0 +1,151 @@
+import Ammo from 'ammo.js';
+import { Vector3 } from 'three';
+
+import { ChunkDataMessage } from '../entities/messages/chunk-data-message';
+import { ChunkedWorldMap } from '../entities/world/chunked-world-map';
+import { LazyLoadAllocation } from '../util/lazy-load-allocation';
+import { RenderAware } from '../util/render-aware';
+import { ForestObject } from './forest-object';
+import { ForestWall } from './forest-wall';
+
+/**
+ * How close to a chunk the player has to be for it to be requested, along each axis. The same as on the server, so
+ * that the walls the player can run into are known both there and here.
+ */
+const LOAD_DISTANCE = 400;
+
+/**
+ * How far away from a chunk the player has to be for it to be forgotten, along each axis.
+ */
+const UNLOAD_DISTANCE = 800;
+
+/**
+ * How long to wait for a requested chunk before requesting it again, in seconds.
+ */
+const REQUEST_TIMEOUT = 5;
+
+const WALLS_TO_LOAD_IMMEDIATELY = 10;
+
+/**
+ * Requests the chunks of a world made of chunks as the player gets close to them, and forgets the ones the player
+ * gets far away from, so that only the chunks around the player are known at any time.
+ */
+export class ForestChunks implements RenderAware {
+    readonly id = 'ForestChunks';
+
+    private readonly wallsByChunk = new Map<number, ForestWall>();
+    private readonly requestTimeByChunk = new Map<number, number>();
+    private readonly material = ForestWall.createMaterial();
+    private currentPadding = 0;
+    private time = 0;
+
+    /**
+     * @param map The map of the world, which the chunks are added to and removed from.
+     * @param forest The plants, which forget the cells of the chunks which are removed.
+     * @param playerPosition The position of the player.
+     * @param physicsWorld The physics world the walls of the chunks are added to.
+     * @param wallLazyLoad What to load the walls of the chunks with.
+     * @param requestChunk Requests a chunk from the server.
+     * @param addWall Adds the walls of a chunk to the scene.
+     * @param removeWall Removes the walls of a chunk from the scene.
+     */
+    constructor(
+        private readonly map: ChunkedWorldMap,
+        private readonly forest: ForestObject,
+        private readonly playerPosition: Vector3,
+        private readonly physicsWorld: Ammo.btDiscreteDynamicsWorld,
+        private readonly wallLazyLoad: LazyLoadAllocation,
+        private readonly requestChunk: (chunkX: number, chunkZ: number) => void,
+        private readonly addWall: (wall: ForestWall) => void,
+        private readonly removeWall: (wall: ForestWall) => void
+    ) {}
+
+    get padding(): number {
+        return this.currentPadding;
+    }
+
+    set padding(padding: number) {
+        this.currentPadding = padding;
+        for (const wall of this.wallsByChunk.values()) {
+            wall.padding = padding;
+        }
+    }
+
+    get activeBodyCount(): number {
+        let result = 0;
+        for (const wall of this.wallsByChunk.values()) {
+            result += wall.activeBodyCount;
+        }
+        return result;
+    }
+
+    get totalBodyCount(): number {
+        let result = 0;
+        for (const wall of this.wallsByChunk.values()) {
+            result += wall.totalBodyCount;
+        }
+        return result;
+    }
+
+    addChunk(message: ChunkDataMessage): void {
+        const key = this.map.getChunkKey(message.chunkX, message.chunkZ);
+        this.requestTimeByChunk.delete(key);
+        if (
+            this.map.isChunkLoaded(message.chunkX, message.chunkZ) ||
+            this.map.getDistanceToChunk(this.playerPosition.x, this.playerPosition.z, message.chunkX, message.chunkZ) >
+                UNLOAD_DISTANCE
+        ) {
+            return;
+        }
+        const walls = this.map.addChunk(message.chunkX, message.chunkZ, message.chunk);
+        const forestWall = new ForestWall(this.playerPosition, this.physicsWorld, this.wallLazyLoad, this.material);
+        forestWall.padding = this.currentPadding;
+        forestWall.generate(this.map, walls, WALLS_TO_LOAD_IMMEDIATELY);
+        this.wallsByChunk.set(key, forestWall);
+        this.addWall(forestWall);
+    }
+
+    private removeChunk(chunkX: number, chunkZ: number): void {
+        const key = this.map.getChunkKey(chunkX, chunkZ);
+        const forestWall = this.wallsByChunk.get(key);
+        if (forestWall) {
+            this.removeWall(forestWall);
+            forestWall.dispose();
+            this.wallsByChunk.delete(key);
+        }
+        this.map.removeChunk(chunkX, chunkZ);
+        this.forest.forgetCells(
+            this.map.getFirstRow(chunkZ),
+            this.map.getFirstColumn(chunkX),
+            this.map.chunkRowCount,
+            this.map.chunkColumnCount
+        );
+    }
+
+    longBeforeRender(): void {}
+
+    beforeRender(delta: number): void {
+        this.time += delta;
+        const x = this.playerPosition.x;
+        const z = this.playerPosition.z;
+        this.map.forEachChunkNear(x, z, LOAD_DISTANCE, (chunkX, chunkZ) => {
+            if (this.map.isChunkLoaded(chunkX, chunkZ)) {
+                return;
+            }
+            const key = this.map.getChunkKey(chunkX, chunkZ);
+            const requestTime = this.requestTimeByChunk.get(key);
+            if (requestTime === undefined || this.time - requestTime > REQUEST_TIMEOUT) {
+                this.requestTimeByChunk.set(key, this.time);
+                this.requestChunk(chunkX, chunkZ);
+            }
+        });
+
+        for (const key of Array.from(this.wallsByChunk.keys())) {
+            const chunkX = (key % this.map.chunkCount) - this.map.chunkRadius;
+            const chunkZ = Math.floor(key / this.map.chunkCount) - this.map.chunkRadius;
+            if (this.map.getDistanceToChunk(x, z, chunkX, chunkZ) > UNLOAD_DISTANCE) {
+                this.removeChunk(chunkX, chunkZ);
+            }
+        }
+    }
+}
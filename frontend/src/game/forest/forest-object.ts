@@ -17,7 +17,7 @@ import { GLTFLoader } from 'three/examples/jsm/loaders/GLTFLoader';
 
 import { addCredit } from '@/temp-util';
 
-import { MazeMap } from '../entities/world/maze-map';
+import { WorldMap } from '../entities/world/world-map';
 import { Input } from '../util/input';
 import { LazyLoadAllocation } from '../util/lazy-load-allocation';
 import { RenderAware } from '../util/render-aware';
@@ -43,10 +43,13 @@ const BAMBOO_MODEL_FILENAME = 'bamburro.glb';
 export class ForestObject extends Object3D implements RenderAware {
     private bambooModels?: BambooModel[];
     private dummyBambooModels: BambooModel[] = [];
-    private mapData?: MazeMap;
+    private mapData?: WorldMap;
 
     readonly cellLazyLoad = new LazyLoadAllocation();
-    private cellGrid: (ForestCellData | undefined)[][] | undefined;
+    /**
+     * The cells which have been looked at so far, by their index in the whole world.
+     */
+    private cellGrid: Map<number, ForestCellData> | undefined;
     private readonly memorizedPlants: Map<number, BufferAttribute[]> = new Map();
     private readonly memorizedDirtMaterials: Map<number, Material> = new Map();
     private readonly leafTexturePromise = new TextureLoader().loadAsync('./assets/leaves.jpg');
@@ -139,10 +142,28 @@ export class ForestObject extends Object3D implements RenderAware {
         return this.currentRenderedDummyPlants;
     }
 
-    setMapData(mapData: MazeMap): void {
+    setMapData(mapData: WorldMap): void {
         this.mapData = mapData;
-        const rowInfo = { length: this.mapData.columnCount };
-        this.cellGrid = Array.from({ length: this.mapData.rowCount }, () => Array.from(rowInfo));
+        this.cellGrid = new Map();
+    }
+
+    /**
+     * Forgets the cells in an area of the map, like a chunk which is no longer loaded.
+     */
+    forgetCells(firstRow: number, firstColumn: number, rowCount: number, columnCount: number): void {
+        if (!this.cellGrid || !this.mapData) {
+            return;
+        }
+        for (let i = firstRow; i < firstRow + rowCount; i++) {
+            for (let j = firstColumn; j < firstColumn + columnCount; j++) {
+                const index = this.mapData.wrapRow(i) * this.mapData.columnCount + this.mapData.wrapColumn(j);
+                const cellData = this.cellGrid.get(index);
+                if (cellData) {
+                    this.currentTotalPlants -= cellData.count;
+                    this.cellGrid.delete(index);
+                }
+            }
+        }
     }
 
     longBeforeRender(): void {}
@@ -174,8 +195,8 @@ export class ForestObject extends Object3D implements RenderAware {
         this.currentRenderedDetailedPlants = 0;
 
         // Look only at the cells around the bounding box of the camera frustum.
-        const height = this.cellGrid.length;
-        const width = this.cellGrid[0].length;
+        const height = this.mapData.rowCount;
+        const width = this.mapData.columnCount;
         min.set(Infinity, Infinity);
         max.set(-Infinity, -Infinity);
         const nearToFarScale = this.camera.far / this.camera.near;
@@ -220,9 +241,9 @@ export class ForestObject extends Object3D implements RenderAware {
             row = this.mapData.wrapRow(i);
             for (let j = leftColumn; j <= rightColumn; j++) {
                 column = this.mapData.wrapColumn(j);
-                let cellData = this.cellGrid[row][column];
+                let cellData = this.cellGrid.get(row * width + column);
                 if (!cellData) {
-                    if (!this.cellLazyLoad.tryToUse(1)) {
+                    if (!this.mapData.isLoaded(i, j) || !this.cellLazyLoad.tryToUse(1)) {
                         continue;
                     }
 
@@ -238,7 +259,7 @@ export class ForestObject extends Object3D implements RenderAware {
                     if (cellData !== ForestCellData.EMPTY) {
                         this.cellLazyLoad.useRetroactively(10);
                     }
-                    this.cellGrid[row][column] = cellData;
+                    this.cellGrid.set(row * width + column, cellData);
                     this.currentTotalPlants += cellData.count;
                 }
                 if (cellData === ForestCellData.EMPTY) {
@@ -13,8 +13,8 @@ import {
     Vector3,
 } from 'three';
 
-import { MazeMap } from '../entities/world/maze-map';
 import { MazeWall } from '../entities/world/maze-wall';
+import { WorldMap } from '../entities/world/world-map';
 import { BulletCollisionFlags } from '../physics/bullet-collision-flags';
 import { LazyLoadAllocation } from '../util/lazy-load-allocation';
 import { PhysicsAware } from '../util/physics-aware';
@@ -38,9 +38,8 @@ interface WithExtraWallInfo {
 }
 
 export class ForestWall extends Mesh<BufferGeometry, MeshStandardMaterial> implements PhysicsAware, RenderAware {
-    private mapData?: MazeMap;
+    private mapData?: WorldMap;
 
-    readonly wallLazyLoad = new LazyLoadAllocation();
     private wallsToLoad: (MazeWall & WithExtraWallInfo)[] = [];
     private nextWallIndex = 0;
     private posIndex = -1;
@@ -51,22 +50,37 @@ export class ForestWall extends Mesh<BufferGeometry, MeshStandardMaterial> imple
     private activeWalls: (Ammo.btRigidBody & WithDynamicInfo)[] = [];
     private totalWallCount = 0;
     private lastPlayerCell = -1;
-    private bodiesPerCell?: ((Ammo.btRigidBody & WithDynamicInfo)[] | undefined)[][];
+    /**
+     * The bodies of the walls by the index of the cells they are in, in the whole world.
+     */
+    private bodiesPerCell?: Map<number, (Ammo.btRigidBody & WithDynamicInfo)[]>;
 
     padding = 0;
 
-    constructor(private readonly playerPosition: Vector3, private readonly physicsWorld: Ammo.btDiscreteDynamicsWorld) {
-        super(
-            new BufferGeometry(),
-            new MeshStandardMaterial({
-                side: DoubleSide,
-                shadowSide: BackSide,
-                transparent: true,
-                alphaTest: 0.5,
-            })
-        );
+    /**
+     * @param playerPosition The position around which the walls are in the physics world.
+     * @param physicsWorld The physics world.
+     * @param wallLazyLoad What to load the walls with, which can be shared by several instances.
+     * @param material The material of the walls, which can be shared by several instances.
+     */
+    constructor(
+        private readonly playerPosition: Vector3,
+        private readonly physicsWorld: Ammo.btDiscreteDynamicsWorld,
+        readonly wallLazyLoad = new LazyLoadAllocation(),
+        material = ForestWall.createMaterial()
+    ) {
+        super(new BufferGeometry(), material);
         this.castShadow = true;
+        this.receiveShadow = true;
+    }
 
+    static createMaterial(): MeshStandardMaterial {
+        const material = new MeshStandardMaterial({
+            side: DoubleSide,
+            shadowSide: BackSide,
+            transparent: true,
+            alphaTest: 0.5,
+        });
         const textureLoader = new TextureLoader();
         Promise.all([
             textureLoader.loadAsync('./assets/bamboo/wall.png'),
@@ -78,13 +92,13 @@ export class ForestWall extends Mesh<BufferGeometry, MeshStandardMaterial> imple
                 currentTexture.wrapS = currentTexture.wrapT = MirroredRepeatWrapping;
                 currentTexture.flipY = false;
             }
-            this.material.map = texture;
-            this.material.normalMap = normal;
-            this.material.normalScale = new Vector2(25, 25);
-            this.material.alphaMap = alpha;
-            this.receiveShadow = true;
-            this.material.needsUpdate = true;
+            material.map = texture;
+            material.normalMap = normal;
+            material.normalScale = new Vector2(25, 25);
+            material.alphaMap = alpha;
+            material.needsUpdate = true;
         });
+        return material;
     }
 
     get activeBodyCount(): number {
@@ -109,7 +123,9 @@ export class ForestWall extends Mesh<BufferGeometry, MeshStandardMaterial> imple
         const cellPadding = Math.ceil(this.padding / this.mapData.cellSize);
         for (let i = row - cellPadding; i <= row + cellPadding; i++) {
             for (let j = column - cellPadding; j <= column + cellPadding; j++) {
-                const bodies = this.bodiesPerCell[this.mapData.wrapRow(i)][this.mapData.wrapColumn(j)];
+                const bodies = this.bodiesPerCell.get(
+                    this.mapData.wrapRow(i) * this.mapData.columnCount + this.mapData.wrapColumn(j)
+                );
                 if (bodies) {
                     for (const body of bodies) {
                         body.playerCell = cell;
@@ -143,6 +159,21 @@ export class ForestWall extends Mesh<BufferGeometry, MeshStandardMaterial> imple
 
     afterPhysics(): void {}
 
+    /**
+     * Takes the walls out of the physics world and frees their geometry, when they are no longer needed.
+     */
+    dispose(): void {
+        for (const body of this.activeWalls) {
+            body.active = false;
+            this.physicsWorld.removeRigidBody(body);
+        }
+        this.activeWalls = [];
+        this.bodiesPerCell = undefined;
+        this.wallsToLoad = [];
+        this.nextWallIndex = 0;
+        this.geometry.dispose();
+    }
+
     longBeforeRender(): void {}
 
     beforeRender(): void {
@@ -157,14 +188,18 @@ export class ForestWall extends Mesh<BufferGeometry, MeshStandardMaterial> imple
         }
     }
 
-    generate(mapData: MazeMap, wallsToLoadImmediately: number): void {
+    /**
+     * @param mapData The map of the whole world.
+     * @param walls The walls to make, which are all of the walls of the map unless it is made of chunks.
+     * @param wallsToLoadImmediately How many of the walls to make right away rather than lazily.
+     */
+    generate(mapData: WorldMap, walls: ReadonlyArray<MazeWall>, wallsToLoadImmediately: number): void {
         this.mapData = mapData;
-        const columnCountInfo = { length: mapData.columnCount };
-        this.bodiesPerCell = Array.from({ length: mapData.rowCount }, () => Array.from(columnCountInfo));
+        this.bodiesPerCell = new Map();
 
         const middleRow = mapData.rowCount / 2;
         const middleColumn = mapData.columnCount / 2;
-        this.wallsToLoad = mapData.walls.slice();
+        this.wallsToLoad = walls.slice();
         let totalVertexCount = 0;
         for (const wall of this.wallsToLoad) {
             wall.distanceFromCenter =
@@ -180,7 +215,7 @@ export class ForestWall extends Mesh<BufferGeometry, MeshStandardMaterial> imple
         this.uvPositions = new Float32Array(totalVertexCount * 2);
         this.uvIndex = -1;
 
-        this.totalWallCount = mapData.walls.length;
+        this.totalWallCount = walls.length;
         this.nextWallIndex = 0;
 
         const loadedVertices = this.loadWalls(Math.min(wallsToLoadImmediately, this.wallsToLoad.length));
@@ -303,7 +338,13 @@ export class ForestWall extends Mesh<BufferGeometry, MeshStandardMaterial> imple
             body.setRestitution(0);
             for (let i = wall.topRow; i <= wall.bottomRow; i++) {
                 for (let j = wall.leftColumn; j <= wall.rightColumn; j++) {
-                    (this.bodiesPerCell[i][j] = this.bodiesPerCell[i][j] || []).push(body);
+                    const cell = i * this.mapData.columnCount + j;
+                    const bodies = this.bodiesPerCell.get(cell);
+                    if (bodies) {
+                        bodies.push(body);
+                    } else {
+                        this.bodiesPerCell.set(cell, [body]);
+                    }
                 }
             }
         }
@@ -27,16 +27,21 @@ import { AmmoDebugRenderer } from './debug/ammo-debug-renderer';
 import { FrameAnalysis } from './debug/frame-analysis';
 import { BinaryEntity } from './entities/binary-entity';
 import { SignedBinaryReader } from './entities/data/signed-binary-reader';
+import { ChunkDataMessage } from './entities/messages/chunk-data-message';
 import { HeartbeatRequest } from './entities/messages/heartbeat-request';
 import { MapDataMessage } from './entities/messages/map-data-message';
 import { PlayerDisconnectMessage } from './entities/messages/player-disconnect-message';
 import { PlayerJoinMessage } from './entities/messages/player-join-message';
 import { WorldUpdateMessage } from './entities/messages/world-update-message';
+import { ChunkRequestMutation } from './entities/mutations/chunk-request-mutation';
 import { HeartbeatResponse } from './entities/mutations/heartbeat-response';
+import { PlayerInputBatchMutation } from './entities/mutations/player-input-batch-mutation';
 import { PlayerInputMutation } from './entities/mutations/player-input-mutation';
 import { PlayerJoinMutation } from './entities/mutations/player-join-mutation';
 import { PlayerInput } from './entities/player/player-input';
-import { MazeMap } from './entities/world/maze-map';
+import { ChunkedWorldMap } from './entities/world/chunked-world-map';
+import { WorldMap } from './entities/world/world-map';
+import { ForestChunks } from './forest/forest-chunks';
 import { ForestObject } from './forest/forest-object';
 import { ForestWall } from './forest/forest-wall';
 import { Moon } from './moon';
@@ -58,6 +63,7 @@ enum MessageType {
     UPDATE,
     DISCONNECT,
     HEARTBEAT_REQUEST,
+    CHUNK_DATA,
 }
 
 addCredit({
@@ -75,6 +81,11 @@ const FOG_START = FOG_END * 0;
 const RESOURCES_PER_FRAME = 100;
 const RESOURCES_PER_LAZY_LOAD = 10;
 
+/**
+ * How many of the previously sent inputs to repeat along with every new one.
+ */
+const REDUNDANT_INPUT_COUNT = 3;
+
 const GROUND_HALF_THICKNESS = 100;
 
 const DUMMY_SPHERE_GEOMETRY = new SphereBufferGeometry(10, 16, 16);
@@ -116,15 +127,17 @@ export class GameScene {
     private readonly characterById = new Map<number, Character>();
 
     private lastSentInputId = -1;
+    private readonly recentlySentInputs: PlayerInput[] = [];
     readonly input = new Input();
 
     private readonly cameraControls: FixedDistanceOrbitControls;
 
     private readonly physicsWorld;
 
-    private mapData?: MazeMap;
+    private mapData?: WorldMap;
     readonly forest: ForestObject;
     readonly forestWalls: ForestWall;
+    private forestChunks?: ForestChunks;
 
     private readonly physicsDebugger: AmmoDebugRenderer;
 
@@ -250,11 +263,11 @@ export class GameScene {
     }
 
     get activeForestWallBodyCount(): number {
-        return this.forestWalls.activeBodyCount;
+        return this.forestWalls.activeBodyCount + (this.forestChunks?.activeBodyCount || 0);
     }
 
     get totalForestWallBodyCount(): number {
-        return this.forestWalls.totalBodyCount;
+        return this.forestWalls.totalBodyCount + (this.forestChunks?.totalBodyCount || 0);
     }
 
     get time(): number {
@@ -298,6 +311,9 @@ export class GameScene {
         this.forest.setReceiveShadow(newSettings.plantsReceiveShadows);
         this.forest.visiblePlants = newSettings.plantVisibility;
         this.forestWalls.padding = newSettings.forestWallActiveRadius;
+        if (this.forestChunks) {
+            this.forestChunks.padding = newSettings.forestWallActiveRadius;
+        }
         this.physicsDebugger.visible = newSettings.debugPhysics;
 
         if (shouldRefreshSize) {
@@ -347,6 +363,8 @@ export class GameScene {
                 return this.onForestData(reader);
             case MessageType.HEARTBEAT_REQUEST:
                 return this.onHeartbeat(reader);
+            case MessageType.CHUNK_DATA:
+                return this.onChunkData(reader);
             default:
                 throw new Error('Unrecognized message type: ' + messageType);
         }
@@ -383,18 +401,45 @@ export class GameScene {
 
     private onForestData(reader: SignedBinaryReader): void {
         const message = MapDataMessage.decodeFromBinary(reader);
-        this.mapData = message.map;
+        if (message.chunkRadius > 0) {
+            const chunkedMap = new ChunkedWorldMap(
+                message.chunkRadius,
+                message.map.rowCount,
+                message.map.columnCount,
+                message.map.cellSize
+            );
+            this.mapData = chunkedMap;
+            this.forestChunks = new ForestChunks(
+                chunkedMap,
+                this.forest,
+                this.character.position,
+                this.physicsWorld,
+                this.forestWalls.wallLazyLoad,
+                (chunkX, chunkZ) => this.sendData(new ChunkRequestMutation(chunkX, chunkZ)),
+                (wall) => this.add(wall),
+                (wall) => this.remove(wall)
+            );
+            this.forestChunks.padding = this.settings.forestWallActiveRadius;
+            this.add(this.forestChunks);
+        } else {
+            this.mapData = message.map;
+        }
         this.simulation.map = this.mapData;
-        this.forest.setMapData(message.map);
+        this.forest.setMapData(this.mapData);
 
-        const ground = makeGround(message.map.width, message.map.depth);
+        const ground = makeGround(this.mapData.width, this.mapData.depth);
         this.add(ground);
 
-        this.forestWalls.generate(message.map, 50);
-        this.add(this.forestWalls);
+        if (this.forestChunks) {
+            // The map is the chunk at the origin, so it does not have to be requested
+            this.forestChunks.addChunk(new ChunkDataMessage(0, 0, message.map));
+        } else {
+            this.forestWalls.generate(message.map, message.map.walls, 50);
+            this.add(this.forestWalls);
+        }
 
         const planeShape = new Ammo.btBoxShape(
-            new Ammo.btVector3(message.map.width, GROUND_HALF_THICKNESS, message.map.depth)
+            new Ammo.btVector3(this.mapData.width, GROUND_HALF_THICKNESS, this.mapData.depth)
         );
         const constructionInfo = new Ammo.btRigidBodyConstructionInfo(0, new Ammo.btDefaultMotionState(), planeShape);
         const groundPlane = new Ammo.btRigidBody(constructionInfo);
@@ -414,6 +459,10 @@ export class GameScene {
         }
     }
 
+    private onChunkData(reader: SignedBinaryReader): void {
+        this.forestChunks?.addChunk(ChunkDataMessage.decodeFromBinary(reader));
+    }
+
     private onHeartbeat(reader: SignedBinaryReader): void {
         const message = HeartbeatRequest.decodeFromBinary(reader);
         this.sendData(new HeartbeatResponse(message.id));
@@ -452,7 +501,16 @@ export class GameScene {
             if (this.frameAnalysis.analyzing) {
                 this.frameAnalysis.addMessage(`Sending input #${input.id} for frame #${input.frameId}: ${input}`);
             }
-            this.sendData(new PlayerInputMutation(input));
+            if (input.id > this.lastSentInputId) {
+                this.recentlySentInputs.push(input);
+                if (this.recentlySentInputs.length > REDUNDANT_INPUT_COUNT + 1) {
+                    this.recentlySentInputs.shift();
+                }
+                this.sendData(new PlayerInputBatchMutation(this.recentlySentInputs));
+            } else {
+                // The server has already received an input with this ID so it would discard it from a batch
+                this.sendData(new PlayerInputMutation(input));
+            }
             this.simulation.shouldResendInput = false;
             this.lastSentInputId = this.input.id;
             this.simulation.acceptInput(input);
@@ -8,7 +8,7 @@ import { FrameAnalysis } from '../debug/frame-analysis';
 import { WorldUpdateState } from '../debug/frame-info';
 import { WorldUpdateMessage } from '../entities/messages/world-update-message';
 import { PlayerInput } from '../entities/player/player-input';
-import { MazeMap } from '../entities/world/maze-map';
+import { WorldMap } from '../entities/world/world-map';
 import { ServerClock } from './server-clock';
 import { WorldSnapshot } from './world-snapshot';
 
@@ -44,7 +44,7 @@ export class WorldSimulation {
         return this._currentFrame > -1;
     }
 
-    map?: MazeMap;
+    map?: WorldMap;
 
     shouldResendInput = false;
 
@@ -83,6 +83,40 @@ describe('SignedBinaryReader and SignedBinaryWriter', () => {
         });
     });
 
+    describe('when encoding and decoding variable-length integers', () => {
+        it('should retain their values', () => {
+            const values = [0, 1, -1, 63, -64, 64, 300, 2147483647, -2147483648];
+            for (const value of values) {
+                writer.writeVarInt(value);
+                writer.writeSignedVarInt(value);
+            }
+            const reader = new SignedBinaryReader(writer.toArrayBuffer());
+            for (const value of values) {
+                expect(reader.readVarInt()).toBe(value);
+                expect(reader.readSignedVarInt()).toBe(value);
+            }
+        });
+
+        it('should take a single byte for small values', () => {
+            writer.writeVarInt(127);
+            writer.writeSignedVarInt(-64);
+            expect(writer.toArrayBuffer().byteLength).toBe(2);
+        });
+    });
+
+    describe('when encoding and decoding variable-length longs', () => {
+        it('should retain their values', () => {
+            const hugeValue = 1024 * 1024 * 1024 * 1024 * 1024 + 69;
+            writer.writeVarLong(hugeValue);
+            writer.writeSignedVarLong(-hugeValue);
+            writer.writeSignedVarLong(hugeValue);
+            const reader = new SignedBinaryReader(writer.toArrayBuffer());
+            expect(reader.readVarLong()).toBe(hugeValue);
+            expect(reader.readSignedVarLong()).toBe(-hugeValue);
+            expect(reader.readSignedVarLong()).toBe(hugeValue);
+        });
+    });
+
     describe('when encoding and decoding a float', () => {
         it('should retain its value approximately', () => {
             writer.writeFloat(0.123);
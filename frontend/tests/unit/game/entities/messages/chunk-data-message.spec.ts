@@ -0,0 +1,44 @@
+import { describe, expect, it } from '@jest/globals';
+
+import { SignedBinaryReader } from '@/game/entities/data/signed-binary-reader';
+import { ConvexPolygonEntity } from '@/game/entities/geometry/convex-polygon-entity';
+import { Vector2Entity } from '@/game/entities/geometry/vector2-entity';
+import { ChunkDataMessage } from '@/game/entities/messages/chunk-data-message';
+import { MazeMap } from '@/game/entities/world/maze-map';
+import { MazeWall } from '@/game/entities/world/maze-wall';
+
+describe('ChunkDataMessage', () => {
+    describe('when encoded and decoded', () => {
+        it('should retain its value', () => {
+            const original = new ChunkDataMessage(
+                -2,
+                7,
+                new MazeMap(
+                    2,
+                    3,
+                    5,
+                    [
+                        [true, false, true],
+                        [true, true, false],
+                    ],
+                    [
+                        new MazeWall(
+                            0,
+                            1,
+                            1,
+                            2,
+                            new ConvexPolygonEntity([
+                                new Vector2Entity(0.25, 0),
+                                new Vector2Entity(1, 0),
+                                new Vector2Entity(1, 1),
+                            ])
+                        ),
+                    ]
+                )
+            );
+            const encoded = original.encodeToBinary();
+            const decoded = ChunkDataMessage.decodeFromBinary(new SignedBinaryReader(encoded));
+            expect(decoded).toEqual(original);
+        });
+    });
+});
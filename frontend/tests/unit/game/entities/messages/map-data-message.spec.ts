@@ -37,7 +37,8 @@ describe('MapDataMessage', () => {
                         ),
                     ]
                 ),
-                [new DummyBox(1, 2, new Vector3Entity(0, 0, 0), 0)]
+                [new DummyBox(1, 2, new Vector3Entity(0, 0, 0), 0)],
+                3
             );
             const encoded = original.encodeToBinary();
             const decoded = MapDataMessage.decodeFromBinary(new SignedBinaryReader(encoded));
@@ -30,8 +30,13 @@ describe('WorldUpdateMessage', () => {
             const original = new WorldUpdateMessage(
                 maxPlayerCount,
                 1,
-                new Map<number, number>(),
-                new Map<number, PlayerInput[]>(),
+                new Map<number, number>([
+                    [0, 100],
+                    [3, 250],
+                ]),
+                new Map<number, PlayerInput[]>([
+                    [3, [new PlayerInput(-1, 1892160020540, 5, 0.5), new PlayerInput(2, 1892160020560, 1, 0.25)]],
+                ]),
                 frameWriter.toArrayBuffer()
             );
 
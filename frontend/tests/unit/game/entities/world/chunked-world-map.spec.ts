@@ -0,0 +1,96 @@
+import { describe, expect, it } from '@jest/globals';
+
+import { ConvexPolygonEntity } from '@/game/entities/geometry/convex-polygon-entity';
+import { Vector2Entity } from '@/game/entities/geometry/vector2-entity';
+import { ChunkedWorldMap } from '@/game/entities/world/chunked-world-map';
+import { MazeMap } from '@/game/entities/world/maze-map';
+import { MazeWall } from '@/game/entities/world/maze-wall';
+
+function makeChunk(): MazeMap {
+    const cells = [
+        [true, true, true, true],
+        [true, false, false, true],
+        [true, true, true, true],
+    ];
+    const polygon = new ConvexPolygonEntity([
+        new Vector2Entity(0.25, 1 / 3),
+        new Vector2Entity(0.75, 1 / 3),
+        new Vector2Entity(0.75, 2 / 3),
+        new Vector2Entity(0.25, 2 / 3),
+    ]);
+    return new MazeMap(3, 4, 10, cells, [new MazeWall(1, 1, 1, 2, polygon)]);
+}
+
+describe('ChunkedWorldMap', () => {
+    describe('when created', () => {
+        const map = new ChunkedWorldMap(1, 3, 4, 10);
+
+        it('should be as large as all of its chunks', () => {
+            expect(map.chunkCount).toBe(3);
+            expect(map.rowCount).toBe(9);
+            expect(map.columnCount).toBe(12);
+            expect(map.width).toBe(120);
+            expect(map.depth).toBe(90);
+        });
+
+        it('should wrap chunks around', () => {
+            expect(map.wrapChunk(2)).toBe(-1);
+            expect(map.wrapChunk(-2)).toBe(1);
+            expect(map.wrapChunk(4)).toBe(1);
+        });
+
+        it('should treat its cells as open', () => {
+            expect(map.isLoaded(4, 5)).toBe(false);
+            expect(map.getCell(4, 5)).toBe(true);
+            expect(map.getRelevantPolygons(4, 5)).toHaveLength(0);
+        });
+    });
+
+    describe('when a chunk is added', () => {
+        const map = new ChunkedWorldMap(1, 3, 4, 10);
+        const walls = map.addChunk(1, -1, makeChunk());
+
+        it('should move its walls to where it is in the world', () => {
+            expect(walls).toHaveLength(1);
+            expect(walls[0].topRow).toBe(1);
+            expect(walls[0].leftColumn).toBe(9);
+            expect(walls[0].bottomRow).toBe(1);
+            expect(walls[0].rightColumn).toBe(10);
+            expect(walls[0].polygon.points[0].x).toBeCloseTo(0.75);
+            expect(walls[0].polygon.points[0].y).toBeCloseTo(1 / 9);
+        });
+
+        it('should have its cells', () => {
+            expect(map.isChunkLoaded(1, -1)).toBe(true);
+            expect(map.isChunkLoaded(-2, 2)).toBe(true);
+            expect(map.isLoaded(1, 9)).toBe(true);
+            expect(map.getCell(1, 9)).toBe(false);
+            expect(map.getCell(1, 11)).toBe(true);
+            expect(map.getRelevantPolygons(1, 9)).toEqual([walls[0].polygon]);
+            expect(map.isLoaded(1, 7)).toBe(false);
+        });
+
+        it('should forget it when it is removed', () => {
+            const otherMap = new ChunkedWorldMap(1, 3, 4, 10);
+            otherMap.addChunk(0, 0, makeChunk());
+            otherMap.removeChunk(0, 0);
+            expect(otherMap.loadedChunkCount).toBe(0);
+            expect(otherMap.getCell(4, 5)).toBe(true);
+        });
+    });
+
+    describe('when looking for the chunks near a point', () => {
+        const map = new ChunkedWorldMap(1, 3, 4, 10);
+
+        it('should find each of them once, across the seams of the world', () => {
+            const chunks: string[] = [];
+            map.forEachChunkNear(55, 0, 10, (chunkX, chunkZ) => chunks.push(`${chunkX},${chunkZ}`));
+            expect(chunks).toEqual(['1,0', '-1,0']);
+        });
+
+        it('should measure the distance across the seams of the world', () => {
+            expect(map.getDistanceToChunk(0, 0, 0, 0)).toBe(0);
+            expect(map.getDistanceToChunk(55, 0, -1, 0)).toBeCloseTo(5);
+        });
+    });
+});
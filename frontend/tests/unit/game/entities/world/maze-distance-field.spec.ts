@@ -0,0 +1,36 @@
+import { describe, expect, it } from '@jest/globals';
+
+import { SignedBinaryReader } from '@/game/entities/data/signed-binary-reader';
+import { MazeDistanceField } from '@/game/entities/world/maze-distance-field';
+
+describe('MazeDistanceField', () => {
+    const field = new MazeDistanceField(1, 2, 2, new Float32Array([-0.5, 0.5, 0.5, 1.5]));
+
+    describe('when looked up at the center of a sample', () => {
+        it('should return the sample', () => {
+            expect(field.get(0.25, 0.25)).toBeCloseTo(-0.5);
+            expect(field.get(0.75, 0.75)).toBeCloseTo(1.5);
+        });
+    });
+
+    describe('when looked up between samples', () => {
+        it('should interpolate them', () => {
+            expect(field.get(0.5, 0.25)).toBeCloseTo(0);
+            expect(field.get(0.5, 0.5)).toBeCloseTo(0.5);
+        });
+
+        it('should wrap around the edges', () => {
+            expect(field.get(0, 0.25)).toBeCloseTo(0);
+            expect(field.get(1.25, -0.75)).toBeCloseTo(-0.5);
+        });
+    });
+
+    describe('when encoded and decoded', () => {
+        it('should retain its values', () => {
+            const decoded = MazeDistanceField.decodeFromBinary(new SignedBinaryReader(field.encodeToBinary()));
+            expect(decoded.samplesPerCell).toBe(1);
+            expect(decoded.get(0.75, 0.25)).toBeCloseTo(0.5);
+            expect(decoded.get(0.75, 0.75)).toBeCloseTo(1.5);
+        });
+    });
+});